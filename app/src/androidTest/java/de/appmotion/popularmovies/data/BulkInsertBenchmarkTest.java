@@ -0,0 +1,135 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.MovieDeltaWriter;
+import de.appmotion.popularmovies.data.source.local.MovieRows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumentation benchmark of the insert throughput of a list: one {@link SQLiteDatabase#insert} per {@link ContentValues}
+ * to a movie table against the compiled statements of {@link MovieDeltaWriter} with {@link MovieRows}, which write the movie
+ * and the list membership table. The rows per second are written to logcat with the tag "BulkInsertBenchmark".
+ */
+@RunWith(AndroidJUnit4.class) public class BulkInsertBenchmarkTest {
+
+  private static final String TAG = "BulkInsertBenchmark";
+  private static final String TABLE = DatabaseContract.MovieStoreEntry.TABLE_NAME;
+  private static final String LIST_VIEW = DatabaseContract.MoviePopularEntry.TABLE_NAME;
+  private static final int LIST_TYPE = DatabaseContract.MoviePopularEntry.LIST_TYPE;
+  private static final int ROWS = 5000;
+  private static final int ROUNDS = 3;
+
+  private SQLiteDatabase mDatabase;
+
+  @Before public void setUp() {
+    mDatabase = SQLiteDatabase.create(null);
+    DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext()).onCreate(mDatabase);
+  }
+
+  @After public void tearDown() {
+    mDatabase.close();
+  }
+
+  private static String overview(int i) {
+    return "An overview of movie " + i + " with about the length of a real overview from the API of themoviedb.org.";
+  }
+
+  private static ContentValues[] buildContentValues() {
+    ContentValues[] values = new ContentValues[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      ContentValues cv = new ContentValues();
+      cv.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, i);
+      cv.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, "Title " + i);
+      cv.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL, "/image" + i + ".jpg");
+      cv.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY, i * 1.5);
+      cv.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, i % 10);
+      cv.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE, "2017-01-01");
+      cv.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW, overview(i));
+      values[i] = cv;
+    }
+    return values;
+  }
+
+  private static MovieRows buildMovieRows() {
+    MovieRows rows = new MovieRows(ROWS);
+    for (int i = 0; i < ROWS; i++) {
+      rows.add(i, "Title " + i, "/image" + i + ".jpg", i * 1.5, i % 10, "2017-01-01", overview(i), i);
+    }
+    return rows;
+  }
+
+  private long insertContentValues() {
+    ContentValues[] values = buildContentValues();
+    long startNanos = System.nanoTime();
+    mDatabase.beginTransaction();
+    try {
+      for (ContentValues value : values) {
+        mDatabase.insert(TABLE, null, value);
+      }
+      mDatabase.setTransactionSuccessful();
+    } finally {
+      mDatabase.endTransaction();
+    }
+    return System.nanoTime() - startNanos;
+  }
+
+  private long writeMovieRows(MovieDeltaWriter movieDeltaWriter) {
+    MovieRows rows = buildMovieRows();
+    long startNanos = System.nanoTime();
+    mDatabase.beginTransaction();
+    MovieDeltaWriter.Batch batch = movieDeltaWriter.newBatch(mDatabase, LIST_TYPE);
+    try {
+      for (int i = 0; i < rows.size(); i++) {
+        batch.write(rows, i);
+      }
+      batch.finish();
+      mDatabase.setTransactionSuccessful();
+    } finally {
+      batch.close();
+      mDatabase.endTransaction();
+    }
+    return System.nanoTime() - startNanos;
+  }
+
+  private static long rowsPerSecond(long nanos) {
+    return ROWS * 1000000000L / Math.max(nanos, 1);
+  }
+
+  @Test public void insert_throughput() {
+    long contentValuesNanos = Long.MAX_VALUE;
+    long movieRowsNanos = Long.MAX_VALUE;
+    long unchangedNanos = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      mDatabase.delete(DatabaseContract.MovieListEntry.TABLE_NAME, null, null);
+      mDatabase.delete(TABLE, null, null);
+      contentValuesNanos = Math.min(contentValuesNanos, insertContentValues());
+      assertEquals(ROWS, DatabaseUtils.queryNumEntries(mDatabase, TABLE));
+
+      mDatabase.delete(TABLE, null, null);
+      MovieDeltaWriter movieDeltaWriter = new MovieDeltaWriter();
+      movieRowsNanos = Math.min(movieRowsNanos, writeMovieRows(movieDeltaWriter));
+      assertEquals(ROWS, DatabaseUtils.queryNumEntries(mDatabase, LIST_VIEW));
+      assertEquals(ROWS, movieDeltaWriter.getInsertedCount());
+
+      // A refresh without changes
+      unchangedNanos = Math.min(unchangedNanos, writeMovieRows(movieDeltaWriter));
+      assertEquals(ROWS, movieDeltaWriter.getSkippedCount());
+    }
+
+    Log.i(TAG, "ContentValues insert: " + rowsPerSecond(contentValuesNanos) + " rows/s");
+    Log.i(TAG, "Compiled MovieRows insert: " + rowsPerSecond(movieRowsNanos) + " rows/s");
+    Log.i(TAG, "Compiled MovieRows unchanged: " + rowsPerSecond(unchangedNanos) + " rows/s");
+  }
+}
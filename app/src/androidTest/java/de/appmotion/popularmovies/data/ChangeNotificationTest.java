@@ -0,0 +1,131 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test of the change notifications of the MovieContentProvider. The movies of the test have movie ids
+ * from {@link TestUtilities#FIRST_TEST_MOVIE_ID} on and are removed afterwards.
+ */
+@RunWith(AndroidJUnit4.class) public class ChangeNotificationTest {
+
+  // Notified after every operation, all notifications of the operation have arrived when it arrives
+  private static final Uri BARRIER_URI = DatabaseContract.BASE_CONTENT_URI.buildUpon().appendPath("barrier").build();
+
+  private final ContentResolver mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+  private final List<Uri> mNotifiedUris = new ArrayList<>();
+  private CountDownLatch mBarrier;
+  private final ContentObserver mContentObserver = new ContentObserver(null) {
+    @Override public void onChange(boolean selfChange, Uri uri) {
+      synchronized (mNotifiedUris) {
+        if (BARRIER_URI.equals(uri)) {
+          mBarrier.countDown();
+        } else {
+          mNotifiedUris.add(uri);
+        }
+      }
+    }
+  };
+
+  @Before public void setUp() {
+    mContentResolver.registerContentObserver(DatabaseContract.BASE_CONTENT_URI, true, mContentObserver);
+  }
+
+  @After public void tearDown() {
+    mContentResolver.unregisterContentObserver(mContentObserver);
+    TestUtilities.deleteTestMovies(mContentResolver);
+  }
+
+  private static Uri rowUri(Uri contentUri, long id) {
+    return ContentUris.withAppendedId(contentUri, id);
+  }
+
+  private long idOf(long movieId) {
+    return DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext())
+        .getMovieDeltaWriter()
+        .rowIdOf(DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext()).getReadableDatabase(), movieId);
+  }
+
+  /**
+   * @return the URIs notified since the last call.
+   */
+  private List<Uri> notifiedUris() throws InterruptedException {
+    mBarrier = new CountDownLatch(1);
+    mContentResolver.notifyChange(BARRIER_URI, null);
+    assertTrue(mBarrier.await(5, TimeUnit.SECONDS));
+    synchronized (mNotifiedUris) {
+      List<Uri> uris = new ArrayList<>(mNotifiedUris);
+      mNotifiedUris.clear();
+      return uris;
+    }
+  }
+
+  @Test public void unchanged_page_is_not_notified() throws Exception {
+    mContentResolver.bulkInsert(DatabaseContract.MoviePopularEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(3));
+    assertEquals(1, notifiedUris().size());
+
+    mContentResolver.bulkInsert(DatabaseContract.MoviePopularEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(3));
+    assertEquals(0, notifiedUris().size());
+  }
+
+  @Test public void updated_movie_is_notified_in_every_list() throws Exception {
+    mContentResolver.bulkInsert(DatabaseContract.MoviePopularEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(3));
+    mContentResolver.bulkInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(1));
+    notifiedUris();
+    long id = idOf(TestUtilities.FIRST_TEST_MOVIE_ID);
+
+    ContentValues title = new ContentValues();
+    title.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, "New Title");
+    mContentResolver.update(rowUri(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, id), title, null, null);
+
+    List<Uri> uris = notifiedUris();
+    assertEquals(2, uris.size());
+    assertTrue(uris.contains(rowUri(DatabaseContract.MoviePopularEntry.CONTENT_URI, id)));
+    assertTrue(uris.contains(rowUri(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, id)));
+  }
+
+  @Test public void removed_favorites_are_notified_by_row() throws Exception {
+    mContentResolver.bulkInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(3));
+    notifiedUris();
+    long firstId = idOf(TestUtilities.FIRST_TEST_MOVIE_ID);
+    long secondId = idOf(TestUtilities.FIRST_TEST_MOVIE_ID + 1);
+
+    mContentResolver.delete(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " < ?",
+        new String[] { String.valueOf(TestUtilities.FIRST_TEST_MOVIE_ID + 2) });
+
+    List<Uri> uris = notifiedUris();
+    assertEquals(2, uris.size());
+    assertTrue(uris.contains(rowUri(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, firstId)));
+    assertTrue(uris.contains(rowUri(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, secondId)));
+  }
+
+  @Test public void burst_of_rows_is_coalesced_to_the_list() throws Exception {
+    mContentResolver.bulkInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(20));
+    notifiedUris();
+
+    mContentResolver.delete(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " >= ?",
+        new String[] { String.valueOf(TestUtilities.FIRST_TEST_MOVIE_ID) });
+
+    List<Uri> uris = notifiedUris();
+    assertEquals(1, uris.size());
+    assertEquals(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, uris.get(0));
+  }
+}
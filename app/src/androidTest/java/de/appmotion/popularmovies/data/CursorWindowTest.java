@@ -0,0 +1,90 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test of the rows which fit into the first CursorWindow of a movie list, with all columns and with
+ * {@link DatabaseContract.MovieEntry#GRID_PROJECTION}. The numbers are written to logcat with the tag "CursorWindow".
+ */
+@RunWith(AndroidJUnit4.class) public class CursorWindowTest {
+
+  private static final String TAG = "CursorWindow";
+  private static final int MOVIES = 8000;
+
+  private final DatabaseHelper mDbHelper = DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext());
+  private SQLiteDatabase mDatabase;
+
+  @Before public void setUp() {
+    mDatabase = SQLiteDatabase.create(null);
+    mDbHelper.onCreate(mDatabase);
+
+    // An overview of the length of a typical TMDB overview
+    StringBuilder overview = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      overview.append("A long overview sentence which is part of every movie. ");
+    }
+    mDatabase.beginTransaction();
+    try {
+      for (int movieId = 0; movieId < MOVIES; movieId++) {
+        ContentValues movie = new ContentValues();
+        movie.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_ID, movieId);
+        movie.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_TITLE, "Title " + movieId);
+        movie.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_IMAGE_URL, "/poster" + movieId + ".jpg");
+        movie.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_RELEASE_DATE, "2017-06-01");
+        movie.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_OVERVIEW, overview.toString());
+        mDatabase.insert(DatabaseContract.MovieStoreEntry.TABLE_NAME, null, movie);
+        ContentValues membership = new ContentValues();
+        membership.put(DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE, DatabaseContract.MoviePopularEntry.LIST_TYPE);
+        membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID, movieId);
+        membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK, movieId);
+        mDatabase.insert(DatabaseContract.MovieListEntry.TABLE_NAME, null, membership);
+      }
+      mDatabase.setTransactionSuccessful();
+    } finally {
+      mDatabase.endTransaction();
+    }
+  }
+
+  @After public void tearDown() {
+    mDatabase.close();
+  }
+
+  /**
+   * @return the number of rows in the first CursorWindow of the popular list.
+   */
+  private int rowsPerWindow(String[] projection) {
+    Cursor cursor = mDatabase.query(DatabaseContract.MoviePopularEntry.TABLE_NAME, projection, null, null, null, null,
+        DatabaseContract.MoviePopularEntry.SORT_ORDER_RANK);
+    try {
+      // getCount() fills the first window
+      cursor.getCount();
+      return ((AbstractWindowedCursor) cursor).getWindow().getNumRows();
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Test public void grid_projection_fits_more_rows_into_a_window() {
+    int allColumnsRows = rowsPerWindow(null);
+    int gridRows = rowsPerWindow(DatabaseContract.MovieEntry.GRID_PROJECTION);
+
+    Log.i(TAG, "Rows per window of " + MOVIES + " movies: " + allColumnsRows + " with all columns, " + gridRows
+        + " with the grid projection");
+    assertTrue("The grid projection fits " + gridRows + " rows, all columns " + allColumnsRows,
+        gridRows >= Math.min(MOVIES, 4 * allColumnsRows));
+  }
+}
@@ -3,12 +3,14 @@ package de.appmotion.popularmovies.data;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 import de.appmotion.popularmovies.data.source.local.DatabaseContract;
 import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.MovieSearch;
 import java.lang.reflect.Field;
 import org.junit.Before;
 import org.junit.Test;
@@ -62,7 +64,7 @@ import static org.junit.Assert.fail;
 
     /* This Cursor will contain the names of each table in our database */
     Cursor tableNameCursor = database.rawQuery(
-        "SELECT name FROM sqlite_master WHERE type='table' AND name='" + DatabaseContract.MovieFavoriteEntry.TABLE_NAME + "'", null);
+        "SELECT name FROM sqlite_master WHERE type='view' AND name='" + DatabaseContract.MovieFavoriteEntry.TABLE_NAME + "'", null);
 
     /*
      * If tableNameCursor.moveToFirst returns false from this query, it means the database
@@ -77,6 +79,15 @@ import static org.junit.Assert.fail;
 
     /* Always close a cursor when you are done with it */
     tableNameCursor.close();
+
+    /* The lists are views on the movie and the list membership table */
+    tableNameCursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name IN ('"
+        + DatabaseContract.MovieStoreEntry.TABLE_NAME
+        + "', '"
+        + DatabaseContract.MovieListEntry.TABLE_NAME
+        + "')", null);
+    assertEquals("Error: Your database was created without the expected tables.", 2, tableNameCursor.getCount());
+    tableNameCursor.close();
     /* Close database */
     dbHelper.close();
   }
@@ -96,11 +107,11 @@ import static org.junit.Assert.fail;
     SQLiteDatabase database = dbHelper.getWritableDatabase();
 
     ContentValues testValues = new ContentValues();
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID, 11);
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_TITLE, "test Title");
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_ID, 11);
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_TITLE, "test Title");
 
     /* Insert ContentValues into database and get first row ID back */
-    long firstRowId = database.insert(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, null, testValues);
+    long firstRowId = database.insert(DatabaseContract.MovieStoreEntry.TABLE_NAME, null, testValues);
 
     /* If the insert fails, database.insert returns -1 */
     assertNotEquals("Unable to insert into the database", -1, firstRowId);
@@ -111,7 +122,7 @@ import static org.junit.Assert.fail;
      */
     Cursor wCursor = database.query(
         /* Name of table on which to perform the query */
-        DatabaseContract.MovieFavoriteEntry.TABLE_NAME,
+        DatabaseContract.MovieStoreEntry.TABLE_NAME,
         /* Columns; leaving this null returns every column in the table */
         null,
         /* Optional specification for columns in the "where" clause above */
@@ -152,18 +163,18 @@ import static org.junit.Assert.fail;
     SQLiteDatabase database = dbHelper.getWritableDatabase();
 
     ContentValues testValues = new ContentValues();
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID, 22);
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_TITLE, "test Title");
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_ID, 22);
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_TITLE, "test Title");
 
     /* Insert ContentValues into database and get first row ID back */
-    long firstRowId = database.insert(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, null, testValues);
+    long firstRowId = database.insert(DatabaseContract.MovieStoreEntry.TABLE_NAME, null, testValues);
 
     testValues = new ContentValues();
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID, 33);
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_TITLE, "test Title");
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_ID, 33);
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_TITLE, "test Title");
 
     /* Insert ContentValues into database and get another row ID back */
-    long secondRowId = database.insert(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, null, testValues);
+    long secondRowId = database.insert(DatabaseContract.MovieStoreEntry.TABLE_NAME, null, testValues);
     assertEquals("ID Autoincrement test failed!", firstRowId + 1, secondRowId);
 
     /* Close database */
@@ -171,7 +182,7 @@ import static org.junit.Assert.fail;
   }
 
   /**
-   * Tests that onUpgrade works by inserting 2 rows then calling onUpgrade and verifies that the
+   * Tests that onUpgrade from an unknown version works by inserting 2 rows then calling onUpgrade and verifies that the
    * database has been successfully dropped and recreated by checking that the database is there
    * but empty
    *
@@ -188,25 +199,25 @@ import static org.junit.Assert.fail;
     SQLiteDatabase database = dbHelper.getWritableDatabase();
 
     ContentValues testValues = new ContentValues();
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID, 11);
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_TITLE, "test Title");
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_ID, 11);
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_TITLE, "test Title");
 
     /* Insert ContentValues into database and get first row ID back */
-    long firstRowId = database.insert(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, null, testValues);
+    long firstRowId = database.insert(DatabaseContract.MovieStoreEntry.TABLE_NAME, null, testValues);
 
     testValues = new ContentValues();
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID, 22);
-    testValues.put(DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_TITLE, "test Title");
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_ID, 22);
+    testValues.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_TITLE, "test Title");
 
     /* Insert ContentValues into database and get another row ID back */
-    long secondRowId = database.insert(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, null, testValues);
+    long secondRowId = database.insert(DatabaseContract.MovieStoreEntry.TABLE_NAME, null, testValues);
 
     dbHelper.onUpgrade(database, 0, 1);
     database = dbHelper.getReadableDatabase();
 
     /* This Cursor will contain the names of each table in our database */
     Cursor tableNameCursor = database.rawQuery(
-        "SELECT name FROM sqlite_master WHERE type='table' AND name='" + DatabaseContract.MovieFavoriteEntry.TABLE_NAME + "'", null);
+        "SELECT name FROM sqlite_master WHERE type='table' AND name='" + DatabaseContract.MovieStoreEntry.TABLE_NAME + "'", null);
 
     assertTrue(tableNameCursor.getCount() == 1);
 
@@ -216,7 +227,7 @@ import static org.junit.Assert.fail;
      */
     Cursor wCursor = database.query(
         /* Name of table on which to perform the query */
-        DatabaseContract.MovieFavoriteEntry.TABLE_NAME,
+        DatabaseContract.MovieStoreEntry.TABLE_NAME,
         /* Columns; leaving this null returns every column in the table */
         null,
         /* Optional specification for columns in the "where" clause above */
@@ -239,6 +250,86 @@ import static org.junit.Assert.fail;
     dbHelper.close();
   }
 
+  /**
+   * Tests that onUpgrade migrates every version to the next one without losing movies. A database of version 2, the
+   * oldest migrated version, is filled with movies and then upgraded one version at a time. After every step each list
+   * has to have as many movies as before.
+   *
+   * @throws Exception in case DATABASE_VERSION can't be read
+   */
+  @Test public void upgrade_every_version_test() throws Exception {
+    final int databaseVersion = TestUtilities.getStaticIntegerField(mDbHelperClass, "DATABASE_VERSION");
+    final String[] listNames = {
+        DatabaseContract.MoviePopularEntry.TABLE_NAME, DatabaseContract.MovieTopRatedEntry.TABLE_NAME,
+        DatabaseContract.MovieFavoriteEntry.TABLE_NAME
+    };
+    DatabaseHelper dbHelper = DatabaseHelper.getInstance(mContext);
+    SQLiteDatabase database = SQLiteDatabase.create(null);
+
+    try {
+      /* The list tables of version 2 */
+      for (String listName : listNames) {
+        database.execSQL("CREATE TABLE "
+            + listName
+            + " (_id INTEGER PRIMARY KEY AUTOINCREMENT, movie_id INTEGER NOT NULL, movie_title TEXT, movie_image_url TEXT,"
+            + " movie_popularity REAL, movie_vote_average REAL, movie_release_date TEXT, movie_overview TEXT,"
+            + " timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, UNIQUE (movie_id) ON CONFLICT REPLACE);");
+      }
+      /* Two and a half pages of popular movies, a page of top rated movies, some of them popular too, and two favorites */
+      insertMovies(database, DatabaseContract.MoviePopularEntry.TABLE_NAME, 0, 45);
+      insertMovies(database, DatabaseContract.MovieTopRatedEntry.TABLE_NAME, 30, 50);
+      insertMovies(database, DatabaseContract.MovieFavoriteEntry.TABLE_NAME, 7, 8);
+      insertMovies(database, DatabaseContract.MovieFavoriteEntry.TABLE_NAME, 100, 101);
+      final long[] listRows = { 45, 20, 2 };
+
+      for (int version = 3; version <= databaseVersion; version++) {
+        dbHelper.onUpgrade(database, version - 1, version);
+
+        for (int i = 0; i < listNames.length; i++) {
+          assertEquals("Movies lost in " + listNames[i] + " upgrading to version " + version, listRows[i],
+              DatabaseUtils.queryNumEntries(database, listNames[i]));
+        }
+        if (version >= 5) {
+          /* Every movie is stored once */
+          assertEquals("Movies lost upgrading to version " + version, 51,
+              DatabaseUtils.queryNumEntries(database, DatabaseContract.MovieStoreEntry.TABLE_NAME));
+        }
+      }
+
+      /* The ranks and pages of the lists are kept */
+      assertEquals(3, DatabaseUtils.longForQuery(database, "SELECT MAX("
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_PAGE
+          + ") FROM "
+          + DatabaseContract.MoviePopularEntry.TABLE_NAME, null));
+      assertEquals(30, DatabaseUtils.longForQuery(database, "SELECT "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+          + " FROM "
+          + DatabaseContract.MovieTopRatedEntry.TABLE_NAME
+          + " WHERE "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK
+          + " = 0", null));
+      /* The stored movies are in the search index */
+      Cursor searchCursor = MovieSearch.query(database, "title 100", null, MovieSearch.DEFAULT_LIMIT);
+      assertEquals(1, searchCursor.getCount());
+      searchCursor.close();
+      /* The tables of the movie details are empty */
+      assertEquals(0, DatabaseUtils.queryNumEntries(database, DatabaseContract.MovieDetailEntry.TABLE_NAME));
+      assertEquals(0, DatabaseUtils.queryNumEntries(database, DatabaseContract.MovieVideoEntry.TABLE_NAME));
+      assertEquals(0, DatabaseUtils.queryNumEntries(database, DatabaseContract.MovieReviewEntry.TABLE_NAME));
+    } finally {
+      database.close();
+    }
+  }
+
+  private static void insertMovies(SQLiteDatabase database, String listName, int firstMovieId, int endMovieId) {
+    for (int movieId = firstMovieId; movieId < endMovieId; movieId++) {
+      ContentValues testValues = new ContentValues();
+      testValues.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, movieId);
+      testValues.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, "test Title " + movieId);
+      database.insert(listName, null, testValues);
+    }
+  }
+
   /**
    * Deletes the entire database.
    */
@@ -0,0 +1,92 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.FavoriteMovieIds;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Instrumentation test of the favorite lookup by movie id and of {@link FavoriteMovieIds}, which the
+ * MovieContentProvider keeps in sync with its writes. The movies of the test have movie ids from {@link TestUtilities#FIRST_TEST_MOVIE_ID}
+ * on and are removed afterwards.
+ */
+@RunWith(AndroidJUnit4.class) public class FavoriteMovieIdsTest {
+
+  private final ContentResolver mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+  private FavoriteMovieIds mFavoriteMovieIds;
+
+  @Before public void setUp() {
+    DatabaseHelper dbHelper = DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext());
+    // Opening the database loads the favorites
+    dbHelper.getReadableDatabase();
+    mFavoriteMovieIds = dbHelper.getFavoriteMovieIds();
+  }
+
+  @After public void tearDown() {
+    TestUtilities.deleteTestMovies(mContentResolver);
+  }
+
+  private int countFavorite(long movieId) {
+    Cursor cursor = mContentResolver.query(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(movieId), null, null, null, null);
+    try {
+      return cursor.getCount();
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Test public void favorites_are_in_memory_after_insert_and_delete() {
+    assertTrue(mFavoriteMovieIds.isLoaded());
+    mContentResolver.bulkInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(3));
+    assertTrue(mFavoriteMovieIds.contains(TestUtilities.FIRST_TEST_MOVIE_ID));
+    assertTrue(mFavoriteMovieIds.contains(TestUtilities.FIRST_TEST_MOVIE_ID + 2));
+    assertEquals(1, countFavorite(TestUtilities.FIRST_TEST_MOVIE_ID));
+
+    assertEquals(1, mContentResolver.delete(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(TestUtilities.FIRST_TEST_MOVIE_ID), null, null));
+    assertFalse(mFavoriteMovieIds.contains(TestUtilities.FIRST_TEST_MOVIE_ID));
+    assertTrue(mFavoriteMovieIds.contains(TestUtilities.FIRST_TEST_MOVIE_ID + 1));
+    assertEquals(0, countFavorite(TestUtilities.FIRST_TEST_MOVIE_ID));
+  }
+
+  @Test public void rolled_back_batch_keeps_the_favorites() throws Exception {
+    mContentResolver.bulkInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(1));
+    ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    operations.add(ContentProviderOperation.newInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI).withValues(TestUtilities.createTestMovieValues(1)).build());
+    operations.add(ContentProviderOperation.newDelete(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(TestUtilities.FIRST_TEST_MOVIE_ID)).build());
+    // Fails, so the insert and the delete are rolled back
+    operations.add(ContentProviderOperation.newDelete(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(TestUtilities.FIRST_TEST_MOVIE_ID))
+        .withExpectedCount(1)
+        .build());
+    try {
+      mContentResolver.applyBatch(DatabaseContract.AUTHORITY, operations);
+      fail("The batch did not fail");
+    } catch (OperationApplicationException expected) {
+    }
+
+    assertTrue(mFavoriteMovieIds.contains(TestUtilities.FIRST_TEST_MOVIE_ID));
+    assertFalse(mFavoriteMovieIds.contains(TestUtilities.FIRST_TEST_MOVIE_ID + 1));
+    assertEquals(1, countFavorite(TestUtilities.FIRST_TEST_MOVIE_ID));
+    assertEquals(0, countFavorite(TestUtilities.FIRST_TEST_MOVIE_ID + 1));
+  }
+
+  @Test public void other_lists_are_not_favorites() {
+    mContentResolver.bulkInsert(DatabaseContract.MoviePopularEntry.CONTENT_URI, TestUtilities.createBulkTestMovieValues(2));
+    assertFalse(mFavoriteMovieIds.contains(TestUtilities.FIRST_TEST_MOVIE_ID));
+    assertEquals(0, countFavorite(TestUtilities.FIRST_TEST_MOVIE_ID));
+  }
+}
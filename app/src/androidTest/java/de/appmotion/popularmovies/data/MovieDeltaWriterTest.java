@@ -0,0 +1,218 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.MovieDeltaWriter;
+import de.appmotion.popularmovies.data.source.local.MovieRows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumentation test for {@link MovieDeltaWriter} on an in-memory database with the schema of {@link DatabaseHelper}.
+ */
+@RunWith(AndroidJUnit4.class) public class MovieDeltaWriterTest {
+
+  private static final String TABLE = DatabaseContract.MoviePopularEntry.TABLE_NAME;
+  private static final int LIST_TYPE = DatabaseContract.MoviePopularEntry.LIST_TYPE;
+
+  private SQLiteDatabase mDatabase;
+  private final MovieDeltaWriter mMovieDeltaWriter = new MovieDeltaWriter();
+
+  @Before public void setUp() {
+    mDatabase = SQLiteDatabase.create(null);
+    DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext()).onCreate(mDatabase);
+  }
+
+  @After public void tearDown() {
+    mDatabase.close();
+  }
+
+  private @MovieDeltaWriter.Outcome int write(long movieId, String title, double popularity, int rank) {
+    return write(LIST_TYPE, movieId, title, popularity, rank);
+  }
+
+  private @MovieDeltaWriter.Outcome int write(@DatabaseContract.MovieListEntry.ListType int listType, long movieId, String title,
+      double popularity, int rank) {
+    MovieRows rows = new MovieRows(1);
+    rows.add(movieId, title, null, popularity, 0, null, null, rank);
+    MovieDeltaWriter.Batch batch = mMovieDeltaWriter.newBatch(mDatabase, listType);
+    try {
+      @MovieDeltaWriter.Outcome int outcome = batch.write(rows, 0);
+      batch.finish();
+      return outcome;
+    } finally {
+      batch.close();
+    }
+  }
+
+  @Test public void unchanged_movie_is_skipped() {
+    assertEquals(MovieDeltaWriter.INSERTED, write(11, "Title", 1.5, 0));
+    long rowId = mMovieDeltaWriter.rowIdOf(mDatabase, 11);
+
+    assertEquals(MovieDeltaWriter.SKIPPED, write(11, "Title", 1.5, 0));
+    assertEquals(rowId, mMovieDeltaWriter.rowIdOf(mDatabase, 11));
+    assertEquals(1, mMovieDeltaWriter.getInsertedCount());
+    assertEquals(0, mMovieDeltaWriter.getUpdatedCount());
+    assertEquals(1, mMovieDeltaWriter.getSkippedCount());
+  }
+
+  @Test public void changed_movie_keeps_its_id() {
+    write(11, "Title", 1.5, 0);
+    long rowId = mMovieDeltaWriter.rowIdOf(mDatabase, 11);
+
+    // Content changed
+    assertEquals(MovieDeltaWriter.UPDATED, write(11, "Title", 2.5, 0));
+    // Only the rank changed
+    assertEquals(MovieDeltaWriter.UPDATED, write(11, "Title", 2.5, 7));
+    assertEquals(rowId, mMovieDeltaWriter.rowIdOf(mDatabase, 11));
+    assertEquals(2, mMovieDeltaWriter.getUpdatedCount());
+
+    Cursor cursor = mDatabase.query(TABLE, null, null, null, null, null, null);
+    try {
+      assertEquals(1, cursor.getCount());
+      cursor.moveToFirst();
+      assertEquals(2.5, cursor.getDouble(cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY)), 0);
+      assertEquals(7, cursor.getInt(cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK)));
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Test public void locally_changed_movie_is_written_by_the_next_fetch() {
+    write(11, "Title", 1.5, 0);
+    // Like MovieContentProvider.update()
+    ContentValues title = new ContentValues();
+    title.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, "Local Title");
+    title.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH, MovieDeltaWriter.NO_CONTENT_HASH);
+    mDatabase.update(DatabaseContract.MovieStoreEntry.TABLE_NAME, title, null, null);
+
+    // The server has no changes, but the stored movie differs from it
+    assertEquals(MovieDeltaWriter.UPDATED, write(11, "Title", 1.5, 0));
+    assertEquals("Title", DatabaseUtils.stringForQuery(mDatabase, "SELECT "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
+        + " FROM "
+        + DatabaseContract.MovieStoreEntry.TABLE_NAME, null));
+  }
+
+  @Test public void batch_reports_what_changed() {
+    MovieRows rows = new MovieRows(3);
+    rows.add(11, "Title", null, 1.5, 0, null, null, 0);
+    rows.add(22, "Title", null, 1.5, 0, null, null, 1);
+    rows.add(33, "Title", null, 1.5, 0, null, null, 2);
+    assertArrayEquals(new long[] { 11, 22, 33 }, writeBatch(rows).getInsertedMovieIds());
+
+    // Movie 22 has new content, movie 33 moved up, movie 11 is unchanged
+    rows = new MovieRows(3);
+    rows.add(11, "Title", null, 1.5, 0, null, null, 0);
+    rows.add(22, "New Title", null, 1.5, 0, null, null, 1);
+    rows.add(33, "Title", null, 1.5, 0, null, null, 0);
+    MovieDeltaWriter.Batch batch = writeBatch(rows);
+    assertEquals(1, batch.getMembershipChangedCount());
+    assertArrayEquals(new long[] { 22 }, batch.getContentUpdatedMovieIds());
+    assertArrayEquals(new long[0], batch.getInsertedMovieIds());
+  }
+
+  @Test public void refresh_touches_only_the_fetched_movies() {
+    MovieRows rows = new MovieRows(2);
+    rows.add(11, "Title", null, 1.5, 0, null, null, 0);
+    rows.add(22, "Title", null, 1.5, 0, null, null, 1);
+    writeBatch(rows);
+    ContentValues fetchedBefore = new ContentValues();
+    fetchedBefore.put(DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP, "2000-01-01 00:00:00");
+    mDatabase.update(DatabaseContract.MovieListEntry.TABLE_NAME, fetchedBefore, null, null);
+
+    // Movie 22 is not on the page anymore, it keeps its timestamp
+    rows = new MovieRows(1);
+    rows.add(11, "Title", null, 1.5, 0, null, null, 0);
+    writeBatch(rows);
+    assertEquals(1, DatabaseUtils.queryNumEntries(mDatabase, DatabaseContract.MovieListEntry.TABLE_NAME,
+        DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP + " = '2000-01-01 00:00:00'"));
+    assertEquals(1, DatabaseUtils.queryNumEntries(mDatabase, DatabaseContract.MovieListEntry.TABLE_NAME,
+        DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID + " = 11 AND " + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+            + " > '2000-01-01 00:00:00'"));
+  }
+
+  @Test public void unknown_rank_keeps_the_stored_rank() {
+    write(11, "Title", 1.5, 7);
+
+    assertEquals(MovieDeltaWriter.SKIPPED, write(11, "Title", 1.5, MovieRows.RANK_UNKNOWN));
+    Cursor cursor = mDatabase.query(TABLE, null, null, null, null, null, null);
+    try {
+      cursor.moveToFirst();
+      assertEquals(7, cursor.getInt(cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK)));
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class) public void short_column_is_rejected() {
+    MovieRows rows = new MovieRows(2);
+    rows.add(11, "Title", null, 1.5, 0, null, null, 0);
+    rows.add(22, "Title", null, 1.5, 0, null, null, 1);
+    Bundle bundle = rows.toBundle();
+    bundle.putIntArray("ranks", new int[] { 0 });
+    MovieRows.fromBundle(bundle);
+  }
+
+  private MovieDeltaWriter.Batch writeBatch(MovieRows rows) {
+    MovieDeltaWriter.Batch batch = mMovieDeltaWriter.newBatch(mDatabase, LIST_TYPE);
+    try {
+      for (int i = 0; i < rows.size(); i++) {
+        batch.write(rows, i);
+      }
+      batch.finish();
+      return batch;
+    } finally {
+      batch.close();
+    }
+  }
+
+  @Test public void movie_in_two_lists_is_stored_once() {
+    write(DatabaseContract.MoviePopularEntry.LIST_TYPE, 11, "Title", 1.5, 3);
+    assertEquals(MovieDeltaWriter.INSERTED, write(DatabaseContract.MovieTopRatedEntry.LIST_TYPE, 11, "Title", 1.5, 0));
+    assertEquals(1, DatabaseUtils.queryNumEntries(mDatabase, DatabaseContract.MovieStoreEntry.TABLE_NAME));
+
+    // Each list has its own rank, the _ID is the same
+    Cursor popular = mDatabase.query(DatabaseContract.MoviePopularEntry.TABLE_NAME, null, null, null, null, null, null);
+    Cursor topRated = mDatabase.query(DatabaseContract.MovieTopRatedEntry.TABLE_NAME, null, null, null, null, null, null);
+    try {
+      assertEquals(1, popular.getCount());
+      assertEquals(1, topRated.getCount());
+      popular.moveToFirst();
+      topRated.moveToFirst();
+      assertEquals(3, popular.getInt(popular.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK)));
+      assertEquals(0, topRated.getInt(topRated.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK)));
+      assertEquals(popular.getLong(popular.getColumnIndex(DatabaseContract.MovieEntry._ID)),
+          topRated.getLong(topRated.getColumnIndex(DatabaseContract.MovieEntry._ID)));
+    } finally {
+      popular.close();
+      topRated.close();
+    }
+
+    // Removed from both lists, the movie is deleted
+    mDatabase.delete(DatabaseContract.MovieListEntry.TABLE_NAME, null, null);
+    assertEquals(1, mMovieDeltaWriter.deleteUnlistedMovies(mDatabase));
+  }
+
+  @Test public void details_of_deleted_movies_are_deleted() {
+    // Left behind, its movie is not stored
+    ContentValues movieDetail = new ContentValues();
+    movieDetail.put(DatabaseContract.MovieDetailEntry.COLUMN_MOVIE_ID, 11);
+    mDatabase.insert(DatabaseContract.MovieDetailEntry.TABLE_NAME, null, movieDetail);
+
+    assertEquals(0, mMovieDeltaWriter.deleteUnlistedMovies(mDatabase));
+    assertEquals(0, DatabaseUtils.queryNumEntries(mDatabase, DatabaseContract.MovieDetailEntry.TABLE_NAME));
+  }
+}
@@ -0,0 +1,103 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.MovieDetailCache;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test of the offline copy of the movie details in the MovieContentProvider, see {@link MovieDetailCache}.
+ * The movie of the test has the movie id {@link #MOVIE_ID} and is removed afterwards.
+ */
+@RunWith(AndroidJUnit4.class) public class MovieDetailCacheTest {
+
+  private static final long MOVIE_ID = TestUtilities.FIRST_TEST_MOVIE_ID;
+
+  private final ContentResolver mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+
+  @After public void tearDown() {
+    mContentResolver.delete(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(MOVIE_ID), null, null);
+    mContentResolver.delete(DatabaseContract.MovieDetailEntry.buildMovieIdUri(MOVIE_ID), null, null);
+    mContentResolver.delete(DatabaseContract.MovieVideoEntry.buildMovieIdUri(MOVIE_ID), null, null);
+    mContentResolver.delete(DatabaseContract.MovieReviewEntry.buildMovieIdUri(MOVIE_ID), null, null);
+  }
+
+  private static MovieDetail movieDetail(int runtime, int trailers) {
+    MovieDetail movieDetail = new MovieDetail();
+    movieDetail.setMovieId(MOVIE_ID);
+    movieDetail.setRuntime(runtime);
+    for (int i = 0; i < trailers; i++) {
+      movieDetail.getTrailers().add(new MovieDetail.Trailer("key" + i, "Trailer " + i));
+    }
+    movieDetail.getReviews().add(new MovieDetail.Review("Author", "A review"));
+    return movieDetail;
+  }
+
+  @Test public void stored_detail_is_read_back() {
+    assertNull(MovieDetailCache.query(mContentResolver, MOVIE_ID));
+    assertTrue(MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail(120, 3), 1000L));
+
+    MovieDetail stored = MovieDetailCache.query(mContentResolver, MOVIE_ID);
+    assertEquals(120, stored.getRuntime());
+    assertEquals(1000L, stored.getFetchedMillis());
+    assertEquals(3, stored.getTrailers().size());
+    assertEquals("key0", stored.getTrailers().get(0).getKey());
+    assertEquals("Trailer 2", stored.getTrailers().get(2).getName());
+    assertEquals("A review", stored.getReviews().get(0).getContent());
+  }
+
+  @Test public void new_fetch_replaces_the_stored_detail() {
+    MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail(120, 3), 1000L);
+    MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail(95, 1), 2000L);
+
+    MovieDetail stored = MovieDetailCache.query(mContentResolver, MOVIE_ID);
+    assertEquals(95, stored.getRuntime());
+    assertEquals(2000L, stored.getFetchedMillis());
+    assertEquals(1, stored.getTrailers().size());
+    assertEquals(1, stored.getReviews().size());
+  }
+
+  @Test public void same_or_older_fetch_is_not_stored() {
+    MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail(120, 3), 2000L);
+    // E.g. the Loader delivered the same result again, or a cached response of an older fetch
+    assertTrue(MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail(95, 1), 2000L));
+    assertTrue(MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail(95, 1), 1000L));
+
+    MovieDetail stored = MovieDetailCache.query(mContentResolver, MOVIE_ID);
+    assertEquals(120, stored.getRuntime());
+    assertEquals(2000L, stored.getFetchedMillis());
+    assertEquals(3, stored.getTrailers().size());
+  }
+
+  @Test public void detail_expires_after_max_age() {
+    MovieDetail movieDetail = movieDetail(120, 0);
+    movieDetail.setFetchedMillis(1000L);
+    assertTrue(MovieDetailCache.isFresh(movieDetail, 1000L + MovieDetailCache.MAX_AGE_MILLIS - 1));
+    assertFalse(MovieDetailCache.isFresh(movieDetail, 1000L + MovieDetailCache.MAX_AGE_MILLIS));
+    // The clock was set back
+    assertFalse(MovieDetailCache.isFresh(movieDetail, 999L));
+  }
+
+  @Test public void detail_is_deleted_with_the_movie() {
+    ContentValues movie = new ContentValues();
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, MOVIE_ID);
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, "Title");
+    mContentResolver.insert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, movie);
+    MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail(120, 2), 1000L);
+
+    // The movie is in no other list, so it is deleted
+    mContentResolver.delete(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(MOVIE_ID), null, null);
+
+    assertNull(MovieDetailCache.query(mContentResolver, MOVIE_ID));
+  }
+}
@@ -0,0 +1,98 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.MovieListRetention;
+import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumentation test of {@link MovieListRetention} with an in-memory database.
+ */
+@RunWith(AndroidJUnit4.class) public class MovieListRetentionTest {
+
+  private static final int LIST_TYPE = DatabaseContract.MoviePopularEntry.LIST_TYPE;
+  private static final String LIST_TYPE_SELECTION = DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE + " = " + LIST_TYPE;
+
+  private SQLiteDatabase mDatabase;
+
+  @Before public void setUp() {
+    mDatabase = SQLiteDatabase.create(null);
+    DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext()).onCreate(mDatabase);
+  }
+
+  @After public void tearDown() {
+    mDatabase.close();
+  }
+
+  /**
+   * Add a page of movies to the popular list, as if it was fetched at the given time.
+   */
+  private void addPage(int page, String timestamp) {
+    for (int i = 0; i < NetworkUtils.MOVIES_PER_PAGE; i++) {
+      int rank = (page - 1) * NetworkUtils.MOVIES_PER_PAGE + i;
+      ContentValues membership = new ContentValues();
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE, LIST_TYPE);
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID, rank);
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK, rank);
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE, page);
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP, timestamp);
+      mDatabase.insert(DatabaseContract.MovieListEntry.TABLE_NAME, null, membership);
+    }
+  }
+
+  private long listRows() {
+    return DatabaseUtils.queryNumEntries(mDatabase, DatabaseContract.MovieListEntry.TABLE_NAME, LIST_TYPE_SELECTION);
+  }
+
+  private long pageRows(int page) {
+    return DatabaseUtils.queryNumEntries(mDatabase, DatabaseContract.MovieListEntry.TABLE_NAME,
+        LIST_TYPE_SELECTION + " AND " + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE + " = " + page);
+  }
+
+  @Test public void pages_older_than_last_fetch_are_evicted() {
+    addPage(1, "2017-03-20 10:00:00");
+    addPage(2, "2017-03-01 10:00:00");
+    addPage(3, "2017-03-19 10:00:00");
+    MovieListRetention movieListRetention = new MovieListRetention(1000, TimeUnit.DAYS.toMillis(7), 1);
+
+    assertEquals(NetworkUtils.MOVIES_PER_PAGE, movieListRetention.evictList(mDatabase, LIST_TYPE));
+    assertEquals(0, pageRows(2));
+    assertEquals(2 * NetworkUtils.MOVIES_PER_PAGE, listRows());
+  }
+
+  @Test public void list_which_is_not_refreshed_is_kept() {
+    addPage(1, "2017-01-01 10:00:00");
+    addPage(2, "2017-01-01 10:00:00");
+    MovieListRetention movieListRetention = new MovieListRetention(1000, TimeUnit.DAYS.toMillis(7), 1);
+
+    assertEquals(0, movieListRetention.evictList(mDatabase, LIST_TYPE));
+    assertEquals(2 * NetworkUtils.MOVIES_PER_PAGE, listRows());
+  }
+
+  @Test public void least_recently_fetched_pages_are_evicted_beyond_max_rows() {
+    addPage(1, "2017-03-20 10:00:00");
+    addPage(2, "2017-03-20 09:00:00");
+    addPage(3, "2017-03-20 08:00:00");
+    addPage(4, "2017-03-20 08:00:00");
+    MovieListRetention movieListRetention =
+        new MovieListRetention(2 * NetworkUtils.MOVIES_PER_PAGE, TimeUnit.DAYS.toMillis(7), 1);
+
+    assertEquals(2 * NetworkUtils.MOVIES_PER_PAGE, movieListRetention.evictList(mDatabase, LIST_TYPE));
+    assertEquals(0, pageRows(3));
+    assertEquals(0, pageRows(4));
+    assertEquals(2 * NetworkUtils.MOVIES_PER_PAGE, listRows());
+    assertEquals(2 * NetworkUtils.MOVIES_PER_PAGE, movieListRetention.getEvictedRowCount());
+  }
+}
@@ -0,0 +1,130 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import de.appmotion.popularmovies.data.source.QueryCache;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.MovieDetailCache;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test of the {@link QueryCache} of the MovieContentProvider. The statistics are written to logcat with
+ * the tag "QueryCache". The movie of the test has the movie id {@link #MOVIE_ID} and is removed afterwards.
+ */
+@RunWith(AndroidJUnit4.class) public class QueryCacheProviderTest {
+
+  private static final String TAG = "QueryCache";
+  private static final long MOVIE_ID = TestUtilities.FIRST_TEST_MOVIE_ID;
+
+  private final ContentResolver mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+
+  @Before public void setUp() {
+    Assume.assumeTrue("The query cache is disabled", stats().getLong(QueryCache.KEY_MAX_SIZE_BYTES) > 0);
+  }
+
+  @After public void tearDown() {
+    TestUtilities.deleteTestMovies(mContentResolver);
+    mContentResolver.delete(DatabaseContract.MovieDetailEntry.buildMovieIdUri(MOVIE_ID), null, null);
+    Bundle stats = stats();
+    Log.i(TAG, stats.getLong(QueryCache.KEY_HIT_COUNT) + " hits, " + stats.getLong(QueryCache.KEY_MISS_COUNT) + " misses, "
+        + stats.getInt(QueryCache.KEY_ENTRY_COUNT) + " entries, " + stats.getLong(QueryCache.KEY_SIZE_BYTES) + " of "
+        + stats.getLong(QueryCache.KEY_MAX_SIZE_BYTES) + " bytes");
+  }
+
+  private Bundle stats() {
+    return mContentResolver.call(DatabaseContract.BASE_CONTENT_URI, QueryCache.METHOD_STATS, null, null);
+  }
+
+  /**
+   * @return the number of favorite rows of the movie.
+   */
+  private int favoriteCount() {
+    Cursor cursor = mContentResolver.query(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(MOVIE_ID),
+        DatabaseContract.MovieEntry.GRID_PROJECTION, null, null, null);
+    try {
+      return cursor.getCount();
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * @return the title of the movie with the _ID.
+   */
+  private String titleOf(long id) {
+    Cursor cursor = mContentResolver.query(DatabaseContract.MovieStoreEntry.buildMovieUri(id), new String[] {
+        DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
+    }, null, null, null);
+    try {
+      return cursor.moveToFirst() ? cursor.getString(0) : null;
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private void addFavorite(String title) {
+    ContentValues movie = TestUtilities.createTestMovieValues(0);
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, title);
+    mContentResolver.insert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, movie);
+  }
+
+  @Test public void repeated_query_is_a_hit() {
+    assertEquals(0, favoriteCount());
+    long hits = stats().getLong(QueryCache.KEY_HIT_COUNT);
+
+    assertEquals(0, favoriteCount());
+    assertEquals(hits + 1, stats().getLong(QueryCache.KEY_HIT_COUNT));
+    assertTrue(stats().getLong(QueryCache.KEY_SIZE_BYTES) <= stats().getLong(QueryCache.KEY_MAX_SIZE_BYTES));
+  }
+
+  @Test public void added_and_removed_favorite_invalidate_the_check() {
+    assertEquals(0, favoriteCount());
+
+    addFavorite("Title");
+    assertEquals(1, favoriteCount());
+
+    mContentResolver.delete(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(MOVIE_ID), null, null);
+    assertEquals(0, favoriteCount());
+  }
+
+  @Test public void updated_movie_invalidates_its_row() {
+    addFavorite("Title");
+    Cursor cursor = mContentResolver.query(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(MOVIE_ID), null, null, null, null);
+    cursor.moveToFirst();
+    long id = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry._ID));
+    cursor.close();
+    assertEquals("Title", titleOf(id));
+
+    addFavorite("New Title");
+    assertEquals("New Title", titleOf(id));
+  }
+
+  @Test public void stored_detail_invalidates_the_cached_one() {
+    MovieDetail movieDetail = new MovieDetail();
+    movieDetail.setRuntime(120);
+    MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail, 1000L);
+    assertEquals(120, MovieDetailCache.query(mContentResolver, MOVIE_ID).getRuntime());
+
+    movieDetail.setRuntime(95);
+    MovieDetailCache.store(mContentResolver, MOVIE_ID, movieDetail, 2000L);
+    assertEquals(95, MovieDetailCache.query(mContentResolver, MOVIE_ID).getRuntime());
+
+    // Deleted with the favorite, which is in no other list
+    addFavorite("Title");
+    mContentResolver.delete(DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(MOVIE_ID), null, null);
+    assertNull(MovieDetailCache.query(mContentResolver, MOVIE_ID));
+  }
+}
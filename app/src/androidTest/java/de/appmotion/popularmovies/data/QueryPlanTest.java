@@ -0,0 +1,145 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test of the query plans of the list queries of MainActivity. A missing index shows up as full scan with
+ * "USE TEMP B-TREE FOR ORDER BY" in the plan. The windows of the popular and top rated lists are checked as well.
+ */
+@RunWith(AndroidJUnit4.class) public class QueryPlanTest {
+
+  private final DatabaseHelper mDbHelper = DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext());
+  private SQLiteDatabase mDatabase;
+
+  @Before public void setUp() {
+    mDatabase = SQLiteDatabase.create(null);
+    mDbHelper.onCreate(mDatabase);
+  }
+
+  @After public void tearDown() {
+    mDatabase.close();
+  }
+
+  /**
+   * @return the details of all steps of the query plan, one per line.
+   */
+  private String queryPlan(String viewName, String selection, String[] selectionArgs, String sortOrder, String limit) {
+    String sql = SQLiteQueryBuilder.buildQueryString(false, viewName, null, selection, null, null, sortOrder, limit);
+    Cursor cursor = mDatabase.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+    StringBuilder plan = new StringBuilder();
+    try {
+      int detailIndex = cursor.getColumnIndexOrThrow("detail");
+      while (cursor.moveToNext()) {
+        plan.append(cursor.getString(detailIndex)).append('\n');
+      }
+    } finally {
+      cursor.close();
+    }
+    return plan.toString();
+  }
+
+  private void assertSortedByIndex(String viewName, String sortOrder, String indexName) {
+    assertSortedByIndex(viewName, null, null, sortOrder, null, indexName);
+  }
+
+  private void assertSortedByIndex(String viewName, String selection, String[] selectionArgs, String sortOrder, String limit,
+      String indexName) {
+    String plan = queryPlan(viewName, selection, selectionArgs, sortOrder, limit);
+    assertFalse(viewName + " is sorted in a temporary B-tree:\n" + plan, plan.contains("TEMP B-TREE"));
+    assertTrue(viewName + " does not use " + indexName + ":\n" + plan, plan.contains(indexName));
+  }
+
+  @Test public void list_queries_use_index() {
+    assertSortedByIndex(DatabaseContract.MoviePopularEntry.TABLE_NAME, DatabaseContract.MoviePopularEntry.SORT_ORDER_RANK,
+        DatabaseContract.MovieListEntry.INDEX_RANK);
+    assertSortedByIndex(DatabaseContract.MovieTopRatedEntry.TABLE_NAME, DatabaseContract.MovieTopRatedEntry.SORT_ORDER_RANK,
+        DatabaseContract.MovieListEntry.INDEX_RANK);
+    assertSortedByIndex(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, DatabaseContract.MovieFavoriteEntry.SORT_ORDER_NEWEST,
+        DatabaseContract.MovieListEntry.INDEX_TIMESTAMP);
+  }
+
+  @Test public void window_query_uses_index() {
+    assertSortedByIndex(DatabaseContract.MoviePopularEntry.TABLE_NAME, DatabaseContract.MovieEntry.SELECTION_AFTER_ANCHOR,
+        new String[] { "40", "40", "7" }, DatabaseContract.MovieEntry.SORT_ORDER_WINDOW, "20",
+        DatabaseContract.MovieListEntry.INDEX_RANK);
+  }
+
+  @Test public void favorite_lookup_by_movie_id_uses_index() {
+    String plan = queryPlan(DatabaseContract.MovieFavoriteEntry.TABLE_NAME,
+        DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID + " = ?", new String[] { "550" }, null, null);
+    assertFalse("The favorite lookup scans a table:\n" + plan, plan.contains("SCAN"));
+  }
+
+  @Test public void windows_return_every_movie_once() {
+    // Movies 0 to 9 with the ranks 0, 0, 1, 1, ..., two movies with the same rank are ordered by movie_id
+    for (int movieId = 9; movieId >= 0; movieId--) {
+      ContentValues movie = new ContentValues();
+      movie.put(DatabaseContract.MovieStoreEntry.COLUMN_MOVIE_ID, movieId);
+      mDatabase.insert(DatabaseContract.MovieStoreEntry.TABLE_NAME, null, movie);
+      ContentValues membership = new ContentValues();
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE, DatabaseContract.MoviePopularEntry.LIST_TYPE);
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID, movieId);
+      membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK, movieId / 2);
+      mDatabase.insert(DatabaseContract.MovieListEntry.TABLE_NAME, null, membership);
+    }
+
+    int expectedMovieId = 0;
+    String[] anchor = null;
+    while (true) {
+      Cursor window = mDatabase.query(DatabaseContract.MoviePopularEntry.TABLE_NAME, null,
+          anchor == null ? null : DatabaseContract.MovieEntry.SELECTION_AFTER_ANCHOR, anchor, null, null,
+          DatabaseContract.MovieEntry.SORT_ORDER_WINDOW, "3");
+      try {
+        if (!window.moveToFirst()) {
+          break;
+        }
+        do {
+          long movieId = window.getLong(window.getColumnIndexOrThrow(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID));
+          assertEquals(expectedMovieId++, movieId);
+        } while (window.moveToNext());
+        window.moveToLast();
+        String rank = window.getString(window.getColumnIndexOrThrow(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK));
+        anchor = new String[] {
+            rank, rank, window.getString(window.getColumnIndexOrThrow(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID))
+        };
+      } finally {
+        window.close();
+      }
+    }
+    assertEquals(10, expectedMovieId);
+  }
+
+  @Test public void upgrade_from_version_5_keeps_data() {
+    ContentValues membership = new ContentValues();
+    membership.put(DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE, DatabaseContract.MovieListEntry.LIST_TYPE_FAVORITE);
+    membership.put(DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID, 11);
+    mDatabase.insert(DatabaseContract.MovieListEntry.TABLE_NAME, null, membership);
+    // Version 5 had no indexes on the list membership table
+    mDatabase.execSQL("DROP INDEX " + DatabaseContract.MovieListEntry.INDEX_RANK);
+    mDatabase.execSQL("DROP INDEX " + DatabaseContract.MovieListEntry.INDEX_TIMESTAMP);
+
+    mDbHelper.onUpgrade(mDatabase, 5, 7);
+
+    assertEquals(1, DatabaseUtils.queryNumEntries(mDatabase, DatabaseContract.MovieListEntry.TABLE_NAME));
+    assertSortedByIndex(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, DatabaseContract.MovieFavoriteEntry.SORT_ORDER_NEWEST,
+        DatabaseContract.MovieListEntry.INDEX_TIMESTAMP);
+    assertSortedByIndex(DatabaseContract.MoviePopularEntry.TABLE_NAME, DatabaseContract.MovieEntry.SORT_ORDER_WINDOW,
+        DatabaseContract.MovieListEntry.INDEX_RANK);
+  }
+}
@@ -0,0 +1,124 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test of the MovieContentProvider writes, which yield to readers. While a large write runs on another
+ * thread, the favorite list is queried again and again, every query with another selection argument, so none is served
+ * by the QueryCache. The longest query has to be much shorter than the write, which means it did not wait for the whole
+ * transaction. The times are written to logcat with the tag "ReaderLatency".
+ *
+ * The movies of the test have movie ids from {@link TestUtilities#FIRST_TEST_MOVIE_ID} on and are removed afterwards.
+ */
+@RunWith(AndroidJUnit4.class) public class ReaderLatencyTest {
+
+  private static final String TAG = "ReaderLatency";
+
+  private final ContentResolver mContentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+
+  @After public void tearDown() {
+    TestUtilities.deleteTestMovies(mContentResolver);
+  }
+
+  @Test public void apply_batch_writes_all_operations() throws Exception {
+    ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    operations.add(ContentProviderOperation.newInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI).withValues(TestUtilities.createTestMovieValues(0)).build());
+    operations.add(ContentProviderOperation.newInsert(DatabaseContract.MovieFavoriteEntry.CONTENT_URI).withValues(TestUtilities.createTestMovieValues(1)).build());
+    operations.add(ContentProviderOperation.newDelete(DatabaseContract.MovieFavoriteEntry.CONTENT_URI)
+        .withSelection(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " = ?", new String[] { String.valueOf(TestUtilities.FIRST_TEST_MOVIE_ID) })
+        .withYieldAllowed(true)
+        .build());
+
+    ContentProviderResult[] results = mContentResolver.applyBatch(DatabaseContract.AUTHORITY, operations);
+
+    assertEquals(3, results.length);
+    assertEquals(1, (int) results[2].count);
+    Cursor cursor = mContentResolver.query(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, null,
+        DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " >= ?", new String[] { String.valueOf(TestUtilities.FIRST_TEST_MOVIE_ID) }, null);
+    try {
+      assertEquals(1, cursor.getCount());
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Test public void readers_are_not_blocked_by_bulk_insert() throws Exception {
+    final ContentValues[] movies = TestUtilities.createBulkTestMovieValues(100 * NetworkUtils.MOVIES_PER_PAGE);
+    assertReadersNotBlocked("bulkInsert of " + movies.length + " movies", new Runnable() {
+      @Override public void run() {
+        mContentResolver.bulkInsert(DatabaseContract.MoviePopularEntry.CONTENT_URI, movies);
+      }
+    });
+  }
+
+  @Test public void readers_are_not_blocked_by_apply_batch() throws Exception {
+    final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    for (int i = 0; i < 25 * NetworkUtils.MOVIES_PER_PAGE; i++) {
+      operations.add(ContentProviderOperation.newInsert(DatabaseContract.MoviePopularEntry.CONTENT_URI)
+          .withValues(TestUtilities.createTestMovieValues(i))
+          .withYieldAllowed(i % NetworkUtils.MOVIES_PER_PAGE == 0)
+          .build());
+    }
+    assertReadersNotBlocked("applyBatch of " + operations.size() + " inserts", new Runnable() {
+      @Override public void run() {
+        try {
+          mContentResolver.applyBatch(DatabaseContract.AUTHORITY, operations);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Run the write on another thread and query the favorite list until it is done.
+   */
+  private void assertReadersNotBlocked(String write, final Runnable writer) throws InterruptedException {
+    final long[] writeNanos = new long[1];
+    Thread writerThread = new Thread(new Runnable() {
+      @Override public void run() {
+        long startNanos = System.nanoTime();
+        writer.run();
+        writeNanos[0] = System.nanoTime() - startNanos;
+      }
+    });
+    writerThread.start();
+
+    int reads = 0;
+    long maxReadNanos = 0;
+    while (writerThread.isAlive()) {
+      long startNanos = System.nanoTime();
+      // Another selection argument for every read, so it misses the QueryCache and reads the database
+      Cursor cursor = mContentResolver.query(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, null,
+          DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " <> ?", new String[] { String.valueOf(-1 - reads) }, null);
+      if (cursor != null) {
+        cursor.getCount();
+        cursor.close();
+      }
+      maxReadNanos = Math.max(maxReadNanos, System.nanoTime() - startNanos);
+      reads++;
+    }
+    writerThread.join();
+
+    long writeMillis = writeNanos[0] / 1000000L;
+    long maxReadMillis = maxReadNanos / 1000000L;
+    Log.i(TAG, write + ": " + writeMillis + " ms, " + reads + " reads, longest read " + maxReadMillis + " ms");
+    assertTrue("Longest read " + maxReadMillis + " ms of a write of " + writeMillis + " ms", maxReadMillis < writeMillis / 2 + 1);
+  }
+}
@@ -0,0 +1,160 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.MovieSearch;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test of the full-text index of the movie table and of {@link MovieSearch}. The time of a search in
+ * thousands of movies is written to logcat with the tag "SearchIndex".
+ */
+@RunWith(AndroidJUnit4.class) public class SearchIndexTest {
+
+  private static final String TAG = "SearchIndex";
+  private static final String TABLE = DatabaseContract.MovieStoreEntry.TABLE_NAME;
+
+  private final DatabaseHelper mDbHelper = DatabaseHelper.getInstance(InstrumentationRegistry.getTargetContext());
+  private SQLiteDatabase mDatabase;
+
+  @Before public void setUp() {
+    mDatabase = SQLiteDatabase.create(null);
+    mDbHelper.onCreate(mDatabase);
+  }
+
+  @After public void tearDown() {
+    mDatabase.close();
+  }
+
+  private void insertMovie(long movieId, String title, String overview, double popularity) {
+    ContentValues movie = new ContentValues();
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, movieId);
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, title);
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW, overview);
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY, popularity);
+    mDatabase.insert(TABLE, null, movie);
+  }
+
+  private List<Long> search(String text) {
+    List<Long> movieIds = new ArrayList<>();
+    Cursor cursor = MovieSearch.query(mDatabase, text, new String[] { DatabaseContract.MovieEntry.COLUMN_MOVIE_ID }, 10);
+    try {
+      while (cursor.moveToNext()) {
+        movieIds.add(cursor.getLong(0));
+      }
+    } finally {
+      cursor.close();
+    }
+    return movieIds;
+  }
+
+  @Test public void title_matches_rank_before_overview_matches() {
+    insertMovie(1, "The Dark Knight", "Batman fights the Joker.", 50);
+    insertMovie(2, "Joker", "A dark story of a knight of Gotham.", 90);
+    insertMovie(3, "Knight and Day", "A comedy.", 70);
+
+    // Both words as prefixes, the title match first although the overview match is more popular
+    assertEquals(asList(1L, 2L), search("dar knig"));
+    // Only prefixes of words match
+    assertEquals(asList(3L, 1L, 2L), search("knight"));
+    assertEquals(asList(), search("ark"));
+    assertEquals(asList(), search("  "));
+  }
+
+  @Test public void non_ascii_title_is_found() {
+    insertMovie(1, "Am\u00e9lie", "Die fabelhafte Welt der Am\u00e9lie.", 50);
+    insertMovie(2, "Crouching Tiger", "\u5367\u864e\u85cf\u9f99", 40);
+
+    assertEquals(asList(1L), search("am\u00e9"));
+    assertEquals(asList(2L), search("\u5367\u864e\u85cf\u9f99"));
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      // The unicode61 tokenizer folds case and diacritics
+      assertEquals(asList(1L), search("AM\u00c9LIE"));
+      assertEquals(asList(1L), search("amelie"));
+    }
+  }
+
+  @Test public void triggers_keep_index_in_sync() {
+    insertMovie(1, "Alien", "In space no one can hear you scream.", 50);
+    assertEquals(asList(1L), search("alien"));
+
+    ContentValues title = new ContentValues();
+    title.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, "Aliens");
+    mDatabase.update(TABLE, title, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " = 1", null);
+    assertEquals(asList(1L), search("aliens"));
+    assertEquals(asList(1L), search("scream"));
+
+    mDatabase.delete(TABLE, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " = 1", null);
+    assertEquals(asList(), search("alien"));
+  }
+
+  @Test public void upgrade_from_version_7_indexes_stored_movies() {
+    // Version 7 had no full-text index
+    for (String trigger : new String[] { "_before_update", "_before_delete", "_after_update", "_after_insert" }) {
+      mDatabase.execSQL("DROP TRIGGER " + DatabaseContract.MovieSearchEntry.TABLE_NAME + trigger);
+    }
+    mDatabase.execSQL("DROP TABLE " + DatabaseContract.MovieSearchEntry.TABLE_NAME);
+    insertMovie(1, "Arrival", "Linguists meet aliens.", 50);
+
+    mDbHelper.onUpgrade(mDatabase, 7, 8);
+
+    assertEquals(asList(1L), search("arrival"));
+  }
+
+  @Test public void upgrade_to_version_10_indexes_stored_movies_again() {
+    insertMovie(1, "Am\u00e9lie", "Die fabelhafte Welt der Am\u00e9lie.", 50);
+
+    mDbHelper.onUpgrade(mDatabase, 9, 10);
+
+    assertEquals(asList(1L), search("am\u00e9"));
+    insertMovie(2, "Arrival", "Linguists meet aliens.", 50);
+    assertEquals(asList(2L), search("arrival"));
+  }
+
+  @Test public void search_takes_milliseconds() {
+    final int movies = 5000;
+    final String[] words = { "star", "war", "love", "night", "dark", "knight", "river", "storm", "alien", "ghost" };
+    mDatabase.beginTransaction();
+    try {
+      for (int i = 0; i < movies; i++) {
+        insertMovie(i, words[i % words.length] + " " + words[(i / words.length) % words.length] + " " + i,
+            "An overview with about the length of a real overview, it mentions the " + words[(i * 7) % words.length] + ".",
+            i % 100);
+      }
+      mDatabase.setTransactionSuccessful();
+    } finally {
+      mDatabase.endTransaction();
+    }
+
+    long startNanos = System.nanoTime();
+    List<Long> movieIds = search("dark kni");
+    long searchMillis = (System.nanoTime() - startNanos) / 1000000L;
+
+    assertEquals(10, movieIds.size());
+    Log.i(TAG, "Search in " + movies + " movies: " + searchMillis + " ms");
+    assertTrue("Search took " + searchMillis + " ms", searchMillis < 500);
+  }
+
+  private static List<Long> asList(Long... movieIds) {
+    List<Long> list = new ArrayList<>();
+    for (Long movieId : movieIds) {
+      list.add(movieId);
+    }
+    return list;
+  }
+}
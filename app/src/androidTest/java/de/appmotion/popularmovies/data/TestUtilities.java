@@ -15,8 +15,11 @@
  */
 package de.appmotion.popularmovies.data;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.net.Uri;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
 import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.Set;
@@ -38,6 +41,50 @@ class TestUtilities {
 
   static final int BULK_INSERT_RECORDS_TO_INSERT = 10;
 
+  /* Movie ids of the movies inserted through the MovieContentProvider start here, see deleteTestMovies */
+  static final long FIRST_TEST_MOVIE_ID = 900000;
+
+  /**
+   * @param index Index of the movie, its movie id is FIRST_TEST_MOVIE_ID + index and its rank is the index
+   * @return the values of a test movie for an insert into a list of the MovieContentProvider
+   */
+  static ContentValues createTestMovieValues(int index) {
+    ContentValues movie = new ContentValues();
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, FIRST_TEST_MOVIE_ID + index);
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE, "Title " + index);
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW, "An overview with about the length of a real overview.");
+    movie.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK, index);
+    return movie;
+  }
+
+  /**
+   * @param count Number of movies
+   * @return the values of the test movies with the indexes 0 to count - 1, see createTestMovieValues
+   */
+  static ContentValues[] createBulkTestMovieValues(int count) {
+    ContentValues[] movies = new ContentValues[count];
+    for (int i = 0; i < count; i++) {
+      movies[i] = createTestMovieValues(i);
+    }
+    return movies;
+  }
+
+  /**
+   * Removes the test movies from all lists. Through the provider, so the QueryCache and the favorites in memory stay in
+   * sync.
+   *
+   * @param contentResolver ContentResolver of the MovieContentProvider
+   */
+  static void deleteTestMovies(ContentResolver contentResolver) {
+    for (Uri contentUri : new Uri[] {
+        DatabaseContract.MoviePopularEntry.CONTENT_URI, DatabaseContract.MovieTopRatedEntry.CONTENT_URI,
+        DatabaseContract.MovieFavoriteEntry.CONTENT_URI
+    }) {
+      contentResolver.delete(contentUri, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " >= ?",
+          new String[] { String.valueOf(FIRST_TEST_MOVIE_ID) });
+    }
+  }
+
   /**
    * Ensures there is a non empty cursor and validates the cursor's data by checking it against
    * a set of expected values. This method will then close the cursor.
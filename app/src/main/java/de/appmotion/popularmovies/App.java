@@ -4,14 +4,44 @@ import android.app.Application;
 import com.jakewharton.picasso.OkHttp3Downloader;
 import com.squareup.leakcanary.LeakCanary;
 import com.squareup.picasso.Picasso;
+import de.appmotion.popularmovies.data.source.remote.CachePolicy;
+import de.appmotion.popularmovies.data.source.remote.CachePolicyInterceptor;
+import de.appmotion.popularmovies.data.source.remote.CircuitBreaker;
+import de.appmotion.popularmovies.data.source.remote.CircuitBreakerInterceptor;
+import de.appmotion.popularmovies.data.source.remote.ConfigurationStore;
+import de.appmotion.popularmovies.data.source.remote.RequestScheduler;
+import de.appmotion.popularmovies.data.source.remote.RetryInterceptor;
+import de.appmotion.popularmovies.data.source.remote.StaleWhileRevalidateInterceptor;
+import de.appmotion.popularmovies.sync.MovieSyncJobService;
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 
 public class App extends Application {
 
+  // Request scheduling: concurrent requests, burst size and long term requests per second to themoviedb.org
+  private static final int MAX_RUNNING_REQUESTS = 4;
+  private static final int REQUEST_BURST = 40;
+  private static final double REQUESTS_PER_SECOND = 4;
+  // Retries of failed API requests with jittered exponential backoff
+  private static final int MAX_RETRIES = 3;
+  private static final long RETRY_BASE_DELAY_MILLIS = 500L;
+  private static final long RETRY_MAX_DELAY_MILLIS = 8000L;
+  // Failures in a row which open the circuit breaker and how long it stays open
+  private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+  private static final long CIRCUIT_OPEN_MILLIS = 30000L;
+  // File and time to live of the stored API configuration
+  private static final String CONFIGURATION_FILE_NAME = "tmdb_configuration.json";
+  private static final long CONFIGURATION_TIME_TO_LIVE_DAYS = 7L;
+
   private static App instance;
   private OkHttpClient okHttpClient;
+  private StaleWhileRevalidateInterceptor staleWhileRevalidateInterceptor;
+  private RequestScheduler requestScheduler;
+  private CircuitBreakerInterceptor circuitBreakerInterceptor;
+  private RetryInterceptor retryInterceptor;
+  private ConfigurationStore configurationStore;
 
   public App() {
     instance = this;
@@ -31,19 +61,77 @@ public class App extends Application {
     }
     LeakCanary.install(this);
 
+    // API configuration from disk, image URLs never wait for its download
+    configurationStore = new ConfigurationStore(new File(getFilesDir(), CONFIGURATION_FILE_NAME),
+        TimeUnit.DAYS.toMillis(CONFIGURATION_TIME_TO_LIVE_DAYS));
+    configurationStore.load();
+
     // OkHttpClient
     int cacheSize = 50 * 1024 * 1024; // 50 MiB
     Cache cache = new Cache(getCacheDir(), cacheSize);
-    okHttpClient = new OkHttpClient.Builder().cache(cache).connectTimeout(2L, TimeUnit.SECONDS).readTimeout(5L, TimeUnit.SECONDS).build();
+    // Explicit freshness per endpoint type, cached responses are served first and revalidated in the background
+    CachePolicy cachePolicy = new CachePolicy();
+    staleWhileRevalidateInterceptor = new StaleWhileRevalidateInterceptor(cachePolicy);
+    // While the API is unhealthy, requests are answered from cache or fail fast. Otherwise transient errors are retried.
+    circuitBreakerInterceptor = new CircuitBreakerInterceptor(new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS));
+    requestScheduler = new RequestScheduler(MAX_RUNNING_REQUESTS, REQUEST_BURST, REQUESTS_PER_SECOND);
+    retryInterceptor = new RetryInterceptor(MAX_RETRIES, RETRY_BASE_DELAY_MILLIS, RETRY_MAX_DELAY_MILLIS, requestScheduler);
+    okHttpClient = new OkHttpClient.Builder().cache(cache)
+        .addInterceptor(staleWhileRevalidateInterceptor)
+        .addInterceptor(circuitBreakerInterceptor)
+        .addInterceptor(retryInterceptor)
+        .addNetworkInterceptor(new CachePolicyInterceptor(cachePolicy))
+        .connectTimeout(2L, TimeUnit.SECONDS)
+        .readTimeout(5L, TimeUnit.SECONDS)
+        .build();
+    staleWhileRevalidateInterceptor.setOkHttpClient(okHttpClient, requestScheduler);
 
     // Picasso with configured okHttpClient
     Picasso.Builder builder = new Picasso.Builder(this);
     builder.downloader(new OkHttp3Downloader(okHttpClient));
     Picasso picasso = builder.build();
     Picasso.setSingletonInstance(picasso);
+
+    // Pre-warm the movie lists in the background, so a cold start shows local data right away
+    MovieSyncJobService.schedule(this);
   }
 
   public OkHttpClient getOkHttpClient() {
     return okHttpClient;
   }
+
+  /**
+   * @return the interceptor serving cached API responses, e.g. to read its hit, miss and revalidate counts.
+   */
+  public StaleWhileRevalidateInterceptor getStaleWhileRevalidateInterceptor() {
+    return staleWhileRevalidateInterceptor;
+  }
+
+  /**
+   * @return the scheduler all API requests of the Loaders go through, ordered by priority and rate limited.
+   */
+  public RequestScheduler getRequestScheduler() {
+    return requestScheduler;
+  }
+
+  /**
+   * @return the interceptor guarding the API with a circuit breaker, e.g. to read its fail fast count.
+   */
+  public CircuitBreakerInterceptor getCircuitBreakerInterceptor() {
+    return circuitBreakerInterceptor;
+  }
+
+  /**
+   * @return the interceptor retrying failed API requests, e.g. to read its retry count.
+   */
+  public RetryInterceptor getRetryInterceptor() {
+    return retryInterceptor;
+  }
+
+  /**
+   * @return the store of the API configuration, which provides the image base URL and poster sizes.
+   */
+  public ConfigurationStore getConfigurationStore() {
+    return configurationStore;
+  }
 }
@@ -10,14 +10,14 @@ import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.util.DisplayMetrics;
 import android.widget.Toast;
-import de.appmotion.popularmovies.data.source.remote.NetworkLoader;
-import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import de.appmotion.popularmovies.data.source.remote.NetworkResult;
 import java.util.List;
 import java.util.Locale;
 
 public abstract class BaseActivity extends AppCompatActivity {
 
-  protected @NetworkUtils.ImageSize String mRequiredImageSize;
+  // Poster size of the API configuration which fits the columns best
+  protected String mRequiredImageSize;
   protected Locale mLocale;
   protected String mDefaultLanguage;
   protected String mDefaultCountry;
@@ -53,21 +53,7 @@ public abstract class BaseActivity extends AppCompatActivity {
     int noOfColumns = calculateNoOfColumns();
     DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
     int screenWidthPx = displayMetrics.widthPixels / noOfColumns;
-    if (screenWidthPx <= 92) {
-      mRequiredImageSize = NetworkUtils.WIDTH92;
-    } else if (screenWidthPx <= 154) {
-      mRequiredImageSize = NetworkUtils.WIDTH154;
-    } else if (screenWidthPx <= 185) {
-      mRequiredImageSize = NetworkUtils.WIDTH185;
-    } else if (screenWidthPx <= 342) {
-      mRequiredImageSize = NetworkUtils.WIDTH342;
-    } else if (screenWidthPx <= 500) {
-      mRequiredImageSize = NetworkUtils.WIDTH500;
-    } else if (screenWidthPx <= 780) {
-      mRequiredImageSize = NetworkUtils.WIDTH780;
-    } else {
-      mRequiredImageSize = NetworkUtils.ORIGINAL;
-    }
+    mRequiredImageSize = App.getInstance().getConfigurationStore().getImageConfiguration().posterSizeFor(screenWidthPx);
   }
 
   /**
@@ -86,22 +72,23 @@ public abstract class BaseActivity extends AppCompatActivity {
   /**
    * Show a Toast Error Message.
    *
-   * @param errorType the {@link NetworkLoader.ErrorType}
+   * @param status the {@link NetworkResult.Status} of a failed request
    */
-  protected void showErrorMessage(@NetworkLoader.ErrorType String errorType) {
+  protected void showErrorMessage(@NetworkResult.Status int status) {
     String message;
-    switch (errorType) {
-      case NetworkLoader.API_ERROR:
+    switch (status) {
+      case NetworkResult.API_ERROR:
         message = getString(R.string.error_loading_movies);
         break;
-      case NetworkLoader.OFFLINE:
+      case NetworkResult.OFFLINE:
         message = getString(R.string.error_connect_internet);
         break;
-      case NetworkLoader.EMPTY:
+      case NetworkResult.EMPTY:
         message = getString(R.string.error_empty_response);
         break;
       default:
-        message = errorType;
+        // Nothing went wrong
+        return;
     }
     showMessage(message);
   }
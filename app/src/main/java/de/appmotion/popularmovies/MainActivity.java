@@ -1,7 +1,6 @@
 package de.appmotion.popularmovies;
 
 import android.app.Dialog;
-import android.content.ContentValues;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
@@ -10,7 +9,6 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
@@ -23,17 +21,17 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import de.appmotion.popularmovies.data.Movie;
 import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.remote.ConfigurationLoader;
+import de.appmotion.popularmovies.data.source.remote.MovieListLoader;
 import de.appmotion.popularmovies.data.source.remote.NetworkLoader;
+import de.appmotion.popularmovies.data.source.remote.NetworkResult;
 import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import de.appmotion.popularmovies.data.source.remote.PagePrefetcher;
+import de.appmotion.popularmovies.data.source.remote.RequestScheduler;
 import de.appmotion.popularmovies.databinding.ActivityMainBinding;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 /**
  * Display Movies via a grid of their corresponding movie poster thumbnails.
@@ -42,12 +40,8 @@ public class MainActivity extends BaseActivity
     implements MoviePopularCursorAdapter.ListItemClickListener, MovieTopRatedCursorAdapter.ListItemClickListener,
     MovieFavoriteCursorAdapter.ListItemClickListener {
 
-  // This number will uniquely identify a CursorLoader for loading data from 'movie_popular' DB table.
-  // Use negative number because positive numbers are reserved for mMoviePageToDownload variable which is used by NetworkLoader.
-  private static final int CURSOR_LOADER_MOVIE_POPULAR = -1;
-  // This number will uniquely identify a CursorLoader for loading data from 'movie_top_rated' DB table.
-  private static final int CURSOR_LOADER_MOVIE_TOP_RATED = -2;
   // This number will uniquely identify a CursorLoader for loading data from 'movie_favorite' DB table.
+  // Use negative number because positive numbers are reserved for the page loaders which are used by NetworkLoader.
   private static final int CURSOR_LOADER_MOVIE_FAVORITE = -3;
   // Constant for logging
   private static final String TAG = MainActivity.class.getSimpleName();
@@ -57,12 +51,31 @@ public class MainActivity extends BaseActivity
   private static final int MOVIE_FAVORITE = 2;
   // Save {@link MenuState} via onSaveInstanceState
   private static final String STATE_MENU_STATE = "menu_state";
-  // Save mMoviePageToDownload via onSaveInstanceState
-  private static final String STATE_PAGE_TO_DOWNLOAD = "page_to_download";
-  // Which page of a movie list from the server has to be downloaded. This number will uniquely identify corresponding NetworkLoader, too.
-  private int mMoviePageToDownload = 1;
+  // Save the loaded and downloading pages of popular and top rated movies via onSaveInstanceState
+  private static final String STATE_POPULAR_LOADED_PAGES = "popular_loaded_pages";
+  private static final String STATE_POPULAR_IN_FLIGHT_PAGES = "popular_in_flight_pages";
+  private static final String STATE_TOP_RATED_LOADED_PAGES = "top_rated_loaded_pages";
+  private static final String STATE_TOP_RATED_IN_FLIGHT_PAGES = "top_rated_in_flight_pages";
+  // Save the windows of popular and top rated movies loaded from the ContentProvider via onSaveInstanceState
+  private static final String STATE_POPULAR_WINDOWS = "popular_windows";
+  private static final String STATE_TOP_RATED_WINDOWS = "top_rated_windows";
+  // Number of movies which are queried at once from the ContentProvider while scrolling
+  private static final int WINDOW_SIZE = 3 * NetworkUtils.MOVIES_PER_PAGE;
+  // Number of pages which are downloaded beyond the page of the last visible movie
+  private static final int PREFETCH_PAGES_AHEAD = 2;
+  // Maximum number of pages downloading at the same time
+  private static final int PREFETCH_MAX_CONCURRENT = 2;
+  // The NetworkLoader ID of the API configuration
+  private static final int CONFIGURATION_LOADER_ID = 0;
+  // The NetworkLoader ID of a page is built from {@link MenuState} and page: menuState * PAGE_LOADER_ID_RANGE + page
+  private static final int PAGE_LOADER_ID_RANGE = 10000;
+  // Requests pages of popular and top rated movies ahead of the visible movies
+  private PagePrefetcher mPagePrefetcher;
+  // Query windows of popular and top rated movies from the ContentProvider while scrolling
+  private MovieWindowPager mMoviePopularWindowPager;
+  private MovieWindowPager mMovieTopRatedWindowPager;
   // Callback for {@link NetworkLoader}
-  private LoaderManager.LoaderCallbacks<String> mNetworkLoaderCallback;
+  private LoaderManager.LoaderCallbacks<NetworkResult> mNetworkLoaderCallback;
   // Callback for {@link CursorLoader}
   private LoaderManager.LoaderCallbacks<Cursor> mCursorLoaderCallback;
   // The About Dialog
@@ -90,12 +103,31 @@ public class MainActivity extends BaseActivity
     super.onCreate(savedInstanceState);
     mMainBinding = DataBindingUtil.setContentView(this, R.layout.activity_main);
 
-    updateValuesFromBundle(savedInstanceState);
+    mPagePrefetcher = new PagePrefetcher(PREFETCH_PAGES_AHEAD, PREFETCH_MAX_CONCURRENT, new PagePrefetcher.PageRequester() {
+      @Override public void requestPage(int listType, int page, int priority) {
+        if (listType == MOVIE_POPULAR) {
+          downloadPopularMovies(mDefaultLanguage, mDefaultCountry, page, priority, false);
+        } else if (listType == MOVIE_TOP_RATED) {
+          downloadTopRatedMovies(mDefaultLanguage, mDefaultCountry, page, priority, false);
+        }
+      }
+
+      @Override public void resumePage(int listType, int page, int priority) {
+        if (listType == MOVIE_POPULAR) {
+          downloadPopularMovies(mDefaultLanguage, mDefaultCountry, page, priority, true);
+        } else if (listType == MOVIE_TOP_RATED) {
+          downloadTopRatedMovies(mDefaultLanguage, mDefaultCountry, page, priority, true);
+        }
+      }
+    });
 
     // Initiate Callbacks for the Loaders
     mNetworkLoaderCallback = initNetworkLoaderCallback();
     mCursorLoaderCallback = initCursorLoaderCallback();
 
+    // After the callbacks, restored downloads reconnect to their page loaders
+    updateValuesFromBundle(savedInstanceState);
+
     // RecyclerView
     // Use setHasFixedSize to improve performance if you know that changes in content do not
     // change the child layout size in the RecyclerView
@@ -103,13 +135,11 @@ public class MainActivity extends BaseActivity
     mMainBinding.rvMovieList.addOnScrollListener(new RecyclerView.OnScrollListener() {
       @Override public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
         super.onScrolled(recyclerView, dx, dy);
-        if (dy > 0 && isLastItemDisplaying(recyclerView)) {
-          if (mMenuState == MOVIE_POPULAR) {
-            downloadAndShowPopularMovies(mDefaultLanguage, mDefaultCountry);
-          } else if (mMenuState == MOVIE_TOP_RATED) {
-            downloadAndShowTopRatedMovies(mDefaultLanguage, mDefaultCountry);
+        if (dy > 0 && (mMenuState == MOVIE_POPULAR || mMenuState == MOVIE_TOP_RATED)) {
+          int lastVisibleItemPosition = ((GridLayoutManager) recyclerView.getLayoutManager()).findLastVisibleItemPosition();
+          if (lastVisibleItemPosition != RecyclerView.NO_POSITION) {
+            mPagePrefetcher.onViewportChanged(mMenuState, lastVisibleItemPosition);
           }
-          mMoviePageToDownload++;
         }
       }
     });
@@ -122,10 +152,24 @@ public class MainActivity extends BaseActivity
         new GridLayoutManager(this, calculateNoOfColumns(), GridLayoutManager.VERTICAL, shouldReverseLayout);
     mMainBinding.rvMovieList.setLayoutManager(layoutManager);
 
+    // Popular and top rated movies are queried in windows, which the adapters request while binding
+    mMoviePopularWindowPager = new MovieWindowPager(getContentResolver(), DatabaseContract.MoviePopularEntry.CONTENT_URI, WINDOW_SIZE,
+        new MovieWindowPager.Listener() {
+          @Override public void onMoviesChanged(Cursor cursor) {
+            mMoviePopularCursorAdapter.swapCursor(cursor);
+          }
+        });
+    mMovieTopRatedWindowPager = new MovieWindowPager(getContentResolver(), DatabaseContract.MovieTopRatedEntry.CONTENT_URI, WINDOW_SIZE,
+        new MovieWindowPager.Listener() {
+          @Override public void onMoviesChanged(Cursor cursor) {
+            mMovieTopRatedCursorAdapter.swapCursor(cursor);
+          }
+        });
+
     // Initiate the popular movie cursor adapter for RecyclerView
-    mMoviePopularCursorAdapter = new MoviePopularCursorAdapter(this, mRequiredImageSize, this);
+    mMoviePopularCursorAdapter = new MoviePopularCursorAdapter(this, mRequiredImageSize, this, mMoviePopularWindowPager);
     // Initiate the top rated movie cursor adapter for RecyclerView
-    mMovieTopRatedCursorAdapter = new MovieTopRatedCursorAdapter(this, mRequiredImageSize, this);
+    mMovieTopRatedCursorAdapter = new MovieTopRatedCursorAdapter(this, mRequiredImageSize, this, mMovieTopRatedWindowPager);
     // Initiate the favorite movie cursor adapter for RecyclerView
     mMovieFavoriteCursorAdapter = new MovieFavoriteCursorAdapter(this, mRequiredImageSize, this);
 
@@ -135,10 +179,9 @@ public class MainActivity extends BaseActivity
      * the last created loader is re-used.
      */
 
-    // Loader for Popular Movies
-    getSupportLoaderManager().initLoader(CURSOR_LOADER_MOVIE_POPULAR, null, mCursorLoaderCallback);
-    // Loader for Top Rated Movies
-    getSupportLoaderManager().initLoader(CURSOR_LOADER_MOVIE_TOP_RATED, null, mCursorLoaderCallback);
+    // Windows of Popular and Top Rated Movies, the same windows as before a configuration change
+    mMoviePopularWindowPager.start(savedInstanceState == null ? null : savedInstanceState.getBundle(STATE_POPULAR_WINDOWS));
+    mMovieTopRatedWindowPager.start(savedInstanceState == null ? null : savedInstanceState.getBundle(STATE_TOP_RATED_WINDOWS));
     // Loader for Favorite Movies
     getSupportLoaderManager().initLoader(CURSOR_LOADER_MOVIE_FAVORITE, null, mCursorLoaderCallback);
 
@@ -147,21 +190,31 @@ public class MainActivity extends BaseActivity
     if (mMenuState == MOVIE_POPULAR) {
       setTitle(R.string.action_popular);
       mMainBinding.rvMovieList.setAdapter(mMoviePopularCursorAdapter);
-      downloadAndShowPopularMovies(mDefaultLanguage, mDefaultCountry);
+      mPagePrefetcher.start(MOVIE_POPULAR);
     } else if (mMenuState == MOVIE_TOP_RATED) {
       setTitle(R.string.action_top);
       mMainBinding.rvMovieList.setAdapter(mMovieTopRatedCursorAdapter);
-      downloadAndShowTopRatedMovies(mDefaultLanguage, mDefaultCountry);
+      mPagePrefetcher.start(MOVIE_TOP_RATED);
     } else if (mMenuState == MOVIE_FAVORITE) {
       setTitle(R.string.action_favorite_show);
       mMainBinding.rvMovieList.setAdapter(mMovieFavoriteCursorAdapter);
     }
+
+    // The stored API configuration is used right away, it is only refreshed after its time to live
+    if (App.getInstance().getConfigurationStore().isStale(System.currentTimeMillis())) {
+      downloadConfiguration();
+    }
   }
 
   @Override protected void onSaveInstanceState(Bundle outState) {
     super.onSaveInstanceState(outState);
     outState.putInt(STATE_MENU_STATE, mMenuState);
-    outState.putInt(STATE_PAGE_TO_DOWNLOAD, mMoviePageToDownload);
+    outState.putIntArray(STATE_POPULAR_LOADED_PAGES, mPagePrefetcher.getLoadedPages(MOVIE_POPULAR));
+    outState.putIntArray(STATE_POPULAR_IN_FLIGHT_PAGES, mPagePrefetcher.getInFlightPages(MOVIE_POPULAR));
+    outState.putIntArray(STATE_TOP_RATED_LOADED_PAGES, mPagePrefetcher.getLoadedPages(MOVIE_TOP_RATED));
+    outState.putIntArray(STATE_TOP_RATED_IN_FLIGHT_PAGES, mPagePrefetcher.getInFlightPages(MOVIE_TOP_RATED));
+    outState.putBundle(STATE_POPULAR_WINDOWS, mMoviePopularWindowPager.saveState());
+    outState.putBundle(STATE_TOP_RATED_WINDOWS, mMovieTopRatedWindowPager.saveState());
   }
 
   /**
@@ -228,6 +281,8 @@ public class MainActivity extends BaseActivity
   @Override protected void onDestroy() {
     dismissDialog(mAboutDialog);
     mMainBinding.rvMovieList.clearOnScrollListeners();
+    mMoviePopularWindowPager.stop();
+    mMovieTopRatedWindowPager.stop();
     super.onDestroy();
   }
 
@@ -243,17 +298,15 @@ public class MainActivity extends BaseActivity
       case R.id.action_popular:
         mMenuState = MOVIE_POPULAR;
         setTitle(R.string.action_popular);
-        mMoviePageToDownload = 1;
         mMainBinding.rvMovieList.setAdapter(mMoviePopularCursorAdapter);
-        downloadAndShowPopularMovies(mDefaultLanguage, mDefaultCountry);
+        mPagePrefetcher.refresh(MOVIE_POPULAR);
         return true;
       // Load and show To Rated Movies.
       case R.id.action_top:
         mMenuState = MOVIE_TOP_RATED;
         setTitle(R.string.action_top);
-        mMoviePageToDownload = 1;
         mMainBinding.rvMovieList.setAdapter(mMovieTopRatedCursorAdapter);
-        downloadAndShowTopRatedMovies(mDefaultLanguage, mDefaultCountry);
+        mPagePrefetcher.refresh(MOVIE_TOP_RATED);
         return true;
       // Load local saved favorite Movies.
       case R.id.action_favorite_show:
@@ -270,8 +323,11 @@ public class MainActivity extends BaseActivity
     }
   }
 
+  /**
+   * Get the API Configuration from themoviedb.org, it is stored by {@link ConfigurationLoader}.
+   */
   private void downloadConfiguration() {
-    // Get URL for popular Configuration Download and build Bundle for {@link NetworkLoader}
+    // Get URL for Configuration Download and build Bundle for {@link ConfigurationLoader}
     URL configurationUrl = NetworkUtils.buildConfigurationUrl();
     Bundle queryBundle = new Bundle();
     queryBundle.putSerializable(NetworkLoader.EXTRA_QUERY_URL, configurationUrl);
@@ -279,60 +335,81 @@ public class MainActivity extends BaseActivity
     // Call getSupportLoaderManager and store it in a LoaderManager variable
     LoaderManager loaderManager = getSupportLoaderManager();
     // Get our Loader by calling getLoader and passing the ID we specified
-    Loader<String> networkLoader = loaderManager.getLoader(0);
+    Loader<NetworkResult> networkLoader = loaderManager.getLoader(CONFIGURATION_LOADER_ID);
     // If the Loader was null, initialize it. Else, restart it.
     if (networkLoader == null) {
-      loaderManager.initLoader(0, queryBundle, mNetworkLoaderCallback);
+      loaderManager.initLoader(CONFIGURATION_LOADER_ID, queryBundle, mNetworkLoaderCallback);
     } else {
-      loaderManager.restartLoader(0, queryBundle, mNetworkLoaderCallback);
+      loaderManager.restartLoader(CONFIGURATION_LOADER_ID, queryBundle, mNetworkLoaderCallback);
     }
   }
 
   /**
-   * Get Popular Movies from themoviedb.org
+   * Get a page of Popular Movies from themoviedb.org. Called by {@link PagePrefetcher}.
    *
    * @param language The language requested.
    * @param region The region requested.
+   * @param page The page requested.
+   * @param priority The {@link RequestScheduler.Priority} of the request.
+   * @param resume True to reconnect to the page loader of a download started before the Activity was recreated.
    */
-  private void downloadAndShowPopularMovies(String language, String region) {
-    // Get URL for popular Movies Download and build Bundle for {@link NetworkLoader}
-    URL popularMoviesUrl = NetworkUtils.buildPopularMoviesUrl(language, String.valueOf(mMoviePageToDownload), region);
+  private void downloadPopularMovies(String language, String region, int page, @RequestScheduler.Priority int priority,
+      boolean resume) {
+    // Get URL for popular Movies Download and build Bundle for {@link MovieListLoader}
+    URL popularMoviesUrl = NetworkUtils.buildPopularMoviesUrl(language, String.valueOf(page), region);
     Bundle queryBundle = new Bundle();
     queryBundle.putSerializable(NetworkLoader.EXTRA_QUERY_URL, popularMoviesUrl);
+    queryBundle.putParcelable(MovieListLoader.EXTRA_INSERT_URI, DatabaseContract.MoviePopularEntry.CONTENT_URI);
+    queryBundle.putInt(MovieListLoader.EXTRA_PAGE, page);
+    queryBundle.putInt(NetworkLoader.EXTRA_PRIORITY, priority);
 
-    // Call getSupportLoaderManager and store it in a LoaderManager variable
-    LoaderManager loaderManager = getSupportLoaderManager();
-    // Get our Loader by calling getLoader and passing the ID we specified
-    Loader<String> networkLoader = loaderManager.getLoader(mMoviePageToDownload);
-    // If the Loader was null, initialize it. Else, restart it.
-    if (networkLoader == null) {
-      loaderManager.initLoader(mMoviePageToDownload, queryBundle, mNetworkLoaderCallback);
-    } else {
-      loaderManager.restartLoader(mMoviePageToDownload, queryBundle, mNetworkLoaderCallback);
-    }
+    startPageLoader(MOVIE_POPULAR * PAGE_LOADER_ID_RANGE + page, queryBundle, resume);
   }
 
   /**
-   * Get Top Rated Movies from themoviedb.org
+   * Get a page of Top Rated Movies from themoviedb.org. Called by {@link PagePrefetcher}.
    *
    * @param language The language requested.
    * @param region The region requested.
+   * @param page The page requested.
+   * @param priority The {@link RequestScheduler.Priority} of the request.
+   * @param resume True to reconnect to the page loader of a download started before the Activity was recreated.
    */
-  private void downloadAndShowTopRatedMovies(String language, String region) {
-    // Get URL for top rated Movies Download and build Bundle for {@link NetworkLoader}
-    URL topRatedMoviesUrl = NetworkUtils.buildTopRatedMoviesUrl(language, String.valueOf(mMoviePageToDownload), region);
+  private void downloadTopRatedMovies(String language, String region, int page, @RequestScheduler.Priority int priority,
+      boolean resume) {
+    // Get URL for top rated Movies Download and build Bundle for {@link MovieListLoader}
+    URL topRatedMoviesUrl = NetworkUtils.buildTopRatedMoviesUrl(language, String.valueOf(page), region);
     Bundle queryBundle = new Bundle();
     queryBundle.putSerializable(NetworkLoader.EXTRA_QUERY_URL, topRatedMoviesUrl);
+    queryBundle.putParcelable(MovieListLoader.EXTRA_INSERT_URI, DatabaseContract.MovieTopRatedEntry.CONTENT_URI);
+    queryBundle.putInt(MovieListLoader.EXTRA_PAGE, page);
+    queryBundle.putInt(NetworkLoader.EXTRA_PRIORITY, priority);
+
+    startPageLoader(MOVIE_TOP_RATED * PAGE_LOADER_ID_RANGE + page, queryBundle, resume);
+  }
 
+  /**
+   * Start the {@link MovieListLoader} of a page.
+   *
+   * @param loaderId The ID of the page loader.
+   * @param queryBundle The arguments for the page loader.
+   * @param resume True to reconnect to the page loader of a download started before the Activity was recreated.
+   */
+  private void startPageLoader(int loaderId, Bundle queryBundle, boolean resume) {
     // Call getSupportLoaderManager and store it in a LoaderManager variable
     LoaderManager loaderManager = getSupportLoaderManager();
+    if (resume) {
+      // The retained Loader delivers its result when done, after the process was killed a new one is created
+      loaderManager.initLoader(loaderId, queryBundle, mNetworkLoaderCallback);
+      return;
+    }
     // Get our Loader by calling getLoader and passing the ID we specified
-    Loader<String> networkLoader = loaderManager.getLoader(mMoviePageToDownload);
+    Loader<NetworkResult> networkLoader = loaderManager.getLoader(loaderId);
     // If the Loader was null, initialize it. Else, restart it.
     if (networkLoader == null) {
-      loaderManager.initLoader(mMoviePageToDownload, queryBundle, mNetworkLoaderCallback);
+      loaderManager.initLoader(loaderId, queryBundle, mNetworkLoaderCallback);
     } else {
-      loaderManager.restartLoader(mMoviePageToDownload, queryBundle, mNetworkLoaderCallback);
+      loaderManager.restartLoader(loaderId, queryBundle, mNetworkLoaderCallback);
     }
   }
 
@@ -356,92 +433,16 @@ public class MainActivity extends BaseActivity
     }
   }
 
-  /**
-   * Called when Loader with ID:mMoviePageToDownload finished in onLoadFinished().
-   * Parse jsonData and save it in DB.
-   *
-   * @param jsonData from onLoadFinished of {@link NetworkLoader}.
-   */
-  private void parseJson(String jsonData) {
-    List<Movie> movieList = new ArrayList<>();
-    try {
-      JSONObject popular = new JSONObject(jsonData);
-      JSONArray results = popular.getJSONArray("results");
-      int i = 0;
-      while (results != null && !results.isNull(i)) {
-        JSONObject result = results.getJSONObject(i);
-        if (result != null) {
-          Long movieId = result.optLong("id", -1L);
-          String title = result.optString("title");
-          String imageUrl = result.optString("poster_path");
-          double popularity = result.optDouble("popularity", 0);
-          double voteAverage = result.optDouble("vote_average", 0);
-          String releaseDate = result.optString("release_date");
-          String overview = result.optString("overview");
-          Movie movie = new Movie();
-          movie.setMovieId(movieId);
-          movie.setTitle(title);
-          movie.setImageUrl(imageUrl);
-          movie.setPopularity(popularity);
-          movie.setVoteAverage(voteAverage);
-          movie.setReleaseDate(releaseDate);
-          movie.setOverview(overview);
-          movieList.add(movie);
-        }
-        i++;
-      }
-      insertMovieList(movieList);
-    } catch (JSONException e) {
-      Log.e(TAG, "Parse Movie JSON list error: ", e);
-    }
-  }
-
-  /**
-   * Insert a movie list to {@link DatabaseContract.MoviePopularEntry} or {@link DatabaseContract.MovieTopRatedEntry}.
-   *
-   * @param movieList List of downloaded Movies
-   * @return the number of newly created rows.
-   */
-  private int insertMovieList(@Nullable List<Movie> movieList) {
-    if (movieList == null) {
-      return 0;
-    }
-    ContentValues[] cvArray = new ContentValues[movieList.size()];
-
-    for (int i = 0; i < movieList.size(); i++) {
-      cvArray[i] = Movie.from(movieList.get(i));
-    }
-
-    if (mMenuState == MOVIE_POPULAR) {
-      return getContentResolver().bulkInsert(DatabaseContract.MoviePopularEntry.CONTENT_URI, cvArray);
-    } else if (mMenuState == MOVIE_TOP_RATED) {
-      return getContentResolver().bulkInsert(DatabaseContract.MovieTopRatedEntry.CONTENT_URI, cvArray);
-    } else {
-      return 0;
-    }
-  }
-
-  /**
-   * Check whether the last item in RecyclerView is being displayed or not
-   *
-   * @param recyclerView which you would like to check
-   * @return true if last position was Visible and false Otherwise
-   */
-  private boolean isLastItemDisplaying(RecyclerView recyclerView) {
-    if (recyclerView.getAdapter().getItemCount() != 0) {
-      int lastVisibleItemPosition = ((GridLayoutManager) recyclerView.getLayoutManager()).findLastVisibleItemPosition();
-      return lastVisibleItemPosition != RecyclerView.NO_POSITION && lastVisibleItemPosition == recyclerView.getAdapter().getItemCount() - 1;
-    }
-    return false;
-  }
-
   private void updateValuesFromBundle(Bundle savedInstanceState) {
     if (savedInstanceState != null) {
       if (savedInstanceState.keySet().contains(STATE_MENU_STATE)) {
         mMenuState = savedInstanceState.getInt(STATE_MENU_STATE, MOVIE_POPULAR);
       }
-      if (savedInstanceState.keySet().contains(STATE_PAGE_TO_DOWNLOAD)) {
-        mMoviePageToDownload = savedInstanceState.getInt(STATE_PAGE_TO_DOWNLOAD, 1);
+      if (savedInstanceState.keySet().contains(STATE_POPULAR_LOADED_PAGES)) {
+        mPagePrefetcher.restore(MOVIE_POPULAR, savedInstanceState.getIntArray(STATE_POPULAR_LOADED_PAGES),
+            savedInstanceState.getIntArray(STATE_POPULAR_IN_FLIGHT_PAGES));
+        mPagePrefetcher.restore(MOVIE_TOP_RATED, savedInstanceState.getIntArray(STATE_TOP_RATED_LOADED_PAGES),
+            savedInstanceState.getIntArray(STATE_TOP_RATED_IN_FLIGHT_PAGES));
       }
     }
   }
@@ -467,8 +468,8 @@ public class MainActivity extends BaseActivity
    * Below this point are {@link LoaderManager.LoaderCallbacks} methods
    **/
 
-  private LoaderManager.LoaderCallbacks<String> initNetworkLoaderCallback() {
-    return new LoaderManager.LoaderCallbacks<String>() {
+  private LoaderManager.LoaderCallbacks<NetworkResult> initNetworkLoaderCallback() {
+    return new LoaderManager.LoaderCallbacks<NetworkResult>() {
 
       /**
        * This is called when a new Loader needs to be created.
@@ -477,10 +478,19 @@ public class MainActivity extends BaseActivity
        * @param args Any arguments supplied by the caller.
        * @return Return a new Loader instance that is ready to start loading.
        */
-      @NonNull @Override public Loader<String> onCreateLoader(int loaderId, Bundle args) {
+      @NonNull @Override public Loader<NetworkResult> onCreateLoader(int loaderId, Bundle args) {
         // Extract the url query from the args using our constant
         URL queryUrl = (URL) args.getSerializable(NetworkLoader.EXTRA_QUERY_URL);
-        return new NetworkLoader(MainActivity.this, queryUrl);
+        if (loaderId == CONFIGURATION_LOADER_ID) {
+          return new ConfigurationLoader(MainActivity.this, queryUrl);
+        }
+        // Movie list pages are parsed as a stream and inserted to the ContentProvider inside the Loader
+        Uri insertUri = args.getParcelable(MovieListLoader.EXTRA_INSERT_URI);
+        @RequestScheduler.Priority int priority = args.getInt(NetworkLoader.EXTRA_PRIORITY, RequestScheduler.VISIBLE_PAGE);
+        if (insertUri != null) {
+          return new MovieListLoader(MainActivity.this, queryUrl, priority, insertUri, args.getInt(MovieListLoader.EXTRA_PAGE, 1));
+        }
+        return new NetworkLoader(MainActivity.this, queryUrl, priority);
       }
 
       /**
@@ -489,27 +499,51 @@ public class MainActivity extends BaseActivity
        * @param loader The Loader that has finished.
        * @param data The data generated by the Loader.
        */
-      @Override public void onLoadFinished(@NonNull Loader<String> loader, String data) {
+      @Override public void onLoadFinished(@NonNull Loader<NetworkResult> loader, NetworkResult data) {
         // When we finish loading, we want to hide the loading indicator from the user.
         //mLoadingIndicator.setVisibility(View.INVISIBLE);
 
+        // The configuration is downloaded in the background, the stored one stays in use if it fails
+        if (loader.getId() == CONFIGURATION_LOADER_ID) {
+          if (data != null && data.isSuccess()) {
+            getSupportLoaderManager().destroyLoader(CONFIGURATION_LOADER_ID);
+          }
+          return;
+        }
+
+        // Page loaders report their result to the PagePrefetcher
+        int listType = loader.getId() / PAGE_LOADER_ID_RANGE;
+        int page = loader.getId() % PAGE_LOADER_ID_RANGE;
+        boolean isPageLoader = page > 0;
+
         if (data == null) {
           Log.e(TAG, "The url was empty");
+          if (isPageLoader) {
+            mPagePrefetcher.onPageFailed(listType, page);
+          }
         } else {
-          switch (data) {
-            case NetworkLoader.API_ERROR:
-              showErrorMessage(NetworkLoader.API_ERROR);
-              break;
-            case NetworkLoader.OFFLINE:
-              showErrorMessage(NetworkLoader.OFFLINE);
+          switch (data.getStatus()) {
+            case NetworkResult.API_ERROR:
+            case NetworkResult.OFFLINE:
+              showErrorMessage(data.getStatus());
+              if (isPageLoader) {
+                mPagePrefetcher.onPageFailed(listType, page);
+              }
               break;
-            case NetworkLoader.EMPTY:
-              showErrorMessage(NetworkLoader.EMPTY);
+            case NetworkResult.EMPTY:
+              // An empty page is the end of the list
+              getSupportLoaderManager().destroyLoader(loader.getId());
+              if (isPageLoader) {
+                mPagePrefetcher.onPageLoaded(listType, page, 0);
+              }
               break;
             default:
-              // Here we succesfully get data from server.
+              // Here we succesfully get data from server and the movies were already inserted by {@link MovieListLoader}.
+              // For page loaders the item count is the number of inserted movies.
               getSupportLoaderManager().destroyLoader(loader.getId());
-              parseJson(data);
+              if (isPageLoader) {
+                mPagePrefetcher.onPageLoaded(listType, page, data.getItemCount());
+              }
               break;
           }
         }
@@ -522,7 +556,7 @@ public class MainActivity extends BaseActivity
        *
        * @param loader The Loader that is being reset.
        */
-      @Override public void onLoaderReset(@NonNull Loader<String> loader) {
+      @Override public void onLoaderReset(@NonNull Loader<NetworkResult> loader) {
         // do nothing
       }
     };
@@ -536,18 +570,11 @@ public class MainActivity extends BaseActivity
       @NonNull @Override public Loader<Cursor> onCreateLoader(int loaderId, Bundle args) {
 
         switch (loaderId) {
-          case CURSOR_LOADER_MOVIE_POPULAR:
-            Uri popularMovieQueryUri = DatabaseContract.MoviePopularEntry.CONTENT_URI;
-            sortOrder = DatabaseContract.MoviePopularEntry.COLUMN_MOVIE_POPULARITY + " DESC";
-            return new CursorLoader(MainActivity.this, popularMovieQueryUri, null, null, null, sortOrder);
-          case CURSOR_LOADER_MOVIE_TOP_RATED:
-            Uri topRatedMovieQueryUri = DatabaseContract.MovieTopRatedEntry.CONTENT_URI;
-            sortOrder = DatabaseContract.MovieTopRatedEntry.COLUMN_MOVIE_VOTE_AVERAGE + " DESC";
-            return new CursorLoader(MainActivity.this, topRatedMovieQueryUri, null, null, null, sortOrder);
           case CURSOR_LOADER_MOVIE_FAVORITE:
             Uri favoriteMovieQueryUri = DatabaseContract.MovieFavoriteEntry.CONTENT_URI;
-            sortOrder = DatabaseContract.MovieFavoriteEntry.COLUMN_TIMESTAMP + " DESC";
-            return new CursorLoader(MainActivity.this, favoriteMovieQueryUri, null, null, null, sortOrder);
+            sortOrder = DatabaseContract.MovieFavoriteEntry.SORT_ORDER_NEWEST;
+            return new CursorLoader(MainActivity.this, favoriteMovieQueryUri, DatabaseContract.MovieEntry.GRID_PROJECTION, null, null,
+                sortOrder);
           default:
             throw new RuntimeException("Loader not Implemented: " + loaderId);
         }
@@ -555,42 +582,6 @@ public class MainActivity extends BaseActivity
 
       @Override public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor cursor) {
         switch (loader.getId()) {
-          case CURSOR_LOADER_MOVIE_POPULAR:
-            if (cursor != null) {
-              // Data loaded
-              if (cursor.moveToLast()) {
-                // Show data from ContentProvider query
-                // Update the cursor in the adapter to trigger UI to display the new list
-                mMoviePopularCursorAdapter.swapCursor(cursor);
-              }
-              // Data empty
-              else {
-                mMoviePopularCursorAdapter.swapCursor(cursor);
-              }
-            }
-            // Data not available
-            else {
-              mMoviePopularCursorAdapter.swapCursor(null);
-            }
-            break;
-          case CURSOR_LOADER_MOVIE_TOP_RATED:
-            if (cursor != null) {
-              // Data loaded
-              if (cursor.moveToLast()) {
-                // Show data from ContentProvider query
-                // Update the cursor in the adapter to trigger UI to display the new list
-                mMovieTopRatedCursorAdapter.swapCursor(cursor);
-              }
-              // Data empty
-              else {
-                mMovieTopRatedCursorAdapter.swapCursor(cursor);
-              }
-            }
-            // Data not available
-            else {
-              mMovieTopRatedCursorAdapter.swapCursor(null);
-            }
-            break;
           case CURSOR_LOADER_MOVIE_FAVORITE:
             if (cursor != null) {
               // Data loaded
@@ -614,14 +605,6 @@ public class MainActivity extends BaseActivity
 
       @Override public void onLoaderReset(@NonNull Loader<Cursor> loader) {
         switch (loader.getId()) {
-          case CURSOR_LOADER_MOVIE_POPULAR:
-            // Since this Loader's data is now invalid, we need to clear the Adapter that is displaying the data.
-            mMoviePopularCursorAdapter.swapCursor(null);
-            break;
-          case CURSOR_LOADER_MOVIE_TOP_RATED:
-            // Since this Loader's data is now invalid, we need to clear the Adapter that is displaying the data.
-            mMovieTopRatedCursorAdapter.swapCursor(null);
-            break;
           case CURSOR_LOADER_MOVIE_FAVORITE:
             // Since this Loader's data is now invalid, we need to clear the Adapter that is displaying the data.
             mMovieFavoriteCursorAdapter.swapCursor(null);
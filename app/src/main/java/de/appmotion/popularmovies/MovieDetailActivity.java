@@ -12,27 +12,37 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
+import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import com.squareup.moshi.JsonDataException;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 import de.appmotion.popularmovies.data.Movie;
+import de.appmotion.popularmovies.data.MovieCursorRow;
+import de.appmotion.popularmovies.data.MovieDetail;
 import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.FavoriteMovieIds;
+import de.appmotion.popularmovies.data.source.local.MovieDetailCache;
+import de.appmotion.popularmovies.data.source.local.MovieDetailCacheLoader;
+import de.appmotion.popularmovies.data.source.remote.MovieDetailParser;
 import de.appmotion.popularmovies.data.source.remote.NetworkLoader;
+import de.appmotion.popularmovies.data.source.remote.NetworkResult;
 import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import de.appmotion.popularmovies.data.source.remote.RequestScheduler;
 import de.appmotion.popularmovies.databinding.ActivityMovieDetailBinding;
 import de.appmotion.popularmovies.databinding.MovieTrailerBinding;
+import java.io.IOException;
 import java.net.URL;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.List;
 
 /**
  * Display the details for a movie.
@@ -51,12 +61,28 @@ public class MovieDetailActivity extends BaseActivity {
   private static final int NETWORK_LOADER_MOVIE_TRAILER = 2;
   // This number will uniquely identify a NetworkLoader for loading movie review data from themoviedb.org.
   private static final int NETWORK_LOADER_MOVIE_REVIEW = 3;
+  // This number will uniquely identify a NetworkLoader for loading movie detail, trailer and review data with one request.
+  private static final int NETWORK_LOADER_MOVIE_DETAIL_COMBINED = 4;
+  // This number will uniquely identify a MovieDetailCacheLoader for loading the stored detail, trailer and review data.
+  private static final int CACHE_LOADER_MOVIE_DETAIL = 5;
+  // This number will uniquely identify a CursorLoader for loading all columns of the movie from the ContentProvider.
+  private static final int CURSOR_LOADER_MOVIE = 6;
 
   // Callback for {@link NetworkLoader}
-  private LoaderManager.LoaderCallbacks<String> mNetworkLoaderCallback;
-
-  // The Movie which will be shown
+  private LoaderManager.LoaderCallbacks<NetworkResult> mNetworkLoaderCallback;
+  // Callback for {@link MovieDetailCacheLoader}
+  private LoaderManager.LoaderCallbacks<MovieDetail> mCacheLoaderCallback;
+  // Callback for {@link CursorLoader}
+  private LoaderManager.LoaderCallbacks<Cursor> mCursorLoaderCallback;
+  // True once stored details are shown, then a failed request is not reported
+  private boolean mShowsStoredDetail;
+  // True once fetched details are shown, the stored ones are older then
+  private boolean mShowsFetchedDetail;
+
+  // The Movie which will be shown, only its grid columns until loadMovie() is done
   private Movie mMovie;
+  // Runtime of the movie, once it is loaded from themoviedb.org
+  private String mRuntime;
 
   private ActivityMovieDetailBinding mDetailBinding;
   // Youtube-Key of the first Trailer Video
@@ -92,7 +118,44 @@ public class MovieDetailActivity extends BaseActivity {
 
     // Initiate Callbacks for the Loader
     mNetworkLoaderCallback = initNetworkLoaderCallback();
+    mCacheLoaderCallback = initCacheLoaderCallback();
+    mCursorLoaderCallback = initCursorLoaderCallback();
+
+    if (mMovie != null && !isMovieLoaded(mMovie)) {
+      loadMovie();
+    }
+
+    // Loader for the stored Movie Details, Trailer and Review. They are requested if there are none or they are too old.
+    getSupportLoaderManager().initLoader(CACHE_LOADER_MOVIE_DETAIL, null, mCacheLoaderCallback);
+    // If the details were requested before a configuration change, the Loader delivers its result again
+    if (getSupportLoaderManager().getLoader(NETWORK_LOADER_MOVIE_DETAIL_COMBINED) != null) {
+      getSupportLoaderManager().initLoader(NETWORK_LOADER_MOVIE_DETAIL_COMBINED, null, mNetworkLoaderCallback);
+    }
+    // If the combined request failed before a configuration change, the separate Loaders are still there
+    if (getSupportLoaderManager().getLoader(NETWORK_LOADER_MOVIE_DETAIL) != null) {
+      initSeparateNetworkLoaders();
+    }
+  }
+
+  /**
+   * @return false if the Movie has only the columns of {@link DatabaseContract.MovieEntry#GRID_PROJECTION}.
+   */
+  private static boolean isMovieLoaded(Movie movie) {
+    return movie.getTitle() != null;
+  }
+
+  /**
+   * Load all columns of the Movie which the grid passed in, then show them. After a configuration change the Loader
+   * delivers its result again.
+   */
+  private void loadMovie() {
+    getSupportLoaderManager().initLoader(CURSOR_LOADER_MOVIE, null, mCursorLoaderCallback);
+  }
 
+  /**
+   * Fallback if the combined request failed: Load Movie Details, Trailer and Review with three separate requests.
+   */
+  private void initSeparateNetworkLoaders() {
     // Loader for Movie Details
     getSupportLoaderManager().initLoader(NETWORK_LOADER_MOVIE_DETAIL, null, mNetworkLoaderCallback);
     // Loader for Movie Trailer
@@ -105,39 +168,44 @@ public class MovieDetailActivity extends BaseActivity {
     MenuInflater inflater = getMenuInflater();
     inflater.inflate(R.menu.detail, menu);
     final MenuItem menuItemFavorite = menu.findItem(R.id.action_favorite_add_or_remove);
-    menuItemFavorite.setIcon(R.drawable.ic_favorite_border_white_24dp);
-    menuItemFavorite.setTitle(R.string.action_favorite_add);
-    menuItemFavorite.setChecked(false);
-
-    // Check if currently shown Movie is already in favorite table
-    // Update function of mMenuItemShare accordingly
-    Thread thread = new Thread(new Runnable() {
-      @Override public void run() {
-        if (mMovie == null) {
-          return;
-        }
-        final Uri queryUri = DatabaseContract.MovieFavoriteEntry.CONTENT_URI;
-        final String selection = DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID + " = " + mMovie.getMovieId();
-        final Cursor cursor = getContentResolver().query(queryUri, null, selection, null, null);
-        if (cursor != null) {
-          if (cursor.moveToNext()) {
-            runOnUiThread(new Runnable() {
-              @Override public void run() {
-                menuItemFavorite.setIcon(R.drawable.ic_favorite_white_24dp);
-                menuItemFavorite.setTitle(R.string.action_favorite_remove);
-                menuItemFavorite.setChecked(true);
-              }
-            });
+    showFavorite(menuItemFavorite, false);
+    if (mMovie == null) {
+      return true;
+    }
+
+    // Check if currently shown Movie is already in favorite table, in memory once the database is open
+    FavoriteMovieIds favoriteMovieIds = DatabaseHelper.getInstance(this).getFavoriteMovieIds();
+    if (favoriteMovieIds.isLoaded()) {
+      showFavorite(menuItemFavorite, favoriteMovieIds.contains(mMovie.getMovieId()));
+    } else {
+      // Look the movie up by its movie id, this opens the database
+      @SuppressLint("HandlerLeak") AsyncQueryHandler asyncQueryHandler = new AsyncQueryHandler(getContentResolver()) {
+        @Override protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+          if (cursor != null) {
+            showFavorite(menuItemFavorite, cursor.getCount() > 0);
+            cursor.close();
           }
-          cursor.close();
         }
-      }
-    });
-    thread.start();
+      };
+      asyncQueryHandler.startQuery(1, null, DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(mMovie.getMovieId()),
+          new String[] { DatabaseContract.MovieFavoriteEntry._ID }, null, null, null);
+    }
 
     return true;
   }
 
+  /**
+   * Show whether the currently shown Movie is a favorite.
+   *
+   * @param menuItem The MenuItem which adds or removes the movie
+   * @param favorite true if the movie is in the favorite table
+   */
+  private void showFavorite(MenuItem menuItem, boolean favorite) {
+    menuItem.setIcon(favorite ? R.drawable.ic_favorite_white_24dp : R.drawable.ic_favorite_border_white_24dp);
+    menuItem.setTitle(favorite ? R.string.action_favorite_remove : R.string.action_favorite_add);
+    menuItem.setChecked(favorite);
+  }
+
   @Override public boolean onOptionsItemSelected(MenuItem item) {
     switch (item.getItemId()) {
       case android.R.id.home:
@@ -146,7 +214,8 @@ public class MovieDetailActivity extends BaseActivity {
       // Add or remove the currently shown Movie to or from favorite movie table in DB.
       case R.id.action_favorite_add_or_remove:
         if (!item.isChecked()) {
-          if (mMovie != null) {
+          // A favorite is stored with all columns, so the Movie has to be loaded
+          if (mMovie != null && isMovieLoaded(mMovie)) {
             addFavoriteMovie(mMovie, item);
           }
           // Error: Movie data is empty and so it cannot be added to table
@@ -173,72 +242,109 @@ public class MovieDetailActivity extends BaseActivity {
   }
 
   /**
-   * Called when NETWORK_LOADER_MOVIE_DETAIL finished in onLoadFinished().
-   * Parse jsonData and show in Views.
+   * Called when NETWORK_LOADER_MOVIE_DETAIL_COMBINED finished in onLoadFinished().
+   * Parse the result with {@link MovieDetailParser} and show runtime, trailers and reviews in Views.
    *
-   * @param jsonData from onLoadFinished of {@link NetworkLoader}.
+   * @param result from onLoadFinished of {@link NetworkLoader}.
+   * @return false if the result could not be parsed.
    */
-  private void parseJsonMovieDetail(String jsonData) {
+  private boolean parseMovieDetailCombined(NetworkResult result) {
     try {
-      JSONObject movieDetail = new JSONObject(jsonData);
-      String runtime = movieDetail.getString("runtime");
+      MovieDetail movieDetail = MovieDetailParser.parse(result.source());
+      mShowsFetchedDetail = true;
+      showMovieDetail(movieDetail);
+      // Store the details, so the next time they are shown at once and offline. A result delivered again is not stored again.
+      MovieDetailCache.storeInBackground(getContentResolver(), mMovie.getMovieId(), movieDetail, result.getReceivedMillis());
+      return true;
+    } catch (IOException | JsonDataException e) {
+      Log.e(TAG, "Parse combined Movie detail JSON error: ", e);
+      return false;
+    }
+  }
 
-      showMovieDetails(mMovie, runtime);
-    } catch (JSONException e) {
+  /**
+   * Called when NETWORK_LOADER_MOVIE_DETAIL finished in onLoadFinished().
+   * Parse the result and show in Views.
+   *
+   * @param result from onLoadFinished of {@link NetworkLoader}.
+   */
+  private void parseMovieDetail(NetworkResult result) {
+    try {
+      mRuntime = runtimeOf(MovieDetailParser.parse(result.source()));
+      showMovieDetails(mMovie, mRuntime);
+    } catch (IOException | JsonDataException e) {
       Log.e(TAG, "Parse Movie detail JSON error: ", e);
     }
   }
 
   /**
    * Called when NETWORK_LOADER_MOVIE_TRAILER finished in onLoadFinished().
-   * Parse jsonData and show in Views.
+   * Parse the result and show in Views.
    *
-   * @param jsonData from onLoadFinished of {@link NetworkLoader}.
+   * @param result from onLoadFinished of {@link NetworkLoader}.
    */
-  private void parseJsonMovieTrailer(String jsonData) {
+  private void parseMovieTrailer(NetworkResult result) {
     try {
-      JSONObject trailerData = new JSONObject(jsonData);
-      JSONArray results = trailerData.getJSONArray("results");
-
-      mDetailBinding.llMovieTrailer.removeAllViews(); // Remove all old views from llMovieTrailer before adding new ones.
-
-      for (int i = 0; i < results.length(); i++) {
-        JSONObject trailer = results.getJSONObject(i);
-        String trailerKey = trailer.getString("key");
-        String trailerName = trailer.getString("name");
-        if (i == 0) {
-          mFirstTrailerKey = trailerKey;
-        }
-        showMovieTrailer(trailerKey, trailerName);
-      }
-    } catch (JSONException e) {
+      showMovieTrailers(MovieDetailParser.parseVideos(result.source()));
+    } catch (IOException | JsonDataException e) {
       Log.e(TAG, "Parse Movie trailer JSON error: ", e);
     }
   }
 
   /**
    * Called when NETWORK_LOADER_MOVIE_REVIEW finished in onLoadFinished().
-   * Parse jsonData and show in Views.
+   * Parse the result and show in Views.
    *
-   * @param jsonData from onLoadFinished of {@link NetworkLoader}.
+   * @param result from onLoadFinished of {@link NetworkLoader}.
    */
-  private void parseJsonMovieReview(String jsonData) {
+  private void parseMovieReview(NetworkResult result) {
     try {
-      JSONObject reviewData = new JSONObject(jsonData);
-      JSONArray results = reviewData.getJSONArray("results");
-
-      for (int i = 0; i < results.length(); i++) {
-        JSONObject review = results.getJSONObject(i);
-        String content = review.getString("content");
-        String author = review.getString("author");
-        showMovieReview(content, author);
-      }
-    } catch (JSONException e) {
+      showMovieReviews(MovieDetailParser.parseReviews(result.source()));
+    } catch (IOException | JsonDataException e) {
       Log.e(TAG, "Parse Movie review JSON error: ", e);
     }
   }
 
+  /**
+   * Show runtime, trailers and reviews.
+   */
+  private void showMovieDetail(MovieDetail movieDetail) {
+    mRuntime = runtimeOf(movieDetail);
+    showMovieDetails(mMovie, mRuntime);
+    showMovieTrailers(movieDetail);
+    showMovieReviews(movieDetail);
+  }
+
+  /**
+   * @return the runtime as String or null if it is unknown.
+   */
+  private static @Nullable String runtimeOf(MovieDetail movieDetail) {
+    return movieDetail.getRuntime() > 0 ? String.valueOf(movieDetail.getRuntime()) : null;
+  }
+
+  private void showMovieTrailers(MovieDetail movieDetail) {
+    mDetailBinding.llMovieTrailer.removeAllViews(); // Remove all old views from llMovieTrailer before adding new ones.
+    List<MovieDetail.Trailer> trailers = movieDetail.getTrailers();
+    for (int i = 0; i < trailers.size(); i++) {
+      if (i == 0) {
+        mFirstTrailerKey = trailers.get(i).getKey();
+      }
+      showMovieTrailer(trailers.get(i).getKey(), trailers.get(i).getName());
+    }
+  }
+
+  private void showMovieReviews(MovieDetail movieDetail) {
+    for (MovieDetail.Review review : movieDetail.getReviews()) {
+      showMovieReview(review.getContent(), review.getAuthor());
+    }
+  }
+
   private void showMovieDetails(Movie movie, @Nullable String runtime) {
+    if (!isMovieLoaded(movie)) {
+      // Only the poster is known yet
+      showMovieImage(movie);
+      return;
+    }
     // Ttile
     mDetailBinding.tvMovieTitle.setText(movie.getTitle());
     // Year
@@ -261,6 +367,10 @@ public class MovieDetailActivity extends BaseActivity {
     // Overview
     mDetailBinding.tvMovieOverview.setText(movie.getOverview());
 
+    showMovieImage(movie);
+  }
+
+  private void showMovieImage(Movie movie) {
     // Load Movie Image
     Picasso.with(this)
         .load(NetworkUtils.buildMovieImageUri(mRequiredImageSize, movie.getImageUrl()))
@@ -309,9 +419,7 @@ public class MovieDetailActivity extends BaseActivity {
         if (uri != null) {
           // Movie successfuly added to table
           showMessage(getString(R.string.adding_movie_to_favoritelist));
-          menuItem.setIcon(R.drawable.ic_favorite_white_24dp);
-          menuItem.setTitle(R.string.action_favorite_remove);
-          menuItem.setChecked(true);
+          showFavorite(menuItem, true);
         }
       }
     };
@@ -325,9 +433,7 @@ public class MovieDetailActivity extends BaseActivity {
    * @param menuItem The MenuItem which changes on the basis of successfully remove of movie
    */
   private void removeFavoriteMovie(Movie movie, final MenuItem menuItem) {
-    Uri uri = DatabaseContract.MovieFavoriteEntry.CONTENT_URI;
-    String selection = DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID  + " = ?";
-    String[] selectionArgs = new String[] { String.valueOf(movie.getMovieId()) };
+    Uri uri = DatabaseContract.MovieFavoriteEntry.buildMovieIdUri(movie.getMovieId());
 
     // Delete a single row of data using a AsyncQueryHandler
     @SuppressLint("HandlerLeak") AsyncQueryHandler asyncQueryHandler = new AsyncQueryHandler(getContentResolver()) {
@@ -336,13 +442,11 @@ public class MovieDetailActivity extends BaseActivity {
         if (result > 0) {
           // Movie successfuly removed from table
           showMessage(getString(R.string.removing_movie_from_favoritelist));
-          menuItem.setIcon(R.drawable.ic_favorite_border_white_24dp);
-          menuItem.setTitle(R.string.action_favorite_add);
-          menuItem.setChecked(false);
+          showFavorite(menuItem, false);
         }
       }
     };
-    asyncQueryHandler.startDelete(1, null, uri, selection, selectionArgs);
+    asyncQueryHandler.startDelete(1, null, uri, null, null);
   }
 
   /**
@@ -360,95 +464,141 @@ public class MovieDetailActivity extends BaseActivity {
    * Below this point are {@link LoaderManager.LoaderCallbacks} methods
    **/
 
-  private LoaderManager.LoaderCallbacks<String> initNetworkLoaderCallback() {
-    return new LoaderManager.LoaderCallbacks<String>() {
+  private LoaderManager.LoaderCallbacks<Cursor> initCursorLoaderCallback() {
+    return new LoaderManager.LoaderCallbacks<Cursor>() {
+
+      @NonNull @Override public Loader<Cursor> onCreateLoader(int loaderId, Bundle args) {
+        switch (loaderId) {
+          case CURSOR_LOADER_MOVIE:
+            Uri movieUri = DatabaseContract.MovieStoreEntry.buildMovieUri(mMovie.getId());
+            return new CursorLoader(MovieDetailActivity.this, movieUri, null, null, null, null);
+          default:
+            throw new RuntimeException("Loader not Implemented: " + loaderId);
+        }
+      }
+
+      @Override public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
+        if (data == null) {
+          return;
+        }
+        // The Loader owns the Cursor, it is not closed here
+        MovieCursorRow movieRow = new MovieCursorRow();
+        movieRow.swapCursor(data);
+        if (movieRow.moveToPosition(0)) {
+          mMovie = movieRow.toMovie();
+          showMovieDetails(mMovie, mRuntime);
+        } else {
+          showMessage(getString(R.string.error_showing_movie_detail));
+        }
+      }
+
+      // Override onLoaderReset as it is part of the interface we implement, but don't do anything in this method
+      @Override public void onLoaderReset(@NonNull Loader<Cursor> loader) {
+      }
+    };
+  }
 
-      @NonNull @Override public Loader<String> onCreateLoader(int loaderId, Bundle args) {
+  private LoaderManager.LoaderCallbacks<MovieDetail> initCacheLoaderCallback() {
+    return new LoaderManager.LoaderCallbacks<MovieDetail>() {
+
+      @NonNull @Override public Loader<MovieDetail> onCreateLoader(int loaderId, Bundle args) {
+        switch (loaderId) {
+          case CACHE_LOADER_MOVIE_DETAIL:
+            return new MovieDetailCacheLoader(MovieDetailActivity.this, mMovie.getMovieId());
+          default:
+            throw new RuntimeException("Loader not Implemented: " + loaderId);
+        }
+      }
+
+      @Override public void onLoadFinished(@NonNull Loader<MovieDetail> loader, MovieDetail data) {
+        if (data != null && !mShowsFetchedDetail) {
+          mShowsStoredDetail = true;
+          showMovieDetail(data);
+        }
+        // Refresh missing or old details in the background, the stored ones stay until the request is done
+        if (data == null || !MovieDetailCache.isFresh(data, System.currentTimeMillis())) {
+          getSupportLoaderManager().initLoader(NETWORK_LOADER_MOVIE_DETAIL_COMBINED, null, mNetworkLoaderCallback);
+        }
+      }
+
+      // Override onLoaderReset as it is part of the interface we implement, but don't do anything in this method
+      @Override public void onLoaderReset(@NonNull Loader<MovieDetail> loader) {
+      }
+    };
+  }
+
+  private LoaderManager.LoaderCallbacks<NetworkResult> initNetworkLoaderCallback() {
+    return new LoaderManager.LoaderCallbacks<NetworkResult>() {
+
+      @NonNull @Override public Loader<NetworkResult> onCreateLoader(int loaderId, Bundle args) {
         switch (loaderId) {
           case NETWORK_LOADER_MOVIE_DETAIL:
             // Get URL for Movie details Download
             URL movieDetailUrl = NetworkUtils.buildMovieDetailUrl(mMovie.getMovieId(), mDefaultLanguage);
-            return new NetworkLoader(MovieDetailActivity.this, movieDetailUrl);
+            return new NetworkLoader(MovieDetailActivity.this, movieDetailUrl, RequestScheduler.VISIBLE_DETAIL);
           case NETWORK_LOADER_MOVIE_TRAILER:
             // Get URL for Movie trailer Download
             URL movieTrailerUrl = NetworkUtils.buildMovieTrailerUrl(mMovie.getMovieId(), mDefaultLanguage);
-            return new NetworkLoader(MovieDetailActivity.this, movieTrailerUrl);
+            return new NetworkLoader(MovieDetailActivity.this, movieTrailerUrl, RequestScheduler.VISIBLE_DETAIL);
           case NETWORK_LOADER_MOVIE_REVIEW:
             // Get URL for Movie review Download
             URL movieReviewUrl = NetworkUtils.buildMovieReviewUrl(mMovie.getMovieId(), mDefaultLanguage);
-            return new NetworkLoader(MovieDetailActivity.this, movieReviewUrl);
+            return new NetworkLoader(MovieDetailActivity.this, movieReviewUrl, RequestScheduler.VISIBLE_DETAIL);
+          case NETWORK_LOADER_MOVIE_DETAIL_COMBINED:
+            // Get URL for Movie details with appended trailer and review Download
+            URL movieDetailCombinedUrl = NetworkUtils.buildMovieDetailWithVideosAndReviewsUrl(mMovie.getMovieId(), mDefaultLanguage);
+            return new NetworkLoader(MovieDetailActivity.this, movieDetailCombinedUrl, RequestScheduler.VISIBLE_DETAIL);
           default:
             throw new RuntimeException("Loader not Implemented: " + loaderId);
         }
       }
 
-      @Override public void onLoadFinished(@NonNull Loader<String> loader, String data) {
+      @Override public void onLoadFinished(@NonNull Loader<NetworkResult> loader, NetworkResult data) {
+        if (data == null) {
+          Log.e(TAG, "Null response from Movie Loader " + loader.getId());
+          return;
+        }
+        if (loader.getId() == NETWORK_LOADER_MOVIE_DETAIL_COMBINED) {
+          switch (data.getStatus()) {
+            case NetworkResult.OFFLINE:
+              if (!mShowsStoredDetail) {
+                showErrorMessage(NetworkResult.OFFLINE);
+              }
+              break;
+            case NetworkResult.API_ERROR:
+            case NetworkResult.EMPTY:
+              // Fall back to separate requests for details, trailer and review
+              initSeparateNetworkLoaders();
+              break;
+            default:
+              if (!parseMovieDetailCombined(data)) {
+                initSeparateNetworkLoaders();
+              }
+              break;
+          }
+          return;
+        }
+        if (!data.isSuccess()) {
+          if (!mShowsStoredDetail) {
+            showErrorMessage(data.getStatus());
+          }
+          return;
+        }
         switch (loader.getId()) {
           case NETWORK_LOADER_MOVIE_DETAIL:
-            if (data == null) {
-              Log.e(TAG, "Null response from Movie Detail Loader");
-            } else {
-              switch (data) {
-                case NetworkLoader.API_ERROR:
-                  showErrorMessage(NetworkLoader.API_ERROR);
-                  break;
-                case NetworkLoader.OFFLINE:
-                  showErrorMessage(NetworkLoader.OFFLINE);
-                  break;
-                case NetworkLoader.EMPTY:
-                  showErrorMessage(NetworkLoader.EMPTY);
-                  break;
-                default:
-                  parseJsonMovieDetail(data);
-                  break;
-              }
-            }
+            parseMovieDetail(data);
             break;
           case NETWORK_LOADER_MOVIE_TRAILER:
-            if (data == null) {
-              Log.e(TAG, "Null response from Movie Trailer Loader");
-            } else {
-              switch (data) {
-                case NetworkLoader.API_ERROR:
-                  showErrorMessage(NetworkLoader.API_ERROR);
-                  break;
-                case NetworkLoader.OFFLINE:
-                  showErrorMessage(NetworkLoader.OFFLINE);
-                  break;
-                case NetworkLoader.EMPTY:
-                  showErrorMessage(NetworkLoader.EMPTY);
-                  break;
-                default:
-                  parseJsonMovieTrailer(data);
-                  break;
-              }
-            }
+            parseMovieTrailer(data);
             break;
           case NETWORK_LOADER_MOVIE_REVIEW:
-            if (data == null) {
-              Log.e(TAG, "Null response from Movie Review Loader");
-            } else {
-              switch (data) {
-                case NetworkLoader.API_ERROR:
-                  showErrorMessage(NetworkLoader.API_ERROR);
-                  break;
-                case NetworkLoader.OFFLINE:
-                  showErrorMessage(NetworkLoader.OFFLINE);
-                  break;
-                case NetworkLoader.EMPTY:
-                  showErrorMessage(NetworkLoader.EMPTY);
-                  break;
-                default:
-                  parseJsonMovieReview(data);
-                  break;
-              }
-            }
+            parseMovieReview(data);
             break;
         }
       }
 
       // Override onLoaderReset as it is part of the interface we implement, but don't do anything in this method
-      @Override public void onLoaderReset(@NonNull Loader<String> loader) {
+      @Override public void onLoaderReset(@NonNull Loader<NetworkResult> loader) {
       }
     };
   }
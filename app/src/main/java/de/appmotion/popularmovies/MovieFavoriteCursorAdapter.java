@@ -13,9 +13,9 @@ import android.support.v7.widget.helper.ItemTouchHelper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 import de.appmotion.popularmovies.data.Movie;
+import de.appmotion.popularmovies.data.MovieCursorRow;
 import de.appmotion.popularmovies.data.source.local.DatabaseContract;
 import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
 import de.appmotion.popularmovies.databinding.MovieItemBinding;
@@ -30,15 +30,15 @@ class MovieFavoriteCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
   // {@link ViewType} Type
   private static final int VIEW_TYPE_DEFAULT = 0;
   private final ListItemClickListener mOnClickListener;
-  private final @NetworkUtils.ImageSize String mRequiredImageSize;
+  private final String mRequiredImageSize;
   private final Context mContext;
-  // Holds on to the cursor to display the favorite movie list
-  private Cursor mCursor;
+  // Holds on to the cursor to display the favorite movie list, with its column indices
+  private final MovieCursorRow mMovieRow = new MovieCursorRow();
 
   // An ItemTouchHelper for swiping movie items
   private ItemTouchHelper mMovieItemTouchHelper;
 
-  MovieFavoriteCursorAdapter(Context context, @NetworkUtils.ImageSize String requiredImageSize, ListItemClickListener listener) {
+  MovieFavoriteCursorAdapter(Context context, String requiredImageSize, ListItemClickListener listener) {
     mContext = context;
     mRequiredImageSize = requiredImageSize;
     mOnClickListener = listener;
@@ -82,8 +82,8 @@ class MovieFavoriteCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
 
   // Replace the contents of a view (invoked by the layout manager)
   @Override public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-    // Move the mCursor to the position of the item to be displayed
-    if (!mCursor.moveToPosition(position)) {
+    // Move the cursor to the position of the item to be displayed
+    if (!mMovieRow.moveToPosition(position)) {
       return; // bail if returned null
     }
 
@@ -101,15 +101,12 @@ class MovieFavoriteCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
   }
 
   @Override public int getItemCount() {
-    if (mCursor == null) {
-      return 0;
-    }
-    return mCursor.getCount();
+    return mMovieRow.getCount();
   }
 
   @Override public long getItemId(int position) {
-    if (mCursor != null && mCursor.moveToPosition(position)) {
-      return mCursor.getLong(mCursor.getColumnIndexOrThrow(DatabaseContract.MovieFavoriteEntry._ID));
+    if (mMovieRow.moveToPosition(position)) {
+      return mMovieRow.getId();
     }
     return super.getItemId(position);
   }
@@ -121,7 +118,7 @@ class MovieFavoriteCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
    * @param newCursor the new cursor that will replace the existing one
    */
   public void swapCursor(Cursor newCursor) {
-    mCursor = newCursor;
+    mMovieRow.swapCursor(newCursor);
     notifyDataSetChanged();
   }
 
@@ -164,20 +161,12 @@ class MovieFavoriteCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
     }
 
     void bind() {
-      final Movie favoriteMovie = Movie.from(mCursor);
-
-      // Load Movie Image
+      // Load Movie Image, only the image url of the row is read
       Picasso.with(itemView.getContext())
-          .load(NetworkUtils.buildMovieImageUri(mRequiredImageSize, favoriteMovie.getImageUrl()))
+          .load(NetworkUtils.buildMovieImageUri(mRequiredImageSize, mMovieRow.getImageUrl()))
           .placeholder(android.R.drawable.screen_background_light_transparent)
           .error(R.drawable.movie_empty)
-          .into(mItemBinding.ivMovieImage, new Callback() {
-            @Override public void onSuccess() {
-            }
-
-            @Override public void onError() {
-            }
-          });
+          .into(mItemBinding.ivMovieImage);
     }
 
     /**
@@ -187,8 +176,10 @@ class MovieFavoriteCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
      */
     @Override public void onClick(View v) {
       int clickedPosition = getAdapterPosition();
-      mCursor.moveToPosition(clickedPosition);
-      final Movie movie = Movie.from(mCursor);
+      if (!mMovieRow.moveToPosition(clickedPosition)) {
+        return;
+      }
+      final Movie movie = mMovieRow.toMovie();
       mOnClickListener.onListItemClick(movie);
     }
   }
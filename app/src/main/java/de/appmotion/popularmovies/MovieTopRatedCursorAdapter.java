@@ -9,10 +9,9 @@ import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 import de.appmotion.popularmovies.data.Movie;
-import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.MovieCursorRow;
 import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
 import de.appmotion.popularmovies.databinding.MovieItemBinding;
 import java.lang.annotation.Retention;
@@ -26,15 +25,18 @@ class MovieTopRatedCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
   // {@link ViewType} Type
   private static final int VIEW_TYPE_DEFAULT = 0;
   private final ListItemClickListener mOnClickListener;
-  private final @NetworkUtils.ImageSize String mRequiredImageSize;
+  private final String mRequiredImageSize;
   private final Context mContext;
-  // Holds on to the cursor to display the movie list
-  private Cursor mCursor;
+  // Loads the next window of movies while the user scrolls
+  private final MovieWindowPager mWindowPager;
+  // Holds on to the cursor to display the movie list, with its column indices
+  private final MovieCursorRow mMovieRow = new MovieCursorRow();
 
-  MovieTopRatedCursorAdapter(Context context, @NetworkUtils.ImageSize String requiredImageSize, ListItemClickListener listener) {
+  MovieTopRatedCursorAdapter(Context context, String requiredImageSize, ListItemClickListener listener, MovieWindowPager windowPager) {
     mContext = context;
     mRequiredImageSize = requiredImageSize;
     mOnClickListener = listener;
+    mWindowPager = windowPager;
     setHasStableIds(true);
   }
 
@@ -63,8 +65,9 @@ class MovieTopRatedCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
 
   // Replace the contents of a view (invoked by the layout manager)
   @Override public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-    // Move the mCursor to the position of the item to be displayed
-    if (!mCursor.moveToPosition(position)) {
+    mWindowPager.onPositionBound(position);
+    // Move the cursor to the position of the item to be displayed
+    if (!mMovieRow.moveToPosition(position)) {
       return; // bail if returned null
     }
 
@@ -82,15 +85,12 @@ class MovieTopRatedCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
   }
 
   @Override public int getItemCount() {
-    if (mCursor == null) {
-      return 0;
-    }
-    return mCursor.getCount();
+    return mMovieRow.getCount();
   }
 
   @Override public long getItemId(int position) {
-    if (mCursor != null && mCursor.moveToPosition(position)) {
-      return mCursor.getLong(mCursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry._ID));
+    if (mMovieRow.moveToPosition(position)) {
+      return mMovieRow.getId();
     }
     return super.getItemId(position);
   }
@@ -102,7 +102,7 @@ class MovieTopRatedCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
    * @param newCursor the new cursor that will replace the existing one
    */
   public void swapCursor(Cursor newCursor) {
-    mCursor = newCursor;
+    mMovieRow.swapCursor(newCursor);
     notifyDataSetChanged();
   }
 
@@ -129,20 +129,18 @@ class MovieTopRatedCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
     }
 
     void bind() {
-      final Movie movie = Movie.from(mCursor);
-
-      // Load Movie Image
+      // A movie of a closed window, it is shown when its window is loaded again
+      if (mMovieRow.getId() < 0) {
+        Picasso.with(itemView.getContext()).cancelRequest(mItemBinding.ivMovieImage);
+        mItemBinding.ivMovieImage.setImageResource(android.R.drawable.screen_background_light_transparent);
+        return;
+      }
+      // Load Movie Image, only the image url of the row is read
       Picasso.with(itemView.getContext())
-          .load(NetworkUtils.buildMovieImageUri(mRequiredImageSize, movie.getImageUrl()))
+          .load(NetworkUtils.buildMovieImageUri(mRequiredImageSize, mMovieRow.getImageUrl()))
           .placeholder(android.R.drawable.screen_background_light_transparent)
           .error(R.drawable.movie_empty)
-          .into(mItemBinding.ivMovieImage, new Callback() {
-            @Override public void onSuccess() {
-            }
-
-            @Override public void onError() {
-            }
-          });
+          .into(mItemBinding.ivMovieImage);
     }
 
     /**
@@ -152,8 +150,10 @@ class MovieTopRatedCursorAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
      */
     @Override public void onClick(View v) {
       int clickedPosition = getAdapterPosition();
-      mCursor.moveToPosition(clickedPosition);
-      final Movie movie = Movie.from(mCursor);
+      if (!mMovieRow.moveToPosition(clickedPosition) || mMovieRow.getId() < 0) {
+        return;
+      }
+      final Movie movie = mMovieRow.toMovie();
       mOnClickListener.onListItemClick(movie);
     }
   }
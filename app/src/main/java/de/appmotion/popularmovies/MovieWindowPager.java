@@ -0,0 +1,571 @@
+package de.appmotion.popularmovies;
+
+import android.annotation.SuppressLint;
+import android.content.AsyncQueryHandler;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.AbstractCursor;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the popular or top rated movie list in windows of a fixed size while the user scrolls. A window is queried after
+ * the rank and movie_id of the last movie of the window before it, see
+ * {@link DatabaseContract#buildWindowUri(Uri, int, int, long)}, so every window takes the same time to query, no matter
+ * how deep the user has scrolled.
+ *
+ * Only the window of the last bound position and the windows next to it are kept open. A window which is farther away
+ * is closed, it keeps its anchor and number of movies and is shown as placeholder rows with a negative _ID until it is
+ * bound again. The windows are handed to the {@link Listener} as one {@link MergeCursor}.
+ *
+ * A change of the list queries only the open windows again, a change of a single movie, which is notified with its row
+ * URI, only the window the movie is in. If a window does not end with the movie the next window starts after anymore,
+ * the windows after it are dropped and loaded again while scrolling.
+ */
+class MovieWindowPager {
+
+  // Windows before and after the window of the last bound position which are kept open, the others are closed
+  private static final int OPEN_WINDOW_RADIUS = 1;
+
+  // Query tokens of the {@link AsyncQueryHandler}
+  private static final int TOKEN_NEXT_WINDOW = 1;
+  private static final int TOKEN_WINDOW = 2;
+
+  // Keys of the saved windows, see saveState()
+  private static final String STATE_AFTER_RANKS = "after_ranks";
+  private static final String STATE_AFTER_MOVIE_IDS = "after_movie_ids";
+  private static final String STATE_LAST_RANKS = "last_ranks";
+  private static final String STATE_LAST_MOVIE_IDS = "last_movie_ids";
+  private static final String STATE_COUNTS = "counts";
+
+  private final Uri mContentUri;
+  private final int mWindowSize;
+  private final Listener mListener;
+  private final ContentResolver mContentResolver;
+  private final AsyncQueryHandler mQueryHandler;
+  private final ContentObserver mContentObserver;
+  // The windows in the order of the list, open or closed
+  private final List<Window> mWindows = new ArrayList<>();
+  // Number of movies in all windows
+  private int mCount;
+  // The last bound position, the windows next to it are kept open
+  private int mPosition;
+  // The window which is queried after the last window, null if none
+  private Window mNextWindow;
+  private boolean mEndReached;
+  private boolean mStarted;
+
+  /**
+   * @param contentResolver the resolver.
+   * @param contentUri content URI of the popular or top rated movie directory.
+   * @param windowSize number of movies per window.
+   * @param listener receives the loaded movies.
+   */
+  @SuppressLint("HandlerLeak") MovieWindowPager(ContentResolver contentResolver, Uri contentUri, int windowSize,
+      Listener listener) {
+    mContentResolver = contentResolver;
+    mContentUri = contentUri;
+    mWindowSize = windowSize;
+    mListener = listener;
+    mQueryHandler = new AsyncQueryHandler(contentResolver) {
+      @Override protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+        if (token == TOKEN_NEXT_WINDOW) {
+          onNextWindowLoaded((Window) cookie, cursor);
+        } else {
+          onWindowLoaded((Window) cookie, cursor);
+        }
+      }
+    };
+    mContentObserver = new ContentObserver(new Handler()) {
+      @Override public void onChange(boolean selfChange) {
+        onListChanged(null);
+      }
+
+      @Override public void onChange(boolean selfChange, Uri uri) {
+        onListChanged(uri);
+      }
+    };
+  }
+
+  /**
+   * Load the first window, or show the saved windows, and observe changes of the list. The saved windows are loaded
+   * when they are bound, so the list keeps its length and scroll position after a configuration change.
+   *
+   * @param savedState the windows saved by {@link #saveState()}, or null.
+   */
+  void start(@Nullable Bundle savedState) {
+    if (mStarted) {
+      return;
+    }
+    mStarted = true;
+    mContentResolver.registerContentObserver(mContentUri, true, mContentObserver);
+    mEndReached = false;
+    mPosition = 0;
+    restoreWindows(savedState);
+    if (mWindows.isEmpty()) {
+      loadNextWindow();
+    } else {
+      deliverWindows(new ArrayList<Cursor>());
+    }
+  }
+
+  /**
+   * Close all windows and stop observing the list.
+   */
+  void stop() {
+    if (!mStarted) {
+      return;
+    }
+    mStarted = false;
+    mQueryHandler.cancelOperation(TOKEN_NEXT_WINDOW);
+    mQueryHandler.cancelOperation(TOKEN_WINDOW);
+    mContentResolver.unregisterContentObserver(mContentObserver);
+    mListener.onMoviesChanged(null);
+    for (Window window : mWindows) {
+      if (window.mCursor != null) {
+        window.mCursor.close();
+      }
+    }
+    mWindows.clear();
+    mNextWindow = null;
+    mCount = 0;
+  }
+
+  /**
+   * @return the anchors and sizes of the windows, for {@link #start(Bundle)}.
+   */
+  Bundle saveState() {
+    final int size = mWindows.size();
+    int[] afterRanks = new int[size];
+    long[] afterMovieIds = new long[size];
+    int[] lastRanks = new int[size];
+    long[] lastMovieIds = new long[size];
+    int[] counts = new int[size];
+    for (int i = 0; i < size; i++) {
+      Window window = mWindows.get(i);
+      afterRanks[i] = window.mAfterRank;
+      afterMovieIds[i] = window.mAfterMovieId;
+      lastRanks[i] = window.mLastRank;
+      lastMovieIds[i] = window.mLastMovieId;
+      counts[i] = window.mCount;
+    }
+    Bundle state = new Bundle();
+    state.putIntArray(STATE_AFTER_RANKS, afterRanks);
+    state.putLongArray(STATE_AFTER_MOVIE_IDS, afterMovieIds);
+    state.putIntArray(STATE_LAST_RANKS, lastRanks);
+    state.putLongArray(STATE_LAST_MOVIE_IDS, lastMovieIds);
+    state.putIntArray(STATE_COUNTS, counts);
+    return state;
+  }
+
+  private void restoreWindows(@Nullable Bundle savedState) {
+    if (savedState == null) {
+      return;
+    }
+    int[] afterRanks = savedState.getIntArray(STATE_AFTER_RANKS);
+    long[] afterMovieIds = savedState.getLongArray(STATE_AFTER_MOVIE_IDS);
+    int[] lastRanks = savedState.getIntArray(STATE_LAST_RANKS);
+    long[] lastMovieIds = savedState.getLongArray(STATE_LAST_MOVIE_IDS);
+    int[] counts = savedState.getIntArray(STATE_COUNTS);
+    if (afterRanks == null || afterMovieIds == null || lastRanks == null || lastMovieIds == null || counts == null) {
+      return;
+    }
+    int count = 0;
+    for (int i = 0; i < counts.length; i++) {
+      count += counts[i];
+    }
+    // An empty list is loaded again, it has no window to show
+    if (count == 0) {
+      return;
+    }
+    for (int i = 0; i < counts.length; i++) {
+      Window window = new Window(i > 0, afterRanks[i], afterMovieIds[i]);
+      window.mCount = counts[i];
+      window.mLastRank = lastRanks[i];
+      window.mLastMovieId = lastMovieIds[i];
+      mWindows.add(window);
+    }
+  }
+
+  /**
+   * Called by the adapter when it binds a movie. The window of the movie is opened, and the next or previous window when
+   * the movie is in its last or first half. The next window of the list is loaded when the movie is in the last half of
+   * the last window.
+   *
+   * @param position position of the movie in the list.
+   */
+  void onPositionBound(int position) {
+    if (!mStarted) {
+      return;
+    }
+    mPosition = position;
+    int index = windowIndexOf(position);
+    if (index != -1) {
+      openWindow(index);
+      int start = startOf(index);
+      openWindow(position - start >= mWindows.get(index).mCount / 2 ? index + 1 : index - 1);
+    }
+    if (mNextWindow == null && !mEndReached && position >= mCount - mWindowSize / 2) {
+      loadNextWindow();
+    }
+  }
+
+  /**
+   * @return number of movies in all windows.
+   */
+  int getCount() {
+    return mCount;
+  }
+
+  /**
+   * @return the index of the window of the position, or -1.
+   */
+  private int windowIndexOf(int position) {
+    int start = 0;
+    for (int i = 0; i < mWindows.size(); i++) {
+      start += mWindows.get(i).mCount;
+      if (position < start) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int startOf(int index) {
+    int start = 0;
+    for (int i = 0; i < index; i++) {
+      start += mWindows.get(i).mCount;
+    }
+    return start;
+  }
+
+  private void openWindow(int index) {
+    if (index < 0 || index >= mWindows.size()) {
+      return;
+    }
+    Window window = mWindows.get(index);
+    if (window.mCursor == null) {
+      queryWindow(window);
+    }
+  }
+
+  /**
+   * Query a window again. A window which is queried already is queried once more when its result arrives.
+   */
+  private void queryWindow(Window window) {
+    if (window.mLoading) {
+      window.mQueryPending = true;
+      return;
+    }
+    window.mLoading = true;
+    // The last window may grow, the others must keep their size to end where the next window starts
+    boolean last = mWindows.indexOf(window) == mWindows.size() - 1;
+    int limit = last ? mWindowSize : Math.max(window.mCount, 1);
+    mQueryHandler.startQuery(TOKEN_WINDOW, window, window.getUri(mContentUri, limit), DatabaseContract.MovieEntry.GRID_PROJECTION,
+        null, null, null);
+  }
+
+  /**
+   * Query the window after the last window.
+   */
+  private void loadNextWindow() {
+    Window last = mWindows.isEmpty() ? null : mWindows.get(mWindows.size() - 1);
+    mNextWindow = last == null ? new Window(false, 0, 0) : new Window(true, last.mLastRank, last.mLastMovieId);
+    mQueryHandler.startQuery(TOKEN_NEXT_WINDOW, mNextWindow, mNextWindow.getUri(mContentUri, mWindowSize),
+        DatabaseContract.MovieEntry.GRID_PROJECTION, null, null, null);
+  }
+
+  /**
+   * @param uri the changed list, or the row URI of a changed movie of the list.
+   */
+  private void onListChanged(Uri uri) {
+    if (uri != null && uri.getPathSegments().size() == mContentUri.getPathSegments().size() + 1) {
+      // Only the content of the movie changed, it keeps its position in the list
+      long id = ContentUris.parseId(uri);
+      for (Window window : mWindows) {
+        if (window.mCursor != null && window.contains(id)) {
+          queryWindow(window);
+          return;
+        }
+      }
+      // The movie is not open, a closed window is queried again when it is opened
+      return;
+    }
+
+    // The open windows are queried again, movies may have been added after the last window
+    mEndReached = false;
+    for (Window window : mWindows) {
+      if (window.mCursor != null) {
+        queryWindow(window);
+      }
+    }
+    if (mWindows.isEmpty() && mNextWindow == null) {
+      loadNextWindow();
+    }
+  }
+
+  private void onNextWindowLoaded(Window window, Cursor cursor) {
+    if (!mStarted || window != mNextWindow) {
+      if (cursor != null) {
+        cursor.close();
+      }
+      return;
+    }
+    mNextWindow = null;
+    if (cursor == null) {
+      return;
+    }
+    Window last = mWindows.isEmpty() ? null : mWindows.get(mWindows.size() - 1);
+    if (last != null && !window.follows(last)) {
+      // The last window changed while the query ran
+      cursor.close();
+      return;
+    }
+    mEndReached = cursor.getCount() < mWindowSize;
+    // An empty list keeps an empty first window, so the listener gets its columns
+    if (cursor.getCount() == 0 && last != null) {
+      cursor.close();
+      return;
+    }
+    window.setCursor(cursor);
+    mWindows.add(window);
+    deliverWindows(new ArrayList<Cursor>());
+  }
+
+  /**
+   * A window was opened or queried again, because the list or a movie in it changed.
+   */
+  private void onWindowLoaded(Window window, Cursor cursor) {
+    int index = mWindows.indexOf(window);
+    if (!mStarted || index == -1) {
+      // Stopped, or dropped
+      if (cursor != null) {
+        cursor.close();
+      }
+      return;
+    }
+    window.mLoading = false;
+    if (window.mQueryPending) {
+      // Changed while the query ran
+      window.mQueryPending = false;
+      if (cursor != null) {
+        cursor.close();
+      }
+      queryWindow(window);
+      return;
+    }
+    if (cursor == null) {
+      return;
+    }
+
+    final List<Cursor> closedCursors = new ArrayList<>();
+    final int lastRank = window.mLastRank;
+    final long lastMovieId = window.mLastMovieId;
+    final int count = window.mCount;
+    if (window.mCursor != null) {
+      closedCursors.add(window.mCursor);
+    }
+    window.setCursor(cursor);
+
+    boolean last = index == mWindows.size() - 1;
+    if (!last && (window.mCount != count || window.mLastRank != lastRank || window.mLastMovieId != lastMovieId)) {
+      // Movies moved in between, the windows after it do not start after its last movie anymore
+      while (mWindows.size() > index + 1) {
+        Window dropped = mWindows.remove(mWindows.size() - 1);
+        if (dropped.mCursor != null) {
+          closedCursors.add(dropped.mCursor);
+        }
+      }
+      mNextWindow = null;
+      mEndReached = false;
+      last = true;
+    }
+    if (last) {
+      mEndReached = window.mCount < mWindowSize;
+    }
+    if (window.mCount == 0 && index > 0) {
+      mWindows.remove(index);
+      closedCursors.add(window.mCursor);
+    }
+    deliverWindows(closedCursors);
+  }
+
+  /**
+   * Close the windows which are far from the last bound position, and hand all windows to the listener. The closed
+   * windows are shown as placeholder rows, consecutive ones as one Cursor.
+   *
+   * @param closedCursors cursors which are closed after the listener has got the new cursor.
+   */
+  private void deliverWindows(List<Cursor> closedCursors) {
+    int current = windowIndexOf(mPosition);
+    if (current == -1) {
+      current = mWindows.size() - 1;
+    }
+    for (int i = 0; i < mWindows.size(); i++) {
+      Window window = mWindows.get(i);
+      if (window.mCursor != null && Math.abs(i - current) > OPEN_WINDOW_RADIUS) {
+        closedCursors.add(window.mCursor);
+        window.mCursor = null;
+      }
+    }
+
+    List<Cursor> cursors = new ArrayList<>();
+    mCount = 0;
+    int placeholders = 0;
+    for (Window window : mWindows) {
+      if (window.mCursor == null) {
+        placeholders += window.mCount;
+      } else {
+        if (placeholders > 0) {
+          cursors.add(new PlaceholderCursor(mCount - placeholders, placeholders));
+          placeholders = 0;
+        }
+        cursors.add(window.mCursor);
+      }
+      mCount += window.mCount;
+    }
+    if (placeholders > 0) {
+      cursors.add(new PlaceholderCursor(mCount - placeholders, placeholders));
+    }
+    mListener.onMoviesChanged(new MergeCursor(cursors.toArray(new Cursor[cursors.size()])));
+    for (Cursor cursor : closedCursors) {
+      cursor.close();
+    }
+  }
+
+  /**
+   * A window of the list: the anchor it starts after, its last movie and its number of movies. Its cursor is null while
+   * it is closed.
+   */
+  private static class Window {
+    // Anchor of the query, the first window has none
+    private final boolean mAnchored;
+    private final int mAfterRank;
+    private final long mAfterMovieId;
+    private int mLastRank;
+    private long mLastMovieId;
+    private int mCount;
+    private Cursor mCursor;
+    private boolean mLoading;
+    private boolean mQueryPending;
+
+    Window(boolean anchored, int afterRank, long afterMovieId) {
+      mAnchored = anchored;
+      mAfterRank = afterRank;
+      mAfterMovieId = afterMovieId;
+      mLastRank = afterRank;
+      mLastMovieId = afterMovieId;
+    }
+
+    /**
+     * Open the window with a new cursor and take its last movie and number of movies.
+     */
+    void setCursor(Cursor cursor) {
+      mCursor = cursor;
+      mCount = cursor.getCount();
+      if (cursor.moveToLast()) {
+        mLastRank = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK));
+        mLastMovieId = cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID));
+      } else {
+        mLastRank = mAfterRank;
+        mLastMovieId = mAfterMovieId;
+      }
+    }
+
+    /**
+     * @return true if this window starts after the last movie of the window.
+     */
+    boolean follows(Window window) {
+      return mAnchored && mAfterRank == window.mLastRank && mAfterMovieId == window.mLastMovieId;
+    }
+
+    Uri getUri(Uri contentUri, int limit) {
+      return mAnchored ? DatabaseContract.buildWindowUri(contentUri, limit, mAfterRank, mAfterMovieId)
+          : DatabaseContract.buildWindowUri(contentUri, limit);
+    }
+
+    boolean contains(long id) {
+      int idIndex = mCursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry._ID);
+      // The cursor is moved by the MergeCursor before every read, so its position does not have to be kept
+      for (int position = 0; mCursor.moveToPosition(position); position++) {
+        if (mCursor.getLong(idIndex) == id) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * The rows of closed windows, with the columns of {@link DatabaseContract.MovieEntry#GRID_PROJECTION}. A row has the
+   * negative _ID -(position + 1) and no other values, it holds no memory per row.
+   */
+  private static class PlaceholderCursor extends AbstractCursor {
+    private final int mStart;
+    private final int mCount;
+
+    PlaceholderCursor(int start, int count) {
+      mStart = start;
+      mCount = count;
+    }
+
+    private boolean isId(int column) {
+      return DatabaseContract.MovieEntry._ID.equals(DatabaseContract.MovieEntry.GRID_PROJECTION[column]);
+    }
+
+    @Override public int getCount() {
+      return mCount;
+    }
+
+    @Override public String[] getColumnNames() {
+      return DatabaseContract.MovieEntry.GRID_PROJECTION;
+    }
+
+    @Override public String getString(int column) {
+      return isId(column) ? String.valueOf(getLong(column)) : null;
+    }
+
+    @Override public short getShort(int column) {
+      return (short) getLong(column);
+    }
+
+    @Override public int getInt(int column) {
+      return (int) getLong(column);
+    }
+
+    @Override public long getLong(int column) {
+      return isId(column) ? -(mStart + getPosition() + 1) : 0;
+    }
+
+    @Override public float getFloat(int column) {
+      return getLong(column);
+    }
+
+    @Override public double getDouble(int column) {
+      return getLong(column);
+    }
+
+    @Override public boolean isNull(int column) {
+      return !isId(column);
+    }
+  }
+
+  /**
+   * Receives the movies of all windows.
+   */
+  interface Listener {
+    /**
+     * @param cursor the movies of all windows in the order of the list, closed windows as placeholder rows with a
+     * negative _ID, or null if the windows are closed.
+     */
+    void onMoviesChanged(Cursor cursor);
+  }
+}
@@ -0,0 +1,95 @@
+package de.appmotion.popularmovies.data;
+
+import android.database.Cursor;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+
+/**
+ * Reads the movie at the current position of a list Cursor. The column indices are resolved once per Cursor in
+ * {@link #swapCursor(Cursor)}, so binding a row is a few Cursor reads and allocates nothing. Use {@link #toMovie()} only
+ * where a whole {@link Movie} is needed, e.g. on a click.
+ */
+public final class MovieCursorRow {
+
+  private Cursor mCursor;
+  private int mIdIndex;
+  private int mMovieIdIndex;
+  private int mImageUrlIndex;
+  // The columns of the detail screen are optional, -1 if the Cursor does not have them
+  private int mTitleIndex;
+  private int mPopularityIndex;
+  private int mVoteAverageIndex;
+  private int mReleaseDateIndex;
+  private int mOverviewIndex;
+
+  /**
+   * @param cursor the new Cursor, may be null.
+   * @throws IllegalArgumentException if the Cursor does not have the _id, movie id or image url column.
+   */
+  public void swapCursor(Cursor cursor) {
+    mCursor = cursor;
+    if (cursor == null) {
+      return;
+    }
+    mIdIndex = cursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry._ID);
+    mMovieIdIndex = cursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID);
+    mImageUrlIndex = cursor.getColumnIndexOrThrow(DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL);
+    mTitleIndex = cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE);
+    mPopularityIndex = cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY);
+    mVoteAverageIndex = cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE);
+    mReleaseDateIndex = cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE);
+    mOverviewIndex = cursor.getColumnIndex(DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW);
+  }
+
+  public Cursor getCursor() {
+    return mCursor;
+  }
+
+  public int getCount() {
+    return mCursor == null ? 0 : mCursor.getCount();
+  }
+
+  /**
+   * @return false if there is no Cursor or no row at the position.
+   */
+  public boolean moveToPosition(int position) {
+    return mCursor != null && mCursor.moveToPosition(position);
+  }
+
+  public long getId() {
+    return mCursor.getLong(mIdIndex);
+  }
+
+  public long getMovieId() {
+    return mCursor.getLong(mMovieIdIndex);
+  }
+
+  public String getImageUrl() {
+    return mCursor.getString(mImageUrlIndex);
+  }
+
+  /**
+   * @return a new Movie with all columns of the current row which the Cursor has.
+   */
+  public Movie toMovie() {
+    final Movie movie = new Movie();
+    movie.setId(getId());
+    movie.setMovieId(getMovieId());
+    movie.setImageUrl(getImageUrl());
+    if (mTitleIndex != -1) {
+      movie.setTitle(mCursor.getString(mTitleIndex));
+    }
+    if (mPopularityIndex != -1) {
+      movie.setPopularity(mCursor.getDouble(mPopularityIndex));
+    }
+    if (mVoteAverageIndex != -1) {
+      movie.setVoteAverage(mCursor.getDouble(mVoteAverageIndex));
+    }
+    if (mReleaseDateIndex != -1) {
+      movie.setReleaseDate(mCursor.getString(mReleaseDateIndex));
+    }
+    if (mOverviewIndex != -1) {
+      movie.setOverview(mCursor.getString(mOverviewIndex));
+    }
+    return movie;
+  }
+}
@@ -0,0 +1,92 @@
+package de.appmotion.popularmovies.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model class for the details of a Movie which are not part of a movie list: runtime, trailers and reviews.
+ */
+public final class MovieDetail {
+
+  private long mMovieId;
+  // Runtime in minutes, 0 if unknown
+  private int mRuntime;
+  // When the details were fetched from themoviedb.org, in milliseconds since the epoch, 0 if they were not stored
+  private long mFetchedMillis;
+  private final List<Trailer> mTrailers = new ArrayList<>();
+  private final List<Review> mReviews = new ArrayList<>();
+
+  public long getMovieId() {
+    return mMovieId;
+  }
+
+  public void setMovieId(long movieId) {
+    mMovieId = movieId;
+  }
+
+  public int getRuntime() {
+    return mRuntime;
+  }
+
+  public void setRuntime(int runtime) {
+    mRuntime = runtime;
+  }
+
+  public long getFetchedMillis() {
+    return mFetchedMillis;
+  }
+
+  public void setFetchedMillis(long fetchedMillis) {
+    mFetchedMillis = fetchedMillis;
+  }
+
+  public List<Trailer> getTrailers() {
+    return mTrailers;
+  }
+
+  public List<Review> getReviews() {
+    return mReviews;
+  }
+
+  /**
+   * A trailer video on Youtube.
+   */
+  public static final class Trailer {
+    private final String mKey;
+    private final String mName;
+
+    public Trailer(String key, String name) {
+      mKey = key;
+      mName = name;
+    }
+
+    public String getKey() {
+      return mKey;
+    }
+
+    public String getName() {
+      return mName;
+    }
+  }
+
+  /**
+   * A review written by a user.
+   */
+  public static final class Review {
+    private final String mAuthor;
+    private final String mContent;
+
+    public Review(String author, String content) {
+      mAuthor = author;
+      mContent = content;
+    }
+
+    public String getAuthor() {
+      return mAuthor;
+    }
+
+    public String getContent() {
+      return mContent;
+    }
+  }
+}
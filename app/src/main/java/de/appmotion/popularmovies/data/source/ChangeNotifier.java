@@ -0,0 +1,231 @@
+package de.appmotion.popularmovies.data.source;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import de.appmotion.popularmovies.data.source.local.FavoriteMovieIds;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the changes of the writes of {@link MovieContentProvider} and notifies the {@link ContentResolver} once at the
+ * end of a scope, so a burst of writes reloads an observer once.
+ *
+ * <ul>
+ * <li>a changed movie is notified with its row URI, the content URI of its list with the _ID appended. The observers of
+ * the list get it too, and may requery only that movie.</li>
+ * <li>a changed list is notified with its content URI. It covers the rows of the list, they are not notified.</li>
+ * <li>a list with more than {@link #MAX_ROWS_PER_LIST} changed rows is notified as a whole.</li>
+ * </ul>
+ *
+ * A scope is per thread and may be nested, the changes are notified when the outermost scope ends. A change outside of a
+ * scope is notified immediately. It is thread-safe.
+ *
+ * The changed URIs invalidate the results of the {@link QueryCache} first, so an observer which requeries gets the
+ * changed data. As the outermost scope ends after the transaction of the writes, no result read before the commit stays.
+ *
+ * The movies added to or removed from the favorite list are applied to the {@link FavoriteMovieIds} at the end of the
+ * outermost scope too, so a nested write whose outer transaction is rolled back does not change them, see
+ * {@link #discardFavoriteChanges()}.
+ */
+class ChangeNotifier {
+
+  // A list with more changed rows is notified with its content URI, its observers reload it anyway
+  static final int MAX_ROWS_PER_LIST = 10;
+
+  private final ContentResolver mContentResolver;
+  private final QueryCache mQueryCache;
+  private final FavoriteMovieIds mFavoriteMovieIds;
+  private final ThreadLocal<Scope> mScope = new ThreadLocal<Scope>() {
+    @Override protected Scope initialValue() {
+      return new Scope();
+    }
+  };
+
+  ChangeNotifier(ContentResolver contentResolver) {
+    this(contentResolver, null, null);
+  }
+
+  /**
+   * @param queryCache the cache to invalidate, or null.
+   * @param favoriteMovieIds the favorites to keep in sync, or null.
+   */
+  ChangeNotifier(ContentResolver contentResolver, @Nullable QueryCache queryCache, @Nullable FavoriteMovieIds favoriteMovieIds) {
+    mContentResolver = contentResolver;
+    mQueryCache = queryCache;
+    mFavoriteMovieIds = favoriteMovieIds;
+  }
+
+  /**
+   * Start a scope, it ends with {@link #endScope()} in a finally block.
+   */
+  void beginScope() {
+    mScope.get().mDepth++;
+  }
+
+  /**
+   * End a scope. If it is the outermost scope of the thread, its changes are notified.
+   */
+  void endScope() {
+    Scope scope = mScope.get();
+    if (scope.mDepth == 0) {
+      throw new IllegalStateException("No scope to end");
+    }
+    scope.mDepth--;
+    if (scope.mDepth == 0) {
+      dispatch(scope);
+    }
+  }
+
+  /**
+   * @param contentUri content URI of the list.
+   * @param id the _ID of the changed movie in the list.
+   */
+  void rowChanged(Uri contentUri, long id) {
+    Scope scope = mScope.get();
+    Set<Long> ids = scope.mRows.get(contentUri);
+    if (ids == null) {
+      ids = new LinkedHashSet<>();
+      scope.mRows.put(contentUri, ids);
+    }
+    ids.add(id);
+    if (scope.mDepth == 0) {
+      dispatch(scope);
+    }
+  }
+
+  /**
+   * @param contentUri content URI of the changed list.
+   */
+  void listChanged(Uri contentUri) {
+    Scope scope = mScope.get();
+    scope.mLists.add(contentUri);
+    if (scope.mDepth == 0) {
+      dispatch(scope);
+    }
+  }
+
+  /**
+   * The data of the URI changed without a notification, e.g. deleted details of a movie which was removed with its row.
+   * Only the results of the {@link QueryCache} are invalidated.
+   *
+   * @param contentUri the changed URI.
+   */
+  void dataChanged(Uri contentUri) {
+    Scope scope = mScope.get();
+    scope.mData.add(contentUri);
+    if (scope.mDepth == 0) {
+      dispatch(scope);
+    }
+  }
+
+  /**
+   * @param movieIds the movies which were added to the favorite list.
+   */
+  void favoritesAdded(long[] movieIds) {
+    Scope scope = mScope.get();
+    for (long movieId : movieIds) {
+      scope.mFavoritesRemoved.remove(movieId);
+      scope.mFavoritesAdded.add(movieId);
+    }
+    if (scope.mDepth == 0) {
+      dispatch(scope);
+    }
+  }
+
+  /**
+   * @param movieIds the movies which were removed from the favorite list.
+   */
+  void favoritesRemoved(long[] movieIds) {
+    Scope scope = mScope.get();
+    for (long movieId : movieIds) {
+      scope.mFavoritesAdded.remove(movieId);
+      scope.mFavoritesRemoved.add(movieId);
+    }
+    if (scope.mDepth == 0) {
+      dispatch(scope);
+    }
+  }
+
+  /**
+   * Drop the favorite changes of the scope, because its transaction was rolled back. The caller loads the favorites
+   * again, a transaction which yielded has committed a part of them.
+   */
+  void discardFavoriteChanges() {
+    Scope scope = mScope.get();
+    scope.mFavoritesAdded.clear();
+    scope.mFavoritesRemoved.clear();
+  }
+
+  /**
+   * Coalesce the changes of a scope to URIs. The lists come first, then the rows of the other lists.
+   *
+   * @return the URIs to notify.
+   */
+  private static List<Uri> coalesce(Set<Uri> lists, Map<Uri, Set<Long>> rows) {
+    List<Uri> uris = new ArrayList<>(lists);
+    for (Map.Entry<Uri, Set<Long>> entry : rows.entrySet()) {
+      if (lists.contains(entry.getKey())) {
+        continue;
+      }
+      if (entry.getValue().size() > MAX_ROWS_PER_LIST) {
+        uris.add(entry.getKey());
+        continue;
+      }
+      for (long id : entry.getValue()) {
+        uris.add(ContentUris.withAppendedId(entry.getKey(), id));
+      }
+    }
+    return uris;
+  }
+
+  private void dispatch(Scope scope) {
+    if (mFavoriteMovieIds != null) {
+      mFavoriteMovieIds.removed(toArray(scope.mFavoritesRemoved));
+      mFavoriteMovieIds.added(toArray(scope.mFavoritesAdded));
+    }
+    scope.mFavoritesRemoved.clear();
+    scope.mFavoritesAdded.clear();
+    List<Uri> uris = coalesce(scope.mLists, scope.mRows);
+    scope.mLists.clear();
+    scope.mRows.clear();
+    if (mQueryCache != null) {
+      for (Uri uri : uris) {
+        mQueryCache.invalidate(uri.toString());
+      }
+      for (Uri uri : scope.mData) {
+        mQueryCache.invalidate(uri.toString());
+      }
+    }
+    scope.mData.clear();
+    for (Uri uri : uris) {
+      mContentResolver.notifyChange(uri, null);
+    }
+  }
+
+  private static long[] toArray(Set<Long> values) {
+    long[] array = new long[values.size()];
+    int i = 0;
+    for (long value : values) {
+      array[i++] = value;
+    }
+    return array;
+  }
+
+  /**
+   * The changes of a thread, which are not notified yet.
+   */
+  private static class Scope {
+    private final Set<Uri> mLists = new LinkedHashSet<>();
+    private final Map<Uri, Set<Long>> mRows = new LinkedHashMap<>();
+    private final Set<Uri> mData = new LinkedHashSet<>();
+    private final Set<Long> mFavoritesAdded = new LinkedHashSet<>();
+    private final Set<Long> mFavoritesRemoved = new LinkedHashSet<>();
+    private int mDepth;
+  }
+}
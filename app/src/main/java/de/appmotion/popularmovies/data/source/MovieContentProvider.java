@@ -1,16 +1,27 @@
 package de.appmotion.popularmovies.data.source;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import de.appmotion.popularmovies.BuildConfig;
 import de.appmotion.popularmovies.data.source.local.DatabaseContract;
 import de.appmotion.popularmovies.data.source.local.DatabaseHelper;
+import de.appmotion.popularmovies.data.source.local.MovieDeltaWriter;
+import de.appmotion.popularmovies.data.source.local.MovieListRetention;
+import de.appmotion.popularmovies.data.source.local.MovieRows;
+import de.appmotion.popularmovies.data.source.local.MovieSearch;
+import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import java.util.ArrayList;
 
 public class MovieContentProvider extends ContentProvider {
 
@@ -20,10 +31,20 @@ public class MovieContentProvider extends ContentProvider {
   public static final int CODE_MOVIE_TOP_RATED = 200;
   public static final int CODE_MOVIE_FAVORITE = 300;
   public static final int CODE_MOVIE_FAVORITE_WITH_ID = 301;
+  public static final int CODE_MOVIE_FAVORITE_WITH_MOVIE_ID = 302;
+  public static final int CODE_MOVIE_SEARCH = 400;
+  public static final int CODE_MOVIE_WITH_ID = 500;
+  public static final int CODE_MOVIE_DETAIL_WITH_MOVIE_ID = 600;
+  public static final int CODE_MOVIE_VIDEO_WITH_MOVIE_ID = 700;
+  public static final int CODE_MOVIE_REVIEW_WITH_MOVIE_ID = 800;
 
   private static final UriMatcher sUriMatcher = buildUriMatcher();
   // Member variable for a DatabaseHelper that's initialized in the onCreate() method
   private DatabaseHelper mDbHelper;
+  // Notifies the changes of a write once it is done
+  private ChangeNotifier mChangeNotifier;
+  // Caches the query results, null if it is disabled
+  private QueryCache mQueryCache;
 
   /**
    * Creates the UriMatcher that will match each URI to the CODE_FAVORITE_MOVIE and
@@ -50,6 +71,14 @@ public class MovieContentProvider extends ContentProvider {
     uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE_FAVORITE, CODE_MOVIE_FAVORITE);
     // The "/#" signifies to the UriMatcher that if PATH_FAVORITE_MOVIE is followed by ANY number, that it should return the CODE_FAVORITE_MOVIE_WITH_ID code
     uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE_FAVORITE + "/#", CODE_MOVIE_FAVORITE_WITH_ID);
+    uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE_FAVORITE + "/" + DatabaseContract.PATH_MOVIE_ID + "/#",
+        CODE_MOVIE_FAVORITE_WITH_MOVIE_ID);
+    uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE_SEARCH, CODE_MOVIE_SEARCH);
+    uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE + "/#", CODE_MOVIE_WITH_ID);
+    // The details, videos and reviews of a movie by its TMDB movie id
+    uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE_DETAIL + "/#", CODE_MOVIE_DETAIL_WITH_MOVIE_ID);
+    uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE_VIDEO + "/#", CODE_MOVIE_VIDEO_WITH_MOVIE_ID);
+    uriMatcher.addURI(DatabaseContract.AUTHORITY, DatabaseContract.PATH_MOVIE_REVIEW + "/#", CODE_MOVIE_REVIEW_WITH_MOVIE_ID);
 
     return uriMatcher;
   }
@@ -76,21 +105,87 @@ public class MovieContentProvider extends ContentProvider {
      * very lightweight, we are safe to perform that initialization here.
      */
     mDbHelper = DatabaseHelper.getInstance(getContext());
+    // A maximum size of 0 disables the cache
+    if (BuildConfig.QUERY_CACHE_MAX_BYTES > 0) {
+      mQueryCache = new QueryCache(BuildConfig.QUERY_CACHE_MAX_BYTES);
+    }
+    mChangeNotifier = new ChangeNotifier(getContext().getContentResolver(), mQueryCache, mDbHelper.getFavoriteMovieIds());
     return true;
   }
 
   /**
-   * Handle requests for data by URI
+   * Handle requests for data by URI. The results are served from the {@link QueryCache} if it is enabled, except the
+   * results of a search.
    */
   @Nullable @Override public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
       @Nullable String[] selectionArgs, @Nullable String sortOrder) {
-    // Get access to underlying database (read-only for query)
-    final SQLiteDatabase db = mDbHelper.getReadableDatabase();
-
     // Write URI matching code and set a variable to return a Cursor
     int match = sUriMatcher.match(uri);
     Cursor returnCursor;
 
+    if (mQueryCache == null || match == CODE_MOVIE_SEARCH) {
+      returnCursor = queryDatabase(uri, match, projection, selection, selectionArgs, sortOrder);
+    } else {
+      final String key = QueryCache.key(uri.toString(), projection, selection, selectionArgs, sortOrder);
+      QueryCache.Snapshot snapshot = mQueryCache.get(key);
+      if (snapshot == null) {
+        final long generation = mQueryCache.getGeneration();
+        returnCursor = queryDatabase(uri, match, projection, selection, selectionArgs, sortOrder);
+        if (returnCursor.getCount() <= QueryCache.MAX_ROWS) {
+          snapshot = SnapshotCursor.snapshot(returnCursor);
+          mQueryCache.put(key, tagsOf(uri, match), snapshot, generation);
+          returnCursor = new SnapshotCursor(snapshot);
+        }
+      } else {
+        returnCursor = new SnapshotCursor(snapshot);
+      }
+    }
+
+    // Set a notification URI on the Cursor and return that Cursor, a search is notified by a change of any movie
+    returnCursor.setNotificationUri(getContext().getContentResolver(),
+        match == CODE_MOVIE_SEARCH ? DatabaseContract.BASE_CONTENT_URI : uri);
+
+    // Return the desired Cursor
+    return returnCursor;
+  }
+
+  /**
+   * @return the URIs of the data a query of the uri reads, the changes of these URIs invalidate its cached result.
+   */
+  private static String[] tagsOf(Uri uri, int match) {
+    switch (match) {
+      case CODE_MOVIE_POPULAR:
+        return new String[] { DatabaseContract.MoviePopularEntry.CONTENT_URI.toString() };
+      case CODE_MOVIE_TOP_RATED:
+        return new String[] { DatabaseContract.MovieTopRatedEntry.CONTENT_URI.toString() };
+      // By _ID or movie id, a favorite is removed as row of the list
+      case CODE_MOVIE_FAVORITE:
+      case CODE_MOVIE_FAVORITE_WITH_ID:
+      case CODE_MOVIE_FAVORITE_WITH_MOVIE_ID:
+        return new String[] { DatabaseContract.MovieFavoriteEntry.CONTENT_URI.toString() };
+      // A changed movie is notified as row of every list it is in
+      case CODE_MOVIE_WITH_ID:
+        long id = Long.parseLong(uri.getLastPathSegment());
+        return new String[] {
+            ContentUris.withAppendedId(DatabaseContract.MoviePopularEntry.CONTENT_URI, id).toString(),
+            ContentUris.withAppendedId(DatabaseContract.MovieTopRatedEntry.CONTENT_URI, id).toString(),
+            ContentUris.withAppendedId(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, id).toString()
+        };
+      // The details, videos and reviews of a movie are notified with their URI
+      default:
+        return new String[] { uri.toString() };
+    }
+  }
+
+  /**
+   * Query the database, the notification URI is not set.
+   */
+  private Cursor queryDatabase(Uri uri, int match, String[] projection, String selection, String[] selectionArgs,
+      String sortOrder) {
+    // Get access to underlying database (read-only for query)
+    final SQLiteDatabase db = mDbHelper.getReadableDatabase();
+    Cursor returnCursor;
+
     // Query Params
     String mSelection;
     String[] mSelectionArgs;
@@ -98,11 +193,11 @@ public class MovieContentProvider extends ContentProvider {
     switch (match) {
       // Query for the popular movie directory
       case CODE_MOVIE_POPULAR:
-        returnCursor = db.query(DatabaseContract.MoviePopularEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+        returnCursor = queryList(db, uri, DatabaseContract.MoviePopularEntry.TABLE_NAME, projection, selection, selectionArgs, sortOrder);
         break;
       // Query for the top rated movie directory
       case CODE_MOVIE_TOP_RATED:
-        returnCursor = db.query(DatabaseContract.MovieTopRatedEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+        returnCursor = queryList(db, uri, DatabaseContract.MovieTopRatedEntry.TABLE_NAME, projection, selection, selectionArgs, sortOrder);
         break;
       // Query for the favorite movie directory
       case CODE_MOVIE_FAVORITE:
@@ -117,15 +212,101 @@ public class MovieContentProvider extends ContentProvider {
         mSelectionArgs = new String[] { id };
         returnCursor = db.query(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, projection, mSelection, mSelectionArgs, null, null, sortOrder);
         break;
+      case CODE_MOVIE_FAVORITE_WITH_MOVIE_ID:
+        // URI: content://<authority>/favorite_movie/movie_id/#
+        mSelection = DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID + " = ?";
+        mSelectionArgs = new String[] { uri.getLastPathSegment() };
+        returnCursor = db.query(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, projection, mSelection, mSelectionArgs, null, null, sortOrder);
+        break;
+      // Full-text search of all stored movies, ranked by MovieSearch, so selection and sort order are not used
+      // URI: content://<authority>/movie_search?q=<text>
+      case CODE_MOVIE_SEARCH:
+        String text = uri.getQueryParameter(DatabaseContract.QUERY_PARAMETER_SEARCH);
+        String limit = uri.getQueryParameter(DatabaseContract.QUERY_PARAMETER_LIMIT);
+        returnCursor = MovieSearch.query(db, text == null ? "" : text, projection,
+            limit == null ? MovieSearch.DEFAULT_LIMIT : Integer.parseInt(limit));
+        break;
+      // A stored movie with all columns, for the detail screen. The lists query only DatabaseContract.MovieEntry.GRID_PROJECTION.
+      // URI: content://<authority>/movie/#
+      case CODE_MOVIE_WITH_ID:
+        mSelection = DatabaseContract.MovieStoreEntry._ID + " = ?";
+        mSelectionArgs = new String[] { uri.getLastPathSegment() };
+        returnCursor = db.query(DatabaseContract.MovieStoreEntry.TABLE_NAME, projection, mSelection, mSelectionArgs, null, null, sortOrder);
+        break;
+      // URI: content://<authority>/movie_detail/<movie id>
+      case CODE_MOVIE_DETAIL_WITH_MOVIE_ID:
+        returnCursor = queryDetail(db, uri, DatabaseContract.MovieDetailEntry.TABLE_NAME, projection, sortOrder);
+        break;
+      // URI: content://<authority>/movie_video/<movie id>
+      case CODE_MOVIE_VIDEO_WITH_MOVIE_ID:
+        returnCursor = queryDetail(db, uri, DatabaseContract.MovieVideoEntry.TABLE_NAME, projection,
+            sortOrder == null ? DatabaseContract.MovieVideoEntry.SORT_ORDER_POSITION : sortOrder);
+        break;
+      // URI: content://<authority>/movie_review/<movie id>
+      case CODE_MOVIE_REVIEW_WITH_MOVIE_ID:
+        returnCursor = queryDetail(db, uri, DatabaseContract.MovieReviewEntry.TABLE_NAME, projection,
+            sortOrder == null ? DatabaseContract.MovieReviewEntry.SORT_ORDER_POSITION : sortOrder);
+        break;
       default:
         throw new UnsupportedOperationException("Unknown uri: " + uri);
     }
+    return returnCursor;
+  }
 
-    // Set a notification URI on the Cursor and return that Cursor
-    returnCursor.setNotificationUri(getContext().getContentResolver(), uri);
+  /**
+   * Query the rows of a table of the details of a movie, see {@link DatabaseContract.MovieDetailEntry}.
+   *
+   * @param uri the URI, which ends with the TMDB movie id.
+   */
+  private static Cursor queryDetail(SQLiteDatabase db, Uri uri, String tableName, String[] projection, String sortOrder) {
+    return db.query(tableName, projection, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " = ?",
+        new String[] { uri.getLastPathSegment() }, null, null, sortOrder);
+  }
 
-    // Return the desired Cursor
-    return returnCursor;
+  /**
+   * Query a list sorted by rank. If the uri has the query parameter {@link DatabaseContract#QUERY_PARAMETER_LIMIT}, only a
+   * window of the list is returned, see {@link DatabaseContract#buildWindowUri(Uri, int, int, long)}. The window is sorted by
+   * {@link DatabaseContract.MovieEntry#SORT_ORDER_WINDOW} and starts after its anchor, so SQLite seeks to the anchor in the
+   * rank index instead of stepping over all movies before it like an OFFSET does.
+   */
+  private static Cursor queryList(SQLiteDatabase db, Uri uri, String viewName, String[] projection, String selection,
+      String[] selectionArgs, String sortOrder) {
+    String limit = uri.getQueryParameter(DatabaseContract.QUERY_PARAMETER_LIMIT);
+    if (limit == null) {
+      return db.query(viewName, projection, selection, selectionArgs, null, null, sortOrder);
+    }
+    if (Integer.parseInt(limit) <= 0) {
+      throw new IllegalArgumentException("Invalid limit in uri: " + uri);
+    }
+
+    String afterRank = uri.getQueryParameter(DatabaseContract.QUERY_PARAMETER_AFTER_RANK);
+    String afterMovieId = uri.getQueryParameter(DatabaseContract.QUERY_PARAMETER_AFTER_MOVIE_ID);
+    if (afterRank != null && afterMovieId != null) {
+      String keyset = DatabaseContract.MovieEntry.SELECTION_AFTER_ANCHOR;
+      String[] keysetArgs = new String[] {
+          String.valueOf(Integer.parseInt(afterRank)), String.valueOf(Integer.parseInt(afterRank)),
+          String.valueOf(Long.parseLong(afterMovieId))
+      };
+      if (selection == null) {
+        selection = keyset;
+        selectionArgs = keysetArgs;
+      } else {
+        selection = "(" + selection + ") AND " + keyset;
+        selectionArgs = concat(selectionArgs, keysetArgs);
+      }
+    }
+    return db.query(viewName, projection, selection, selectionArgs, null, null, DatabaseContract.MovieEntry.SORT_ORDER_WINDOW,
+        limit);
+  }
+
+  private static String[] concat(String[] first, String[] second) {
+    if (first == null) {
+      return second;
+    }
+    String[] result = new String[first.length + second.length];
+    System.arraycopy(first, 0, result, 0, first.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
   }
 
   @Nullable @Override public String getType(@NonNull Uri uri) {
@@ -133,155 +314,326 @@ public class MovieContentProvider extends ContentProvider {
   }
 
   /**
-   * Insert a single new row of data
+   * Apply the operations in one transaction, so e.g. a page insert and the deletes of stale movies are written together,
+   * and their changes are notified once. Before an operation which allows it, see
+   * {@link ContentProviderOperation.Builder#withYieldAllowed(boolean)}, the transaction yields to waiting readers. The
+   * operations before it are committed then, so they are notified even if a later operation fails. The favorites in
+   * memory are loaded again if an operation fails.
    */
-  @Nullable @Override public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
-    // Get access to the database (to write new data to)
+  @NonNull @Override public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+      throws OperationApplicationException {
     final SQLiteDatabase db = mDbHelper.getWritableDatabase();
-
-    // Write URI matching code to identify the match for the favorite movie directory
-    int match = sUriMatcher.match(uri);
-    long id; // DB Id of inserted ContentValues
-    Uri returnUri; // URI to be returned
-
-    switch (match) {
-      case CODE_MOVIE_POPULAR:
-        // Inserting values into popular movie table
-        id = db.insert(DatabaseContract.MoviePopularEntry.TABLE_NAME, null, values);
-        if (id > 0) {
-          returnUri = ContentUris.withAppendedId(DatabaseContract.MoviePopularEntry.CONTENT_URI, id);
-        } else {
-          throw new android.database.SQLException("Failed to insert row into " + uri);
-        }
-        break;
-      case CODE_MOVIE_TOP_RATED:
-        // Inserting values into top rated movie table
-        id = db.insert(DatabaseContract.MovieTopRatedEntry.TABLE_NAME, null, values);
-        if (id > 0) {
-          returnUri = ContentUris.withAppendedId(DatabaseContract.MovieTopRatedEntry.CONTENT_URI, id);
-        } else {
-          throw new android.database.SQLException("Failed to insert row into " + uri);
+    final ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+
+    boolean successful = false;
+    mChangeNotifier.beginScope();
+    db.beginTransaction();
+    try {
+      for (int i = 0; i < operations.size(); i++) {
+        final ContentProviderOperation operation = operations.get(i);
+        if (i > 0 && operation.isYieldAllowed()) {
+          db.yieldIfContendedSafely();
         }
-        break;
-      case CODE_MOVIE_FAVORITE:
-        // Inserting values into favorite movie table
-        id = db.insert(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, null, values);
-        if (id > 0) {
-          returnUri = ContentUris.withAppendedId(DatabaseContract.MovieFavoriteEntry.CONTENT_URI, id);
-        } else {
-          throw new android.database.SQLException("Failed to insert row into " + uri);
-        }
-        break;
-      default:
-        throw new UnsupportedOperationException("Unknown uri: " + uri);
+        results[i] = operation.apply(this, results, i);
+      }
+      db.setTransactionSuccessful();
+      successful = true;
+      return results;
+    } finally {
+      db.endTransaction();
+      if (!successful) {
+        // The operations after the last yield were rolled back, the favorites are read as committed
+        mChangeNotifier.discardFavoriteChanges();
+        mDbHelper.getFavoriteMovieIds().load(db);
+      }
+      mChangeNotifier.endScope();
     }
+  }
 
-    // Notify the resolver if the uri has been changed
-    getContext().getContentResolver().notifyChange(uri, null);
+  /**
+   * Insert a single new row of data. The movie is written once to the movie table and added to the list of the uri.
+   */
+  @Nullable @Override public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+    if (values == null) {
+      throw new android.database.SQLException("Failed to insert row into " + uri);
+    }
 
-    // Return constructed uri (this points to the newly inserted row of data)
-    return returnUri;
+    // Write URI matching code to identify the list
+    int match = sUriMatcher.match(uri);
 
+    mChangeNotifier.beginScope();
+    try {
+      switch (match) {
+        case CODE_MOVIE_POPULAR:
+          // Inserting or updating values in popular movie list
+          return writeMovie(uri, DatabaseContract.MoviePopularEntry.LIST_TYPE, values);
+        case CODE_MOVIE_TOP_RATED:
+          // Inserting or updating values in top rated movie list
+          return writeMovie(uri, DatabaseContract.MovieTopRatedEntry.LIST_TYPE, values);
+        case CODE_MOVIE_FAVORITE:
+          // Inserting values into favorite movie list
+          return writeMovie(uri, DatabaseContract.MovieFavoriteEntry.LIST_TYPE, values);
+        // The details replace the stored ones, a video or review replaces the one at its position
+        case CODE_MOVIE_DETAIL_WITH_MOVIE_ID:
+          return insertDetail(uri, DatabaseContract.MovieDetailEntry.TABLE_NAME, values);
+        case CODE_MOVIE_VIDEO_WITH_MOVIE_ID:
+          return insertDetail(uri, DatabaseContract.MovieVideoEntry.TABLE_NAME, values);
+        case CODE_MOVIE_REVIEW_WITH_MOVIE_ID:
+          return insertDetail(uri, DatabaseContract.MovieReviewEntry.TABLE_NAME, values);
+        default:
+          throw new UnsupportedOperationException("Unknown uri: " + uri);
+      }
+    } finally {
+      mChangeNotifier.endScope();
+    }
+  }
 
-    /*
-    // Check if the id of the movie already exists in favorite movie table. If not the movie will be added to the table.
-    String whereClause = MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID + " = ?";
-    String[] whereArgs = new String[] { String.valueOf(values.getAsLong(MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID)) };
-    Cursor cursor = db.query(MovieContract.FavoriteMovieEntry.TABLE_NAME, null, whereClause, whereArgs, null, null, null);
-    if (!cursor.moveToFirst()) {
-      // Close query cursor
-      cursor.close();
-      // Insert data
-    } else {
-      cursor.close();
-      // Do not Insert data
+  /**
+   * Insert a row into a table of the details of a movie. The movie id is taken from the URI.
+   *
+   * @return the URI, it is notified as changed.
+   */
+  private Uri insertDetail(Uri uri, String tableName, ContentValues values) {
+    final ContentValues row = new ContentValues(values);
+    row.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, Long.parseLong(uri.getLastPathSegment()));
+    if (mDbHelper.getWritableDatabase().insert(tableName, null, row) == -1) {
+      throw new android.database.SQLException("Failed to insert row into " + uri);
     }
-    */
+    mChangeNotifier.listChanged(uri);
+    return uri;
   }
 
   /**
-   * Handles requests to insert a set of new rows.
+   * Handles requests to insert a set of new rows. Movies are written as delta.
    *
-   * @return The number of values that were inserted.
+   * @return The number of values stored, including unchanged movies.
    */
   @Override public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
-    // Get access to the database
-    final SQLiteDatabase db = mDbHelper.getWritableDatabase();
-
     int match = sUriMatcher.match(uri);
-    int rowsInserted = 0;
 
-    switch (match) {
-
-      case CODE_MOVIE_POPULAR:
-        db.beginTransaction();
-        try {
-          for (ContentValues value : values) {
-            long _id = db.insert(DatabaseContract.MoviePopularEntry.TABLE_NAME, null, value);
-            if (_id != -1) {
-              rowsInserted++;
-            }
-          }
-          db.setTransactionSuccessful();
-        } finally {
-          db.endTransaction();
-        }
+    mChangeNotifier.beginScope();
+    try {
+      switch (match) {
+        case CODE_MOVIE_POPULAR:
+          return writeMovies(DatabaseContract.MoviePopularEntry.LIST_TYPE, MovieRows.from(values));
+        case CODE_MOVIE_TOP_RATED:
+          return writeMovies(DatabaseContract.MovieTopRatedEntry.LIST_TYPE, MovieRows.from(values));
+        case CODE_MOVIE_FAVORITE:
+          return writeMovies(DatabaseContract.MovieFavoriteEntry.LIST_TYPE, MovieRows.from(values));
+
+        // If the URI does not match a list, return the super implementation of bulkInsert
+        default:
+          return super.bulkInsert(uri, values);
+      }
+    } finally {
+      mChangeNotifier.endScope();
+    }
+  }
 
-        if (rowsInserted > 0) {
-          getContext().getContentResolver().notifyChange(uri, null);
-        }
+  /**
+   * Insert or update a single movie of a list with the {@link MovieDeltaWriter}.
+   *
+   * @return the URI of the movie row, which keeps its _ID if the movie was stored already.
+   */
+  private Uri writeMovie(Uri uri, @DatabaseContract.MovieListEntry.ListType int listType, ContentValues values) {
+    final MovieRows rows = MovieRows.from(new ContentValues[] { values });
+    writeMovies(listType, rows);
 
-        // Return the number of rows inserted
-        return rowsInserted;
+    long id = mDbHelper.getMovieDeltaWriter().rowIdOf(mDbHelper.getReadableDatabase(), rows.getMovieId(0));
+    if (id == -1) {
+      throw new android.database.SQLException("Failed to insert row into " + uri);
+    }
+    return ContentUris.withAppendedId(uri, id);
+  }
 
-      case CODE_MOVIE_TOP_RATED:
-        db.beginTransaction();
-        try {
-          for (ContentValues value : values) {
-            long _id = db.insert(DatabaseContract.MovieTopRatedEntry.TABLE_NAME, null, value);
-            if (_id != -1) {
-              rowsInserted++;
-            }
-          }
-          db.setTransactionSuccessful();
-        } finally {
-          db.endTransaction();
+  /**
+   * Insert or update the movies of a list with the {@link MovieDeltaWriter} in one transaction. One compiled statement per
+   * write is bound positionally for all rows. After every page the transaction yields to waiting readers, unless it is
+   * part of the transaction of {@link #applyBatch(ArrayList)}.
+   *
+   * @return The number of movies which are stored now, including unchanged movies which were skipped.
+   */
+  private int writeMovies(@DatabaseContract.MovieListEntry.ListType int listType, MovieRows rows) {
+    final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+    // A nested transaction cannot yield
+    final boolean yieldAllowed = !db.inTransaction();
+
+    int membershipChanged;
+    long[] insertedMovieIds;
+    long[] contentUpdatedMovieIds;
+    db.beginTransaction();
+    MovieDeltaWriter.Batch batch = mDbHelper.getMovieDeltaWriter().newBatch(db, listType);
+    try {
+      for (int i = 0; i < rows.size(); i++) {
+        if (yieldAllowed && i > 0 && i % NetworkUtils.MOVIES_PER_PAGE == 0) {
+          db.yieldIfContendedSafely();
         }
+        batch.write(rows, i);
+      }
+      batch.finish();
+      membershipChanged = batch.getMembershipChangedCount();
+      insertedMovieIds = batch.getInsertedMovieIds();
+      contentUpdatedMovieIds = batch.getContentUpdatedMovieIds();
+      db.setTransactionSuccessful();
+    } finally {
+      batch.close();
+      db.endTransaction();
+    }
 
-        if (rowsInserted > 0) {
-          getContext().getContentResolver().notifyChange(uri, null);
-        }
+    // Notify only what changed, an unchanged page does not reload the list. A movie which was added or moved shifts the
+    // positions of the list, a movie whose content was updated changes only its row, in every list it is in.
+    if (membershipChanged > 0) {
+      mChangeNotifier.listChanged(DatabaseContract.MovieListEntry.getContentUri(listType));
+    }
+    if (listType == DatabaseContract.MovieListEntry.LIST_TYPE_FAVORITE && insertedMovieIds.length > 0) {
+      mChangeNotifier.favoritesAdded(insertedMovieIds);
+    }
+    if (contentUpdatedMovieIds.length > 0) {
+      StringBuilder movieIds = new StringBuilder();
+      for (long movieId : contentUpdatedMovieIds) {
+        movieIds.append(movieIds.length() == 0 ? "" : ", ").append(movieId);
+      }
+      moviesChanged(db, DatabaseContract.MovieStoreEntry.TABLE_NAME
+          + "."
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+          + " IN ("
+          + movieIds
+          + ")", null);
+    }
+    return rows.size();
+  }
 
-        // Return the number of rows inserted
-        return rowsInserted;
+  /**
+   * Notify the rows of the movies of the selection in every list they are in, their content has changed.
+   *
+   * @param selection selection of the movie table.
+   */
+  private void moviesChanged(SQLiteDatabase db, String selection, String[] selectionArgs) {
+    final String movie = DatabaseContract.MovieStoreEntry.TABLE_NAME;
+    final String list = DatabaseContract.MovieListEntry.TABLE_NAME;
+    Cursor cursor = db.rawQuery("SELECT "
+        + movie
+        + "."
+        + DatabaseContract.MovieEntry._ID
+        + ", "
+        + list
+        + "."
+        + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+        + " FROM "
+        + movie
+        + " JOIN "
+        + list
+        + " ON "
+        + movie
+        + "."
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+        + " = "
+        + list
+        + "."
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+        + " WHERE "
+        + selection, selectionArgs);
+    try {
+      while (cursor.moveToNext()) {
+        //noinspection WrongConstant
+        mChangeNotifier.rowChanged(DatabaseContract.MovieListEntry.getContentUri(cursor.getInt(1)), cursor.getLong(0));
+      }
+    } finally {
+      cursor.close();
+    }
+  }
 
-      case CODE_MOVIE_FAVORITE:
-        db.beginTransaction();
-        try {
-          for (ContentValues value : values) {
-            long _id = db.insert(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, null, value);
-            if (_id != -1) {
-              rowsInserted++;
-            }
-          }
-          db.setTransactionSuccessful();
-        } finally {
-          db.endTransaction();
-        }
+  /**
+   * Handles {@link MovieRows#METHOD_BULK_INSERT}, the argument is the content URI of a list and the extras are the
+   * {@link MovieRows}, and {@link MovieListRetention#METHOD_EVICT} and {@link QueryCache#METHOD_STATS} without argument.
+   */
+  @Nullable @Override public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+    if (MovieListRetention.METHOD_EVICT.equals(method)) {
+      return evictLists();
+    }
+    if (QueryCache.METHOD_STATS.equals(method)) {
+      return queryCacheStats();
+    }
+    if (!MovieRows.METHOD_BULK_INSERT.equals(method) || arg == null || extras == null) {
+      return super.call(method, arg, extras);
+    }
+    Uri uri = Uri.parse(arg);
+    int rowsStored;
+    mChangeNotifier.beginScope();
+    try {
+      switch (sUriMatcher.match(uri)) {
+        case CODE_MOVIE_POPULAR:
+          rowsStored = writeMovies(DatabaseContract.MoviePopularEntry.LIST_TYPE, MovieRows.fromBundle(extras));
+          break;
+        case CODE_MOVIE_TOP_RATED:
+          rowsStored = writeMovies(DatabaseContract.MovieTopRatedEntry.LIST_TYPE, MovieRows.fromBundle(extras));
+          break;
+        default:
+          throw new UnsupportedOperationException("Unknown uri: " + uri);
+      }
+    } finally {
+      mChangeNotifier.endScope();
+    }
+    Bundle result = new Bundle();
+    result.putInt(MovieRows.KEY_ROWS_STORED, rowsStored);
+    return result;
+  }
 
-        if (rowsInserted > 0) {
-          getContext().getContentResolver().notifyChange(uri, null);
-        }
+  /**
+   * @return the statistics of the {@link QueryCache}, see {@link QueryCache#KEY_HIT_COUNT}.
+   */
+  private Bundle queryCacheStats() {
+    Bundle result = new Bundle();
+    if (mQueryCache == null) {
+      result.putLong(QueryCache.KEY_MAX_SIZE_BYTES, 0);
+      return result;
+    }
+    result.putLong(QueryCache.KEY_HIT_COUNT, mQueryCache.getHitCount());
+    result.putLong(QueryCache.KEY_MISS_COUNT, mQueryCache.getMissCount());
+    result.putLong(QueryCache.KEY_EVICTION_COUNT, mQueryCache.getEvictionCount());
+    result.putLong(QueryCache.KEY_INVALIDATION_COUNT, mQueryCache.getInvalidationCount());
+    result.putInt(QueryCache.KEY_ENTRY_COUNT, mQueryCache.getEntryCount());
+    result.putLong(QueryCache.KEY_SIZE_BYTES, mQueryCache.getSizeBytes());
+    result.putLong(QueryCache.KEY_MAX_SIZE_BYTES, mQueryCache.getMaxSizeBytes());
+    return result;
+  }
 
-        // Return the number of rows inserted
-        return rowsInserted;
+  /**
+   * Evict the popular and top rated lists with the {@link MovieListRetention} and delete the movies which are in no list
+   * anymore. The favorite list is never evicted.
+   *
+   * @return the number of evicted list rows and deleted movies, see {@link MovieListRetention#KEY_LIST_ROWS_EVICTED}.
+   */
+  private Bundle evictLists() {
+    final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+    final MovieListRetention movieListRetention = mDbHelper.getMovieListRetention();
 
-      // If the URI does not match match CODE_FAVORITE_MOVIE, return the super implementation of bulkInsert
-      default:
-        return super.bulkInsert(uri, values);
+    int popularEvicted = movieListRetention.evictList(db, DatabaseContract.MoviePopularEntry.LIST_TYPE);
+    int topRatedEvicted = movieListRetention.evictList(db, DatabaseContract.MovieTopRatedEntry.LIST_TYPE);
+    int moviesDeleted = 0;
+    if (popularEvicted + topRatedEvicted > 0) {
+      moviesDeleted = mDbHelper.getMovieDeltaWriter().deleteUnlistedMovies(db);
     }
+    if (moviesDeleted > 0) {
+      detailsDeleted();
+    }
+
+    if (popularEvicted > 0) {
+      mChangeNotifier.listChanged(DatabaseContract.MoviePopularEntry.CONTENT_URI);
+    }
+    if (topRatedEvicted > 0) {
+      mChangeNotifier.listChanged(DatabaseContract.MovieTopRatedEntry.CONTENT_URI);
+    }
+    Bundle result = new Bundle();
+    result.putInt(MovieListRetention.KEY_LIST_ROWS_EVICTED, popularEvicted + topRatedEvicted);
+    result.putInt(MovieListRetention.KEY_MOVIES_DELETED, moviesDeleted);
+    return result;
   }
 
+  /**
+   * Removes movies from a list, the selection refers to the columns of {@link DatabaseContract.MovieEntry}. Movies which are
+   * in no list anymore are deleted. The details, videos or reviews of a movie are deleted by its movie id.
+   */
   @Override public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
     // Get access to the database
     final SQLiteDatabase db = mDbHelper.getWritableDatabase();
@@ -298,34 +650,137 @@ public class MovieContentProvider extends ContentProvider {
      */
     if (null == selection) selection = "1";
 
-    switch (match) {
-      // Delete ALL rows in the table
-      case CODE_MOVIE_FAVORITE:
-        moviesDeleted = db.delete(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, selection, selectionArgs);
-        break;
-      // Handle the single item case, recognized by the ID included in the URI path
-      case CODE_MOVIE_FAVORITE_WITH_ID:
-        // using selection and selectionArgs
-        // URI: content://<authority>/favorite_movie/#
-        String id = uri.getPathSegments().get(1);
-        // Selection is the _ID column = ?, and the Selection args = the row ID from the URI
-        String mSelection = "_id=?";
-        String[] mSelectionArgs = new String[] { id };
-        moviesDeleted = db.delete(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, mSelection, mSelectionArgs);
-        break;
-      default:
-        throw new UnsupportedOperationException("Unknown uri: " + uri);
+    mChangeNotifier.beginScope();
+    try {
+      switch (match) {
+        // The movies of the popular or top rated list, e.g. the ones of a test
+        case CODE_MOVIE_POPULAR:
+          moviesDeleted = deleteFromList(db, DatabaseContract.MoviePopularEntry.TABLE_NAME, DatabaseContract.MoviePopularEntry.LIST_TYPE,
+              selection, selectionArgs);
+          break;
+        case CODE_MOVIE_TOP_RATED:
+          moviesDeleted = deleteFromList(db, DatabaseContract.MovieTopRatedEntry.TABLE_NAME, DatabaseContract.MovieTopRatedEntry.LIST_TYPE,
+              selection, selectionArgs);
+          break;
+        // Delete ALL rows in the table
+        case CODE_MOVIE_FAVORITE:
+          moviesDeleted = deleteFromList(db, DatabaseContract.MovieFavoriteEntry.TABLE_NAME, DatabaseContract.MovieFavoriteEntry.LIST_TYPE,
+              selection, selectionArgs);
+          break;
+        // Handle the single item case, recognized by the ID included in the URI path
+        case CODE_MOVIE_FAVORITE_WITH_ID:
+          // using selection and selectionArgs
+          // URI: content://<authority>/favorite_movie/#
+          String id = uri.getPathSegments().get(1);
+          // Selection is the _ID column = ?, and the Selection args = the row ID from the URI
+          String mSelection = "_id=?";
+          String[] mSelectionArgs = new String[] { id };
+          moviesDeleted = deleteFromList(db, DatabaseContract.MovieFavoriteEntry.TABLE_NAME, DatabaseContract.MovieFavoriteEntry.LIST_TYPE,
+              mSelection, mSelectionArgs);
+          break;
+        // URI: content://<authority>/favorite_movie/movie_id/#
+        case CODE_MOVIE_FAVORITE_WITH_MOVIE_ID:
+          moviesDeleted = deleteFromList(db, DatabaseContract.MovieFavoriteEntry.TABLE_NAME, DatabaseContract.MovieFavoriteEntry.LIST_TYPE,
+              DatabaseContract.MovieFavoriteEntry.COLUMN_MOVIE_ID + " = ?", new String[] { uri.getLastPathSegment() });
+          break;
+        // All details, videos or reviews of the movie, before new ones are inserted
+        case CODE_MOVIE_DETAIL_WITH_MOVIE_ID:
+          moviesDeleted = deleteDetail(db, uri, DatabaseContract.MovieDetailEntry.TABLE_NAME);
+          break;
+        case CODE_MOVIE_VIDEO_WITH_MOVIE_ID:
+          moviesDeleted = deleteDetail(db, uri, DatabaseContract.MovieVideoEntry.TABLE_NAME);
+          break;
+        case CODE_MOVIE_REVIEW_WITH_MOVIE_ID:
+          moviesDeleted = deleteDetail(db, uri, DatabaseContract.MovieReviewEntry.TABLE_NAME);
+          break;
+        default:
+          throw new UnsupportedOperationException("Unknown uri: " + uri);
+      }
+    } finally {
+      mChangeNotifier.endScope();
     }
 
-    // Notify the resolver of a change and return the number of items deleted
-    if (moviesDeleted != 0) {
-      // A movie was deleted, set notification
-      getContext().getContentResolver().notifyChange(uri, null);
-    }
     // Return the number of movies deleted
     return moviesDeleted;
   }
 
+  /**
+   * The details of deleted movies were deleted with them. They are not notified, no screen shows a deleted movie.
+   */
+  private void detailsDeleted() {
+    mChangeNotifier.dataChanged(DatabaseContract.MovieDetailEntry.CONTENT_URI);
+    mChangeNotifier.dataChanged(DatabaseContract.MovieVideoEntry.CONTENT_URI);
+    mChangeNotifier.dataChanged(DatabaseContract.MovieReviewEntry.CONTENT_URI);
+  }
+
+  /**
+   * Delete the rows of the movie of the URI from a table of the details of a movie.
+   *
+   * @return number of rows deleted.
+   */
+  private int deleteDetail(SQLiteDatabase db, Uri uri, String tableName) {
+    int deleted = db.delete(tableName, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " = ?", new String[] { uri.getLastPathSegment() });
+    if (deleted > 0) {
+      mChangeNotifier.listChanged(uri);
+    }
+    return deleted;
+  }
+
+  /**
+   * Remove the movies of the selection from a list and delete movies, which are in no list anymore. The row of every
+   * removed movie is notified.
+   *
+   * @return number of movies removed from the list.
+   */
+  private int deleteFromList(SQLiteDatabase db, String viewName, @DatabaseContract.MovieListEntry.ListType int listType,
+      String selection, String[] selectionArgs) {
+    final Uri contentUri = DatabaseContract.MovieListEntry.getContentUri(listType);
+    long[] ids;
+    long[] movieIds;
+    int moviesDeleted;
+    db.beginTransaction();
+    try {
+      Cursor cursor = db.query(viewName, new String[] { DatabaseContract.MovieEntry._ID, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID },
+          selection, selectionArgs, null, null, null);
+      try {
+        ids = new long[cursor.getCount()];
+        movieIds = new long[ids.length];
+        for (int i = 0; cursor.moveToPosition(i); i++) {
+          ids[i] = cursor.getLong(0);
+          movieIds[i] = cursor.getLong(1);
+        }
+      } finally {
+        cursor.close();
+      }
+      moviesDeleted = db.delete(DatabaseContract.MovieListEntry.TABLE_NAME, DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+          + " = "
+          + listType
+          + " AND "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+          + " IN (SELECT "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+          + " FROM "
+          + viewName
+          + " WHERE "
+          + selection
+          + ")", selectionArgs);
+      if (moviesDeleted > 0 && mDbHelper.getMovieDeltaWriter().deleteUnlistedMovies(db) > 0) {
+        detailsDeleted();
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+
+    if (listType == DatabaseContract.MovieListEntry.LIST_TYPE_FAVORITE && movieIds.length > 0) {
+      mChangeNotifier.favoritesRemoved(movieIds);
+    }
+    for (long id : ids) {
+      mChangeNotifier.rowChanged(contentUri, id);
+    }
+    return moviesDeleted;
+  }
+
   @Override
   public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection, @Nullable String[] selectionArgs) {
     // Get access to the database
@@ -339,21 +794,28 @@ public class MovieContentProvider extends ContentProvider {
         // using selection and selectionArgs
         // URI: content://<authority>/favorite_movie/#
         String id = uri.getPathSegments().get(1);
-        // Selection is the _ID column = ?, and the Selection args = the row ID from the URI
-        String mSelection = "_id=?";
+        // Selection is the _ID column = ?, and the Selection args = the row ID from the URI, if the movie is a favorite
+        String mSelection = "_id IN (SELECT _id FROM " + DatabaseContract.MovieFavoriteEntry.TABLE_NAME + " WHERE _id=?)";
         String[] mSelectionArgs = new String[] { id };
-        moviesUpdated = db.update(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, values, mSelection, mSelectionArgs);
+        // The movie differs from the server now, so the next fetch has to write it even if the server has no changes
+        ContentValues movieValues = values == null ? new ContentValues() : new ContentValues(values);
+        movieValues.put(DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH, MovieDeltaWriter.NO_CONTENT_HASH);
+        moviesUpdated = db.update(DatabaseContract.MovieStoreEntry.TABLE_NAME, movieValues, mSelection, mSelectionArgs);
+        // Notify the resolver of a change
+        if (moviesUpdated != 0) {
+          // A movie was updated, notify its row in every list it is in
+          mChangeNotifier.beginScope();
+          try {
+            moviesChanged(db, DatabaseContract.MovieStoreEntry.TABLE_NAME + "." + DatabaseContract.MovieEntry._ID + " = ?", mSelectionArgs);
+          } finally {
+            mChangeNotifier.endScope();
+          }
+        }
         break;
       default:
         throw new UnsupportedOperationException("Unknown uri: " + uri);
     }
 
-    // Notify the resolver of a change and return the number of items updated
-    if (moviesUpdated != 0) {
-      // A movie was updated, set notification
-      getContext().getContentResolver().notifyChange(uri, null);
-    }
-
     // Return the number of movies updated
     return moviesUpdated;
   }
@@ -0,0 +1,286 @@
+package de.appmotion.popularmovies.data.source;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of the query results of {@link MovieContentProvider}, so a rotation, a restarted loader or a repeated
+ * favorite check does not query SQLite again.
+ *
+ * <ul>
+ * <li>a result is keyed by URI, projection, selection, selection args and sort order, see
+ * {@link #key(String, String[], String, String[], String)}.</li>
+ * <li>the size of the results is estimated, the least recently used results are evicted above the maximum size.</li>
+ * <li>a result is tagged with the URIs of the data it reads. A change notified by the {@link ChangeNotifier} invalidates
+ * the results whose tag is the changed URI, one of its descendants or one of its ancestors, e.g. a changed movie row
+ * invalidates the windows of its list.</li>
+ * </ul>
+ *
+ * A result read before a change may be put after the change was invalidated, so a result is only put if nothing was
+ * invalidated since its query started, see {@link #getGeneration()}. It is thread-safe.
+ */
+public final class QueryCache {
+
+  /**
+   * Method of {@link android.content.ContentProvider#call(String, String, android.os.Bundle)} without argument, the result
+   * has the statistics of the cache with the keys below. The maximum size is 0 if the cache is disabled.
+   */
+  public static final String METHOD_STATS = "query_cache_stats";
+  public static final String KEY_HIT_COUNT = "hit_count";
+  public static final String KEY_MISS_COUNT = "miss_count";
+  public static final String KEY_EVICTION_COUNT = "eviction_count";
+  public static final String KEY_INVALIDATION_COUNT = "invalidation_count";
+  public static final String KEY_ENTRY_COUNT = "entry_count";
+  public static final String KEY_SIZE_BYTES = "size_bytes";
+  public static final String KEY_MAX_SIZE_BYTES = "max_size_bytes";
+
+  // A larger result is not cached, it is a whole list rather than a window of it
+  static final int MAX_ROWS = 200;
+  // A larger result would evict most of the others
+  static final int MAX_ENTRY_FRACTION = 8;
+
+  private static final char SEPARATOR = '\u0000';
+  private static final char NULL = '\u0001';
+
+  private final long mMaxSizeBytes;
+  // Access order, the eldest entry is the least recently used one
+  private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+  private long mSizeBytes;
+  private long mGeneration;
+
+  private long mHitCount;
+  private long mMissCount;
+  private long mEvictionCount;
+  private long mInvalidationCount;
+
+  /**
+   * @param maxSizeBytes maximum estimated size of the cached results.
+   */
+  QueryCache(long maxSizeBytes) {
+    if (maxSizeBytes <= 0) {
+      throw new IllegalArgumentException("Invalid size: " + maxSizeBytes);
+    }
+    mMaxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * @return the key of a query.
+   */
+  static String key(String uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+    StringBuilder key = new StringBuilder(uri);
+    appendArray(key, projection);
+    appendString(key, selection);
+    appendArray(key, selectionArgs);
+    appendString(key, sortOrder);
+    return key.toString();
+  }
+
+  private static void appendString(StringBuilder key, String value) {
+    key.append(SEPARATOR);
+    if (value == null) {
+      key.append(NULL);
+    } else {
+      key.append(value.length()).append(':').append(value);
+    }
+  }
+
+  private static void appendArray(StringBuilder key, String[] values) {
+    if (values == null) {
+      appendString(key, null);
+      return;
+    }
+    key.append(SEPARATOR).append(values.length);
+    for (String value : values) {
+      appendString(key, value);
+    }
+  }
+
+  /**
+   * @return the cached result, or null if the query is not cached.
+   */
+  synchronized Snapshot get(String key) {
+    Entry entry = mEntries.get(key);
+    if (entry == null) {
+      mMissCount++;
+      return null;
+    }
+    mHitCount++;
+    return entry.mSnapshot;
+  }
+
+  /**
+   * @return the generation, call it before the query of a result which is put.
+   */
+  synchronized long getGeneration() {
+    return mGeneration;
+  }
+
+  /**
+   * Cache a result and evict the least recently used results above the maximum size.
+   *
+   * @param key the key of the query.
+   * @param tags the URIs of the data the query reads.
+   * @param snapshot the result.
+   * @param generation the generation before the query.
+   * @return false if the result was not cached, because something was invalidated since the query, or it is too large.
+   */
+  synchronized boolean put(String key, String[] tags, Snapshot snapshot, long generation) {
+    final long sizeBytes = snapshot.getSizeBytes() + 2L * key.length();
+    if (generation != mGeneration || sizeBytes > mMaxSizeBytes / MAX_ENTRY_FRACTION) {
+      return false;
+    }
+    Entry previous = mEntries.put(key, new Entry(tags, snapshot, sizeBytes));
+    if (previous != null) {
+      mSizeBytes -= previous.mSizeBytes;
+    }
+    mSizeBytes += sizeBytes;
+
+    Iterator<Entry> eldest = mEntries.values().iterator();
+    while (mSizeBytes > mMaxSizeBytes) {
+      mSizeBytes -= eldest.next().mSizeBytes;
+      eldest.remove();
+      mEvictionCount++;
+    }
+    return true;
+  }
+
+  /**
+   * Remove the results which read the data of a changed URI.
+   *
+   * @param uri the changed URI, without query.
+   */
+  synchronized void invalidate(String uri) {
+    mGeneration++;
+    Iterator<Entry> entries = mEntries.values().iterator();
+    while (entries.hasNext()) {
+      Entry entry = entries.next();
+      if (entry.reads(uri)) {
+        mSizeBytes -= entry.mSizeBytes;
+        entries.remove();
+        mInvalidationCount++;
+      }
+    }
+  }
+
+  /**
+   * @return true if one of the URIs is the other one or one of its ancestors.
+   */
+  static boolean related(String uri, String other) {
+    if (uri.length() == other.length()) {
+      return uri.equals(other);
+    }
+    String ancestor = uri.length() < other.length() ? uri : other;
+    String descendant = uri.length() < other.length() ? other : uri;
+    return descendant.startsWith(ancestor) && descendant.charAt(ancestor.length()) == '/';
+  }
+
+  synchronized long getHitCount() {
+    return mHitCount;
+  }
+
+  synchronized long getMissCount() {
+    return mMissCount;
+  }
+
+  synchronized long getEvictionCount() {
+    return mEvictionCount;
+  }
+
+  synchronized long getInvalidationCount() {
+    return mInvalidationCount;
+  }
+
+  synchronized int getEntryCount() {
+    return mEntries.size();
+  }
+
+  synchronized long getSizeBytes() {
+    return mSizeBytes;
+  }
+
+  long getMaxSizeBytes() {
+    return mMaxSizeBytes;
+  }
+
+  @Override public synchronized String toString() {
+    long lookups = mHitCount + mMissCount;
+    return String.format("QueryCache[%d hits, %d misses (%d%% hits), %d evictions, %d invalidations, %d entries, %d/%d bytes]",
+        mHitCount, mMissCount, lookups == 0 ? 0 : 100 * mHitCount / lookups, mEvictionCount, mInvalidationCount,
+        mEntries.size(), mSizeBytes, mMaxSizeBytes);
+  }
+
+  private static class Entry {
+    private final String[] mTags;
+    private final Snapshot mSnapshot;
+    private final long mSizeBytes;
+
+    Entry(String[] tags, Snapshot snapshot, long sizeBytes) {
+      mTags = tags;
+      mSnapshot = snapshot;
+      mSizeBytes = sizeBytes;
+    }
+
+    boolean reads(String uri) {
+      for (String tag : mTags) {
+        if (related(tag, uri)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * The rows of a query result. A value is a Long, Double, String, byte[] or null. It is immutable, so it is shared by
+   * the cursors of all hits.
+   */
+  static final class Snapshot {
+    // Estimated sizes of an object header and a reference
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private final String[] mColumns;
+    private final Object[][] mRows;
+    private final long mSizeBytes;
+
+    Snapshot(String[] columns, Object[][] rows) {
+      mColumns = columns;
+      mRows = rows;
+      long sizeBytes = OBJECT_BYTES + REFERENCE_BYTES * columns.length;
+      for (Object[] row : rows) {
+        sizeBytes += OBJECT_BYTES + REFERENCE_BYTES * row.length;
+        for (Object value : row) {
+          sizeBytes += sizeOf(value);
+        }
+      }
+      mSizeBytes = sizeBytes;
+    }
+
+    private static long sizeOf(Object value) {
+      if (value == null) {
+        return 0;
+      }
+      if (value instanceof String) {
+        // The String and its char array
+        return 2 * OBJECT_BYTES + 2L * ((String) value).length();
+      }
+      if (value instanceof byte[]) {
+        return OBJECT_BYTES + ((byte[]) value).length;
+      }
+      return OBJECT_BYTES;
+    }
+
+    String[] getColumns() {
+      return mColumns;
+    }
+
+    Object[][] getRows() {
+      return mRows;
+    }
+
+    long getSizeBytes() {
+      return mSizeBytes;
+    }
+  }
+}
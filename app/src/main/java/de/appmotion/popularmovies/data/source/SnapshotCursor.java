@@ -0,0 +1,123 @@
+package de.appmotion.popularmovies.data.source;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+/**
+ * A read-only Cursor over a {@link QueryCache.Snapshot}. Values are converted like SQLite converts them.
+ */
+class SnapshotCursor extends AbstractCursor {
+
+  private final String[] mColumns;
+  private final Object[][] mRows;
+
+  SnapshotCursor(QueryCache.Snapshot snapshot) {
+    mColumns = snapshot.getColumns();
+    mRows = snapshot.getRows();
+  }
+
+  /**
+   * Read all rows of a cursor, which is closed afterwards.
+   *
+   * @return the snapshot of the rows.
+   */
+  static QueryCache.Snapshot snapshot(Cursor cursor) {
+    try {
+      final String[] columns = cursor.getColumnNames();
+      final Object[][] rows = new Object[cursor.getCount()][];
+      for (int i = 0; cursor.moveToPosition(i); i++) {
+        Object[] row = new Object[columns.length];
+        for (int column = 0; column < columns.length; column++) {
+          switch (cursor.getType(column)) {
+            case FIELD_TYPE_INTEGER:
+              row[column] = cursor.getLong(column);
+              break;
+            case FIELD_TYPE_FLOAT:
+              row[column] = cursor.getDouble(column);
+              break;
+            case FIELD_TYPE_STRING:
+              row[column] = cursor.getString(column);
+              break;
+            case FIELD_TYPE_BLOB:
+              row[column] = cursor.getBlob(column);
+              break;
+            default:
+              row[column] = null;
+          }
+        }
+        rows[i] = row;
+      }
+      return new QueryCache.Snapshot(columns, rows);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private Object get(int column) {
+    checkPosition();
+    return mRows[mPos][column];
+  }
+
+  @Override public int getCount() {
+    return mRows.length;
+  }
+
+  @Override public String[] getColumnNames() {
+    return mColumns;
+  }
+
+  @Override public String getString(int column) {
+    Object value = get(column);
+    return value == null ? null : value.toString();
+  }
+
+  @Override public short getShort(int column) {
+    return (short) getLong(column);
+  }
+
+  @Override public int getInt(int column) {
+    return (int) getLong(column);
+  }
+
+  @Override public long getLong(int column) {
+    Object value = get(column);
+    if (value == null) {
+      return 0;
+    }
+    return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+  }
+
+  @Override public float getFloat(int column) {
+    return (float) getDouble(column);
+  }
+
+  @Override public double getDouble(int column) {
+    Object value = get(column);
+    if (value == null) {
+      return 0;
+    }
+    return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+  }
+
+  @Override public byte[] getBlob(int column) {
+    return (byte[]) get(column);
+  }
+
+  @Override public int getType(int column) {
+    Object value = get(column);
+    if (value == null) {
+      return FIELD_TYPE_NULL;
+    }
+    if (value instanceof Long) {
+      return FIELD_TYPE_INTEGER;
+    }
+    if (value instanceof Double) {
+      return FIELD_TYPE_FLOAT;
+    }
+    return value instanceof String ? FIELD_TYPE_STRING : FIELD_TYPE_BLOB;
+  }
+
+  @Override public boolean isNull(int column) {
+    return get(column) == null;
+  }
+}
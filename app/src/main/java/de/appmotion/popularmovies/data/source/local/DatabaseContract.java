@@ -2,6 +2,9 @@ package de.appmotion.popularmovies.data.source.local;
 
 import android.net.Uri;
 import android.provider.BaseColumns;
+import android.support.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 
 /**
  * Defines table and column names for the popularmovies database. Furthermore the Content provider constants for accessing data in this
@@ -25,12 +28,57 @@ public final class DatabaseContract {
   public static final String PATH_MOVIE_TOP_RATED = "movie_top_rated";
   // This is the path for the "favorite movie" directory
   public static final String PATH_MOVIE_FAVORITE = "movie_favorite";
+  // This is the path for a stored movie by its _ID, whichever lists it is in
+  public static final String PATH_MOVIE = "movie";
+  // This is the path for the search of all stored movies
+  public static final String PATH_MOVIE_SEARCH = "movie_search";
+  // These are the paths for the details, videos and reviews of a movie, followed by its TMDB movie id
+  public static final String PATH_MOVIE_DETAIL = "movie_detail";
+  public static final String PATH_MOVIE_VIDEO = "movie_video";
+  public static final String PATH_MOVIE_REVIEW = "movie_review";
+  // This is the path segment for a favorite movie by its TMDB movie id, see MovieFavoriteEntry.buildMovieIdUri()
+  public static final String PATH_MOVIE_ID = "movie_id";
+
+  // Query parameter of the search URI with the text the user searches for, see MovieSearchEntry.buildSearchUri()
+  public static final String QUERY_PARAMETER_SEARCH = "q";
+
+  /*
+   * Query parameters of a window of the popular or top rated movie directory, see buildWindowUri(). A window has at most
+   * "limit" movies in the order of MovieEntry.SORT_ORDER_WINDOW. The anchor is the rank and movie_id of the last movie of
+   * the previous window, the window starts after it. Without anchor the window starts at the top of the list.
+   */
+  public static final String QUERY_PARAMETER_LIMIT = "limit";
+  public static final String QUERY_PARAMETER_AFTER_RANK = "after_rank";
+  public static final String QUERY_PARAMETER_AFTER_MOVIE_ID = "after_movie_id";
 
   // To prevent someone from accidentally instantiating the contract class,
   // make the constructor private.
   private DatabaseContract() {
   }
 
+  /**
+   * @param contentUri content URI of the popular or top rated movie directory.
+   * @param limit maximum number of movies in the window.
+   * @return the URI of the first window of the list.
+   */
+  public static Uri buildWindowUri(Uri contentUri, int limit) {
+    return contentUri.buildUpon().appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit)).build();
+  }
+
+  /**
+   * @param contentUri content URI of the popular or top rated movie directory.
+   * @param limit maximum number of movies in the window.
+   * @param afterRank rank of the last movie of the previous window.
+   * @param afterMovieId movie_id of the last movie of the previous window.
+   * @return the URI of the window which follows the anchor.
+   */
+  public static Uri buildWindowUri(Uri contentUri, int limit, int afterRank, long afterMovieId) {
+    return buildWindowUri(contentUri, limit).buildUpon()
+        .appendQueryParameter(QUERY_PARAMETER_AFTER_RANK, String.valueOf(afterRank))
+        .appendQueryParameter(QUERY_PARAMETER_AFTER_MOVIE_ID, String.valueOf(afterMovieId))
+        .build();
+  }
+
   public static class MovieEntry implements BaseColumns {
     // Static final members for the table name and each of the db columns
     public static final String COLUMN_MOVIE_ID = "movie_id";
@@ -40,24 +88,200 @@ public final class DatabaseContract {
     public static final String COLUMN_MOVIE_VOTE_AVERAGE = "movie_vote_average";
     public static final String COLUMN_MOVIE_RELEASE_DATE = "movie_release_date";
     public static final String COLUMN_MOVIE_OVERVIEW = "movie_overview";
+    // Position of the movie in the list of the server, starting with 0
+    public static final String COLUMN_MOVIE_RANK = "movie_rank";
+    // Hash of the content columns, see MovieDeltaWriter
+    public static final String COLUMN_MOVIE_CONTENT_HASH = "movie_content_hash";
+    // Page of the movie in the list of the server, starting with 1
+    public static final String COLUMN_MOVIE_PAGE = "movie_page";
     public static final String COLUMN_TIMESTAMP = "timestamp";
+
+    // Sort orders of the lists, the list membership table has an index for each
+    public static final String SORT_ORDER_RANK = COLUMN_MOVIE_RANK + " ASC";
+    public static final String SORT_ORDER_NEWEST = COLUMN_TIMESTAMP + " DESC";
+    // Sort order of a window, the movie_id makes it unique if two movies have the same rank
+    public static final String SORT_ORDER_WINDOW = COLUMN_MOVIE_RANK + " ASC, " + COLUMN_MOVIE_ID + " ASC";
+    // Selection of the movies after the anchor of a window, the arguments are rank, rank and movie_id of the anchor.
+    // "rank >= ?" is the range in the rank index, the rest skips the movies with the rank of the anchor up to the anchor.
+    public static final String SELECTION_AFTER_ANCHOR =
+        COLUMN_MOVIE_RANK + " >= ? AND (" + COLUMN_MOVIE_RANK + " > ? OR " + COLUMN_MOVIE_ID + " > ?)";
+
+    // Projection of the movie grids: the poster, and the rank and movie_id at which MovieWindowPager anchors the next
+    // window. Without the overview many more rows fit into a CursorWindow, the detail screen loads the rest of a movie.
+    public static final String[] GRID_PROJECTION = { _ID, COLUMN_MOVIE_ID, COLUMN_MOVIE_IMAGE_URL, COLUMN_MOVIE_RANK };
+  }
+
+  /*
+   * Every movie is stored once in the movie table. The list tables below are views, which join the movie table
+   * with the movies of their list type in the list membership table.
+   */
+  public static final class MovieStoreEntry extends MovieEntry {
+    // MovieStoreEntry content URI = base content URI + path, only a single movie can be queried
+    public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE).build();
+    public static final String TABLE_NAME = "movie";
+
+    /**
+     * @param id the _ID of the movie, which is the _ID of the movie in every list.
+     * @return the URI of the stored movie with all its columns.
+     */
+    public static Uri buildMovieUri(long id) {
+      return CONTENT_URI.buildUpon().appendPath(String.valueOf(id)).build();
+    }
+  }
+
+  public static final class MovieListEntry implements BaseColumns {
+    public static final String TABLE_NAME = "movie_list";
+    // The list type, one of the LIST_TYPE constants
+    public static final String COLUMN_LIST_TYPE = "list_type";
+    public static final String COLUMN_MOVIE_ID = MovieEntry.COLUMN_MOVIE_ID;
+    public static final String COLUMN_MOVIE_RANK = MovieEntry.COLUMN_MOVIE_RANK;
+    public static final String COLUMN_MOVIE_PAGE = MovieEntry.COLUMN_MOVIE_PAGE;
+    // When the movie was added to the favorite list, or last fetched for the popular and top rated lists
+    public static final String COLUMN_TIMESTAMP = MovieEntry.COLUMN_TIMESTAMP;
+
+    // Covering index of the list views sorted by MovieEntry.SORT_ORDER_RANK
+    public static final String INDEX_RANK = "movie_list_rank_index";
+    // Covering index of the list views sorted by MovieEntry.SORT_ORDER_NEWEST
+    public static final String INDEX_TIMESTAMP = "movie_list_timestamp_index";
+
+    // Define {@link ListType} Types
+    public static final int LIST_TYPE_POPULAR = 1;
+    public static final int LIST_TYPE_TOP_RATED = 2;
+    public static final int LIST_TYPE_FAVORITE = 3;
+
+    @Retention(RetentionPolicy.CLASS) @IntDef({ LIST_TYPE_POPULAR, LIST_TYPE_TOP_RATED, LIST_TYPE_FAVORITE })
+    public @interface ListType {
+    }
+
+    /**
+     * @param listType the {@link ListType} of a list.
+     * @return the content URI of the list, a movie of the list is the content URI with its _ID appended.
+     */
+    public static Uri getContentUri(@ListType int listType) {
+      switch (listType) {
+        case LIST_TYPE_POPULAR:
+          return MoviePopularEntry.CONTENT_URI;
+        case LIST_TYPE_TOP_RATED:
+          return MovieTopRatedEntry.CONTENT_URI;
+        case LIST_TYPE_FAVORITE:
+          return MovieFavoriteEntry.CONTENT_URI;
+        default:
+          throw new IllegalArgumentException("Unknown list type: " + listType);
+      }
+    }
   }
 
   public static final class MoviePopularEntry extends MovieEntry {
     // MovieEntry content URI = base content URI + path
     public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_POPULAR).build();
+    // A view, its columns are the columns of MovieEntry
     public static final String TABLE_NAME = "movie_popular";
+    public static final int LIST_TYPE = MovieListEntry.LIST_TYPE_POPULAR;
   }
 
   public static final class MovieTopRatedEntry extends MovieEntry {
     // MovieEntry content URI = base content URI + path
     public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_TOP_RATED).build();
+    // A view, its columns are the columns of MovieEntry
     public static final String TABLE_NAME = "movie_top_rated";
+    public static final int LIST_TYPE = MovieListEntry.LIST_TYPE_TOP_RATED;
   }
 
   public static final class MovieFavoriteEntry extends MovieEntry {
     // FavoriteMovieEntry content URI = base content URI + path
     public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_FAVORITE).build();
+    // A view, its columns are the columns of MovieEntry
     public static final String TABLE_NAME = "movie_favorite";
+    public static final int LIST_TYPE = MovieListEntry.LIST_TYPE_FAVORITE;
+
+    /**
+     * @param movieId the TMDB movie id.
+     * @return the URI of the favorite movie with the movie id, it is looked up in the unique index of the list membership
+     * table.
+     */
+    public static Uri buildMovieIdUri(long movieId) {
+      return CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_ID).appendPath(String.valueOf(movieId)).build();
+    }
+  }
+
+  public static final class MovieSearchEntry extends MovieEntry {
+    // MovieSearchEntry content URI = base content URI + path
+    public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_SEARCH).build();
+    // Full-text index of title and overview of the movie table, its docid is the _ID of the movie
+    public static final String TABLE_NAME = "movie_search";
+
+    /**
+     * @param query the text the user searches for, every word is matched as prefix of a word in title or overview.
+     * @return the URI of the movies which match, the movies with all words in the title first, then the most popular.
+     */
+    public static Uri buildSearchUri(String query) {
+      return CONTENT_URI.buildUpon().appendQueryParameter(QUERY_PARAMETER_SEARCH, query).build();
+    }
+  }
+
+  /*
+   * The details of a movie which are not part of a movie list, stored by the detail screen so it can show them offline.
+   * They are keyed by the TMDB movie id and deleted with the movie. Every URI ends with the movie id, see buildMovieIdUri().
+   */
+  public static final class MovieDetailEntry implements BaseColumns {
+    // MovieDetailEntry content URI = base content URI + path
+    public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_DETAIL).build();
+    public static final String TABLE_NAME = "movie_detail";
+    public static final String COLUMN_MOVIE_ID = MovieEntry.COLUMN_MOVIE_ID;
+    // Runtime in minutes, 0 if unknown
+    public static final String COLUMN_MOVIE_RUNTIME = "movie_runtime";
+    // When the details, videos and reviews were fetched, in milliseconds since the epoch
+    public static final String COLUMN_FETCHED_MILLIS = "fetched_millis";
+
+    /**
+     * @param movieId the TMDB movie id.
+     * @return the URI of the details of the movie.
+     */
+    public static Uri buildMovieIdUri(long movieId) {
+      return CONTENT_URI.buildUpon().appendPath(String.valueOf(movieId)).build();
+    }
+  }
+
+  public static final class MovieVideoEntry implements BaseColumns {
+    // MovieVideoEntry content URI = base content URI + path
+    public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_VIDEO).build();
+    public static final String TABLE_NAME = "movie_video";
+    public static final String COLUMN_MOVIE_ID = MovieEntry.COLUMN_MOVIE_ID;
+    // Youtube key of the video
+    public static final String COLUMN_VIDEO_KEY = "video_key";
+    public static final String COLUMN_VIDEO_NAME = "video_name";
+    // Position of the video in the response of the server, starting with 0
+    public static final String COLUMN_POSITION = "position";
+
+    public static final String SORT_ORDER_POSITION = COLUMN_POSITION + " ASC";
+
+    /**
+     * @param movieId the TMDB movie id.
+     * @return the URI of the videos of the movie.
+     */
+    public static Uri buildMovieIdUri(long movieId) {
+      return CONTENT_URI.buildUpon().appendPath(String.valueOf(movieId)).build();
+    }
+  }
+
+  public static final class MovieReviewEntry implements BaseColumns {
+    // MovieReviewEntry content URI = base content URI + path
+    public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_MOVIE_REVIEW).build();
+    public static final String TABLE_NAME = "movie_review";
+    public static final String COLUMN_MOVIE_ID = MovieEntry.COLUMN_MOVIE_ID;
+    public static final String COLUMN_REVIEW_AUTHOR = "review_author";
+    public static final String COLUMN_REVIEW_CONTENT = "review_content";
+    // Position of the review in the response of the server, starting with 0
+    public static final String COLUMN_POSITION = "position";
+
+    public static final String SORT_ORDER_POSITION = COLUMN_POSITION + " ASC";
+
+    /**
+     * @param movieId the TMDB movie id.
+     * @return the URI of the reviews of the movie.
+     */
+    public static Uri buildMovieIdUri(long movieId) {
+      return CONTENT_URI.buildUpon().appendPath(String.valueOf(movieId)).build();
+    }
   }
 }
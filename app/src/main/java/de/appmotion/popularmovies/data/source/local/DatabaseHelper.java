@@ -1,8 +1,12 @@
 package de.appmotion.popularmovies.data.source.local;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages a local database for movie data.
@@ -11,11 +15,33 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
   private static DatabaseHelper sInstance;
 
+  // Writes the movie and list membership tables, shared by all writers of this database
+  private final MovieDeltaWriter mMovieDeltaWriter = new MovieDeltaWriter();
+
+  // The favorites in memory, loaded when the database is opened
+  private final FavoriteMovieIds mFavoriteMovieIds = new FavoriteMovieIds();
+
+  // Retention of the popular and top rated lists: 50 pages, a week older than the last fetch, 5 pages per transaction
+  private static final int MAX_ROWS_PER_LIST = 50 * NetworkUtils.MOVIES_PER_PAGE;
+  private static final long MAX_AGE_DAYS = 7L;
+  private static final int EVICTED_PAGES_PER_TRANSACTION = 5;
+  private final MovieListRetention mMovieListRetention =
+      new MovieListRetention(MAX_ROWS_PER_LIST, TimeUnit.DAYS.toMillis(MAX_AGE_DAYS), EVICTED_PAGES_PER_TRANSACTION);
+
   // The database name
   private static final String DATABASE_NAME = "movie.db";
 
   // If you change the database schema, you must increment the database version or the onUpgrade method will not be called.
-  private static final int DATABASE_VERSION = 2;
+  private static final int DATABASE_VERSION = 10;
+
+  // The oldest version onUpgrade migrates step by step, older databases are created again
+  private static final int OLDEST_MIGRATED_VERSION = 2;
+
+  // The tables of the lists up to version 4, and their views since version 5
+  private static final String[] LIST_NAMES = {
+      DatabaseContract.MoviePopularEntry.TABLE_NAME, DatabaseContract.MovieTopRatedEntry.TABLE_NAME,
+      DatabaseContract.MovieFavoriteEntry.TABLE_NAME
+  };
 
   public static synchronized DatabaseHelper getInstance(Context context) {
 
@@ -36,6 +62,37 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     super(context, DATABASE_NAME, null, DATABASE_VERSION);
   }
 
+  /**
+   * @return the {@link MovieDeltaWriter} for the movie and list membership tables.
+   */
+  public MovieDeltaWriter getMovieDeltaWriter() {
+    return mMovieDeltaWriter;
+  }
+
+  /**
+   * @return the {@link MovieListRetention} of the popular and top rated lists.
+   */
+  public MovieListRetention getMovieListRetention() {
+    return mMovieListRetention;
+  }
+
+  /**
+   * @return the {@link FavoriteMovieIds}, they are loaded once the database is opened.
+   */
+  public FavoriteMovieIds getFavoriteMovieIds() {
+    return mFavoriteMovieIds;
+  }
+
+  /**
+   * Called when the database has been opened, after it was created or upgraded. Loads the {@link FavoriteMovieIds}.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  @Override public void onOpen(SQLiteDatabase sqLiteDatabase) {
+    super.onOpen(sqLiteDatabase);
+    mFavoriteMovieIds.load(sqLiteDatabase);
+  }
+
   /**
    * Called when the database is created for the first time. This is where the creation of
    * tables and the initial population of the tables should happen.
@@ -43,20 +100,36 @@ public class DatabaseHelper extends SQLiteOpenHelper {
    * @param sqLiteDatabase The database.
    */
   @Override public void onCreate(SQLiteDatabase sqLiteDatabase) {
+    createMovieTables(sqLiteDatabase);
+
+    /*
+     * Create a view per list, which keeps the table names and columns of the former list tables
+     */
+    createListViews(sqLiteDatabase);
+    createListIndexes(sqLiteDatabase);
+    createSearchIndex(sqLiteDatabase);
+    createDetailTables(sqLiteDatabase);
+  }
+
+  /**
+   * Create the movie and the list membership table, added in version 5.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  private static void createMovieTables(SQLiteDatabase sqLiteDatabase) {
 
-    /* Create a table to hold popular movie data
+    /* Create a table to hold the movie data, every movie is stored once, no matter in how many lists it is
      *
      * If the INTEGER PRIMARY KEY column is not explicitly given a value, then it will be filled
      * automatically with an unused integer, usually one more than the largest _ID currently in
      * use. This is true regardless of whether or not the AUTOINCREMENT keyword is used.
      * <p>
      * If the AUTOINCREMENT keyword appears after INTEGER PRIMARY KEY, that changes the automatic
-     * _ID assignment algorithm to prevent the reuse of _IDs over the lifetime of the database.
-     * In other words, the purpose of AUTOINCREMENT is to prevent the reuse of _IDs from previously
+     * _ID assignment algorithm to prevent the reuse of _IDs from previously
      * deleted rows.
      */
-    final String SQL_CREATE_MOVIE_POPULAR_TABLE = "CREATE TABLE "
-        + DatabaseContract.MoviePopularEntry.TABLE_NAME
+    final String SQL_CREATE_MOVIE_TABLE = "CREATE TABLE "
+        + DatabaseContract.MovieStoreEntry.TABLE_NAME
         + " ("
         + DatabaseContract.MovieEntry._ID
         + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -74,87 +147,295 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         + " TEXT, "
         + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW
         + " TEXT, "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH
+        + " INTEGER NOT NULL DEFAULT 0, "
         + DatabaseContract.MovieEntry.COLUMN_TIMESTAMP
         + " TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
         /*
          * To ensure this table can only contain one Movie entry per Movie ID, we declare
-         * the ID column to be unique. We also specify "ON CONFLICT REPLACE". This tells
-         * SQLite that if we have a Movie entry for a certain ID and we attempt to
-         * insert another Movie entry with that ID, we replace the old Movie entry.
+         * the ID column to be unique. Movies are not replaced on conflict, MovieDeltaWriter
+         * updates a stored movie in place, so it keeps its _ID.
          */
         + " UNIQUE ("
         + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
-        + ") ON CONFLICT REPLACE"
+        + ")"
         + ");";
 
     /*
      * After we've spelled out our SQLite table creation statement above, we actually execute
      * that SQL with the execSQL method of our SQLite database object.
      */
-    sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_POPULAR_TABLE);
+    sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_TABLE);
 
     /*
-     * Create a table to hold top rated movie data
+     * Create a table to hold which movie is in which list, at which rank
      */
-    final String SQL_CREATE_MOVIE_TOP_RATED_TABLE = "CREATE TABLE "
-        + DatabaseContract.MovieTopRatedEntry.TABLE_NAME
+    final String SQL_CREATE_MOVIE_LIST_TABLE = "CREATE TABLE "
+        + DatabaseContract.MovieListEntry.TABLE_NAME
         + " ("
-        + DatabaseContract.MovieEntry._ID
+        + DatabaseContract.MovieListEntry._ID
         + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+        + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
         + " INTEGER NOT NULL, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
-        + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL
-        + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY
-        + " REAL, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE
-        + " REAL, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE
-        + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW
-        + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_TIMESTAMP
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+        + " INTEGER NOT NULL, "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK
+        + " INTEGER NOT NULL DEFAULT 0, "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+        + " INTEGER NOT NULL DEFAULT 1, "
+        + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
         + " TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+        // A movie is at most once in a list
         + " UNIQUE ("
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
-        + ") ON CONFLICT REPLACE"
+        + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+        + ")"
         + ");";
 
-    sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_TOP_RATED_TABLE);
+    sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_LIST_TABLE);
+  }
 
+  /**
+   * Create the tables of the details, videos and reviews of a movie, added in version 9. The videos and reviews are
+   * unique by movie id and position, so their index returns them in order.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  private static void createDetailTables(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("CREATE TABLE "
+        + DatabaseContract.MovieDetailEntry.TABLE_NAME
+        + " ("
+        + DatabaseContract.MovieDetailEntry._ID
+        + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+        + DatabaseContract.MovieDetailEntry.COLUMN_MOVIE_ID
+        + " INTEGER NOT NULL, "
+        + DatabaseContract.MovieDetailEntry.COLUMN_MOVIE_RUNTIME
+        + " INTEGER NOT NULL DEFAULT 0, "
+        + DatabaseContract.MovieDetailEntry.COLUMN_FETCHED_MILLIS
+        + " INTEGER NOT NULL DEFAULT 0, "
+        // A new fetch replaces the details
+        + " UNIQUE ("
+        + DatabaseContract.MovieDetailEntry.COLUMN_MOVIE_ID
+        + ") ON CONFLICT REPLACE"
+        + ");");
 
-    /*
-     * Create a table to hold favorite movie data
-     */
-    final String SQL_CREATE_MOVIE_FAVORITE_TABLE = "CREATE TABLE "
-        + DatabaseContract.MovieFavoriteEntry.TABLE_NAME
+    sqLiteDatabase.execSQL("CREATE TABLE "
+        + DatabaseContract.MovieVideoEntry.TABLE_NAME
         + " ("
-        + DatabaseContract.MovieEntry._ID
+        + DatabaseContract.MovieVideoEntry._ID
         + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+        + DatabaseContract.MovieVideoEntry.COLUMN_MOVIE_ID
         + " INTEGER NOT NULL, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
-        + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL
-        + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY
-        + " REAL, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE
-        + " REAL, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE
+        + DatabaseContract.MovieVideoEntry.COLUMN_VIDEO_KEY
+        + " TEXT NOT NULL, "
+        + DatabaseContract.MovieVideoEntry.COLUMN_VIDEO_NAME
         + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW
+        + DatabaseContract.MovieVideoEntry.COLUMN_POSITION
+        + " INTEGER NOT NULL, "
+        + " UNIQUE ("
+        + DatabaseContract.MovieVideoEntry.COLUMN_MOVIE_ID
+        + ", "
+        + DatabaseContract.MovieVideoEntry.COLUMN_POSITION
+        + ") ON CONFLICT REPLACE"
+        + ");");
+
+    sqLiteDatabase.execSQL("CREATE TABLE "
+        + DatabaseContract.MovieReviewEntry.TABLE_NAME
+        + " ("
+        + DatabaseContract.MovieReviewEntry._ID
+        + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+        + DatabaseContract.MovieReviewEntry.COLUMN_MOVIE_ID
+        + " INTEGER NOT NULL, "
+        + DatabaseContract.MovieReviewEntry.COLUMN_REVIEW_AUTHOR
         + " TEXT, "
-        + DatabaseContract.MovieEntry.COLUMN_TIMESTAMP
-        + " TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+        + DatabaseContract.MovieReviewEntry.COLUMN_REVIEW_CONTENT
+        + " TEXT NOT NULL, "
+        + DatabaseContract.MovieReviewEntry.COLUMN_POSITION
+        + " INTEGER NOT NULL, "
         + " UNIQUE ("
-        + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+        + DatabaseContract.MovieReviewEntry.COLUMN_MOVIE_ID
+        + ", "
+        + DatabaseContract.MovieReviewEntry.COLUMN_POSITION
         + ") ON CONFLICT REPLACE"
-        + ");";
+        + ");");
+  }
+
+  /**
+   * Create the full-text index of title and overview of the movie table, added in version 8. It is an FTS4 table with
+   * external content, so the text is stored once in the movie table. The triggers keep the index in sync with every
+   * write to the movie table, the index is filled with the movies already stored.
+   *
+   * Since version 10 the index uses the unicode61 tokenizer, which folds case and diacritics of all letters, e.g.
+   * "amelie" finds "Am&eacute;lie". The SQLite of Android before Lollipop does not have it, the simple tokenizer there folds
+   * only ASCII letters.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  private static void createSearchIndex(SQLiteDatabase sqLiteDatabase) {
+    final String movie = DatabaseContract.MovieStoreEntry.TABLE_NAME;
+    final String search = DatabaseContract.MovieSearchEntry.TABLE_NAME;
+    final String textColumns = DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE + ", " + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW;
+    final String tokenizer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? "unicode61" : "simple";
+    sqLiteDatabase.execSQL("CREATE VIRTUAL TABLE "
+        + search
+        + " USING fts4(content=\""
+        + movie
+        + "\", "
+        + textColumns
+        + ", tokenize="
+        + tokenizer
+        + ");");
+
+    // The old text has to be removed from the index while it is still in the movie table
+    final String deleteOld = " BEGIN DELETE FROM " + search + " WHERE docid = old." + DatabaseContract.MovieEntry._ID + "; END;";
+    final String insertNew = " BEGIN INSERT INTO "
+        + search
+        + " (docid, "
+        + textColumns
+        + ") VALUES (new."
+        + DatabaseContract.MovieEntry._ID
+        + ", new."
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
+        + ", new."
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW
+        + "); END;";
+    sqLiteDatabase.execSQL("CREATE TRIGGER " + search + "_before_update BEFORE UPDATE OF " + textColumns + " ON " + movie + deleteOld);
+    sqLiteDatabase.execSQL("CREATE TRIGGER " + search + "_before_delete BEFORE DELETE ON " + movie + deleteOld);
+    sqLiteDatabase.execSQL("CREATE TRIGGER " + search + "_after_update AFTER UPDATE OF " + textColumns + " ON " + movie + insertNew);
+    sqLiteDatabase.execSQL("CREATE TRIGGER " + search + "_after_insert AFTER INSERT ON " + movie + insertNew);
+
+    sqLiteDatabase.execSQL("INSERT INTO " + search + " (" + search + ") VALUES ('rebuild');");
+  }
+
+  /**
+   * Drop the full-text index and its triggers, see {@link #createSearchIndex(SQLiteDatabase)}.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  private static void dropSearchIndex(SQLiteDatabase sqLiteDatabase) {
+    final String search = DatabaseContract.MovieSearchEntry.TABLE_NAME;
+    for (String trigger : new String[] { "_before_update", "_before_delete", "_after_update", "_after_insert" }) {
+      sqLiteDatabase.execSQL("DROP TRIGGER IF EXISTS " + search + trigger);
+    }
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + search);
+  }
 
-    sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_FAVORITE_TABLE);
+  /**
+   * Create the list views. Since version 7 their movie_id column is read from the list membership table, so a window
+   * sorted by rank and movie_id is read in the order of {@link DatabaseContract.MovieListEntry#INDEX_RANK}.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  private static void createListViews(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL(createListView(DatabaseContract.MoviePopularEntry.TABLE_NAME, DatabaseContract.MoviePopularEntry.LIST_TYPE));
+    sqLiteDatabase.execSQL(createListView(DatabaseContract.MovieTopRatedEntry.TABLE_NAME, DatabaseContract.MovieTopRatedEntry.LIST_TYPE));
+    sqLiteDatabase.execSQL(createListView(DatabaseContract.MovieFavoriteEntry.TABLE_NAME, DatabaseContract.MovieFavoriteEntry.LIST_TYPE));
+  }
+
+  /**
+   * Create the indexes of the list membership table, added in version 6.
+   *
+   * A list view filters by list type and sorts by rank or timestamp. The indexes start with these columns, so SQLite reads
+   * the list in order without a temporary B-tree for ORDER BY. They also contain all other membership columns of the
+   * views, so the membership table itself is not read. The movies are looked up by the unique index on movie_id.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  private static void createListIndexes(SQLiteDatabase sqLiteDatabase) {
+    sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS "
+        + DatabaseContract.MovieListEntry.INDEX_RANK
+        + " ON "
+        + DatabaseContract.MovieListEntry.TABLE_NAME
+        + " ("
+        + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+        + ");");
+    sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS "
+        + DatabaseContract.MovieListEntry.INDEX_TIMESTAMP
+        + " ON "
+        + DatabaseContract.MovieListEntry.TABLE_NAME
+        + " ("
+        + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK
+        + ", "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+        + ");");
+  }
+
+  /**
+   * The view of a list has all columns of {@link DatabaseContract.MovieEntry}. The _ID is the _ID of the movie, so it is the
+   * same in every list. The rank, page and timestamp are those of the list membership.
+   *
+   * @param viewName name of the view
+   * @param listType the {@link DatabaseContract.MovieListEntry.ListType} of the view
+   * @return the CREATE VIEW statement
+   */
+  private static String createListView(String viewName, @DatabaseContract.MovieListEntry.ListType int listType) {
+    final String movie = DatabaseContract.MovieStoreEntry.TABLE_NAME;
+    final String list = DatabaseContract.MovieListEntry.TABLE_NAME;
+    return "CREATE VIEW "
+        + viewName
+        + " AS SELECT "
+        + column(movie, DatabaseContract.MovieEntry._ID)
+        + ", "
+        + column(list, DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID)
+        + ", "
+        + column(movie, DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE)
+        + ", "
+        + column(movie, DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL)
+        + ", "
+        + column(movie, DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY)
+        + ", "
+        + column(movie, DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE)
+        + ", "
+        + column(movie, DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE)
+        + ", "
+        + column(movie, DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW)
+        + ", "
+        + column(movie, DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH)
+        + ", "
+        + column(list, DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK)
+        + ", "
+        + column(list, DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE)
+        + ", "
+        + column(list, DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP)
+        + " FROM "
+        + list
+        + " JOIN "
+        + movie
+        + " ON "
+        + movie
+        + "."
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+        + " = "
+        + list
+        + "."
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+        + " WHERE "
+        + list
+        + "."
+        + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+        + " = "
+        + listType
+        + ";";
+  }
+
+  // "table.column AS column"
+  private static String column(String table, String column) {
+    return table + "." + column + " AS " + column;
   }
 
   /**
@@ -166,13 +447,195 @@ public class DatabaseHelper extends SQLiteOpenHelper {
    * @param newVersion The new database version
    */
   @Override public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-    // For now simply drop the tables and create new ones. This means if you change the
-    // DATABASE_VERSION the tables will be dropped.
-    // TODO: In a production app, this method might be modified to ALTER the tables
-    // instead of dropping them, so that existing data is not deleted.
-    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MoviePopularEntry.TABLE_NAME);
-    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MovieTopRatedEntry.TABLE_NAME);
-    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MovieFavoriteEntry.TABLE_NAME);
-    onCreate(sqLiteDatabase);
-  }
-}
\ No newline at end of file
+    if (oldVersion < OLDEST_MIGRATED_VERSION) {
+      // The schema of older versions is unknown, so drop the tables and create new ones
+      dropAll(sqLiteDatabase);
+      onCreate(sqLiteDatabase);
+      return;
+    }
+    // Migrate one version after the other, SQLiteOpenHelper runs all steps in one transaction
+    for (int version = oldVersion + 1; version <= newVersion; version++) {
+      migrateTo(sqLiteDatabase, version);
+    }
+  }
+
+  /**
+   * Migrate the database from the previous version to the given version. The tables are altered in place, so the
+   * favorites and the cached lists are kept.
+   *
+   * @param sqLiteDatabase The database.
+   * @param version The version to migrate to.
+   */
+  private static void migrateTo(SQLiteDatabase sqLiteDatabase, int version) {
+    switch (version) {
+      case 3:
+        // The movies of a list have a rank
+        for (String listName : LIST_NAMES) {
+          addRankColumn(sqLiteDatabase, listName);
+        }
+        break;
+      case 4:
+        // The movies have a content hash, 0 is no hash, so the next fetch of a movie updates it in place
+        for (String listName : LIST_NAMES) {
+          sqLiteDatabase.execSQL("ALTER TABLE "
+              + listName
+              + " ADD COLUMN "
+              + DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH
+              + " INTEGER NOT NULL DEFAULT 0;");
+        }
+        break;
+      case 5:
+        moveListTablesToMovieTables(sqLiteDatabase);
+        break;
+      case 6:
+        createListIndexes(sqLiteDatabase);
+        break;
+      case 7:
+        for (String listName : LIST_NAMES) {
+          sqLiteDatabase.execSQL("DROP VIEW IF EXISTS " + listName);
+        }
+        createListViews(sqLiteDatabase);
+        break;
+      case 8:
+        createSearchIndex(sqLiteDatabase);
+        break;
+      case 9:
+        createDetailTables(sqLiteDatabase);
+        break;
+      case 10:
+        // The index is built again with the tokenizer of the platform
+        dropSearchIndex(sqLiteDatabase);
+        createSearchIndex(sqLiteDatabase);
+        break;
+      default:
+        throw new IllegalStateException("No migration to database version " + version);
+    }
+  }
+
+  /**
+   * Add the rank column of version 3 to a list table. The stored movies were read in the order they were inserted, so
+   * that order becomes their rank.
+   *
+   * @param sqLiteDatabase The database.
+   * @param listName The list table.
+   */
+  private static void addRankColumn(SQLiteDatabase sqLiteDatabase, String listName) {
+    sqLiteDatabase.execSQL("ALTER TABLE "
+        + listName
+        + " ADD COLUMN "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK
+        + " INTEGER NOT NULL DEFAULT 0;");
+    sqLiteDatabase.execSQL("UPDATE "
+        + listName
+        + " SET "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK
+        + " = (SELECT COUNT(*) FROM "
+        + listName
+        + " AS previous WHERE previous."
+        + DatabaseContract.MovieEntry._ID
+        + " < "
+        + listName
+        + "."
+        + DatabaseContract.MovieEntry._ID
+        + ");");
+  }
+
+  /**
+   * Move the movies of the three list tables of version 4 to the movie and the list membership table of version 5. A
+   * movie in several lists is stored once, its rank, page and timestamp are kept per list. The list tables are replaced
+   * by the views of the same name.
+   *
+   * @param sqLiteDatabase The database.
+   */
+  private static void moveListTablesToMovieTables(SQLiteDatabase sqLiteDatabase) {
+    createMovieTables(sqLiteDatabase);
+
+    final String movieColumns = DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH
+        + ", "
+        + DatabaseContract.MovieEntry.COLUMN_TIMESTAMP;
+    final int[] listTypes = {
+        DatabaseContract.MoviePopularEntry.LIST_TYPE, DatabaseContract.MovieTopRatedEntry.LIST_TYPE,
+        DatabaseContract.MovieFavoriteEntry.LIST_TYPE
+    };
+    for (int i = 0; i < LIST_NAMES.length; i++) {
+      // The first list a movie is in wins, the copies in the other lists have the same movie id
+      sqLiteDatabase.execSQL("INSERT OR IGNORE INTO "
+          + DatabaseContract.MovieStoreEntry.TABLE_NAME
+          + " ("
+          + movieColumns
+          + ") SELECT "
+          + movieColumns
+          + " FROM "
+          + LIST_NAMES[i]
+          + ";");
+      sqLiteDatabase.execSQL("INSERT INTO "
+          + DatabaseContract.MovieListEntry.TABLE_NAME
+          + " ("
+          + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+          + ", "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+          + ", "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK
+          + ", "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+          + ", "
+          + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+          + ") SELECT "
+          + listTypes[i]
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK
+          + " / "
+          + NetworkUtils.MOVIES_PER_PAGE
+          + " + 1, "
+          + DatabaseContract.MovieEntry.COLUMN_TIMESTAMP
+          + " FROM "
+          + LIST_NAMES[i]
+          + ";");
+      sqLiteDatabase.execSQL("DROP TABLE " + LIST_NAMES[i]);
+    }
+    createListViews(sqLiteDatabase);
+  }
+
+  private static void dropAll(SQLiteDatabase sqLiteDatabase) {
+    // Up to version 4 the lists were tables, since version 5 they are views
+    for (String listName : LIST_NAMES) {
+      dropTableOrView(sqLiteDatabase, listName);
+    }
+    dropSearchIndex(sqLiteDatabase);
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MovieDetailEntry.TABLE_NAME);
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MovieVideoEntry.TABLE_NAME);
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MovieReviewEntry.TABLE_NAME);
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MovieListEntry.TABLE_NAME);
+    sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + DatabaseContract.MovieStoreEntry.TABLE_NAME);
+  }
+
+  private static void dropTableOrView(SQLiteDatabase sqLiteDatabase, String name) {
+    // DROP TABLE fails for a view and DROP VIEW fails for a table, so look up the type
+    Cursor cursor = sqLiteDatabase.rawQuery("SELECT type FROM sqlite_master WHERE name = ?", new String[] { name });
+    try {
+      if (cursor.moveToFirst()) {
+        sqLiteDatabase.execSQL("DROP " + ("view".equals(cursor.getString(0)) ? "VIEW " : "TABLE ") + name);
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * The movie ids of the favorite list in memory, so the UI checks whether a movie is a favorite without a query. It is
+ * loaded when the database is opened and kept in sync by the MovieContentProvider, which writes all favorites and loads
+ * them again after a failed batch. It is thread-safe.
+ */
+public class FavoriteMovieIds {
+
+  private final LongHashSet mMovieIds = new LongHashSet();
+  private boolean mLoaded;
+
+  /**
+   * @return true once the favorites are loaded, before that {@link #contains(long)} is false for every movie.
+   */
+  public synchronized boolean isLoaded() {
+    return mLoaded;
+  }
+
+  /**
+   * @param movieId the TMDB movie id.
+   * @return true if the movie is a favorite.
+   */
+  public synchronized boolean contains(long movieId) {
+    return mMovieIds.contains(movieId);
+  }
+
+  /**
+   * Read the movie ids of the favorite list.
+   *
+   * @param db the database.
+   */
+  public synchronized void load(SQLiteDatabase db) {
+    mMovieIds.clear();
+    Cursor cursor = db.query(DatabaseContract.MovieListEntry.TABLE_NAME, new String[] { DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID },
+        DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE + " = " + DatabaseContract.MovieListEntry.LIST_TYPE_FAVORITE, null, null, null,
+        null);
+    try {
+      while (cursor.moveToNext()) {
+        mMovieIds.add(cursor.getLong(0));
+      }
+    } finally {
+      cursor.close();
+    }
+    mLoaded = true;
+  }
+
+  /**
+   * Called after movies were added to the favorite list.
+   */
+  public synchronized void added(long[] movieIds) {
+    for (long movieId : movieIds) {
+      mMovieIds.add(movieId);
+    }
+  }
+
+  /**
+   * Called after movies were removed from the favorite list.
+   */
+  public synchronized void removed(long[] movieIds) {
+    for (long movieId : movieIds) {
+      mMovieIds.remove(movieId);
+    }
+  }
+}
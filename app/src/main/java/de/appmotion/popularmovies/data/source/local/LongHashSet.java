@@ -0,0 +1,118 @@
+package de.appmotion.popularmovies.data.source.local;
+
+/**
+ * A set of primitive longs, an open addressing hash table with linear probing. A lookup is a few array reads and
+ * allocates nothing, unlike a {@link java.util.HashSet} of boxed Longs. Not thread-safe.
+ */
+final class LongHashSet {
+
+  // Marks a free slot, the key 0 is kept in mContainsZero instead
+  private static final long FREE = 0;
+
+  private long[] mKeys;
+  private int mSize;
+  private boolean mContainsZero;
+
+  LongHashSet() {
+    mKeys = new long[16];
+  }
+
+  int size() {
+    return mContainsZero ? mSize + 1 : mSize;
+  }
+
+  boolean contains(long key) {
+    if (key == FREE) {
+      return mContainsZero;
+    }
+    for (int slot = slotOf(key, mKeys.length); mKeys[slot] != FREE; slot = (slot + 1) & (mKeys.length - 1)) {
+      if (mKeys[slot] == key) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the key was not in the set.
+   */
+  boolean add(long key) {
+    if (key == FREE) {
+      boolean added = !mContainsZero;
+      mContainsZero = true;
+      return added;
+    }
+    // At most half of the slots are used, so probe sequences stay short
+    if ((mSize + 1) * 2 > mKeys.length) {
+      resize(mKeys.length * 2);
+    }
+    int slot = slotOf(key, mKeys.length);
+    while (mKeys[slot] != FREE) {
+      if (mKeys[slot] == key) {
+        return false;
+      }
+      slot = (slot + 1) & (mKeys.length - 1);
+    }
+    mKeys[slot] = key;
+    mSize++;
+    return true;
+  }
+
+  /**
+   * @return true if the key was in the set.
+   */
+  boolean remove(long key) {
+    if (key == FREE) {
+      boolean removed = mContainsZero;
+      mContainsZero = false;
+      return removed;
+    }
+    final int mask = mKeys.length - 1;
+    int slot = slotOf(key, mKeys.length);
+    while (mKeys[slot] != key) {
+      if (mKeys[slot] == FREE) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    // Shift the following keys of the probe sequence back, so no lookup stops at the freed slot
+    int free = slot;
+    for (int next = (free + 1) & mask; mKeys[next] != FREE; next = (next + 1) & mask) {
+      int home = slotOf(mKeys[next], mKeys.length);
+      // The key can move to the free slot if its home slot is not between the free slot and its slot
+      boolean homeBetween = free <= next ? free < home && home <= next : free < home || home <= next;
+      if (!homeBetween) {
+        mKeys[free] = mKeys[next];
+        free = next;
+      }
+    }
+    mKeys[free] = FREE;
+    mSize--;
+    return true;
+  }
+
+  void clear() {
+    mKeys = new long[16];
+    mSize = 0;
+    mContainsZero = false;
+  }
+
+  private void resize(int capacity) {
+    long[] keys = mKeys;
+    mKeys = new long[capacity];
+    for (long key : keys) {
+      if (key != FREE) {
+        int slot = slotOf(key, capacity);
+        while (mKeys[slot] != FREE) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        mKeys[slot] = key;
+      }
+    }
+  }
+
+  private static int slotOf(long key, int capacity) {
+    // Fibonacci hashing spreads sequential ids over the table
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (capacity - 1);
+  }
+}
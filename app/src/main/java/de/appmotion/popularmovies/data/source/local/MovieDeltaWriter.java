@@ -0,0 +1,440 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.IntDef;
+import de.appmotion.popularmovies.data.source.remote.PagePrefetcher;
+import java.io.Closeable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the movies of a list as delta instead of replacing them:
+ *
+ * <ul>
+ * <li>a movie which is not stored yet is inserted to the movie table, a movie which is not in the list yet to the list
+ * membership table.</li>
+ * <li>the content columns of a stored movie are updated only if their content hash changed, its rank in the list only if
+ * it moved.</li>
+ * <li>a movie without changes is skipped.</li>
+ * </ul>
+ *
+ * A stored movie keeps its _ID, so adapters with stable ids are not rebound, and a refresh without changes writes only the
+ * fetch timestamp of the popular and top rated lists, which {@link MovieListRetention} evicts by, with one statement per
+ * page. A movie in several lists is written once. The rows are written by a {@link Batch}, which compiles its statements once per
+ * list and binds the {@link MovieRows} positionally. It is thread-safe.
+ */
+public class MovieDeltaWriter {
+
+  // Define {@link Outcome} Types
+  public static final int INSERTED = 0;
+  public static final int UPDATED = 1;
+  public static final int SKIPPED = 2;
+
+  // Content hash of a movie whose content does not come from the server, e.g. it was changed locally. It differs from
+  // every real hash, so the next fetch writes the movie.
+  public static final long NO_CONTENT_HASH = 0;
+
+  private static final String[] ROW_ID_PROJECTION = { DatabaseContract.MovieEntry._ID };
+  private static final String ROW_ID_SELECTION = DatabaseContract.MovieEntry.COLUMN_MOVIE_ID + " = ?";
+  // The tables keyed by movie id, which are deleted with the movie
+  private static final String[] DETAIL_TABLES = {
+      DatabaseContract.MovieDetailEntry.TABLE_NAME, DatabaseContract.MovieVideoEntry.TABLE_NAME,
+      DatabaseContract.MovieReviewEntry.TABLE_NAME
+  };
+
+  // 64 bit FNV-1a
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final AtomicLong mInsertedCount = new AtomicLong();
+  private final AtomicLong mUpdatedCount = new AtomicLong();
+  private final AtomicLong mSkippedCount = new AtomicLong();
+
+  /**
+   * Compile the statements for a list. The caller runs the batch in a transaction and closes it.
+   *
+   * @param db the writable database.
+   * @param listType the {@link DatabaseContract.MovieListEntry.ListType} the movies are written to.
+   * @return the batch.
+   */
+  public Batch newBatch(SQLiteDatabase db, @DatabaseContract.MovieListEntry.ListType int listType) {
+    return new Batch(db, listType);
+  }
+
+  /**
+   * @return the _ID of the movie, which is the same in every list, or -1 if it is not stored.
+   */
+  public long rowIdOf(SQLiteDatabase db, long movieId) {
+    Cursor cursor = db.query(DatabaseContract.MovieStoreEntry.TABLE_NAME, ROW_ID_PROJECTION, ROW_ID_SELECTION, new String[] { String.valueOf(movieId) }, null, null, null);
+    try {
+      return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Delete the movies which are in no list anymore, with their details, videos and reviews.
+   *
+   * @param db the writable database.
+   * @return number of deleted movies.
+   */
+  public int deleteUnlistedMovies(SQLiteDatabase db) {
+    int deleted;
+    db.beginTransaction();
+    try {
+      deleted = db.delete(DatabaseContract.MovieStoreEntry.TABLE_NAME, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+          + " NOT IN (SELECT "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+          + " FROM "
+          + DatabaseContract.MovieListEntry.TABLE_NAME
+          + ")", null);
+      // Also the details of movies which were deleted before, e.g. by an interrupted call
+      for (String table : DETAIL_TABLES) {
+        db.delete(table, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+            + " NOT IN (SELECT "
+            + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+            + " FROM "
+            + DatabaseContract.MovieStoreEntry.TABLE_NAME
+            + ")", null);
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    return deleted;
+  }
+
+  /**
+   * @return number of movies inserted to a list since start.
+   */
+  public long getInsertedCount() {
+    return mInsertedCount.get();
+  }
+
+  /**
+   * @return number of movies updated in a list since start.
+   */
+  public long getUpdatedCount() {
+    return mUpdatedCount.get();
+  }
+
+  /**
+   * @return number of movies skipped because nothing changed since start.
+   */
+  public long getSkippedCount() {
+    return mSkippedCount.get();
+  }
+
+  /**
+   * Hash of the content columns of a movie, the movie id and the rank are not part of it.
+   *
+   * @param rows the movies.
+   * @param index the index of the movie.
+   * @return 64 bit FNV-1a hash, never {@link #NO_CONTENT_HASH}.
+   */
+  static long contentHash(MovieRows rows, int index) {
+    long hash = FNV_OFFSET_BASIS;
+    hash = hash(hash, rows.getTitle(index));
+    hash = hash(hash, rows.getImageUrl(index));
+    hash = hash(hash, Double.doubleToLongBits(rows.getPopularity(index)));
+    hash = hash(hash, Double.doubleToLongBits(rows.getVoteAverage(index)));
+    hash = hash(hash, rows.getReleaseDate(index));
+    hash = hash(hash, rows.getOverview(index));
+    return hash == NO_CONTENT_HASH ? 1 : hash;
+  }
+
+  private static long hash(long hash, String text) {
+    // A marker per column, so "ab" + "c" differs from "a" + "bc", and null differs from ""
+    hash = (hash ^ (text == null ? 0 : 1)) * FNV_PRIME;
+    if (text != null) {
+      for (int i = 0; i < text.length(); i++) {
+        hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+      }
+    }
+    return hash;
+  }
+
+  private static long hash(long hash, long bits) {
+    for (int shift = 0; shift < 64; shift += 8) {
+      hash = (hash ^ ((bits >>> shift) & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+    if (value == null) {
+      statement.bindNull(index);
+    } else {
+      statement.bindString(index, value);
+    }
+  }
+
+  /**
+   * Writes the movies of one list with compiled statements, two for the movie table and two for the list membership
+   * table. The fetch timestamps of the movies which are in the list already are written once per page, call
+   * {@link #finish()} after the last movie. Not thread-safe, use one batch per transaction.
+   */
+  public final class Batch implements Closeable {
+
+    private final SQLiteDatabase mDatabase;
+    private final @DatabaseContract.MovieListEntry.ListType int mListType;
+    private final SQLiteStatement mInsertMovieStatement;
+    private final SQLiteStatement mUpdateMovieStatement;
+    private final SQLiteStatement mInsertMembershipStatement;
+    private final SQLiteStatement mUpdateMembershipStatement;
+    // The movies of the page which are in the list already, their fetch timestamp is written when the page is done. Null
+    // for the favorite list, whose timestamp is the time the movie was added.
+    private long[] mTouchMovieIds;
+    private int mTouchCount;
+    private int mTouchPage = -1;
+    // Number of stored movies whose content was updated, they may be shown in other lists too
+    private int mContentUpdatedCount;
+    // The movie ids of these movies
+    private long[] mContentUpdatedMovieIds = new long[8];
+    // Number of movies which were added to the list or moved to another rank
+    private int mMembershipChangedCount;
+    // The movie ids of the movies which were added to the list
+    private long[] mInsertedMovieIds = new long[8];
+    private int mInsertedMovieCount;
+
+    Batch(SQLiteDatabase db, @DatabaseContract.MovieListEntry.ListType int listType) {
+      mDatabase = db;
+      mListType = listType;
+      mTouchMovieIds = listType == DatabaseContract.MovieListEntry.LIST_TYPE_FAVORITE ? null : new long[8];
+      // Ignores a stored movie, executeInsert() returns -1 then
+      mInsertMovieStatement = db.compileStatement("INSERT OR IGNORE INTO "
+          + DatabaseContract.MovieStoreEntry.TABLE_NAME
+          + " ("
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW
+          + ", "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH
+          + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+      // Changes nothing if the content hash is the same
+      mUpdateMovieStatement = db.compileStatement("UPDATE "
+          + DatabaseContract.MovieStoreEntry.TABLE_NAME
+          + " SET "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE
+          + " = ?, "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL
+          + " = ?, "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY
+          + " = ?, "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE
+          + " = ?, "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE
+          + " = ?, "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW
+          + " = ?, "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH
+          + " = ? WHERE "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+          + " = ? AND "
+          + DatabaseContract.MovieEntry.COLUMN_MOVIE_CONTENT_HASH
+          + " <> ?");
+      // Ignores a movie which is in the list already
+      mInsertMembershipStatement = db.compileStatement("INSERT OR IGNORE INTO "
+          + DatabaseContract.MovieListEntry.TABLE_NAME
+          + " ("
+          + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+          + ", "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+          + ", "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK
+          + ", "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+          + ") VALUES (?, ?, ?, ?)");
+      // Changes nothing if the rank is the same, the page follows from the rank
+      mUpdateMembershipStatement = db.compileStatement("UPDATE "
+          + DatabaseContract.MovieListEntry.TABLE_NAME
+          + " SET "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK
+          + " = ?, "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+          + " = ? WHERE "
+          + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+          + " = ? AND "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+          + " = ? AND "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_RANK
+          + " <> ?");
+    }
+
+    /**
+     * Insert, update or skip a movie of the list.
+     *
+     * @param rows the movies.
+     * @param index the index of the movie.
+     * @return the {@link Outcome} for the list: {@link #INSERTED} if the movie was not in the list yet.
+     */
+    public @Outcome int write(MovieRows rows, int index) {
+      final long movieId = rows.getMovieId(index);
+      final long contentHash = contentHash(rows, index);
+      // A movie without rank is added at the top and keeps its stored rank
+      final boolean rankKnown = rows.getRank(index) != MovieRows.RANK_UNKNOWN;
+      final int rank = rankKnown ? rows.getRank(index) : 0;
+      final int page = PagePrefetcher.pageOf(rank);
+      final int contentUpdatedBefore = mContentUpdatedCount;
+
+      mInsertMovieStatement.bindLong(1, movieId);
+      bindStringOrNull(mInsertMovieStatement, 2, rows.getTitle(index));
+      bindStringOrNull(mInsertMovieStatement, 3, rows.getImageUrl(index));
+      mInsertMovieStatement.bindDouble(4, rows.getPopularity(index));
+      mInsertMovieStatement.bindDouble(5, rows.getVoteAverage(index));
+      bindStringOrNull(mInsertMovieStatement, 6, rows.getReleaseDate(index));
+      bindStringOrNull(mInsertMovieStatement, 7, rows.getOverview(index));
+      mInsertMovieStatement.bindLong(8, contentHash);
+      if (mInsertMovieStatement.executeInsert() == -1) {
+        // The movie is stored already, e.g. from another list
+        bindStringOrNull(mUpdateMovieStatement, 1, rows.getTitle(index));
+        bindStringOrNull(mUpdateMovieStatement, 2, rows.getImageUrl(index));
+        mUpdateMovieStatement.bindDouble(3, rows.getPopularity(index));
+        mUpdateMovieStatement.bindDouble(4, rows.getVoteAverage(index));
+        bindStringOrNull(mUpdateMovieStatement, 5, rows.getReleaseDate(index));
+        bindStringOrNull(mUpdateMovieStatement, 6, rows.getOverview(index));
+        mUpdateMovieStatement.bindLong(7, contentHash);
+        mUpdateMovieStatement.bindLong(8, movieId);
+        mUpdateMovieStatement.bindLong(9, contentHash);
+        if (mUpdateMovieStatement.executeUpdateDelete() > 0) {
+          if (mContentUpdatedCount == mContentUpdatedMovieIds.length) {
+            mContentUpdatedMovieIds = Arrays.copyOf(mContentUpdatedMovieIds, mContentUpdatedCount * 2);
+          }
+          mContentUpdatedMovieIds[mContentUpdatedCount++] = movieId;
+        }
+      }
+
+      mInsertMembershipStatement.bindLong(1, mListType);
+      mInsertMembershipStatement.bindLong(2, movieId);
+      mInsertMembershipStatement.bindLong(3, rank);
+      mInsertMembershipStatement.bindLong(4, page);
+      if (mInsertMembershipStatement.executeInsert() != -1) {
+        if (mInsertedMovieCount == mInsertedMovieIds.length) {
+          mInsertedMovieIds = Arrays.copyOf(mInsertedMovieIds, mInsertedMovieCount * 2);
+        }
+        mInsertedMovieIds[mInsertedMovieCount++] = movieId;
+        mMembershipChangedCount++;
+        mInsertedCount.incrementAndGet();
+        return INSERTED;
+      }
+
+      // The movie is in the list already
+      int rowsUpdated = 0;
+      if (rankKnown) {
+        mUpdateMembershipStatement.bindLong(1, rank);
+        mUpdateMembershipStatement.bindLong(2, page);
+        mUpdateMembershipStatement.bindLong(3, mListType);
+        mUpdateMembershipStatement.bindLong(4, movieId);
+        mUpdateMembershipStatement.bindLong(5, rank);
+        rowsUpdated = mUpdateMembershipStatement.executeUpdateDelete();
+      }
+      if (mTouchMovieIds != null) {
+        if (page != mTouchPage) {
+          touch();
+          mTouchPage = page;
+        }
+        if (mTouchCount == mTouchMovieIds.length) {
+          mTouchMovieIds = Arrays.copyOf(mTouchMovieIds, mTouchCount * 2);
+        }
+        mTouchMovieIds[mTouchCount++] = movieId;
+      }
+
+      mMembershipChangedCount += rowsUpdated;
+      if (rowsUpdated == 0 && mContentUpdatedCount == contentUpdatedBefore) {
+        mSkippedCount.incrementAndGet();
+        return SKIPPED;
+      }
+      mUpdatedCount.incrementAndGet();
+      return UPDATED;
+    }
+
+    /**
+     * Write the fetch timestamps of the last page. Call it after the last movie, before the transaction is committed.
+     */
+    public void finish() {
+      touch();
+    }
+
+    /**
+     * Mark the movies of the page fetched again, it is not a change of the list.
+     */
+    private void touch() {
+      if (mTouchCount == 0) {
+        return;
+      }
+      StringBuilder movieIds = new StringBuilder();
+      for (int i = 0; i < mTouchCount; i++) {
+        movieIds.append(i == 0 ? "" : ", ").append(mTouchMovieIds[i]);
+      }
+      mDatabase.execSQL("UPDATE "
+          + DatabaseContract.MovieListEntry.TABLE_NAME
+          + " SET "
+          + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+          + " = CURRENT_TIMESTAMP WHERE "
+          + DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE
+          + " = "
+          + mListType
+          + " AND "
+          + DatabaseContract.MovieListEntry.COLUMN_MOVIE_ID
+          + " IN ("
+          + movieIds
+          + ")");
+      mTouchCount = 0;
+    }
+
+    /**
+     * @return number of stored movies whose content was updated by this batch. Other lists show these movies too.
+     */
+    public int getContentUpdatedCount() {
+      return mContentUpdatedCount;
+    }
+
+    /**
+     * @return the movie ids of the movies whose content was updated by this batch.
+     */
+    public long[] getContentUpdatedMovieIds() {
+      return Arrays.copyOf(mContentUpdatedMovieIds, mContentUpdatedCount);
+    }
+
+    /**
+     * @return the movie ids of the movies which this batch added to the list, not the ones which were in it already.
+     */
+    public long[] getInsertedMovieIds() {
+      return Arrays.copyOf(mInsertedMovieIds, mInsertedMovieCount);
+    }
+
+    /**
+     * @return number of movies which this batch added to the list or moved to another rank. The other movies of the list
+     * keep their position.
+     */
+    public int getMembershipChangedCount() {
+      return mMembershipChangedCount;
+    }
+
+    @Override public void close() {
+      mInsertMovieStatement.close();
+      mUpdateMovieStatement.close();
+      mInsertMembershipStatement.close();
+      mUpdateMembershipStatement.close();
+    }
+  }
+
+  @Retention(RetentionPolicy.CLASS) @IntDef({ INSERTED, UPDATED, SKIPPED })
+  public @interface Outcome {
+  }
+}
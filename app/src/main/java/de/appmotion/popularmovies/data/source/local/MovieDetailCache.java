@@ -0,0 +1,193 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.RemoteException;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import de.appmotion.popularmovies.data.MovieDetail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline copy of the {@link MovieDetail} of a movie: runtime, trailers and reviews, stored through the MovieContentProvider
+ * in the tables of {@link DatabaseContract.MovieDetailEntry}, {@link DatabaseContract.MovieVideoEntry} and
+ * {@link DatabaseContract.MovieReviewEntry}. The detail screen shows the copy at once and fetches the details again, once
+ * the copy is older than {@link #MAX_AGE_MILLIS}.
+ */
+public final class MovieDetailCache {
+
+  // Runtime, trailers and reviews rarely change
+  public static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  private static final String TAG = MovieDetailCache.class.getSimpleName();
+  // How often query() reads the details again, if they are replaced while it reads them
+  private static final int MAX_QUERY_ATTEMPTS = 3;
+  private static final String[] DETAIL_PROJECTION = {
+      DatabaseContract.MovieDetailEntry.COLUMN_MOVIE_RUNTIME, DatabaseContract.MovieDetailEntry.COLUMN_FETCHED_MILLIS
+  };
+  private static final String[] VIDEO_PROJECTION = {
+      DatabaseContract.MovieVideoEntry.COLUMN_VIDEO_KEY, DatabaseContract.MovieVideoEntry.COLUMN_VIDEO_NAME
+  };
+  private static final String[] REVIEW_PROJECTION = {
+      DatabaseContract.MovieReviewEntry.COLUMN_REVIEW_AUTHOR, DatabaseContract.MovieReviewEntry.COLUMN_REVIEW_CONTENT
+  };
+
+  private MovieDetailCache() {
+  }
+
+  /**
+   * @param movieDetail the stored details.
+   * @param nowMillis the current time.
+   * @return false if the details are older than {@link #MAX_AGE_MILLIS}, or the clock was set back since they were fetched.
+   */
+  public static boolean isFresh(MovieDetail movieDetail, long nowMillis) {
+    long ageMillis = nowMillis - movieDetail.getFetchedMillis();
+    return ageMillis >= 0 && ageMillis < MAX_AGE_MILLIS;
+  }
+
+  /**
+   * Read the stored details of a movie, call it on a background thread. The tables are read one after the other, so the
+   * details are read again if they were replaced in between, a reader never gets the videos of one fetch and the reviews of
+   * another.
+   *
+   * @param contentResolver the ContentResolver.
+   * @param movieId the TMDB movie id.
+   * @return the details, or null if they were never stored.
+   */
+  public static @Nullable MovieDetail query(ContentResolver contentResolver, long movieId) {
+    MovieDetail movieDetail = null;
+    for (int attempt = 0; attempt < MAX_QUERY_ATTEMPTS; attempt++) {
+      movieDetail = queryOnce(contentResolver, movieId);
+      // A store() in between replaced the detail row with a newer fetch time
+      if (movieDetail == null || fetchedMillisOf(contentResolver, movieId) == movieDetail.getFetchedMillis()) {
+        return movieDetail;
+      }
+    }
+    return movieDetail;
+  }
+
+  private static @Nullable MovieDetail queryOnce(ContentResolver contentResolver, long movieId) {
+    final MovieDetail movieDetail = new MovieDetail();
+    movieDetail.setMovieId(movieId);
+    Cursor cursor = contentResolver.query(DatabaseContract.MovieDetailEntry.buildMovieIdUri(movieId), DETAIL_PROJECTION, null, null, null);
+    if (cursor == null) {
+      return null;
+    }
+    try {
+      if (!cursor.moveToFirst()) {
+        return null;
+      }
+      movieDetail.setRuntime(cursor.getInt(0));
+      movieDetail.setFetchedMillis(cursor.getLong(1));
+    } finally {
+      cursor.close();
+    }
+
+    cursor = contentResolver.query(DatabaseContract.MovieVideoEntry.buildMovieIdUri(movieId), VIDEO_PROJECTION, null, null, null);
+    if (cursor != null) {
+      try {
+        while (cursor.moveToNext()) {
+          movieDetail.getTrailers().add(new MovieDetail.Trailer(cursor.getString(0), cursor.getString(1)));
+        }
+      } finally {
+        cursor.close();
+      }
+    }
+
+    cursor = contentResolver.query(DatabaseContract.MovieReviewEntry.buildMovieIdUri(movieId), REVIEW_PROJECTION, null, null, null);
+    if (cursor != null) {
+      try {
+        while (cursor.moveToNext()) {
+          movieDetail.getReviews().add(new MovieDetail.Review(cursor.getString(0), cursor.getString(1)));
+        }
+      } finally {
+        cursor.close();
+      }
+    }
+    return movieDetail;
+  }
+
+  /**
+   * @return the fetch time of the stored details of a movie, or -1 if they were never stored.
+   */
+  private static long fetchedMillisOf(ContentResolver contentResolver, long movieId) {
+    Cursor cursor = contentResolver.query(DatabaseContract.MovieDetailEntry.buildMovieIdUri(movieId), DETAIL_PROJECTION, null, null, null);
+    if (cursor == null) {
+      return -1;
+    }
+    try {
+      return cursor.moveToFirst() ? cursor.getLong(1) : -1;
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Replace the stored details of a movie in one batch, unless the stored ones are of the same or a newer fetch, e.g. when
+   * a Loader delivers its result again. Call it on a background thread.
+   *
+   * @param contentResolver the ContentResolver.
+   * @param movieId the TMDB movie id.
+   * @param movieDetail the details fetched from themoviedb.org.
+   * @param fetchedMillis when the response was received from the server.
+   * @return false if the details could not be stored.
+   */
+  public static boolean store(ContentResolver contentResolver, long movieId, MovieDetail movieDetail, long fetchedMillis) {
+    if (fetchedMillisOf(contentResolver, movieId) >= fetchedMillis) {
+      return true;
+    }
+    final Uri videoUri = DatabaseContract.MovieVideoEntry.buildMovieIdUri(movieId);
+    final Uri reviewUri = DatabaseContract.MovieReviewEntry.buildMovieIdUri(movieId);
+    final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+    operations.add(ContentProviderOperation.newDelete(videoUri).build());
+    operations.add(ContentProviderOperation.newDelete(reviewUri).build());
+    operations.add(ContentProviderOperation.newInsert(DatabaseContract.MovieDetailEntry.buildMovieIdUri(movieId))
+        .withValue(DatabaseContract.MovieDetailEntry.COLUMN_MOVIE_RUNTIME, movieDetail.getRuntime())
+        .withValue(DatabaseContract.MovieDetailEntry.COLUMN_FETCHED_MILLIS, fetchedMillis)
+        .build());
+    List<MovieDetail.Trailer> trailers = movieDetail.getTrailers();
+    for (int i = 0; i < trailers.size(); i++) {
+      operations.add(ContentProviderOperation.newInsert(videoUri)
+          .withValue(DatabaseContract.MovieVideoEntry.COLUMN_VIDEO_KEY, trailers.get(i).getKey())
+          .withValue(DatabaseContract.MovieVideoEntry.COLUMN_VIDEO_NAME, trailers.get(i).getName())
+          .withValue(DatabaseContract.MovieVideoEntry.COLUMN_POSITION, i)
+          .build());
+    }
+    List<MovieDetail.Review> reviews = movieDetail.getReviews();
+    for (int i = 0; i < reviews.size(); i++) {
+      operations.add(ContentProviderOperation.newInsert(reviewUri)
+          .withValue(DatabaseContract.MovieReviewEntry.COLUMN_REVIEW_AUTHOR, reviews.get(i).getAuthor())
+          .withValue(DatabaseContract.MovieReviewEntry.COLUMN_REVIEW_CONTENT, reviews.get(i).getContent())
+          .withValue(DatabaseContract.MovieReviewEntry.COLUMN_POSITION, i)
+          .build());
+    }
+
+    try {
+      contentResolver.applyBatch(DatabaseContract.AUTHORITY, operations);
+      return true;
+    } catch (RemoteException | OperationApplicationException | SQLException e) {
+      Log.e(TAG, "Storing the details of movie " + movieId + " failed: ", e);
+      return false;
+    }
+  }
+
+  /**
+   * {@link #store(ContentResolver, long, MovieDetail, long)} on a background thread.
+   */
+  public static void storeInBackground(final ContentResolver contentResolver, final long movieId, final MovieDetail movieDetail,
+      final long fetchedMillis) {
+    AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+      @Override public void run() {
+        store(contentResolver, movieId, movieDetail, fetchedMillis);
+      }
+    });
+  }
+}
@@ -0,0 +1,46 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+import de.appmotion.popularmovies.data.MovieDetail;
+
+/**
+ * Loads the stored {@link MovieDetail} of a movie with {@link MovieDetailCache#query(android.content.ContentResolver, long)}.
+ * The result is null if the details were never stored.
+ */
+public class MovieDetailCacheLoader extends AsyncTaskLoader<MovieDetail> {
+
+  private final long mMovieId;
+
+  // Caching: The result of the last load, it is delivered again instead of loading twice.
+  private MovieDetail mResult;
+  private boolean mLoaded;
+
+  /**
+   * @param context current context
+   * @param movieId the TMDB movie id.
+   */
+  public MovieDetailCacheLoader(Context context, long movieId) {
+    super(context);
+    mMovieId = movieId;
+  }
+
+  @Override protected void onStartLoading() {
+    if (mLoaded) {
+      deliverResult(mResult);
+    }
+    if (takeContentChanged() || !mLoaded) {
+      forceLoad();
+    }
+  }
+
+  @Override public MovieDetail loadInBackground() {
+    return MovieDetailCache.query(getContext().getContentResolver(), mMovieId);
+  }
+
+  @Override public void deliverResult(MovieDetail data) {
+    mResult = data;
+    mLoaded = true;
+    super.deliverResult(data);
+  }
+}
@@ -0,0 +1,177 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the popular and top rated lists by age and row count. The timestamp of a list membership is the last time the
+ * movie was fetched for the list, see {@link MovieDeltaWriter}.
+ *
+ * <ul>
+ * <li>age: movies fetched longer than the maximum age before the last fetch of their list are removed. The age is relative
+ * to the last fetch, so a list which is not refreshed, e.g. offline, keeps its movies.</li>
+ * <li>count: while a list has more than the maximum number of rows, its least recently fetched pages are removed.</li>
+ * </ul>
+ *
+ * Rows are removed in transactions of a few pages, so readers of the database wait only briefly. Removing the movies which
+ * are in no list anymore is left to the caller, see {@link MovieDeltaWriter#deleteUnlistedMovies(SQLiteDatabase)}. It is
+ * thread-safe.
+ */
+public class MovieListRetention {
+
+  // Name of the ContentProvider method which evicts the popular and top rated lists
+  public static final String METHOD_EVICT = "evict_movie_lists";
+  // Keys of the result of the method
+  public static final String KEY_LIST_ROWS_EVICTED = "list_rows_evicted";
+  public static final String KEY_MOVIES_DELETED = "movies_deleted";
+
+  private static final String LIST_TYPE_SELECTION = DatabaseContract.MovieListEntry.COLUMN_LIST_TYPE + " = ?";
+
+  private final int mMaxRowsPerList;
+  private final long mMaxAgeSeconds;
+  private final int mPagesPerTransaction;
+  private final AtomicLong mEvictedRowCount = new AtomicLong();
+
+  /**
+   * @param maxRowsPerList maximum number of movies per list.
+   * @param maxAgeMillis maximum age of a movie relative to the last fetch of its list.
+   * @param pagesPerTransaction maximum number of pages removed in one transaction.
+   */
+  public MovieListRetention(int maxRowsPerList, long maxAgeMillis, int pagesPerTransaction) {
+    mMaxRowsPerList = maxRowsPerList;
+    mMaxAgeSeconds = TimeUnit.MILLISECONDS.toSeconds(maxAgeMillis);
+    mPagesPerTransaction = Math.max(pagesPerTransaction, 1);
+  }
+
+  /**
+   * Remove the movies of a list which are too old and then the least recently fetched pages, which exceed the maximum
+   * number of rows. Call it outside of a transaction, every batch of pages has its own.
+   *
+   * @param db the writable database.
+   * @param listType the {@link DatabaseContract.MovieListEntry.ListType} of the list.
+   * @return number of movies removed from the list.
+   */
+  public int evictList(SQLiteDatabase db, @DatabaseContract.MovieListEntry.ListType int listType) {
+    int evicted = evictAged(db, listType) + evictLeastRecentlyFetchedPages(db, listType);
+    mEvictedRowCount.addAndGet(evicted);
+    return evicted;
+  }
+
+  /**
+   * @return number of movies removed from lists since start.
+   */
+  public long getEvictedRowCount() {
+    return mEvictedRowCount.get();
+  }
+
+  private int evictAged(SQLiteDatabase db, @DatabaseContract.MovieListEntry.ListType int listType) {
+    final String[] listTypeArgs = { String.valueOf(listType) };
+    // The timestamps are "YYYY-MM-DD HH:MM:SS" in UTC, so SQLite computes the cutoff and the strings compare by time
+    String cutoff = DatabaseUtils.stringForQuery(db, "SELECT datetime(MAX("
+        + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+        + "), '-"
+        + mMaxAgeSeconds
+        + " seconds') FROM "
+        + DatabaseContract.MovieListEntry.TABLE_NAME
+        + " WHERE "
+        + LIST_TYPE_SELECTION, listTypeArgs);
+    if (cutoff == null) {
+      // The list is empty
+      return 0;
+    }
+
+    final int rowsPerTransaction = mPagesPerTransaction * NetworkUtils.MOVIES_PER_PAGE;
+    final String selection = DatabaseContract.MovieListEntry._ID
+        + " IN (SELECT "
+        + DatabaseContract.MovieListEntry._ID
+        + " FROM "
+        + DatabaseContract.MovieListEntry.TABLE_NAME
+        + " WHERE "
+        + LIST_TYPE_SELECTION
+        + " AND "
+        + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+        + " < ? LIMIT "
+        + rowsPerTransaction
+        + ")";
+    final String[] selectionArgs = { String.valueOf(listType), cutoff };
+    int evicted = 0;
+    int deleted;
+    do {
+      db.beginTransaction();
+      try {
+        deleted = db.delete(DatabaseContract.MovieListEntry.TABLE_NAME, selection, selectionArgs);
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+      evicted += deleted;
+    } while (deleted == rowsPerTransaction);
+    return evicted;
+  }
+
+  private int evictLeastRecentlyFetchedPages(SQLiteDatabase db, @DatabaseContract.MovieListEntry.ListType int listType) {
+    final String[] listTypeArgs = { String.valueOf(listType) };
+    long rowCount = DatabaseUtils.queryNumEntries(db, DatabaseContract.MovieListEntry.TABLE_NAME, LIST_TYPE_SELECTION, listTypeArgs);
+    if (rowCount <= mMaxRowsPerList) {
+      return 0;
+    }
+
+    // A page was fetched when its newest movie was, the deeper page goes first if two were fetched at the same time
+    List<Long> pages = new ArrayList<>();
+    Cursor cursor = db.rawQuery("SELECT "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+        + ", COUNT(*) FROM "
+        + DatabaseContract.MovieListEntry.TABLE_NAME
+        + " WHERE "
+        + LIST_TYPE_SELECTION
+        + " GROUP BY "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+        + " ORDER BY MAX("
+        + DatabaseContract.MovieListEntry.COLUMN_TIMESTAMP
+        + ") ASC, "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+        + " DESC", listTypeArgs);
+    try {
+      while (rowCount > mMaxRowsPerList && cursor.moveToNext()) {
+        pages.add(cursor.getLong(0));
+        rowCount -= cursor.getLong(1);
+      }
+    } finally {
+      cursor.close();
+    }
+
+    SQLiteStatement deletePage = db.compileStatement("DELETE FROM "
+        + DatabaseContract.MovieListEntry.TABLE_NAME
+        + " WHERE "
+        + LIST_TYPE_SELECTION
+        + " AND "
+        + DatabaseContract.MovieListEntry.COLUMN_MOVIE_PAGE
+        + " = ?");
+    int evicted = 0;
+    try {
+      for (int start = 0; start < pages.size(); start += mPagesPerTransaction) {
+        db.beginTransaction();
+        try {
+          for (int i = start; i < Math.min(start + mPagesPerTransaction, pages.size()); i++) {
+            deletePage.bindLong(1, listType);
+            deletePage.bindLong(2, pages.get(i));
+            evicted += deletePage.executeUpdateDelete();
+          }
+          db.setTransactionSuccessful();
+        } finally {
+          db.endTransaction();
+        }
+      }
+    } finally {
+      deletePage.close();
+    }
+    return evicted;
+  }
+}
@@ -0,0 +1,216 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Bundle;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * Compact row format for bulk inserts of movie list pages: one array per column instead of one {@link ContentValues} map
+ * per movie. The rows are handed to the ContentProvider via {@link ContentResolver#call(Uri, String, String, Bundle)},
+ * see {@link #insertInto(ContentResolver, Uri)}, and bound positionally to compiled statements there.
+ */
+public final class MovieRows {
+
+  // Name of the ContentProvider method which inserts the rows
+  public static final String METHOD_BULK_INSERT = "bulk_insert_movie_rows";
+  // Key of the number of stored rows in the result of the method
+  public static final String KEY_ROWS_STORED = "rows_stored";
+  // Rank of a movie whose position in the list is not known, e.g. a favorite. A stored rank is kept.
+  public static final int RANK_UNKNOWN = -1;
+
+  private static final String KEY_MOVIE_IDS = "movie_ids";
+  private static final String KEY_TITLES = "titles";
+  private static final String KEY_IMAGE_URLS = "image_urls";
+  private static final String KEY_POPULARITIES = "popularities";
+  private static final String KEY_VOTE_AVERAGES = "vote_averages";
+  private static final String KEY_RELEASE_DATES = "release_dates";
+  private static final String KEY_OVERVIEWS = "overviews";
+  private static final String KEY_RANKS = "ranks";
+
+  private int mSize;
+  private long[] mMovieIds;
+  private String[] mTitles;
+  private String[] mImageUrls;
+  private double[] mPopularities;
+  private double[] mVoteAverages;
+  private String[] mReleaseDates;
+  private String[] mOverviews;
+  private int[] mRanks;
+
+  /**
+   * @param capacity expected number of rows, e.g. the movies per page. More rows can be added.
+   */
+  public MovieRows(int capacity) {
+    capacity = Math.max(capacity, 1);
+    mMovieIds = new long[capacity];
+    mTitles = new String[capacity];
+    mImageUrls = new String[capacity];
+    mPopularities = new double[capacity];
+    mVoteAverages = new double[capacity];
+    mReleaseDates = new String[capacity];
+    mOverviews = new String[capacity];
+    mRanks = new int[capacity];
+  }
+
+  /**
+   * Convert ContentValues with the columns of {@link DatabaseContract.MovieEntry}. A missing rank is {@link #RANK_UNKNOWN}.
+   *
+   * @param values the movies.
+   * @return the rows.
+   */
+  public static MovieRows from(ContentValues[] values) {
+    MovieRows rows = new MovieRows(values.length);
+    for (ContentValues value : values) {
+      Long movieId = value.getAsLong(DatabaseContract.MovieEntry.COLUMN_MOVIE_ID);
+      Double popularity = value.getAsDouble(DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY);
+      Double voteAverage = value.getAsDouble(DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE);
+      Integer rank = value.getAsInteger(DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK);
+      if (movieId == null) {
+        throw new IllegalArgumentException("Missing " + DatabaseContract.MovieEntry.COLUMN_MOVIE_ID);
+      }
+      rows.add(movieId, value.getAsString(DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE),
+          value.getAsString(DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL), popularity == null ? 0 : popularity,
+          voteAverage == null ? 0 : voteAverage, value.getAsString(DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE),
+          value.getAsString(DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW), rank == null ? RANK_UNKNOWN : rank);
+    }
+    return rows;
+  }
+
+  /**
+   * Read rows written by {@link #toBundle()}.
+   *
+   * @throws IllegalArgumentException if a column is missing or has another number of rows than the movie ids.
+   */
+  public static MovieRows fromBundle(Bundle bundle) {
+    long[] movieIds = bundle.getLongArray(KEY_MOVIE_IDS);
+    if (movieIds == null) {
+      throw new IllegalArgumentException("Missing " + KEY_MOVIE_IDS);
+    }
+    MovieRows rows = new MovieRows(0);
+    rows.mSize = movieIds.length;
+    rows.mMovieIds = movieIds;
+    rows.mTitles = checkLength(KEY_TITLES, bundle.getStringArray(KEY_TITLES), movieIds.length);
+    rows.mImageUrls = checkLength(KEY_IMAGE_URLS, bundle.getStringArray(KEY_IMAGE_URLS), movieIds.length);
+    rows.mPopularities = checkLength(KEY_POPULARITIES, bundle.getDoubleArray(KEY_POPULARITIES), movieIds.length);
+    rows.mVoteAverages = checkLength(KEY_VOTE_AVERAGES, bundle.getDoubleArray(KEY_VOTE_AVERAGES), movieIds.length);
+    rows.mReleaseDates = checkLength(KEY_RELEASE_DATES, bundle.getStringArray(KEY_RELEASE_DATES), movieIds.length);
+    rows.mOverviews = checkLength(KEY_OVERVIEWS, bundle.getStringArray(KEY_OVERVIEWS), movieIds.length);
+    rows.mRanks = checkLength(KEY_RANKS, bundle.getIntArray(KEY_RANKS), movieIds.length);
+    return rows;
+  }
+
+  /**
+   * @param column an array of a column, which is checked before the rows are written in a transaction.
+   * @return the array.
+   */
+  private static <T> T checkLength(String key, T column, int size) {
+    if (column == null) {
+      throw new IllegalArgumentException("Missing " + key);
+    }
+    if (Array.getLength(column) != size) {
+      throw new IllegalArgumentException(key + " has " + Array.getLength(column) + " rows instead of " + size);
+    }
+    return column;
+  }
+
+  public void add(long movieId, String title, String imageUrl, double popularity, double voteAverage, String releaseDate,
+      String overview, int rank) {
+    if (mSize == mMovieIds.length) {
+      resize(Math.max(mSize * 2, 8));
+    }
+    mMovieIds[mSize] = movieId;
+    mTitles[mSize] = title;
+    mImageUrls[mSize] = imageUrl;
+    mPopularities[mSize] = popularity;
+    mVoteAverages[mSize] = voteAverage;
+    mReleaseDates[mSize] = releaseDate;
+    mOverviews[mSize] = overview;
+    mRanks[mSize] = rank;
+    mSize++;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public long getMovieId(int index) {
+    return mMovieIds[index];
+  }
+
+  public String getTitle(int index) {
+    return mTitles[index];
+  }
+
+  public String getImageUrl(int index) {
+    return mImageUrls[index];
+  }
+
+  public double getPopularity(int index) {
+    return mPopularities[index];
+  }
+
+  public double getVoteAverage(int index) {
+    return mVoteAverages[index];
+  }
+
+  public String getReleaseDate(int index) {
+    return mReleaseDates[index];
+  }
+
+  public String getOverview(int index) {
+    return mOverviews[index];
+  }
+
+  public int getRank(int index) {
+    return mRanks[index];
+  }
+
+  /**
+   * @return the rows as arrays in a Bundle, which is not copied for a ContentProvider in the same process.
+   */
+  public Bundle toBundle() {
+    resize(mSize);
+    Bundle bundle = new Bundle();
+    bundle.putLongArray(KEY_MOVIE_IDS, mMovieIds);
+    bundle.putStringArray(KEY_TITLES, mTitles);
+    bundle.putStringArray(KEY_IMAGE_URLS, mImageUrls);
+    bundle.putDoubleArray(KEY_POPULARITIES, mPopularities);
+    bundle.putDoubleArray(KEY_VOTE_AVERAGES, mVoteAverages);
+    bundle.putStringArray(KEY_RELEASE_DATES, mReleaseDates);
+    bundle.putStringArray(KEY_OVERVIEWS, mOverviews);
+    bundle.putIntArray(KEY_RANKS, mRanks);
+    return bundle;
+  }
+
+  /**
+   * Insert the rows into a list table of the ContentProvider in one transaction.
+   *
+   * @param contentResolver the resolver.
+   * @param uri content URI of the popular or top rated movie table.
+   * @return number of stored rows, see {@link #KEY_ROWS_STORED}.
+   */
+  public int insertInto(ContentResolver contentResolver, Uri uri) {
+    if (mSize == 0) {
+      return 0;
+    }
+    Bundle result = contentResolver.call(uri, METHOD_BULK_INSERT, uri.toString(), toBundle());
+    return result == null ? 0 : result.getInt(KEY_ROWS_STORED);
+  }
+
+  private void resize(int capacity) {
+    if (capacity == mMovieIds.length) {
+      return;
+    }
+    mMovieIds = Arrays.copyOf(mMovieIds, capacity);
+    mTitles = Arrays.copyOf(mTitles, capacity);
+    mImageUrls = Arrays.copyOf(mImageUrls, capacity);
+    mPopularities = Arrays.copyOf(mPopularities, capacity);
+    mVoteAverages = Arrays.copyOf(mVoteAverages, capacity);
+    mReleaseDates = Arrays.copyOf(mReleaseDates, capacity);
+    mOverviews = Arrays.copyOf(mOverviews, capacity);
+    mRanks = Arrays.copyOf(mRanks, capacity);
+  }
+}
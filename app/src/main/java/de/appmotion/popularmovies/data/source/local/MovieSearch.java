@@ -0,0 +1,80 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import java.util.Locale;
+
+/**
+ * Full-text search of all stored movies, which are the movies of all lists including the favorites, in the index of
+ * {@link DatabaseContract.MovieSearchEntry}.
+ *
+ * Every word the user types is matched as prefix of a word in title or overview. Movies with all words in the title come
+ * first, then the most popular. Both are lookups in the full-text index, so a search takes milliseconds even with
+ * thousands of stored movies.
+ */
+public final class MovieSearch {
+
+  // Number of movies of a search without limit
+  public static final int DEFAULT_LIMIT = 50;
+
+  // The _IDs of the movies which match the expression
+  private static final String MATCHING_IDS = "SELECT docid FROM "
+      + DatabaseContract.MovieSearchEntry.TABLE_NAME
+      + " WHERE "
+      + DatabaseContract.MovieSearchEntry.TABLE_NAME
+      + " MATCH ?";
+
+  private MovieSearch() {
+  }
+
+  /**
+   * Search the movie table.
+   *
+   * @param db the database.
+   * @param text the text the user searches for.
+   * @param projection the columns of {@link DatabaseContract.MovieEntry} to return, null for all columns of the movie table.
+   * @param limit maximum number of movies.
+   * @return the movies which match, no movies if the text has no words.
+   */
+  public static Cursor query(SQLiteDatabase db, String text, String[] projection, int limit) {
+    String match = matchExpression(text, null);
+    if (match == null) {
+      return db.query(DatabaseContract.MovieStoreEntry.TABLE_NAME, projection, "0", null, null, null, null);
+    }
+    String sql = SQLiteQueryBuilder.buildQueryString(false, DatabaseContract.MovieStoreEntry.TABLE_NAME, projection,
+        DatabaseContract.MovieEntry._ID + " IN (" + MATCHING_IDS + ")", null, null,
+        DatabaseContract.MovieEntry._ID
+            + " IN ("
+            + MATCHING_IDS
+            + ") DESC, "
+            + DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY
+            + " DESC", String.valueOf(limit));
+    return db.rawQuery(sql, new String[] { match, matchExpression(text, DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE) });
+  }
+
+  /**
+   * Build the FTS MATCH expression of a text: every word is a prefix query and all words have to match. Other characters
+   * are dropped, so the text cannot use the FTS query syntax. The words are lower case, the FTS operators are not.
+   *
+   * @param text the text the user searches for.
+   * @param column the column the words have to be in, or null for all columns of the index.
+   * @return the expression, or null if the text has no words.
+   */
+  static String matchExpression(String text, String column) {
+    StringBuilder expression = new StringBuilder();
+    for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (word.isEmpty()) {
+        continue;
+      }
+      if (expression.length() > 0) {
+        expression.append(' ');
+      }
+      if (column != null) {
+        expression.append(column).append(':');
+      }
+      expression.append(word).append('*');
+    }
+    return expression.length() == 0 ? null : expression.toString();
+  }
+}
@@ -0,0 +1,115 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.support.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
+
+/**
+ * Freshness windows for the responses of themoviedb.org, configurable per {@link EndpointType}.
+ *
+ * A cached response younger than its fresh window is served without any request. A response older than that but still inside
+ * its stale window is served immediately and revalidated in the background, see {@link StaleWhileRevalidateInterceptor}.
+ */
+public class CachePolicy {
+
+  // Define {@link EndpointType} Types
+  public static final int UNKNOWN = 0;
+  public static final int CONFIGURATION = 1;
+  public static final int POPULAR = 2;
+  public static final int TOP_RATED = 3;
+  public static final int DETAIL = 4;
+  public static final int VIDEOS = 5;
+  public static final int REVIEWS = 6;
+  private static final int ENDPOINT_TYPE_COUNT = 7;
+
+  // First path segment of all API URLs
+  private static final String API_VERSION = "3";
+
+  // Fresh and stale windows in seconds, indexed by {@link EndpointType}
+  private final long[] mFreshSeconds = new long[ENDPOINT_TYPE_COUNT];
+  private final long[] mStaleSeconds = new long[ENDPOINT_TYPE_COUNT];
+
+  /**
+   * Create a CachePolicy with default freshness windows.
+   */
+  public CachePolicy() {
+    setFreshness(CONFIGURATION, TimeUnit.DAYS.toSeconds(3), TimeUnit.DAYS.toSeconds(30));
+    setFreshness(POPULAR, TimeUnit.HOURS.toSeconds(1), TimeUnit.DAYS.toSeconds(1));
+    setFreshness(TOP_RATED, TimeUnit.HOURS.toSeconds(6), TimeUnit.DAYS.toSeconds(7));
+    setFreshness(DETAIL, TimeUnit.DAYS.toSeconds(1), TimeUnit.DAYS.toSeconds(30));
+    setFreshness(VIDEOS, TimeUnit.DAYS.toSeconds(1), TimeUnit.DAYS.toSeconds(30));
+    setFreshness(REVIEWS, TimeUnit.HOURS.toSeconds(6), TimeUnit.DAYS.toSeconds(7));
+  }
+
+  /**
+   * Classify a URL built by {@link NetworkUtils}.
+   *
+   * @param url the URL of a request.
+   * @return the {@link EndpointType} of the URL or {@link #UNKNOWN} if it is not an API URL of themoviedb.org, e.g. an image.
+   */
+  public static @EndpointType int endpointTypeOf(HttpUrl url) {
+    // Path segments: 3/configuration, 3/movie/popular, 3/movie/top_rated, 3/movie/{id}, 3/movie/{id}/videos, 3/movie/{id}/reviews
+    List<String> segments = url.pathSegments();
+    if (segments.isEmpty() || !API_VERSION.equals(segments.get(0))) {
+      return UNKNOWN;
+    }
+    if (segments.size() == 2 && "configuration".equals(segments.get(1))) {
+      return CONFIGURATION;
+    }
+    if (segments.size() < 3 || !"movie".equals(segments.get(1))) {
+      return UNKNOWN;
+    }
+    if (segments.size() == 3) {
+      switch (segments.get(2)) {
+        case "popular":
+          return POPULAR;
+        case "top_rated":
+          return TOP_RATED;
+        default:
+          return DETAIL;
+      }
+    }
+    if (segments.size() == 4) {
+      switch (segments.get(3)) {
+        case "videos":
+          return VIDEOS;
+        case "reviews":
+          return REVIEWS;
+      }
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Set the freshness windows of an endpoint type.
+   *
+   * @param endpointType the {@link EndpointType}.
+   * @param freshSeconds a cached response younger than this is served without any request.
+   * @param staleSeconds a cached response which is not fresh, but younger than freshSeconds + staleSeconds, is served and
+   * revalidated in the background.
+   * @return this CachePolicy.
+   */
+  public CachePolicy setFreshness(@EndpointType int endpointType, long freshSeconds, long staleSeconds) {
+    if (endpointType == UNKNOWN) {
+      throw new IllegalArgumentException("Freshness of UNKNOWN endpoints cannot be changed");
+    }
+    mFreshSeconds[endpointType] = freshSeconds;
+    mStaleSeconds[endpointType] = staleSeconds;
+    return this;
+  }
+
+  public long getFreshSeconds(@EndpointType int endpointType) {
+    return mFreshSeconds[endpointType];
+  }
+
+  public long getStaleSeconds(@EndpointType int endpointType) {
+    return mStaleSeconds[endpointType];
+  }
+
+  @Retention(RetentionPolicy.CLASS) @IntDef({ UNKNOWN, CONFIGURATION, POPULAR, TOP_RATED, DETAIL, VIDEOS, REVIEWS })
+  public @interface EndpointType {
+  }
+}
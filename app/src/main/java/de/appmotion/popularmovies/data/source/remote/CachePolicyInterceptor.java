@@ -0,0 +1,38 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which replaces the caching headers sent by themoviedb.org with the fresh window of the
+ * {@link CachePolicy}. So the OkHttp Cache stores every API response with an explicit freshness, independent of the server.
+ * Validators like ETag and Last-Modified are kept, so stale responses can be revalidated with conditional requests.
+ */
+public class CachePolicyInterceptor implements Interceptor {
+
+  private final CachePolicy mCachePolicy;
+
+  public CachePolicyInterceptor(CachePolicy cachePolicy) {
+    mCachePolicy = cachePolicy;
+  }
+
+  @Override public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    Response response = chain.proceed(request);
+
+    int endpointType = CachePolicy.endpointTypeOf(request.url());
+    boolean isCacheable = response.isSuccessful() || response.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    if (endpointType == CachePolicy.UNKNOWN || !"GET".equals(request.method()) || !isCacheable) {
+      return response;
+    }
+
+    return response.newBuilder()
+        .removeHeader("Pragma")
+        .removeHeader("Expires")
+        .header("Cache-Control", "public, max-age=" + mCachePolicy.getFreshSeconds(endpointType))
+        .build();
+  }
+}
@@ -0,0 +1,127 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.support.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for the API of themoviedb.org.
+ *
+ * <ul>
+ * <li>closed: requests are allowed. After failureThreshold failures in a row the breaker opens.</li>
+ * <li>open: requests fail fast for openMillis, no request reaches the API.</li>
+ * <li>half open: after openMillis one trial request is allowed. Its success closes the breaker, its failure opens it again.</li>
+ * </ul>
+ *
+ * The time is passed in by the caller, like in {@link TokenBucket}. It is thread-safe.
+ */
+public class CircuitBreaker {
+
+  // Define {@link State} Types
+  public static final int CLOSED = 0;
+  public static final int OPEN = 1;
+  public static final int HALF_OPEN = 2;
+
+  private final int mFailureThreshold;
+  private final long mOpenNanos;
+  private @State int mState = CLOSED;
+  private int mFailureCount;
+  private long mOpenedAtNanos;
+  // True while the trial request of the half open state is running
+  private boolean mTrialRunning;
+  private long mOpenedCount;
+
+  /**
+   * @param failureThreshold number of failures in a row which open the breaker.
+   * @param openMillis how long the breaker stays open before a trial request is allowed.
+   */
+  public CircuitBreaker(int failureThreshold, long openMillis) {
+    if (failureThreshold < 1) {
+      throw new IllegalArgumentException("failureThreshold must be >= 1");
+    }
+    mFailureThreshold = failureThreshold;
+    mOpenNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+  }
+
+  /**
+   * Ask whether a request may go to the API. If it is allowed, its result has to be reported via {@link #onSuccess()},
+   * {@link #onFailure(long)} or {@link #onAbandoned()}.
+   *
+   * @param nowNanos current time in nanoseconds.
+   * @return true if the request may go to the API, false if it has to fail fast.
+   */
+  public synchronized boolean allowRequest(long nowNanos) {
+    switch (mState) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (nowNanos - mOpenedAtNanos < mOpenNanos) {
+          return false;
+        }
+        mState = HALF_OPEN;
+        mTrialRunning = true;
+        return true;
+      case HALF_OPEN:
+      default:
+        // Only one trial request at a time
+        if (mTrialRunning) {
+          return false;
+        }
+        mTrialRunning = true;
+        return true;
+    }
+  }
+
+  /**
+   * The API answered, the breaker closes.
+   */
+  public synchronized void onSuccess() {
+    mState = CLOSED;
+    mFailureCount = 0;
+    mTrialRunning = false;
+  }
+
+  /**
+   * The API failed, e.g. with a network error or a server error.
+   *
+   * @param nowNanos current time in nanoseconds.
+   */
+  public synchronized void onFailure(long nowNanos) {
+    mFailureCount++;
+    mTrialRunning = false;
+    if (mState == HALF_OPEN || mFailureCount >= mFailureThreshold) {
+      if (mState != OPEN) {
+        mOpenedCount++;
+      }
+      mState = OPEN;
+      mOpenedAtNanos = nowNanos;
+    }
+  }
+
+  /**
+   * The request ended without an answer of the API, e.g. it was canceled. The state does not change, but another trial
+   * request is allowed if this was the trial request.
+   */
+  public synchronized void onAbandoned() {
+    mTrialRunning = false;
+  }
+
+  /**
+   * @return the current {@link State}, an open breaker is reported as open until a trial request was allowed.
+   */
+  public synchronized @State int getState() {
+    return mState;
+  }
+
+  /**
+   * @return how often the breaker opened.
+   */
+  public synchronized long getOpenedCount() {
+    return mOpenedCount;
+  }
+
+  @Retention(RetentionPolicy.CLASS) @IntDef({ CLOSED, OPEN, HALF_OPEN })
+  public @interface State {
+  }
+}
@@ -0,0 +1,107 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor which guards the API of themoviedb.org with a {@link CircuitBreaker}.
+ *
+ * While the breaker is open, GET requests are answered from the cache, no matter how old the cached response is. If nothing
+ * is cached, the request fails fast with a {@link CircuitOpenException} instead of waiting for the unhealthy API.
+ * Network errors, 429 and 5xx responses count as failures of the API, calls canceled by the app do not.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+  private final CircuitBreaker mCircuitBreaker;
+  private final AtomicLong mFailFastCount = new AtomicLong();
+  private final AtomicLong mServedFromCacheCount = new AtomicLong();
+
+  public CircuitBreakerInterceptor(CircuitBreaker circuitBreaker) {
+    mCircuitBreaker = circuitBreaker;
+  }
+
+  @Override public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    if (CachePolicy.endpointTypeOf(request.url()) == CachePolicy.UNKNOWN || request.cacheControl().onlyIfCached()) {
+      // Not an API request or it does not reach the network anyway
+      return chain.proceed(request);
+    }
+
+    if (!mCircuitBreaker.allowRequest(System.nanoTime())) {
+      return serveFromCache(chain, request);
+    }
+
+    Response response;
+    try {
+      response = chain.proceed(request);
+    } catch (IOException e) {
+      if (RetryInterceptor.isCanceled(e)) {
+        // The app canceled the call, this says nothing about the API
+        mCircuitBreaker.onAbandoned();
+      } else {
+        mCircuitBreaker.onFailure(System.nanoTime());
+      }
+      throw e;
+    } catch (RuntimeException e) {
+      mCircuitBreaker.onAbandoned();
+      throw e;
+    }
+    if (isApiFailure(response.code())) {
+      mCircuitBreaker.onFailure(System.nanoTime());
+    } else {
+      mCircuitBreaker.onSuccess();
+    }
+    return response;
+  }
+
+  private Response serveFromCache(Chain chain, Request request) throws IOException {
+    if ("GET".equals(request.method())) {
+      Response cachedResponse = chain.proceed(request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build());
+      if (cachedResponse.cacheResponse() != null) {
+        mServedFromCacheCount.incrementAndGet();
+        return cachedResponse;
+      }
+      NetworkUtils.close(cachedResponse);
+    }
+    mFailFastCount.incrementAndGet();
+    throw new CircuitOpenException();
+  }
+
+  /**
+   * @param code the HTTP status code of a response.
+   * @return true if the code means the API is unhealthy or overloaded.
+   */
+  static boolean isApiFailure(int code) {
+    return code == RetryInterceptor.HTTP_TOO_MANY_REQUESTS || code >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+  }
+
+  /**
+   * @return number of requests which failed fast, because the breaker was open and nothing was cached.
+   */
+  public long getFailFastCount() {
+    return mFailFastCount.get();
+  }
+
+  /**
+   * @return number of requests answered from cache, because the breaker was open.
+   */
+  public long getServedFromCacheCount() {
+    return mServedFromCacheCount.get();
+  }
+
+  /**
+   * Thrown instead of a request to the API while the circuit breaker is open and nothing is cached.
+   */
+  public static class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    CircuitOpenException() {
+      super("Circuit breaker is open");
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.content.Context;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonEncodingException;
+import de.appmotion.popularmovies.App;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URL;
+import okhttp3.Response;
+import okio.Buffer;
+
+/**
+ * {@link NetworkLoader} for the API configuration. The response is parsed and stored by the {@link ConfigurationStore} in
+ * the background, so the new image base URL and poster sizes are used from now on.
+ */
+public class ConfigurationLoader extends NetworkLoader {
+
+  /**
+   * Download the API configuration in the background.
+   *
+   * @param context current context
+   * @param url the configuration URL, see {@link NetworkUtils#buildConfigurationUrl()}.
+   */
+  public ConfigurationLoader(Context context, URL url) {
+    super(context, url, RequestScheduler.BACKGROUND_SYNC);
+  }
+
+  /**
+   * Parse and store the configuration.
+   *
+   * @param response the response from server
+   * @param startNanos {@link System#nanoTime()} when the request was started
+   * @return a {@link NetworkResult#SUCCESS} result without body or an {@link NetworkResult#API_ERROR} result if the
+   * configuration is invalid or malformed
+   * @throws IOException if the body could not be read
+   */
+  @Override protected NetworkResult readBody(Response response, long startNanos) throws IOException {
+    ConfigurationStore configurationStore = App.getInstance().getConfigurationStore();
+    // Read the whole body first, so an EOFException of the parser means a truncated document and not a lost connection
+    Buffer body = new Buffer();
+    response.body().source().readAll(body);
+    try {
+      configurationStore.save(body, System.currentTimeMillis());
+    } catch (JsonDataException | JsonEncodingException | EOFException e) {
+      return NetworkResult.apiError(response, elapsedMillis(startNanos));
+    }
+    return NetworkResult.consumed(response, elapsedMillis(startNanos), 1);
+  }
+}
@@ -0,0 +1,82 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import com.squareup.moshi.JsonReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import okio.BufferedSource;
+
+/**
+ * Streaming parser for the API configuration of themoviedb.org, requested with {@link NetworkUtils#buildConfigurationUrl()}.
+ * Only the image base URL and the poster sizes are read.
+ */
+public final class ConfigurationParser {
+
+  private static final JsonReader.Options CONFIGURATION_NAMES = JsonReader.Options.of("images");
+  private static final JsonReader.Options IMAGES_NAMES = JsonReader.Options.of("base_url", "secure_base_url", "poster_sizes");
+
+  private ConfigurationParser() {
+  }
+
+  /**
+   * Parse the configuration response.
+   *
+   * @param source the response body.
+   * @return the {@link ImageConfiguration}.
+   * @throws IOException if the source could not be read, is not valid JSON or has no image base URL or poster sizes.
+   */
+  public static ImageConfiguration parse(BufferedSource source) throws IOException {
+    ImageConfiguration imageConfiguration = null;
+    JsonReader reader = JsonReader.of(source);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (reader.selectName(CONFIGURATION_NAMES) == -1) {
+        // Unknown name, it was not consumed by selectName.
+        reader.nextName();
+        reader.skipValue();
+      } else if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+        imageConfiguration = readImages(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (imageConfiguration == null) {
+      throw new IOException("Configuration without images");
+    }
+    return imageConfiguration;
+  }
+
+  private static ImageConfiguration readImages(JsonReader reader) throws IOException {
+    String baseUrl = null;
+    String secureBaseUrl = null;
+    List<String> posterSizes = new ArrayList<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int index = reader.selectName(IMAGES_NAMES);
+      if (index == -1) {
+        reader.nextName();
+        reader.skipValue();
+      } else if (reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue();
+      } else if (index == 0) {
+        baseUrl = reader.nextString();
+      } else if (index == 1) {
+        secureBaseUrl = reader.nextString();
+      } else {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          posterSizes.add(reader.nextString());
+        }
+        reader.endArray();
+      }
+    }
+    reader.endObject();
+    // Prefer https
+    String imageBaseUrl = secureBaseUrl != null ? secureBaseUrl : baseUrl;
+    if (imageBaseUrl == null || posterSizes.isEmpty()) {
+      throw new IOException("Configuration without image base URL or poster sizes");
+    }
+    return new ImageConfiguration(imageBaseUrl, posterSizes);
+  }
+}
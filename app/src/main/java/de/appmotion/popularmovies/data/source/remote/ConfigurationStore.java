@@ -0,0 +1,100 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.support.annotation.WorkerThread;
+import java.io.File;
+import java.io.IOException;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Keeps the API configuration of themoviedb.org on disk, so it is downloaded only once per time to live.
+ *
+ * The raw response is stored in a file, its last modified time is the download time. At startup {@link #load()} reads it
+ * into memory, so image URLs never wait for the configuration. After the time to live the stored configuration is still used,
+ * until a download replaced it via {@link #save(BufferedSource, long)}.
+ */
+public class ConfigurationStore {
+
+  private final File mFile;
+  private final long mTimeToLiveMillis;
+  private volatile ImageConfiguration mImageConfiguration = ImageConfiguration.DEFAULT;
+
+  /**
+   * @param file the file the configuration is stored in.
+   * @param timeToLiveMillis how long a stored configuration is used before it should be downloaded again.
+   */
+  public ConfigurationStore(File file, long timeToLiveMillis) {
+    mFile = file;
+    mTimeToLiveMillis = timeToLiveMillis;
+  }
+
+  /**
+   * Read the stored configuration into memory. A missing or broken file leaves {@link ImageConfiguration#DEFAULT}.
+   * The file has only a few KB, so this is fast enough to be called once at startup.
+   *
+   * @return the configuration in memory.
+   */
+  public ImageConfiguration load() {
+    if (!mFile.exists()) {
+      return mImageConfiguration;
+    }
+    BufferedSource source = null;
+    try {
+      source = Okio.buffer(Okio.source(mFile));
+      mImageConfiguration = ConfigurationParser.parse(source);
+    } catch (IOException | RuntimeException e) {
+      // Broken file, it is replaced by the next download
+      mFile.delete();
+    } finally {
+      NetworkUtils.close(source);
+    }
+    return mImageConfiguration;
+  }
+
+  /**
+   * Parse a downloaded configuration and store it, if it is valid.
+   *
+   * @param body the body of the configuration response.
+   * @param nowMillis current time in milliseconds, the download time.
+   * @return the new configuration in memory.
+   * @throws IOException if the configuration is invalid or could not be written.
+   */
+  @WorkerThread public ImageConfiguration save(BufferedSource body, long nowMillis) throws IOException {
+    Buffer buffer = new Buffer();
+    body.readAll(buffer);
+    ImageConfiguration imageConfiguration = ConfigurationParser.parse(buffer.clone());
+
+    // Write to a temporary file first, so a crash never leaves a half written configuration
+    File tempFile = new File(mFile.getPath() + ".tmp");
+    BufferedSink sink = Okio.buffer(Okio.sink(tempFile));
+    try {
+      sink.writeAll(buffer);
+      sink.close();
+    } finally {
+      NetworkUtils.close(sink);
+    }
+    if (!tempFile.renameTo(mFile) || !mFile.setLastModified(nowMillis)) {
+      tempFile.delete();
+      throw new IOException("Could not store configuration");
+    }
+    mImageConfiguration = imageConfiguration;
+    return imageConfiguration;
+  }
+
+  /**
+   * @return the configuration in memory, {@link ImageConfiguration#DEFAULT} until one was loaded or saved.
+   */
+  public ImageConfiguration getImageConfiguration() {
+    return mImageConfiguration;
+  }
+
+  /**
+   * @param nowMillis current time in milliseconds.
+   * @return true if no configuration is stored or it is older than the time to live.
+   */
+  public boolean isStale(long nowMillis) {
+    return !mFile.exists() || nowMillis - mFile.lastModified() >= mTimeToLiveMillis;
+  }
+}
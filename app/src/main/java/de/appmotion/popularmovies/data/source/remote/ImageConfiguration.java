@@ -0,0 +1,90 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Image part of the API configuration of themoviedb.org: the base URL of all images and the available poster sizes.
+ * It is read by {@link ConfigurationParser} and kept on disk by {@link ConfigurationStore}.
+ */
+public final class ImageConfiguration {
+
+  // Size name of the image in its original resolution
+  public static final String ORIGINAL = "original";
+
+  /**
+   * Used until a configuration was downloaded, the values documented by themoviedb.org.
+   */
+  public static final ImageConfiguration DEFAULT = new ImageConfiguration("http://image.tmdb.org/t/p/",
+      Arrays.asList("w92", "w154", "w185", "w342", "w500", "w780", ORIGINAL));
+
+  private final String mBaseUrl;
+  // Sizes like "w185", ordered by width, followed by "original" if available
+  private final List<String> mPosterSizes;
+
+  /**
+   * @param baseUrl the base URL of all images, ending with a slash.
+   * @param posterSizes the available poster sizes, like "w185" or "original".
+   */
+  public ImageConfiguration(String baseUrl, List<String> posterSizes) {
+    mBaseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    List<String> sizes = new ArrayList<>();
+    boolean hasOriginal = false;
+    for (String size : posterSizes) {
+      if (widthOf(size) > 0) {
+        sizes.add(size);
+      } else if (ORIGINAL.equals(size)) {
+        hasOriginal = true;
+      }
+    }
+    Collections.sort(sizes, new Comparator<String>() {
+      @Override public int compare(String a, String b) {
+        return widthOf(a) - widthOf(b);
+      }
+    });
+    if (hasOriginal) {
+      sizes.add(ORIGINAL);
+    }
+    mPosterSizes = Collections.unmodifiableList(sizes);
+  }
+
+  public String getBaseUrl() {
+    return mBaseUrl;
+  }
+
+  public List<String> getPosterSizes() {
+    return mPosterSizes;
+  }
+
+  /**
+   * Choose the smallest poster size which is at least as wide as the view showing it.
+   *
+   * @param widthPx width of the view in pixels.
+   * @return the best fitting poster size, "original" or the widest size if no size is wide enough.
+   */
+  public String posterSizeFor(int widthPx) {
+    for (String size : mPosterSizes) {
+      if (ORIGINAL.equals(size) || widthOf(size) >= widthPx) {
+        return size;
+      }
+    }
+    return mPosterSizes.isEmpty() ? ORIGINAL : mPosterSizes.get(mPosterSizes.size() - 1);
+  }
+
+  /**
+   * @return the width of a size like "w185" or 0 if the size is not a width.
+   */
+  private static int widthOf(String size) {
+    if (size.length() < 2 || size.charAt(0) != 'w') {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(size.substring(1));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import com.squareup.moshi.JsonReader;
+import de.appmotion.popularmovies.data.MovieDetail;
+import java.io.IOException;
+import okio.BufferedSource;
+
+/**
+ * Streaming parser for the combined movie detail response of themoviedb.org, requested with
+ * {@link NetworkUtils#buildMovieDetailWithVideosAndReviewsUrl(long, String)}.
+ * The payload is split into runtime, trailers and reviews.
+ */
+public final class MovieDetailParser {
+
+  private static final JsonReader.Options DETAIL_NAMES = JsonReader.Options.of("id", "runtime", "videos", "reviews");
+  private static final JsonReader.Options RESULTS_NAMES = JsonReader.Options.of("results");
+  private static final JsonReader.Options TRAILER_NAMES = JsonReader.Options.of("key", "name");
+  private static final JsonReader.Options REVIEW_NAMES = JsonReader.Options.of("author", "content");
+
+  private MovieDetailParser() {
+  }
+
+  /**
+   * Parse the combined movie detail response.
+   *
+   * @param source the response body.
+   * @return the {@link MovieDetail} with runtime, trailers and reviews.
+   * @throws IOException if the source could not be read or is not valid JSON.
+   */
+  public static MovieDetail parse(BufferedSource source) throws IOException {
+    MovieDetail movieDetail = new MovieDetail();
+    JsonReader reader = JsonReader.of(source);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int index = reader.selectName(DETAIL_NAMES);
+      if (index == -1) {
+        // Unknown name, it was not consumed by selectName.
+        reader.nextName();
+        reader.skipValue();
+        continue;
+      }
+      if (reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue();
+        continue;
+      }
+      switch (index) {
+        case 0:
+          movieDetail.setMovieId(reader.nextLong());
+          break;
+        case 1:
+          movieDetail.setRuntime(reader.nextInt());
+          break;
+        case 2:
+          readResults(reader, movieDetail, true);
+          break;
+        case 3:
+          readResults(reader, movieDetail, false);
+          break;
+      }
+    }
+    reader.endObject();
+    return movieDetail;
+  }
+
+  /**
+   * Parse the response of the videos endpoint, requested with {@link NetworkUtils#buildMovieTrailerUrl(long, String)}.
+   *
+   * @param source the response body.
+   * @return a {@link MovieDetail} with trailers only.
+   * @throws IOException if the source could not be read or is not valid JSON.
+   */
+  public static MovieDetail parseVideos(BufferedSource source) throws IOException {
+    MovieDetail movieDetail = new MovieDetail();
+    // Same shape as the appended videos object, the "id" is skipped
+    readResults(JsonReader.of(source), movieDetail, true);
+    return movieDetail;
+  }
+
+  /**
+   * Parse the response of the reviews endpoint, requested with {@link NetworkUtils#buildMovieReviewUrl(long, String)}.
+   *
+   * @param source the response body.
+   * @return a {@link MovieDetail} with reviews only.
+   * @throws IOException if the source could not be read or is not valid JSON.
+   */
+  public static MovieDetail parseReviews(BufferedSource source) throws IOException {
+    MovieDetail movieDetail = new MovieDetail();
+    readResults(JsonReader.of(source), movieDetail, false);
+    return movieDetail;
+  }
+
+  /**
+   * Read the "results" array of a videos or reviews object.
+   */
+  private static void readResults(JsonReader reader, MovieDetail movieDetail, boolean isVideos) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (reader.selectName(RESULTS_NAMES) == -1) {
+        reader.nextName();
+        reader.skipValue();
+      } else if (reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          if (isVideos) {
+            readTrailer(reader, movieDetail);
+          } else {
+            readReview(reader, movieDetail);
+          }
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  private static void readTrailer(JsonReader reader, MovieDetail movieDetail) throws IOException {
+    String key = null;
+    String name = "";
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int index = reader.selectName(TRAILER_NAMES);
+      if (index == -1) {
+        reader.nextName();
+        reader.skipValue();
+      } else if (reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue();
+      } else if (index == 0) {
+        key = reader.nextString();
+      } else {
+        name = reader.nextString();
+      }
+    }
+    reader.endObject();
+    if (key != null) {
+      movieDetail.getTrailers().add(new MovieDetail.Trailer(key, name));
+    }
+  }
+
+  private static void readReview(JsonReader reader, MovieDetail movieDetail) throws IOException {
+    String author = "";
+    String content = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int index = reader.selectName(REVIEW_NAMES);
+      if (index == -1) {
+        reader.nextName();
+        reader.skipValue();
+      } else if (reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue();
+      } else if (index == 0) {
+        author = reader.nextString();
+      } else {
+        content = reader.nextString();
+      }
+    }
+    reader.endObject();
+    if (content != null) {
+      movieDetail.getReviews().add(new MovieDetail.Review(author, content));
+    }
+  }
+}
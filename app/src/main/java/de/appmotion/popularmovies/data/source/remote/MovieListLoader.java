@@ -0,0 +1,64 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.content.Context;
+import android.net.Uri;
+import de.appmotion.popularmovies.BuildConfig;
+import de.appmotion.popularmovies.data.source.local.MovieRows;
+import java.io.IOException;
+import java.net.URL;
+import okhttp3.Response;
+
+/**
+ * {@link NetworkLoader} for a movie list page. The response body is parsed as a stream by {@link MovieListParser}
+ * in the background and the movies are written directly to the ContentProvider as {@link MovieRows}.
+ */
+public class MovieListLoader extends NetworkLoader {
+
+  // Name of the content URI sent via Bundle to this Loader, the movies will be inserted there
+  public final static String EXTRA_INSERT_URI = BuildConfig.APPLICATION_ID + ".insert_uri";
+  // Name of the requested page sent via Bundle to this Loader
+  public final static String EXTRA_PAGE = BuildConfig.APPLICATION_ID + ".page";
+
+  // Content URI of the table the movies will be inserted to
+  private final Uri mInsertUri;
+  // The requested page, used to calculate the rank of the movies
+  private final int mPage;
+
+  /**
+   * Load a movie list page from Network and insert it to the ContentProvider.
+   *
+   * @param context current context
+   * @param url the URL to which this Loader should connect.
+   * @param priority the {@link RequestScheduler.Priority} of the request.
+   * @param insertUri the content URI to which the movies should be inserted.
+   * @param page the requested page, starting with 1.
+   */
+  public MovieListLoader(Context context, URL url, @RequestScheduler.Priority int priority, Uri insertUri, int page) {
+    super(context, url, priority);
+    mInsertUri = insertUri;
+    mPage = page;
+  }
+
+  /**
+   * Parse the movie list and insert it to the ContentProvider.
+   *
+   * @param response the response from server
+   * @param startNanos {@link System#nanoTime()} when the request was started
+   * @return a result with the number of inserted movies as item count or an {@link NetworkResult#EMPTY} result if no movie
+   * was inserted
+   * @throws IOException if the body could not be read
+   */
+  @Override protected NetworkResult readBody(Response response, long startNanos) throws IOException {
+    final MovieRows rows = new MovieRows(NetworkUtils.MOVIES_PER_PAGE);
+    MovieListParser.parse(response.body().source(), new MovieListParser.Callback() {
+      @Override public void onMovie(long movieId, String title, String imageUrl, double popularity, double voteAverage,
+          String releaseDate, String overview) {
+        // The rank depends only on the page, so pages arriving out of order are still sorted correctly
+        rows.add(movieId, title, imageUrl, popularity, voteAverage, releaseDate, overview, PagePrefetcher.rankOf(mPage, rows.size()));
+      }
+    });
+
+    int rowsInserted = rows.insertInto(getContext().getContentResolver(), mInsertUri);
+    return NetworkResult.consumed(response, elapsedMillis(startNanos), rowsInserted);
+  }
+}
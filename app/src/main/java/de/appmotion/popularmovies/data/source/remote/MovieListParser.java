@@ -0,0 +1,116 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import com.squareup.moshi.JsonReader;
+import java.io.IOException;
+import okio.BufferedSource;
+
+/**
+ * Streaming parser for a movie list page (popular or top rated) from themoviedb.org.
+ * The response is read token by token, so neither the full page as a String nor a JSON tree is ever held in memory.
+ */
+public final class MovieListParser {
+
+  private static final JsonReader.Options PAGE_NAMES = JsonReader.Options.of("results");
+  private static final JsonReader.Options MOVIE_NAMES =
+      JsonReader.Options.of("id", "title", "poster_path", "popularity", "vote_average", "release_date", "overview");
+
+  private MovieListParser() {
+  }
+
+  /**
+   * Parse a movie list page and hand every movie to the callback as soon as its object was read.
+   *
+   * @param source the response body of a movie list request.
+   * @param callback receives each parsed movie.
+   * @return the number of movies passed to the callback.
+   * @throws IOException if the source could not be read or is not valid JSON.
+   */
+  public static int parse(BufferedSource source, Callback callback) throws IOException {
+    JsonReader reader = JsonReader.of(source);
+    int count = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (reader.selectName(PAGE_NAMES) == -1) {
+        // Unknown name, it was not consumed by selectName.
+        reader.nextName();
+        reader.skipValue();
+      } else if (reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          if (readMovie(reader, callback)) {
+            count++;
+          }
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return count;
+  }
+
+  private static boolean readMovie(JsonReader reader, Callback callback) throws IOException {
+    if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+      reader.skipValue();
+      return false;
+    }
+    long movieId = -1L;
+    String title = "";
+    String imageUrl = "";
+    double popularity = 0;
+    double voteAverage = 0;
+    String releaseDate = "";
+    String overview = "";
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      int index = reader.selectName(MOVIE_NAMES);
+      if (index == -1) {
+        // Unknown name, it was not consumed by selectName.
+        reader.nextName();
+        reader.skipValue();
+        continue;
+      }
+      if (reader.peek() == JsonReader.Token.NULL) {
+        reader.skipValue();
+        continue;
+      }
+      switch (index) {
+        case 0:
+          movieId = reader.nextLong();
+          break;
+        case 1:
+          title = reader.nextString();
+          break;
+        case 2:
+          imageUrl = reader.nextString();
+          break;
+        case 3:
+          popularity = reader.nextDouble();
+          break;
+        case 4:
+          voteAverage = reader.nextDouble();
+          break;
+        case 5:
+          releaseDate = reader.nextString();
+          break;
+        case 6:
+          overview = reader.nextString();
+          break;
+      }
+    }
+    reader.endObject();
+
+    callback.onMovie(movieId, title, imageUrl, popularity, voteAverage, releaseDate, overview);
+    return true;
+  }
+
+  /**
+   * Receives the movies of a page while it is parsed.
+   */
+  public interface Callback {
+    void onMovie(long movieId, String title, String imageUrl, double popularity, double voteAverage, String releaseDate,
+        String overview);
+  }
+}
@@ -0,0 +1,133 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.support.annotation.WorkerThread;
+import com.squareup.moshi.JsonDataException;
+import de.appmotion.popularmovies.data.Movie;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Downloads the first pages of movie lists and hands them to a {@link PageWriter}, e.g. to pre-warm the list tables in the
+ * background. Requests go through the {@link RequestScheduler} with {@link RequestScheduler#BACKGROUND_SYNC} priority, so
+ * they never delay requests for visible content.
+ *
+ * This class has no Android dependencies besides the Movie model, so it runs in a JVM test against a local server.
+ */
+public class MovieListSync {
+
+  private final OkHttpClient mOkHttpClient;
+  private final RequestScheduler mRequestScheduler;
+  private final int mPagesPerList;
+  private volatile boolean mCanceled;
+
+  /**
+   * @param okHttpClient the client executing the requests.
+   * @param requestScheduler the scheduler the requests wait for.
+   * @param pagesPerList number of pages synced per list, starting with page 1.
+   */
+  public MovieListSync(OkHttpClient okHttpClient, RequestScheduler requestScheduler, int pagesPerList) {
+    mOkHttpClient = okHttpClient;
+    mRequestScheduler = requestScheduler;
+    mPagesPerList = pagesPerList;
+  }
+
+  /**
+   * Sync the first pages of a list. The sync of the list stops at the first failed or short page.
+   *
+   * @param pageUrls builds the URL of a page.
+   * @param pageWriter stores a page.
+   * @return number of pages which were written.
+   */
+  @WorkerThread public int syncList(PageUrls pageUrls, PageWriter pageWriter) {
+    int pagesWritten = 0;
+    for (int page = 1; page <= mPagesPerList && !mCanceled; page++) {
+      List<Movie> movies;
+      try {
+        movies = download(pageUrls.pageUrl(page));
+      } catch (IOException | JsonDataException e) {
+        // Keep the pages already written, the next sync tries again
+        break;
+      }
+      if (movies == null || movies.isEmpty()) {
+        break;
+      }
+      pageWriter.writePage(page, movies);
+      pagesWritten++;
+      if (movies.size() < NetworkUtils.MOVIES_PER_PAGE) {
+        // Last page of the list
+        break;
+      }
+    }
+    return pagesWritten;
+  }
+
+  /**
+   * Stop the sync after the running request.
+   */
+  public void cancel() {
+    mCanceled = true;
+  }
+
+  public boolean isCanceled() {
+    return mCanceled;
+  }
+
+  /**
+   * @return the movies of the page or null if the server answered with an error.
+   */
+  private List<Movie> download(URL url) throws IOException {
+    Request request = new Request.Builder().url(url).get().build();
+    RequestScheduler.Ticket ticket = mRequestScheduler.newTicket(RequestScheduler.BACKGROUND_SYNC);
+    try {
+      Response response = ticket.execute(mOkHttpClient, request);
+      try {
+        if (response.code() != 200) {
+          return null;
+        }
+        final List<Movie> movies = new ArrayList<>();
+        MovieListParser.parse(response.body().source(), new MovieListParser.Callback() {
+          @Override public void onMovie(long movieId, String title, String imageUrl, double popularity, double voteAverage,
+              String releaseDate, String overview) {
+            Movie movie = new Movie();
+            movie.setMovieId(movieId);
+            movie.setTitle(title);
+            movie.setImageUrl(imageUrl);
+            movie.setPopularity(popularity);
+            movie.setVoteAverage(voteAverage);
+            movie.setReleaseDate(releaseDate);
+            movie.setOverview(overview);
+            movies.add(movie);
+          }
+        });
+        return movies;
+      } finally {
+        NetworkUtils.close(response);
+      }
+    } finally {
+      ticket.close();
+    }
+  }
+
+  /**
+   * Builds the URLs of the pages of a list.
+   */
+  public interface PageUrls {
+    URL pageUrl(int page);
+  }
+
+  /**
+   * Stores a downloaded page, e.g. as {@link de.appmotion.popularmovies.data.source.local.MovieRows} in the ContentProvider.
+   */
+  public interface PageWriter {
+    /**
+     * @param page the page, starting with 1. The rank of a movie is {@link PagePrefetcher#rankOf(int, int)}.
+     * @param movies the movies of the page in API order.
+     */
+    void writePage(int page, List<Movie> movies);
+  }
+}
@@ -1,37 +1,40 @@
 package de.appmotion.popularmovies.data.source.remote;
 
 import android.content.Context;
-import android.support.annotation.StringDef;
 import android.support.v4.content.AsyncTaskLoader;
 import android.text.TextUtils;
 import de.appmotion.popularmovies.App;
 import de.appmotion.popularmovies.BuildConfig;
 import java.io.IOException;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import okhttp3.Request;
 import okhttp3.Response;
+import okio.Buffer;
 
 /**
- * Use OkHttp inside this AsyncTaskLoader to get data from themoviedb.org.
+ * Use OkHttp inside this AsyncTaskLoader to get data from themoviedb.org. The result is a {@link NetworkResult}.
  */
-public class NetworkLoader extends AsyncTaskLoader<String> {
+public class NetworkLoader extends AsyncTaskLoader<NetworkResult> {
 
   // Name of the URL sent via Bundle to this Loader
   public final static String EXTRA_QUERY_URL = BuildConfig.APPLICATION_ID + ".query_url";
+  // Name of the {@link RequestScheduler.Priority} sent via Bundle to this Loader
+  public final static String EXTRA_PRIORITY = BuildConfig.APPLICATION_ID + ".priority";
 
-  // Define {@link ErrorType} Types
-  public static final String EMPTY = "empty";
-  public static final String API_ERROR = "api_error";
-  public static final String OFFLINE = "offline";
+  // Process-wide registry of running requests, concurrent Loaders for the same URL share one request and its result
+  private static final SingleFlight<NetworkResult> sSingleFlight = new SingleFlight<>();
   // Url for this AsyncTaskLoader
   private URL mUrl;
+  // {@link RequestScheduler.Priority} of the request
+  private final @RequestScheduler.Priority int mPriority;
+  // Ticket of the running request, used to cancel it
+  private volatile RequestScheduler.Ticket mTicket;
+  // Cancels the wait for a request of another Loader, or the sharing of our own request
+  private volatile SingleFlight.Cancellation mCancellation;
 
-  // Caching: This String will contain the raw JSON from the server results
-  // We dont need this, because OkHttp is already doing caching in a smarter way.
-  private String mJson;
+  // Caching: The result of the last load, it is delivered again instead of loading twice.
+  private NetworkResult mResult;
 
   /**
    * Load Data from Network
@@ -40,8 +43,20 @@ public class NetworkLoader extends AsyncTaskLoader<String> {
    * @param url the URL to which this Loader should connect.
    */
   public NetworkLoader(Context context, URL url) {
+    this(context, url, RequestScheduler.VISIBLE_PAGE);
+  }
+
+  /**
+   * Load Data from Network
+   *
+   * @param context current context
+   * @param url the URL to which this Loader should connect.
+   * @param priority the {@link RequestScheduler.Priority} of the request.
+   */
+  public NetworkLoader(Context context, URL url, @RequestScheduler.Priority int priority) {
     super(context);
     mUrl = url;
+    mPriority = priority;
   }
 
   @Override protected void onStartLoading() {
@@ -57,59 +72,118 @@ public class NetworkLoader extends AsyncTaskLoader<String> {
      * If we already have cached results, just deliver them now. If we don't have any
      * cached results, force a load.
      */
-    /*
-    if (mJson != null) {
-      deliverResult(mJson);
-    } else {
+    if (mResult != null) {
+      deliverResult(mResult);
+    }
+    if (takeContentChanged() || mResult == null) {
       forceLoad();
     }
-    */
+  }
 
-    // Force a load
-    forceLoad();
+  /**
+   * @return the process-wide registry of running requests, e.g. to read how many requests were saved.
+   */
+  public static SingleFlight<NetworkResult> getSingleFlight() {
+    return sSingleFlight;
   }
 
-  @Override public String loadInBackground() {
+  @Override public NetworkResult loadInBackground() {
     // If the URL is empty, there's nothing to search for
     if (mUrl == null || TextUtils.isEmpty(mUrl.toString())) {
       return null;
     }
 
-    // Use OkHttp to get response from Server
+    // Use OkHttp to get response from Server, unless a request for the same URL is already running
+    SingleFlight.Cancellation cancellation = new SingleFlight.Cancellation();
+    mCancellation = cancellation;
+    try {
+      return sSingleFlight.execute(mUrl.toString(), new SingleFlight.Call<NetworkResult>() {
+        @Override public NetworkResult execute() throws IOException {
+          return load();
+        }
+      }, cancellation);
+    } catch (IOException e) {
+      // The result of a canceled load is not delivered
+      if (!cancellation.isCanceled()) {
+        e.printStackTrace();
+      }
+      return NetworkResult.offline();
+    } finally {
+      mCancellation = null;
+    }
+  }
+
+  private NetworkResult load() throws IOException {
+    Request request = new Request.Builder().url(mUrl).get().build();
+
+    // Wait for a free slot of the RequestScheduler, requests with a higher priority go first
+    RequestScheduler.Ticket ticket = App.getInstance().getRequestScheduler().newTicket(mPriority);
+    mTicket = ticket;
+    long startNanos = System.nanoTime();
     try {
-      Request request = new Request.Builder().url(mUrl).get().build();
-
-      Response response = App.getInstance().getOkHttpClient().newCall(request).execute();
-      switch (response.code()) {
-        case 200:
-          Scanner scanner = new Scanner(response.body().byteStream());
-          scanner.useDelimiter("\\A");
-          boolean hasInput = scanner.hasNext();
-          if (hasInput) {
-            return scanner.next();
-          } else {
-            return EMPTY;
-          }
+      Response response = ticket.execute(App.getInstance().getOkHttpClient(), request);
+      try {
+        switch (response.code()) {
+          case 200:
+            return readBody(response, startNanos);
           // response.code() is not 200
-        default:
-          return API_ERROR;
+          default:
+            return NetworkResult.apiError(response, elapsedMillis(startNanos));
+        }
+      } finally {
+        NetworkUtils.close(response);
       }
-    } catch (IOException e) {
-      e.printStackTrace();
-      return OFFLINE;
+    } finally {
+      ticket.close();
+      mTicket = null;
     }
   }
 
   /**
-   * Used for caching response from server to mJson
+   * The Loader was abandoned or reset, so a waiting request leaves the queue and a running request is canceled. Loaders
+   * waiting for our request execute their own request instead of getting our cancellation as error.
+   */
+  @Override public void cancelLoadInBackground() {
+    SingleFlight.Cancellation cancellation = mCancellation;
+    if (cancellation != null) {
+      sSingleFlight.cancel(cancellation);
+    }
+    RequestScheduler.Ticket ticket = mTicket;
+    if (ticket != null) {
+      ticket.cancel();
+    }
+  }
+
+  /**
+   * Read the body of a successful response. Subclasses can override this to consume the body as a stream.
+   * The segments of the response are moved into the result, the bytes are neither copied nor decoded.
    *
-   * @param json the response from server
+   * @param response the response from server
+   * @param startNanos {@link System#nanoTime()} when the request was started, see {@link #elapsedMillis(long)}
+   * @return the result with the body or an {@link NetworkResult#EMPTY} result if the body has no content
+   * @throws IOException if the body could not be read
+   */
+  protected NetworkResult readBody(Response response, long startNanos) throws IOException {
+    Buffer body = new Buffer();
+    response.body().source().readAll(body);
+    return NetworkResult.success(response, elapsedMillis(startNanos), body);
+  }
+
+  /**
+   * @param startNanos {@link System#nanoTime()} when the request was started.
+   * @return milliseconds since then.
    */
-  @Override public void deliverResult(String json) {
-    mJson = json;
-    super.deliverResult(json);
+  protected static long elapsedMillis(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
   }
 
-  @Retention(RetentionPolicy.CLASS) @StringDef({ EMPTY, API_ERROR, OFFLINE }) public @interface ErrorType {
+  /**
+   * Used for caching the result to mResult
+   *
+   * @param result the result of the request
+   */
+  @Override public void deliverResult(NetworkResult result) {
+    mResult = result;
+    super.deliverResult(result);
   }
 }
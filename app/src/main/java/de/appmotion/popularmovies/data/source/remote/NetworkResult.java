@@ -0,0 +1,168 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.support.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Result of a {@link NetworkLoader}: the {@link Status}, the raw body and metadata of the response.
+ *
+ * The body is kept as Okio segments. {@link #source()} and {@link #byteString()} share these segments instead of copying
+ * them, so parsers read the bytes directly, without an intermediate String. A result is immutable and can be read
+ * several times, e.g. when it is delivered again after a configuration change.
+ */
+public final class NetworkResult {
+
+  // Define {@link Status} Types
+  public static final int SUCCESS = 0;
+  public static final int EMPTY = 1;
+  public static final int API_ERROR = 2;
+  public static final int OFFLINE = 3;
+
+  // Define {@link Origin} Types
+  public static final int ORIGIN_NONE = 0;
+  public static final int ORIGIN_NETWORK = 1;
+  public static final int ORIGIN_CACHE = 2;
+  // Cached response which was confirmed by the server with 304 Not Modified
+  public static final int ORIGIN_CONDITIONAL_CACHE = 3;
+
+  private static final Buffer NO_BODY = new Buffer();
+
+  private final @Status int mStatus;
+  private final int mHttpCode;
+  private final @Origin int mOrigin;
+  private final long mDurationMillis;
+  private final long mReceivedMillis;
+  private final Buffer mBody;
+  private final int mItemCount;
+
+  private NetworkResult(@Status int status, int httpCode, @Origin int origin, long durationMillis, long receivedMillis,
+      Buffer body, int itemCount) {
+    mStatus = status;
+    mHttpCode = httpCode;
+    mOrigin = origin;
+    mDurationMillis = durationMillis;
+    mReceivedMillis = receivedMillis;
+    mBody = body;
+    mItemCount = itemCount;
+  }
+
+  /**
+   * @param response the response, its body was already read to body.
+   * @param durationMillis time from sending the request until the body was read.
+   * @param body the complete body, ownership passes to the result.
+   * @return a {@link #SUCCESS} result or an {@link #EMPTY} result if the body has no content.
+   */
+  public static NetworkResult success(Response response, long durationMillis, Buffer body) {
+    return new NetworkResult(body.size() == 0 ? EMPTY : SUCCESS, response.code(), originOf(response), durationMillis,
+        response.receivedResponseAtMillis(), body, 0);
+  }
+
+  /**
+   * For Loaders which consume the body themselves, e.g. to insert it into the ContentProvider.
+   *
+   * @param response the response.
+   * @param durationMillis time from sending the request until the body was consumed.
+   * @param itemCount number of items read from the body.
+   * @return a {@link #SUCCESS} result without body or an {@link #EMPTY} result if no item was read.
+   */
+  public static NetworkResult consumed(Response response, long durationMillis, int itemCount) {
+    return new NetworkResult(itemCount == 0 ? EMPTY : SUCCESS, response.code(), originOf(response), durationMillis,
+        response.receivedResponseAtMillis(), NO_BODY, itemCount);
+  }
+
+  /**
+   * @param response the response with an HTTP error code.
+   * @param durationMillis time from sending the request until the response arrived.
+   * @return an {@link #API_ERROR} result.
+   */
+  public static NetworkResult apiError(Response response, long durationMillis) {
+    return new NetworkResult(API_ERROR, response.code(), originOf(response), durationMillis, response.receivedResponseAtMillis(),
+        NO_BODY, 0);
+  }
+
+  /**
+   * @return an {@link #OFFLINE} result, no response was received.
+   */
+  public static NetworkResult offline() {
+    return new NetworkResult(OFFLINE, 0, ORIGIN_NONE, 0, 0, NO_BODY, 0);
+  }
+
+  private static @Origin int originOf(Response response) {
+    if (response.networkResponse() == null) {
+      return response.cacheResponse() == null ? ORIGIN_NONE : ORIGIN_CACHE;
+    }
+    return response.cacheResponse() == null ? ORIGIN_NETWORK : ORIGIN_CONDITIONAL_CACHE;
+  }
+
+  public @Status int getStatus() {
+    return mStatus;
+  }
+
+  public boolean isSuccess() {
+    return mStatus == SUCCESS;
+  }
+
+  /**
+   * @return the HTTP status code or 0 if no response was received.
+   */
+  public int getHttpCode() {
+    return mHttpCode;
+  }
+
+  public @Origin int getOrigin() {
+    return mOrigin;
+  }
+
+  public long getDurationMillis() {
+    return mDurationMillis;
+  }
+
+  /**
+   * @return when the response was received from the server, for a cached response when it was received originally. 0 if no
+   * response was received.
+   */
+  public long getReceivedMillis() {
+    return mReceivedMillis;
+  }
+
+  /**
+   * @return number of items a consuming Loader read from the body, see {@link #consumed(Response, long, int)}.
+   */
+  public int getItemCount() {
+    return mItemCount;
+  }
+
+  /**
+   * @return size of the body in bytes.
+   */
+  public long getContentLength() {
+    return mBody.size();
+  }
+
+  /**
+   * @return a new source over the body. It shares the segments of the body, nothing is copied.
+   */
+  public BufferedSource source() {
+    return mBody.clone();
+  }
+
+  /**
+   * @return the body as ByteString. It shares the segments of the body, nothing is copied.
+   */
+  public ByteString byteString() {
+    return mBody.snapshot();
+  }
+
+  @Retention(RetentionPolicy.CLASS) @IntDef({ SUCCESS, EMPTY, API_ERROR, OFFLINE })
+  public @interface Status {
+  }
+
+  @Retention(RetentionPolicy.CLASS) @IntDef({ ORIGIN_NONE, ORIGIN_NETWORK, ORIGIN_CACHE, ORIGIN_CONDITIONAL_CACHE })
+  public @interface Origin {
+  }
+}
@@ -19,13 +19,10 @@ import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
-import android.support.annotation.StringDef;
 import de.appmotion.popularmovies.App;
 import de.appmotion.popularmovies.BuildConfig;
 import java.io.Closeable;
 import java.io.IOException;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -34,14 +31,8 @@ import java.net.URL;
  */
 public class NetworkUtils {
 
-  // Define {@link ImageSize} Types
-  public static final String ORIGINAL = "original";
-  public static final String WIDTH92 = "w92";
-  public static final String WIDTH154 = "w154";
-  public static final String WIDTH185 = "w185";
-  public static final String WIDTH342 = "w342";
-  public static final String WIDTH500 = "w500";
-  public static final String WIDTH780 = "w780";
+  // Number of movies themoviedb returns per page of a movie list
+  public static final int MOVIES_PER_PAGE = 20;
   // themoviedb API Key
   private final static String KEY = BuildConfig.MOVIE_DB_API_KEY;
   // Urls
@@ -49,7 +40,6 @@ public class NetworkUtils {
   private final static String THE_MOVIE_DB_MOVIES_POPULAR = "https://api.themoviedb.org/3/movie/popular";
   private final static String THE_MOVIE_DB_MOVIES_TOP_RATED = "https://api.themoviedb.org/3/movie/top_rated";
   private final static String THE_MOVIE_DB_MOVIE_DETAIL = "https://api.themoviedb.org/3/movie/";
-  private final static String TMDB_IMAGE_URL = "http://image.tmdb.org/t/p/";
   // Params
   private final static String API_KEY = "api_key";
   private final static String PARAM_LANGUAGE = "language";
@@ -57,6 +47,7 @@ public class NetworkUtils {
   private final static String PARAM_REGION = "region";
   private final static String PATH_VIDEOS = "videos";
   private final static String PATH_REVIEWS = "reviews";
+  private final static String PARAM_APPEND_TO_RESPONSE = "append_to_response";
 
   /**
    * Builds the URL used to query themoviedb for API Configuration data.
@@ -208,14 +199,43 @@ public class NetworkUtils {
   }
 
   /**
-   * Builds the URL used to query tmdb for a poster image of a Movie.
+   * Builds the URL used to query themoviedb for Details, Trailer and Reviews of a Movie with one request.
+   * The Trailer and Reviews are appended to the Details, see {@link MovieDetailParser}.
    *
-   * @param imageSize The size of the image.
+   * @param movieId The ID of Movie requested.
+   * @param language The language requested.
+   * @return The URL to use to get Details, Trailer and Reviews of a Movie.
+   */
+  public static URL buildMovieDetailWithVideosAndReviewsUrl(long movieId, String language) {
+    Uri builtUri = Uri.parse(THE_MOVIE_DB_MOVIE_DETAIL)
+        .buildUpon()
+        .appendEncodedPath(String.valueOf(movieId))
+        .appendQueryParameter(API_KEY, KEY)
+        .appendQueryParameter(PARAM_LANGUAGE, language)
+        .appendQueryParameter(PARAM_APPEND_TO_RESPONSE, PATH_VIDEOS + "," + PATH_REVIEWS)
+        .build();
+
+    URL url = null;
+    try {
+      url = new URL(builtUri.toString());
+    } catch (MalformedURLException e) {
+      e.printStackTrace();
+    }
+
+    return url;
+  }
+
+  /**
+   * Builds the URL used to query tmdb for a poster image of a Movie. The base URL comes from the API configuration,
+   * see {@link ConfigurationStore}.
+   *
+   * @param imageSize The size of the image, one of {@link ImageConfiguration#getPosterSizes()}.
    * @param imagePath The path of the image.
    * @return The Uri to use to get the image of a Movie.
    */
-  public static Uri buildMovieImageUri(@ImageSize String imageSize, String imagePath) {
-    return Uri.parse(TMDB_IMAGE_URL).buildUpon().appendEncodedPath(imageSize).appendEncodedPath(imagePath).build();
+  public static Uri buildMovieImageUri(String imageSize, String imagePath) {
+    String imageBaseUrl = App.getInstance().getConfigurationStore().getImageConfiguration().getBaseUrl();
+    return Uri.parse(imageBaseUrl).buildUpon().appendEncodedPath(imageSize).appendEncodedPath(imagePath).build();
   }
 
   public static boolean isAnyNetworkOn() {
@@ -234,8 +254,4 @@ public class NetworkUtils {
       //ignore
     }
   }
-
-  @Retention(RetentionPolicy.CLASS) @StringDef({ ORIGINAL, WIDTH92, WIDTH154, WIDTH185, WIDTH342, WIDTH500, WIDTH780 })
-  public @interface ImageSize {
-  }
 }
\ No newline at end of file
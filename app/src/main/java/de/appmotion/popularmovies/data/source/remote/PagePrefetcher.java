@@ -0,0 +1,260 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Keeps a configurable number of movie list pages ahead of the viewport. Every list (e.g. popular and top rated) has its own
+ * page bookkeeping, while the number of pages downloaded at the same time is bounded for all lists together.
+ *
+ * Pages can finish in any order, the ranking of their movies is derived from the page number, see {@link #rankOf(int, int)}.
+ *
+ * This class is not thread-safe, all methods have to be called from the main thread.
+ */
+public class PagePrefetcher {
+
+  // Number of pages which should be loaded beyond the page of the last visible item
+  private final int mPagesAhead;
+  // Maximum number of pages downloading at the same time
+  private final int mMaxConcurrent;
+  private final PageRequester mPageRequester;
+  // Bookkeeping per list
+  private final Map<Integer, ListState> mListStates = new HashMap<>();
+  // Number of pages currently downloading for all lists
+  private int mInFlightCount;
+
+  /**
+   * @param pagesAhead number of pages which should be loaded beyond the page of the last visible item.
+   * @param maxConcurrent maximum number of pages downloading at the same time.
+   * @param pageRequester starts the download of a page.
+   */
+  public PagePrefetcher(int pagesAhead, int maxConcurrent, PageRequester pageRequester) {
+    if (pagesAhead < 0 || maxConcurrent < 1) {
+      throw new IllegalArgumentException("pagesAhead must be >= 0 and maxConcurrent must be >= 1");
+    }
+    mPagesAhead = pagesAhead;
+    mMaxConcurrent = maxConcurrent;
+    mPageRequester = pageRequester;
+  }
+
+  /**
+   * The rank of a movie in its list, starting with 0.
+   *
+   * @param page the page of the movie, starting with 1.
+   * @param indexInPage the position of the movie inside the page.
+   * @return the rank of the movie.
+   */
+  public static int rankOf(int page, int indexInPage) {
+    return (page - 1) * NetworkUtils.MOVIES_PER_PAGE + indexInPage;
+  }
+
+  /**
+   * The page which contains a position of the list.
+   *
+   * @param position the position in the list, starting with 0.
+   * @return the page, starting with 1.
+   */
+  public static int pageOf(int position) {
+    return Math.max(position, 0) / NetworkUtils.MOVIES_PER_PAGE + 1;
+  }
+
+  /**
+   * Request the pages needed for the last known viewport of a list, which have not been loaded yet.
+   *
+   * @param listType the list.
+   */
+  public void start(int listType) {
+    ListState state = getListState(listType);
+    requestPages(listType, state);
+  }
+
+  /**
+   * Forget all loaded pages of a list and request them again, beginning with the first page.
+   * Pages which are currently downloading are not requested twice.
+   *
+   * @param listType the list.
+   */
+  public void refresh(int listType) {
+    ListState state = getListState(listType);
+    state.mLoadedPages.clear();
+    state.mFailedPages.clear();
+    state.mLastPage = Integer.MAX_VALUE;
+    state.mLastVisiblePosition = 0;
+    requestPages(listType, state);
+  }
+
+  /**
+   * Restore the pages of a list after the Activity was recreated, see {@link #getLoadedPages(int)} and
+   * {@link #getInFlightPages(int)}. The downloads which were running are resumed, see {@link PageRequester#resumePage}.
+   *
+   * @param listType the list.
+   * @param loadedPages the pages which are already loaded.
+   * @param inFlightPages the pages which were downloading.
+   */
+  public void restore(int listType, int[] loadedPages, int[] inFlightPages) {
+    ListState state = getListState(listType);
+    for (int page : loadedPages) {
+      state.mLoadedPages.add(page);
+    }
+    int visiblePage = pageOf(state.mLastVisiblePosition);
+    for (int page : inFlightPages) {
+      if (state.mLoadedPages.contains(page) || !state.mInFlightPages.add(page)) {
+        continue;
+      }
+      mInFlightCount++;
+      mPageRequester.resumePage(listType, page, page <= visiblePage ? RequestScheduler.VISIBLE_PAGE : RequestScheduler.PREFETCH);
+    }
+  }
+
+  /**
+   * Called whenever the visible items of a list changed.
+   *
+   * @param listType the list.
+   * @param lastVisiblePosition position of the last visible item.
+   */
+  public void onViewportChanged(int listType, int lastVisiblePosition) {
+    ListState state = getListState(listType);
+    state.mLastVisiblePosition = lastVisiblePosition;
+    // Failed pages get another chance as soon as the user scrolls again.
+    state.mFailedPages.clear();
+    requestPages(listType, state);
+  }
+
+  /**
+   * Called when a page was downloaded and inserted.
+   *
+   * @param listType the list.
+   * @param page the page.
+   * @param movieCount the number of movies of this page. A page with less than {@link NetworkUtils#MOVIES_PER_PAGE} movies is
+   * the last page of the list.
+   */
+  public void onPageLoaded(int listType, int page, int movieCount) {
+    ListState state = getListState(listType);
+    if (state.mInFlightPages.remove(page)) {
+      mInFlightCount--;
+    }
+    state.mLoadedPages.add(page);
+    if (movieCount < NetworkUtils.MOVIES_PER_PAGE) {
+      state.mLastPage = Math.min(state.mLastPage, page);
+    }
+    requestAllPages();
+  }
+
+  /**
+   * Called when the download of a page failed. The page will be requested again with the next call of
+   * {@link #onViewportChanged(int, int)}.
+   *
+   * @param listType the list.
+   * @param page the page.
+   */
+  public void onPageFailed(int listType, int page) {
+    ListState state = getListState(listType);
+    if (state.mInFlightPages.remove(page)) {
+      mInFlightCount--;
+    }
+    state.mFailedPages.add(page);
+    requestAllPages();
+  }
+
+  /**
+   * @param listType the list.
+   * @return all pages from 1 up to the returned page are loaded.
+   */
+  public int getContiguousLoadedPage(int listType) {
+    ListState state = getListState(listType);
+    int page = 0;
+    while (state.mLoadedPages.contains(page + 1)) {
+      page++;
+    }
+    return page;
+  }
+
+  /**
+   * @param listType the list.
+   * @return the loaded pages in ascending order.
+   */
+  public int[] getLoadedPages(int listType) {
+    return toArray(getListState(listType).mLoadedPages);
+  }
+
+  /**
+   * @param listType the list.
+   * @return the pages currently downloading in ascending order.
+   */
+  public int[] getInFlightPages(int listType) {
+    return toArray(getListState(listType).mInFlightPages);
+  }
+
+  /**
+   * @return number of pages currently downloading for all lists.
+   */
+  public int getInFlightCount() {
+    return mInFlightCount;
+  }
+
+  /**
+   * Free download slots may be used by any list, so give every list the chance to request its pages.
+   */
+  private void requestAllPages() {
+    for (Map.Entry<Integer, ListState> entry : mListStates.entrySet()) {
+      requestPages(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private void requestPages(int listType, ListState state) {
+    int visiblePage = pageOf(state.mLastVisiblePosition);
+    int targetPage = Math.min(visiblePage + mPagesAhead, state.mLastPage);
+    for (int page = 1; page <= targetPage && mInFlightCount < mMaxConcurrent; page++) {
+      if (state.mLoadedPages.contains(page) || state.mInFlightPages.contains(page) || state.mFailedPages.contains(page)) {
+        continue;
+      }
+      state.mInFlightPages.add(page);
+      mInFlightCount++;
+      // Pages the user already scrolled to are more urgent than the pages ahead
+      mPageRequester.requestPage(listType, page, page <= visiblePage ? RequestScheduler.VISIBLE_PAGE : RequestScheduler.PREFETCH);
+    }
+  }
+
+  private static int[] toArray(TreeSet<Integer> pages) {
+    int[] array = new int[pages.size()];
+    int i = 0;
+    for (int page : pages) {
+      array[i++] = page;
+    }
+    return array;
+  }
+
+  private ListState getListState(int listType) {
+    ListState state = mListStates.get(listType);
+    if (state == null) {
+      state = new ListState();
+      mListStates.put(listType, state);
+    }
+    return state;
+  }
+
+  /**
+   * Starts the download of a page. The result has to be reported via {@link #onPageLoaded(int, int, int)} or
+   * {@link #onPageFailed(int, int)}.
+   */
+  public interface PageRequester {
+    void requestPage(int listType, int page, @RequestScheduler.Priority int priority);
+
+    /**
+     * Reconnect to a download started before the Activity was recreated, or start it again if it is gone.
+     */
+    void resumePage(int listType, int page, @RequestScheduler.Priority int priority);
+  }
+
+  /**
+   * Page bookkeeping of a single list.
+   */
+  private static class ListState {
+    final TreeSet<Integer> mLoadedPages = new TreeSet<>();
+    final TreeSet<Integer> mInFlightPages = new TreeSet<>();
+    final TreeSet<Integer> mFailedPages = new TreeSet<>();
+    int mLastPage = Integer.MAX_VALUE;
+    int mLastVisiblePosition;
+  }
+}
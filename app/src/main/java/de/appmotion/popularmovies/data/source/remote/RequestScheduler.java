@@ -0,0 +1,283 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import android.support.annotation.IntDef;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Schedules all requests to themoviedb.org by {@link Priority}.
+ *
+ * A request waits until it is the oldest one of the highest waiting priority, a slot for running requests is free and the
+ * {@link TokenBucket} grants a token. One slot is reserved for the visible priorities, so prefetch and background sync can
+ * never block the request the user is waiting for.
+ *
+ * Usage: get a {@link Ticket} with {@link #newTicket(int)}, execute the request with it and close the ticket after the
+ * response was read. A ticket can be canceled from any thread, while it is waiting or while its request is running.
+ */
+public class RequestScheduler {
+
+  // Define {@link Priority} Types, lower values are served first
+  public static final int VISIBLE_DETAIL = 0;
+  public static final int VISIBLE_PAGE = 1;
+  public static final int PREFETCH = 2;
+  public static final int BACKGROUND_SYNC = 3;
+  private static final int PRIORITY_COUNT = 4;
+
+  private final ReentrantLock mLock = new ReentrantLock();
+  private final Condition mStateChanged = mLock.newCondition();
+  // Waiting tickets per priority, oldest first
+  private final List<ArrayDeque<Ticket>> mQueues = new ArrayList<>(PRIORITY_COUNT);
+  private final TokenBucket mTokenBucket;
+  private final int mMaxRunning;
+  private int mRunningCount;
+  private long mExecutedCount;
+  private long mCanceledCount;
+
+  /**
+   * @param maxRunning maximum number of requests running at the same time.
+   * @param burst maximum number of requests which can be started at once, see {@link TokenBucket}.
+   * @param requestsPerSecond long term limit of started requests.
+   */
+  public RequestScheduler(int maxRunning, int burst, double requestsPerSecond) {
+    if (maxRunning < 1) {
+      throw new IllegalArgumentException("maxRunning must be >= 1");
+    }
+    mMaxRunning = maxRunning;
+    mTokenBucket = new TokenBucket(burst, requestsPerSecond, System.nanoTime());
+    for (int i = 0; i < PRIORITY_COUNT; i++) {
+      mQueues.add(new ArrayDeque<Ticket>());
+    }
+  }
+
+  /**
+   * Create a ticket to execute a request with the given priority.
+   *
+   * @param priority the {@link Priority} of the request.
+   * @return a new Ticket.
+   */
+  public Ticket newTicket(@Priority int priority) {
+    return new Ticket(priority);
+  }
+
+  /**
+   * @param priority the {@link Priority}.
+   * @return number of requests waiting with the given priority.
+   */
+  public int getQueueDepth(@Priority int priority) {
+    mLock.lock();
+    try {
+      return mQueues.get(priority).size();
+    } finally {
+      mLock.unlock();
+    }
+  }
+
+  /**
+   * @return number of requests running at the moment.
+   */
+  public int getRunningCount() {
+    mLock.lock();
+    try {
+      return mRunningCount;
+    } finally {
+      mLock.unlock();
+    }
+  }
+
+  /**
+   * @return number of requests which were started.
+   */
+  public long getExecutedCount() {
+    mLock.lock();
+    try {
+      return mExecutedCount;
+    } finally {
+      mLock.unlock();
+    }
+  }
+
+  /**
+   * @return number of tickets which were canceled while waiting.
+   */
+  public long getCanceledCount() {
+    mLock.lock();
+    try {
+      return mCanceledCount;
+    } finally {
+      mLock.unlock();
+    }
+  }
+
+  /**
+   * Block until the {@link TokenBucket} grants a token, without waiting for a slot. Used for another attempt of a request
+   * whose ticket already runs, e.g. a retry.
+   *
+   * @throws InterruptedIOException if the thread was interrupted.
+   */
+  public void acquireToken() throws InterruptedIOException {
+    mLock.lock();
+    try {
+      long waitNanos;
+      while ((waitNanos = mTokenBucket.tryAcquire(System.nanoTime())) > 0) {
+        mStateChanged.awaitNanos(waitNanos);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a token");
+    } finally {
+      mLock.unlock();
+    }
+  }
+
+  /**
+   * Block until the ticket may run. Has to be called with mLock held.
+   */
+  private void awaitTurn(Ticket ticket) throws IOException {
+    mQueues.get(ticket.mPriority).addLast(ticket);
+    try {
+      while (true) {
+        if (ticket.mCanceled) {
+          mCanceledCount++;
+          throw new IOException("Canceled");
+        }
+        long waitNanos = Long.MAX_VALUE;
+        if (isNext(ticket) && mRunningCount < maxRunningFor(ticket.mPriority)) {
+          waitNanos = mTokenBucket.tryAcquire(System.nanoTime());
+          if (waitNanos == 0) {
+            mRunningCount++;
+            mExecutedCount++;
+            ticket.mRunning = true;
+            return;
+          }
+        }
+        if (waitNanos == Long.MAX_VALUE) {
+          mStateChanged.await();
+        } else {
+          mStateChanged.awaitNanos(waitNanos);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a request slot");
+    } finally {
+      mQueues.get(ticket.mPriority).remove(ticket);
+      // The next ticket may run now
+      mStateChanged.signalAll();
+    }
+  }
+
+  /**
+   * @return true if no ticket of a higher priority is waiting and the ticket is the oldest of its priority.
+   */
+  private boolean isNext(Ticket ticket) {
+    for (int priority = 0; priority < ticket.mPriority; priority++) {
+      if (!mQueues.get(priority).isEmpty()) {
+        return false;
+      }
+    }
+    return mQueues.get(ticket.mPriority).peekFirst() == ticket;
+  }
+
+  /**
+   * Prefetch and background sync leave one slot free for visible requests.
+   */
+  private int maxRunningFor(@Priority int priority) {
+    if (priority <= VISIBLE_PAGE || mMaxRunning == 1) {
+      return mMaxRunning;
+    }
+    return mMaxRunning - 1;
+  }
+
+  private void release(Ticket ticket) {
+    mLock.lock();
+    try {
+      if (ticket.mRunning) {
+        ticket.mRunning = false;
+        mRunningCount--;
+        mStateChanged.signalAll();
+      }
+    } finally {
+      mLock.unlock();
+    }
+  }
+
+  private void cancel(Ticket ticket) {
+    Call call;
+    mLock.lock();
+    try {
+      ticket.mCanceled = true;
+      call = ticket.mCall;
+      mStateChanged.signalAll();
+    } finally {
+      mLock.unlock();
+    }
+    if (call != null) {
+      call.cancel();
+    }
+  }
+
+  @Retention(RetentionPolicy.CLASS) @IntDef({ VISIBLE_DETAIL, VISIBLE_PAGE, PREFETCH, BACKGROUND_SYNC })
+  public @interface Priority {
+  }
+
+  /**
+   * Permission to execute one request. Close it after the response was read to free its slot.
+   */
+  public final class Ticket implements Closeable {
+    private final @Priority int mPriority;
+    // Guarded by mLock
+    private boolean mCanceled;
+    private boolean mRunning;
+    private Call mCall;
+
+    private Ticket(@Priority int priority) {
+      mPriority = priority;
+    }
+
+    /**
+     * Wait for the turn of this ticket, then execute the request.
+     *
+     * @param okHttpClient the client executing the request.
+     * @param request the request.
+     * @return the response, its body has to be closed by the caller.
+     * @throws IOException if the ticket was canceled or the request failed.
+     */
+    public Response execute(OkHttpClient okHttpClient, Request request) throws IOException {
+      Call call = okHttpClient.newCall(request);
+      mLock.lock();
+      try {
+        awaitTurn(this);
+        mCall = call;
+      } finally {
+        mLock.unlock();
+      }
+      return call.execute();
+    }
+
+    /**
+     * Cancel this ticket. A waiting ticket leaves the queue, a running request is canceled.
+     */
+    public void cancel() {
+      RequestScheduler.this.cancel(this);
+    }
+
+    /**
+     * Free the slot of this ticket.
+     */
+    @Override public void close() {
+      release(this);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application interceptor which retries API GET requests after network errors and transient server errors
+ * (408, 429, 500, 502, 503, 504).
+ *
+ * The delay before a retry is chosen at random between 0 and baseDelayMillis * 2^retry, capped by maxDelayMillis
+ * ("full jitter"), so many clients do not retry in lockstep. If a 429 or 503 response has a Retry-After header, that delay
+ * is used instead. A Retry-After longer than maxDelayMillis is not waited for, the response is returned.
+ *
+ * A retry runs in the slot of the {@link RequestScheduler.Ticket} of the request, but takes its own token of the
+ * {@link RequestScheduler}, so retries are rate limited like all other requests.
+ */
+public class RetryInterceptor implements Interceptor {
+
+  static final int HTTP_TOO_MANY_REQUESTS = 429;
+  // Message of the IOException OkHttp throws for a canceled call
+  static final String CANCELED = "Canceled";
+
+  private final int mMaxRetries;
+  private final long mBaseDelayMillis;
+  private final long mMaxDelayMillis;
+  private final Random mRandom;
+  private final RequestScheduler mRequestScheduler;
+  private final AtomicLong mRetryCount = new AtomicLong();
+
+  /**
+   * @param maxRetries maximum number of retries of a request, 0 disables retries.
+   * @param baseDelayMillis delay limit of the first retry, it doubles with every retry.
+   * @param maxDelayMillis maximum delay before a retry.
+   * @param requestScheduler grants the token of every retry.
+   */
+  public RetryInterceptor(int maxRetries, long baseDelayMillis, long maxDelayMillis, RequestScheduler requestScheduler) {
+    this(maxRetries, baseDelayMillis, maxDelayMillis, requestScheduler, new Random());
+  }
+
+  RetryInterceptor(int maxRetries, long baseDelayMillis, long maxDelayMillis, RequestScheduler requestScheduler, Random random) {
+    mMaxRetries = maxRetries;
+    mBaseDelayMillis = baseDelayMillis;
+    mMaxDelayMillis = maxDelayMillis;
+    mRequestScheduler = requestScheduler;
+    mRandom = random;
+  }
+
+  @Override public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    // Only idempotent API requests are retried, cache only requests never reach the network
+    if (!"GET".equals(request.method())
+        || CachePolicy.endpointTypeOf(request.url()) == CachePolicy.UNKNOWN
+        || request.cacheControl().onlyIfCached()) {
+      return chain.proceed(request);
+    }
+
+    for (int retry = 0; ; retry++) {
+      if (retry > 0) {
+        // The first attempt took the token of the ticket
+        mRequestScheduler.acquireToken();
+      }
+      Response response;
+      try {
+        response = chain.proceed(request);
+      } catch (IOException e) {
+        // Timeouts are retried, canceled calls are not
+        if (retry >= mMaxRetries || isCanceled(e)) {
+          throw e;
+        }
+        sleep(backoffMillis(retry));
+        mRetryCount.incrementAndGet();
+        continue;
+      }
+
+      if (retry >= mMaxRetries || !isRetryable(response.code())) {
+        return response;
+      }
+      long delayMillis = retryAfterMillis(response);
+      if (delayMillis < 0) {
+        delayMillis = backoffMillis(retry);
+      } else if (delayMillis > mMaxDelayMillis) {
+        // The server wants us to wait longer than we are willing to
+        return response;
+      }
+      NetworkUtils.close(response);
+      sleep(delayMillis);
+      mRetryCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return true if the exception means the app canceled the call, not that it failed.
+   */
+  static boolean isCanceled(IOException e) {
+    return CANCELED.equals(e.getMessage());
+  }
+
+  /**
+   * @param retry the number of the retry, starting with 0.
+   * @return a random delay between 0 and the exponential limit of the retry.
+   */
+  long backoffMillis(int retry) {
+    long limit = Math.min(mMaxDelayMillis, mBaseDelayMillis << Math.min(retry, 30));
+    return (long) (mRandom.nextDouble() * limit);
+  }
+
+  /**
+   * @return the delay of the Retry-After header of a 429 or 503 response in milliseconds or -1 if there is none.
+   */
+  static long retryAfterMillis(Response response) {
+    int code = response.code();
+    String retryAfter = response.header("Retry-After");
+    if ((code != HTTP_TOO_MANY_REQUESTS && code != HttpURLConnection.HTTP_UNAVAILABLE) || retryAfter == null) {
+      return -1;
+    }
+    // Either delay-seconds or an HTTP-date
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+    } catch (NumberFormatException e) {
+      Date date = response.headers().getDate("Retry-After");
+      if (date == null) {
+        return -1;
+      }
+      return Math.max(0, date.getTime() - System.currentTimeMillis());
+    }
+  }
+
+  private static boolean isRetryable(int code) {
+    switch (code) {
+      case HttpURLConnection.HTTP_CLIENT_TIMEOUT:
+      case HTTP_TOO_MANY_REQUESTS:
+      case HttpURLConnection.HTTP_INTERNAL_ERROR:
+      case HttpURLConnection.HTTP_BAD_GATEWAY:
+      case HttpURLConnection.HTTP_UNAVAILABLE:
+      case HttpURLConnection.HTTP_GATEWAY_TIMEOUT:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Wait before the next attempt. Tests override this to record the delays instead of waiting.
+   *
+   * @param millis the delay in milliseconds.
+   * @throws InterruptedIOException if the thread was interrupted.
+   */
+  void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry");
+    }
+  }
+
+  /**
+   * @return number of retried requests.
+   */
+  public long getRetryCount() {
+    return mRetryCount.get();
+  }
+}
@@ -0,0 +1,158 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of running calls keyed by URL. Concurrent callers of the same URL share the first call and its result,
+ * so only one request is sent to the server.
+ *
+ * @param <T> the result of a call.
+ */
+public class SingleFlight<T> {
+
+  // Message of the IOException of a canceled caller, like the one OkHttp throws for a canceled call
+  private static final String CANCELED = "Canceled";
+
+  // Calls which are currently running, keyed by URL
+  private final Map<String, Flight<T>> mFlights = new HashMap<>();
+  // Number of calls which were really executed
+  private final AtomicLong mExecutedCount = new AtomicLong();
+  // Number of calls which joined a running call instead of being executed
+  private final AtomicLong mCoalescedCount = new AtomicLong();
+
+  /**
+   * Execute the call for a URL, or wait for the result of the same URL if it is already running.
+   *
+   * @param url the key of the call.
+   * @param call the call to execute if no call for the URL is running.
+   * @return the result of the call.
+   * @throws IOException if the call failed. All callers waiting for the call get the same exception.
+   */
+  public T execute(String url, Call<T> call) throws IOException {
+    return execute(url, call, new Cancellation());
+  }
+
+  /**
+   * Execute the call for a URL, or wait for the result of the same URL if it is already running. If the caller which
+   * executes the call is canceled, its error is not shared: a waiting caller executes its own call instead.
+   *
+   * @param url the key of the call.
+   * @param call the call to execute if no call for the URL is running.
+   * @param cancellation cancels the call or the wait of this caller, see {@link #cancel(Cancellation)}.
+   * @return the result of the call.
+   * @throws IOException if the call failed or this caller was canceled.
+   */
+  public T execute(String url, Call<T> call, Cancellation cancellation) throws IOException {
+    Flight<T> flight;
+    synchronized (mFlights) {
+      while (true) {
+        if (cancellation.mCanceled) {
+          throw new IOException(CANCELED);
+        }
+        flight = mFlights.get(url);
+        if (flight == null) {
+          flight = new Flight<>();
+          mFlights.put(url, flight);
+          break;
+        }
+        mCoalescedCount.incrementAndGet();
+        try {
+          while (!flight.mDone && !cancellation.mCanceled) {
+            mFlights.wait();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for " + url);
+        }
+        if (flight.mDone && !flight.mAbandoned) {
+          if (flight.mError != null) {
+            throw flight.mError;
+          }
+          return flight.mResult;
+        }
+        // Canceled, or the executing caller was canceled and this caller takes over
+      }
+    }
+
+    mExecutedCount.incrementAndGet();
+    boolean abandoned = false;
+    try {
+      flight.mResult = call.execute();
+      return flight.mResult;
+    } catch (IOException | RuntimeException e) {
+      // The cancellation of this caller is no error of the other callers
+      abandoned = cancellation.mCanceled;
+      flight.mError = e instanceof IOException ? (IOException) e : new IOException(e);
+      throw e;
+    } finally {
+      synchronized (mFlights) {
+        mFlights.remove(url);
+        flight.mAbandoned = abandoned;
+        flight.mDone = true;
+        mFlights.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Cancel a caller. A waiting caller stops waiting, a caller which executes the call does not share its error. The call
+   * itself has to be canceled by the caller, e.g. by canceling its request.
+   *
+   * @param cancellation the cancellation passed to {@link #execute(String, Call, Cancellation)}.
+   */
+  public void cancel(Cancellation cancellation) {
+    synchronized (mFlights) {
+      cancellation.mCanceled = true;
+      mFlights.notifyAll();
+    }
+  }
+
+  /**
+   * @return number of calls which were executed.
+   */
+  public long getExecutedCount() {
+    return mExecutedCount.get();
+  }
+
+  /**
+   * @return number of calls which were saved because they joined a running call for the same URL.
+   */
+  public long getCoalescedCount() {
+    return mCoalescedCount.get();
+  }
+
+  /**
+   * A call which can be shared by several callers.
+   */
+  public interface Call<T> {
+    T execute() throws IOException;
+  }
+
+  /**
+   * The canceled state of one caller.
+   */
+  public static class Cancellation {
+    // Written while holding mFlights of the SingleFlight
+    private volatile boolean mCanceled;
+
+    /**
+     * @return true if the caller was canceled.
+     */
+    public boolean isCanceled() {
+      return mCanceled;
+    }
+  }
+
+  private static class Flight<T> {
+    // Guarded by mFlights
+    boolean mDone;
+    // True if the caller which executed the call was canceled, its result is not shared
+    boolean mAbandoned;
+    volatile T mResult;
+    volatile IOException mError;
+  }
+}
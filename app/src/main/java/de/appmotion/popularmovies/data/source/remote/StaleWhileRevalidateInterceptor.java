@@ -0,0 +1,144 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Okio;
+
+/**
+ * Application interceptor which serves cached API responses right away:
+ * <ul>
+ * <li>hit: the cached response is fresh and returned without any request.</li>
+ * <li>revalidate: the cached response is stale but inside the stale window of the {@link CachePolicy}. It is returned
+ * immediately and a conditional request updates the cache in the background. It is scheduled with the
+ * {@link RequestScheduler#BACKGROUND_SYNC} priority.</li>
+ * <li>miss: nothing usable is cached, the request goes to the network.</li>
+ * </ul>
+ * Requests with Cache-Control no-cache bypass this interceptor.
+ */
+public class StaleWhileRevalidateInterceptor implements Interceptor {
+
+  // Tag of background revalidation requests, they are passed through to the network
+  private static final Object REVALIDATE_TAG = new Object();
+  // Header OkHttp adds to a cached response which is served although it is stale
+  private static final String WARNING_STALE = "110";
+
+  private final CachePolicy mCachePolicy;
+  // URLs which are revalidated at the moment
+  private final Set<String> mRevalidatingUrls = Collections.synchronizedSet(new HashSet<String>());
+  private final AtomicLong mHitCount = new AtomicLong();
+  private final AtomicLong mMissCount = new AtomicLong();
+  private final AtomicLong mRevalidateCount = new AtomicLong();
+  // The client which executes the background revalidation, it is the client this interceptor is installed in
+  private volatile OkHttpClient mOkHttpClient;
+  private volatile RequestScheduler mRequestScheduler;
+
+  public StaleWhileRevalidateInterceptor(CachePolicy cachePolicy) {
+    mCachePolicy = cachePolicy;
+  }
+
+  /**
+   * Set the client which executes background revalidations. Has to be called after the client was built.
+   *
+   * @param okHttpClient the client this interceptor is installed in.
+   * @param requestScheduler schedules the background revalidations.
+   */
+  public void setOkHttpClient(OkHttpClient okHttpClient, RequestScheduler requestScheduler) {
+    mRequestScheduler = requestScheduler;
+    mOkHttpClient = okHttpClient;
+  }
+
+  @Override public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    int endpointType = CachePolicy.endpointTypeOf(request.url());
+    if (endpointType == CachePolicy.UNKNOWN
+        || !"GET".equals(request.method())
+        || request.tag() == REVALIDATE_TAG
+        || request.cacheControl().noCache()
+        || request.cacheControl().onlyIfCached()) {
+      return chain.proceed(request);
+    }
+
+    // Ask the cache only, accepting responses up to the end of the stale window
+    CacheControl cacheOnly =
+        new CacheControl.Builder().onlyIfCached().maxStale((int) mCachePolicy.getStaleSeconds(endpointType), TimeUnit.SECONDS).build();
+    Response cachedResponse = chain.proceed(request.newBuilder().cacheControl(cacheOnly).build());
+    if (cachedResponse.cacheResponse() == null) {
+      // Unsatisfiable request, nothing usable is cached
+      NetworkUtils.close(cachedResponse);
+      mMissCount.incrementAndGet();
+      return chain.proceed(request);
+    }
+
+    String warning = cachedResponse.header("Warning");
+    if (warning != null && warning.startsWith(WARNING_STALE)) {
+      mRevalidateCount.incrementAndGet();
+      revalidate(request);
+    } else {
+      mHitCount.incrementAndGet();
+    }
+    return cachedResponse;
+  }
+
+  /**
+   * Request the URL in the background. The cache sends a conditional request and stores the new response.
+   */
+  private void revalidate(Request request) {
+    final OkHttpClient okHttpClient = mOkHttpClient;
+    final RequestScheduler requestScheduler = mRequestScheduler;
+    final String url = request.url().toString();
+    if (okHttpClient == null || !mRevalidatingUrls.add(url)) {
+      return;
+    }
+    final Request revalidateRequest = request.newBuilder().tag(REVALIDATE_TAG).build();
+    // The ticket blocks until its turn, so wait for it on a thread of the client
+    okHttpClient.dispatcher().executorService().execute(new Runnable() {
+      @Override public void run() {
+        RequestScheduler.Ticket ticket = requestScheduler.newTicket(RequestScheduler.BACKGROUND_SYNC);
+        try {
+          Response response = ticket.execute(okHttpClient, revalidateRequest);
+          try {
+            // Reading the body completely writes it to the cache
+            response.body().source().readAll(Okio.blackhole());
+          } finally {
+            NetworkUtils.close(response);
+          }
+        } catch (IOException e) {
+          // The stale response stays in the cache
+        } finally {
+          ticket.close();
+          mRevalidatingUrls.remove(url);
+        }
+      }
+    });
+  }
+
+  /**
+   * @return number of requests served from cache with a fresh response.
+   */
+  public long getHitCount() {
+    return mHitCount.get();
+  }
+
+  /**
+   * @return number of requests which went to the network because nothing usable was cached.
+   */
+  public long getMissCount() {
+    return mMissCount.get();
+  }
+
+  /**
+   * @return number of requests served from cache with a stale response, which was revalidated in the background.
+   */
+  public long getRevalidateCount() {
+    return mRevalidateCount.get();
+  }
+}
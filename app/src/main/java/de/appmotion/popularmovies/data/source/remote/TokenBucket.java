@@ -0,0 +1,64 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. The bucket holds up to capacity tokens and is refilled continuously with a fixed rate.
+ * Every request takes one token, so bursts up to capacity are allowed while the long term rate is bounded.
+ *
+ * The time is passed in by the caller, which keeps this class easy to test. It is not thread-safe.
+ */
+class TokenBucket {
+
+  private final double mCapacity;
+  private final double mTokensPerNano;
+  private double mTokens;
+  private long mLastRefillNanos;
+
+  /**
+   * @param capacity maximum number of tokens, the size of a burst.
+   * @param tokensPerSecond refill rate.
+   * @param nowNanos current time in nanoseconds, the bucket starts full.
+   */
+  TokenBucket(int capacity, double tokensPerSecond, long nowNanos) {
+    if (capacity < 1 || tokensPerSecond <= 0) {
+      throw new IllegalArgumentException("capacity must be >= 1 and tokensPerSecond must be > 0");
+    }
+    mCapacity = capacity;
+    mTokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+    mTokens = capacity;
+    mLastRefillNanos = nowNanos;
+  }
+
+  /**
+   * Take a token if one is available.
+   *
+   * @param nowNanos current time in nanoseconds.
+   * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available.
+   */
+  long tryAcquire(long nowNanos) {
+    refill(nowNanos);
+    if (mTokens >= 1) {
+      mTokens -= 1;
+      return 0;
+    }
+    return Math.max(1L, (long) Math.ceil((1 - mTokens) / mTokensPerNano));
+  }
+
+  /**
+   * @param nowNanos current time in nanoseconds.
+   * @return number of whole tokens available at the moment.
+   */
+  int availableTokens(long nowNanos) {
+    refill(nowNanos);
+    return (int) mTokens;
+  }
+
+  private void refill(long nowNanos) {
+    long elapsed = nowNanos - mLastRefillNanos;
+    if (elapsed > 0) {
+      mTokens = Math.min(mCapacity, mTokens + elapsed * mTokensPerNano);
+      mLastRefillNanos = nowNanos;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package de.appmotion.popularmovies.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+import de.appmotion.popularmovies.App;
+import de.appmotion.popularmovies.data.Movie;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import de.appmotion.popularmovies.data.source.local.MovieListRetention;
+import de.appmotion.popularmovies.data.source.local.MovieRows;
+import de.appmotion.popularmovies.data.source.remote.MovieListSync;
+import de.appmotion.popularmovies.data.source.remote.NetworkUtils;
+import de.appmotion.popularmovies.data.source.remote.PagePrefetcher;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic background sync which refreshes the first pages of Popular and Top Rated Movies in the ContentProvider while the
+ * device is on an unmetered network. So the first frame after a cold start shows warm local data.
+ *
+ * A second job evicts old and surplus pages of these lists once a day while the device is idle, see
+ * {@link MovieListRetention}.
+ *
+ * JobScheduler is available from Lollipop on, older devices load the lists only while {@link de.appmotion.popularmovies.MainActivity}
+ * is shown.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP) public class MovieSyncJobService extends JobService {
+
+  // Constant for logging
+  private static final String TAG = MovieSyncJobService.class.getSimpleName();
+  private static final int JOB_ID = 1;
+  private static final int RETENTION_JOB_ID = 2;
+  // Pages per list, they fill the first screens of the grid
+  private static final int SYNC_PAGES_PER_LIST = 3;
+  private static final long SYNC_INTERVAL_HOURS = 6L;
+  private static final long RETENTION_INTERVAL_HOURS = 24L;
+
+  // The running sync, used to cancel it
+  private volatile MovieListSync mMovieListSync;
+
+  /**
+   * Schedule the periodic sync and retention, unless they are already scheduled. Does nothing before Lollipop.
+   *
+   * @param context current context
+   */
+  public static void schedule(Context context) {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+      return;
+    }
+    JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    if (jobScheduler == null) {
+      return;
+    }
+    // Scheduling again would restart the interval
+    boolean syncScheduled = false;
+    boolean retentionScheduled = false;
+    for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+      syncScheduled |= jobInfo.getId() == JOB_ID;
+      retentionScheduled |= jobInfo.getId() == RETENTION_JOB_ID;
+    }
+    if (!syncScheduled) {
+      jobScheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, MovieSyncJobService.class))
+          .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+          .setPeriodic(TimeUnit.HOURS.toMillis(SYNC_INTERVAL_HOURS))
+          .setPersisted(true)
+          .build());
+    }
+    if (!retentionScheduled) {
+      jobScheduler.schedule(new JobInfo.Builder(RETENTION_JOB_ID, new ComponentName(context, MovieSyncJobService.class))
+          .setRequiresDeviceIdle(true)
+          .setPeriodic(TimeUnit.HOURS.toMillis(RETENTION_INTERVAL_HOURS))
+          .setPersisted(true)
+          .build());
+    }
+  }
+
+  @Override public boolean onStartJob(final JobParameters params) {
+    if (params.getJobId() == RETENTION_JOB_ID) {
+      new Thread(new Runnable() {
+        @Override public void run() {
+          Bundle result;
+          try {
+            result = getContentResolver().call(DatabaseContract.BASE_CONTENT_URI, MovieListRetention.METHOD_EVICT, null, null);
+          } catch (RuntimeException e) {
+            // E.g. a SQLiteException, the job is tried again instead of killing the process
+            Log.e(TAG, "Eviction failed: ", e);
+            jobFinished(params, true);
+            return;
+          }
+          if (result != null) {
+            Log.i(TAG, "Evicted " + result.getInt(MovieListRetention.KEY_LIST_ROWS_EVICTED) + " list rows, deleted "
+                + result.getInt(MovieListRetention.KEY_MOVIES_DELETED) + " movies");
+          }
+          jobFinished(params, false);
+        }
+      }, "MovieRetention").start();
+      // The eviction runs on its own thread
+      return true;
+    }
+
+    final MovieListSync movieListSync =
+        new MovieListSync(App.getInstance().getOkHttpClient(), App.getInstance().getRequestScheduler(), SYNC_PAGES_PER_LIST);
+    mMovieListSync = movieListSync;
+    final Locale locale = Locale.getDefault();
+    new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          movieListSync.syncList(new MovieListSync.PageUrls() {
+            @Override public URL pageUrl(int page) {
+              return NetworkUtils.buildPopularMoviesUrl(locale.getLanguage(), String.valueOf(page), locale.getCountry());
+            }
+          }, new ProviderPageWriter(DatabaseContract.MoviePopularEntry.CONTENT_URI));
+          movieListSync.syncList(new MovieListSync.PageUrls() {
+            @Override public URL pageUrl(int page) {
+              return NetworkUtils.buildTopRatedMoviesUrl(locale.getLanguage(), String.valueOf(page), locale.getCountry());
+            }
+          }, new ProviderPageWriter(DatabaseContract.MovieTopRatedEntry.CONTENT_URI));
+        } catch (RuntimeException e) {
+          // E.g. a SQLiteException of the provider or a parser error, the job is tried again instead of killing the process
+          Log.e(TAG, "Sync failed: ", e);
+          if (!movieListSync.isCanceled()) {
+            jobFinished(params, true);
+          }
+          return;
+        }
+        if (!movieListSync.isCanceled()) {
+          jobFinished(params, false);
+        }
+      }
+    }, "MovieSync").start();
+    // The sync runs on its own thread
+    return true;
+  }
+
+  @Override public boolean onStopJob(JobParameters params) {
+    // The eviction commits page by page and is not canceled
+    MovieListSync movieListSync = mMovieListSync;
+    if (movieListSync != null) {
+      movieListSync.cancel();
+    }
+    // Try again with the next period
+    return false;
+  }
+
+  /**
+   * Writes the pages to the ContentProvider, which updates movies already stored only if they changed.
+   */
+  private class ProviderPageWriter implements MovieListSync.PageWriter {
+    private final Uri mInsertUri;
+
+    ProviderPageWriter(Uri insertUri) {
+      mInsertUri = insertUri;
+    }
+
+    @Override public void writePage(int page, List<Movie> movies) {
+      MovieRows rows = new MovieRows(movies.size());
+      for (Movie movie : movies) {
+        rows.add(movie.getMovieId(), movie.getTitle(), movie.getImageUrl(), movie.getPopularity(), movie.getVoteAverage(),
+            movie.getReleaseDate(), movie.getOverview(), PagePrefetcher.rankOf(page, rows.size()));
+      }
+      rows.insertInto(getContentResolver(), mInsertUri);
+    }
+  }
+}
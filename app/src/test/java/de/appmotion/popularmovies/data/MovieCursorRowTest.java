@@ -0,0 +1,347 @@
+package de.appmotion.popularmovies.data;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.os.Bundle;
+import de.appmotion.popularmovies.data.source.local.DatabaseContract;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit test and benchmark for {@link MovieCursorRow}.
+ * The benchmark compares binding a grid item with the former path, {@link Movie#from(Cursor)} for every bind. It is
+ * ignored, timings of a shared build machine are no test result, run it manually.
+ */
+public class MovieCursorRowTest {
+
+  private static final int ROWS = 60;
+  private static final int WARMUP_BINDS = 100000;
+  private static final int MEASURED_BINDS = 1000000;
+
+  private static final String[] LIST_COLUMNS = {
+      DatabaseContract.MovieEntry._ID, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE,
+      DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL, DatabaseContract.MovieEntry.COLUMN_MOVIE_POPULARITY,
+      DatabaseContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE,
+      DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW, DatabaseContract.MovieEntry.COLUMN_MOVIE_RANK,
+      DatabaseContract.MovieEntry.COLUMN_MOVIE_PAGE, DatabaseContract.MovieEntry.COLUMN_TIMESTAMP
+  };
+
+  private static ArrayCursor buildCursor(String[] columns) {
+    Object[][] rows = new Object[ROWS][];
+    for (int i = 0; i < ROWS; i++) {
+      rows[i] = new Object[columns.length];
+      for (int column = 0; column < columns.length; column++) {
+        switch (columns[column]) {
+          case DatabaseContract.MovieEntry._ID:
+            rows[i][column] = (long) i + 1;
+            break;
+          case DatabaseContract.MovieEntry.COLUMN_MOVIE_ID:
+            rows[i][column] = 1000L + i;
+            break;
+          case DatabaseContract.MovieEntry.COLUMN_MOVIE_TITLE:
+            rows[i][column] = "Title " + i;
+            break;
+          case DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL:
+            rows[i][column] = "/poster" + i + ".jpg";
+            break;
+          case DatabaseContract.MovieEntry.COLUMN_MOVIE_OVERVIEW:
+            rows[i][column] = "A long overview sentence which is part of every movie list item.";
+            break;
+          case DatabaseContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE:
+            rows[i][column] = "2017-06-0" + (i % 9 + 1);
+            break;
+          default:
+            rows[i][column] = (long) i;
+        }
+      }
+    }
+    return new ArrayCursor(columns, rows);
+  }
+
+  @Test public void reads_the_row_at_the_position() {
+    MovieCursorRow row = new MovieCursorRow();
+    assertEquals(0, row.getCount());
+    row.swapCursor(buildCursor(LIST_COLUMNS));
+    assertEquals(ROWS, row.getCount());
+
+    row.moveToPosition(5);
+    assertEquals(6, row.getId());
+    assertEquals(1005, row.getMovieId());
+    assertEquals("/poster5.jpg", row.getImageUrl());
+    Movie movie = row.toMovie();
+    assertEquals("Title 5", movie.getTitle());
+    assertEquals(1005, movie.getMovieId());
+    assertEquals("2017-06-06", movie.getReleaseDate());
+  }
+
+  @Test public void detail_columns_are_optional() {
+    MovieCursorRow row = new MovieCursorRow();
+    row.swapCursor(buildCursor(new String[] {
+        DatabaseContract.MovieEntry._ID, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID, DatabaseContract.MovieEntry.COLUMN_MOVIE_IMAGE_URL
+    }));
+    row.moveToPosition(0);
+    Movie movie = row.toMovie();
+    assertEquals(1000, movie.getMovieId());
+    assertNull(movie.getOverview());
+  }
+
+  @Test(expected = IllegalArgumentException.class) public void image_url_column_is_required() {
+    new MovieCursorRow().swapCursor(buildCursor(new String[] {
+        DatabaseContract.MovieEntry._ID, DatabaseContract.MovieEntry.COLUMN_MOVIE_ID
+    }));
+  }
+
+  @Test public void bind_does_not_look_up_columns() {
+    ArrayCursor cursor = buildCursor(LIST_COLUMNS);
+    MovieCursorRow row = new MovieCursorRow();
+    row.swapCursor(cursor);
+
+    cursor.mColumnLookups = 0;
+    for (int i = 0; i < ROWS; i++) {
+      row.moveToPosition(i);
+      assertEquals("/poster" + i + ".jpg", row.getImageUrl());
+    }
+    assertEquals(0, cursor.mColumnLookups);
+  }
+
+  @Ignore("Benchmark") @Test public void benchmark_row_vs_movie_from() {
+    ArrayCursor cursor = buildCursor(LIST_COLUMNS);
+    MovieCursorRow row = new MovieCursorRow();
+    row.swapCursor(cursor);
+
+    long sum = 0;
+    for (int i = 0; i < WARMUP_BINDS; i++) {
+      cursor.moveToPosition(i % ROWS);
+      sum += Movie.from(cursor).getImageUrl().length();
+      row.moveToPosition(i % ROWS);
+      sum += row.getImageUrl().length();
+    }
+
+    cursor.mColumnLookups = 0;
+    long legacyTime = System.nanoTime();
+    for (int i = 0; i < MEASURED_BINDS; i++) {
+      cursor.moveToPosition(i % ROWS);
+      sum += Movie.from(cursor).getImageUrl().length();
+    }
+    legacyTime = System.nanoTime() - legacyTime;
+    long legacyLookups = cursor.mColumnLookups;
+
+    cursor.mColumnLookups = 0;
+    long rowTime = System.nanoTime();
+    for (int i = 0; i < MEASURED_BINDS; i++) {
+      row.moveToPosition(i % ROWS);
+      sum += row.getImageUrl().length();
+    }
+    rowTime = System.nanoTime() - rowTime;
+    long rowLookups = cursor.mColumnLookups;
+
+    System.out.println(String.format("MovieCursorRow benchmark (%d columns, %d binds, checksum %d)", LIST_COLUMNS.length,
+        MEASURED_BINDS, sum));
+    System.out.println(String.format("  Movie.from     : %6d ns/bind, %d column lookups/bind", legacyTime / MEASURED_BINDS,
+        legacyLookups / MEASURED_BINDS));
+    System.out.println(String.format("  MovieCursorRow : %6d ns/bind, %d column lookups/bind", rowTime / MEASURED_BINDS,
+        rowLookups / MEASURED_BINDS));
+  }
+
+  /**
+   * A Cursor over rows in memory. The column lookup is a linear search like the one of the Android cursors.
+   */
+  private static class ArrayCursor implements Cursor {
+    private final String[] mColumns;
+    private final Object[][] mRows;
+    private int mPosition = -1;
+    long mColumnLookups;
+
+    ArrayCursor(String[] columns, Object[][] rows) {
+      mColumns = columns;
+      mRows = rows;
+    }
+
+    @Override public int getCount() {
+      return mRows.length;
+    }
+
+    @Override public int getPosition() {
+      return mPosition;
+    }
+
+    @Override public boolean move(int offset) {
+      return moveToPosition(mPosition + offset);
+    }
+
+    @Override public boolean moveToPosition(int position) {
+      if (position < 0 || position >= mRows.length) {
+        mPosition = position < 0 ? -1 : mRows.length;
+        return false;
+      }
+      mPosition = position;
+      return true;
+    }
+
+    @Override public boolean moveToFirst() {
+      return moveToPosition(0);
+    }
+
+    @Override public boolean moveToLast() {
+      return moveToPosition(mRows.length - 1);
+    }
+
+    @Override public boolean moveToNext() {
+      return moveToPosition(mPosition + 1);
+    }
+
+    @Override public boolean moveToPrevious() {
+      return moveToPosition(mPosition - 1);
+    }
+
+    @Override public boolean isFirst() {
+      return mPosition == 0 && mRows.length > 0;
+    }
+
+    @Override public boolean isLast() {
+      return mPosition == mRows.length - 1 && mRows.length > 0;
+    }
+
+    @Override public boolean isBeforeFirst() {
+      return mRows.length == 0 || mPosition == -1;
+    }
+
+    @Override public boolean isAfterLast() {
+      return mRows.length == 0 || mPosition == mRows.length;
+    }
+
+    @Override public int getColumnIndex(String columnName) {
+      mColumnLookups++;
+      for (int i = 0; i < mColumns.length; i++) {
+        if (mColumns[i].equalsIgnoreCase(columnName)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override public int getColumnIndexOrThrow(String columnName) {
+      int index = getColumnIndex(columnName);
+      if (index < 0) {
+        throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+      }
+      return index;
+    }
+
+    @Override public String getColumnName(int columnIndex) {
+      return mColumns[columnIndex];
+    }
+
+    @Override public String[] getColumnNames() {
+      return mColumns;
+    }
+
+    @Override public int getColumnCount() {
+      return mColumns.length;
+    }
+
+    private Object get(int columnIndex) {
+      return mRows[mPosition][columnIndex];
+    }
+
+    @Override public byte[] getBlob(int columnIndex) {
+      return (byte[]) get(columnIndex);
+    }
+
+    @Override public String getString(int columnIndex) {
+      Object value = get(columnIndex);
+      return value == null ? null : value.toString();
+    }
+
+    @Override public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public short getShort(int columnIndex) {
+      return (short) getLong(columnIndex);
+    }
+
+    @Override public int getInt(int columnIndex) {
+      return (int) getLong(columnIndex);
+    }
+
+    @Override public long getLong(int columnIndex) {
+      return ((Number) get(columnIndex)).longValue();
+    }
+
+    @Override public float getFloat(int columnIndex) {
+      return (float) getDouble(columnIndex);
+    }
+
+    @Override public double getDouble(int columnIndex) {
+      return ((Number) get(columnIndex)).doubleValue();
+    }
+
+    @Override public int getType(int columnIndex) {
+      Object value = get(columnIndex);
+      if (value == null) {
+        return FIELD_TYPE_NULL;
+      }
+      return value instanceof String ? FIELD_TYPE_STRING : FIELD_TYPE_INTEGER;
+    }
+
+    @Override public boolean isNull(int columnIndex) {
+      return get(columnIndex) == null;
+    }
+
+    @Override public void deactivate() {
+    }
+
+    @Override public boolean requery() {
+      return true;
+    }
+
+    @Override public void close() {
+    }
+
+    @Override public boolean isClosed() {
+      return false;
+    }
+
+    @Override public void registerContentObserver(ContentObserver observer) {
+    }
+
+    @Override public void unregisterContentObserver(ContentObserver observer) {
+    }
+
+    @Override public void registerDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override public void unregisterDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override public void setNotificationUri(ContentResolver cr, Uri uri) {
+    }
+
+    public Uri getNotificationUri() {
+      return null;
+    }
+
+    @Override public boolean getWantsAllOnMoveCalls() {
+      return false;
+    }
+
+    public void setExtras(Bundle extras) {
+    }
+
+    @Override public Bundle getExtras() {
+      return null;
+    }
+
+    @Override public Bundle respond(Bundle extras) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package de.appmotion.popularmovies.data.source;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link QueryCache}.
+ */
+public class QueryCacheTest {
+
+  private static final String POPULAR = "content://de.appmotion.popularmovies/popular_movie";
+  private static final String FAVORITE = "content://de.appmotion.popularmovies/favorite_movie";
+  private static final String[] PROJECTION = { "_id", "movie_id", "movie_image_url" };
+
+  private static QueryCache.Snapshot snapshot(int rows) {
+    Object[][] values = new Object[rows][];
+    for (int i = 0; i < rows; i++) {
+      values[i] = new Object[] { (long) i, 1000L + i, "/poster" + i + ".jpg" };
+    }
+    return new QueryCache.Snapshot(PROJECTION, values);
+  }
+
+  private static boolean put(QueryCache queryCache, String key, String tag, QueryCache.Snapshot snapshot) {
+    return queryCache.put(key, new String[] { tag }, snapshot, queryCache.getGeneration());
+  }
+
+  @Test public void key_covers_the_whole_query() {
+    String key = QueryCache.key(POPULAR, PROJECTION, "movie_id = ?", new String[] { "1" }, "rank");
+    assertEquals(key, QueryCache.key(POPULAR, PROJECTION.clone(), "movie_id = ?", new String[] { "1" }, "rank"));
+    assertNotEquals(key, QueryCache.key(FAVORITE, PROJECTION, "movie_id = ?", new String[] { "1" }, "rank"));
+    assertNotEquals(key, QueryCache.key(POPULAR, null, "movie_id = ?", new String[] { "1" }, "rank"));
+    assertNotEquals(key, QueryCache.key(POPULAR, PROJECTION, "movie_id = ?", new String[] { "2" }, "rank"));
+    assertNotEquals(key, QueryCache.key(POPULAR, PROJECTION, "movie_id = ?", new String[] { "1" }, null));
+    // The separators of the values are not ambiguous
+    assertNotEquals(QueryCache.key(POPULAR, null, null, new String[] { "a", "b" }, null),
+        QueryCache.key(POPULAR, null, null, new String[] { "a\u00001:b" }, null));
+  }
+
+  @Test public void hits_and_misses_are_counted() {
+    QueryCache queryCache = new QueryCache(100000);
+    QueryCache.Snapshot snapshot = snapshot(3);
+    assertNull(queryCache.get("key"));
+    assertTrue(put(queryCache, "key", POPULAR, snapshot));
+    assertSame(snapshot, queryCache.get("key"));
+    assertSame(snapshot, queryCache.get("key"));
+
+    assertEquals(2, queryCache.getHitCount());
+    assertEquals(1, queryCache.getMissCount());
+    assertEquals(1, queryCache.getEntryCount());
+    assertTrue(queryCache.getSizeBytes() > snapshot.getSizeBytes());
+  }
+
+  @Test public void least_recently_used_result_is_evicted() {
+    QueryCache.Snapshot snapshot = snapshot(3);
+    // Room for the largest results, which are cached
+    QueryCache queryCache = new QueryCache(QueryCache.MAX_ENTRY_FRACTION * (snapshot.getSizeBytes() + 2 * "key0".length()));
+    for (int i = 0; i < QueryCache.MAX_ENTRY_FRACTION; i++) {
+      assertTrue(put(queryCache, "key" + i, POPULAR, snapshot));
+    }
+    queryCache.get("key0");
+    put(queryCache, "key" + QueryCache.MAX_ENTRY_FRACTION, POPULAR, snapshot);
+
+    assertEquals(1, queryCache.getEvictionCount());
+    assertEquals(QueryCache.MAX_ENTRY_FRACTION, queryCache.getEntryCount());
+    assertNotNull(queryCache.get("key0"));
+    assertNull(queryCache.get("key1"));
+    assertTrue(queryCache.getSizeBytes() <= queryCache.getMaxSizeBytes());
+  }
+
+  @Test public void large_result_is_not_cached() {
+    QueryCache queryCache = new QueryCache(snapshot(10).getSizeBytes());
+    assertFalse(put(queryCache, "key", POPULAR, snapshot(10)));
+    assertEquals(0, queryCache.getEntryCount());
+    assertEquals(0, queryCache.getSizeBytes());
+  }
+
+  @Test public void change_invalidates_related_results() {
+    QueryCache queryCache = new QueryCache(100000);
+    put(queryCache, "popular", POPULAR, snapshot(3));
+    put(queryCache, "favorite", FAVORITE, snapshot(3));
+    put(queryCache, "favorite row", FAVORITE + "/7", snapshot(1));
+    put(queryCache, "favorite row 8", FAVORITE + "/8", snapshot(1));
+
+    // A changed row invalidates its list and itself
+    queryCache.invalidate(FAVORITE + "/7");
+    assertNull(queryCache.get("favorite"));
+    assertNull(queryCache.get("favorite row"));
+    assertNotNull(queryCache.get("favorite row 8"));
+    assertNotNull(queryCache.get("popular"));
+
+    // A changed list invalidates its rows
+    queryCache.invalidate(FAVORITE);
+    assertNull(queryCache.get("favorite row 8"));
+    assertNotNull(queryCache.get("popular"));
+    assertEquals(3, queryCache.getInvalidationCount());
+    assertEquals(1, queryCache.getEntryCount());
+    assertEquals(snapshot(3).getSizeBytes() + 2 * "popular".length(), queryCache.getSizeBytes());
+  }
+
+  @Test public void uris_are_related_by_path_segment() {
+    assertTrue(QueryCache.related(FAVORITE, FAVORITE));
+    assertTrue(QueryCache.related(FAVORITE, FAVORITE + "/7"));
+    assertTrue(QueryCache.related(FAVORITE + "/7", FAVORITE));
+    assertFalse(QueryCache.related(FAVORITE + "/7", FAVORITE + "/70"));
+    assertFalse(QueryCache.related(FAVORITE, FAVORITE + "_old"));
+  }
+
+  @Test public void result_read_before_a_change_is_not_cached() {
+    QueryCache queryCache = new QueryCache(100000);
+    long generation = queryCache.getGeneration();
+    // The query is running while a write invalidates an unrelated URI
+    queryCache.invalidate(FAVORITE);
+    assertFalse(queryCache.put("popular", new String[] { POPULAR }, snapshot(3), generation));
+    assertNull(queryCache.get("popular"));
+  }
+}
@@ -0,0 +1,64 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link LongHashSet}.
+ */
+public class LongHashSetTest {
+
+  @Test public void add_contains_remove() {
+    LongHashSet set = new LongHashSet();
+    assertTrue(set.add(550));
+    assertFalse(set.add(550));
+    assertTrue(set.contains(550));
+    assertFalse(set.contains(551));
+
+    assertTrue(set.remove(550));
+    assertFalse(set.remove(550));
+    assertFalse(set.contains(550));
+    assertEquals(0, set.size());
+  }
+
+  @Test public void zero_and_negative_keys() {
+    LongHashSet set = new LongHashSet();
+    assertTrue(set.add(0));
+    assertTrue(set.add(-1));
+    assertTrue(set.add(Long.MIN_VALUE));
+    assertEquals(3, set.size());
+    assertTrue(set.contains(0));
+    assertTrue(set.remove(0));
+    assertFalse(set.contains(0));
+    assertTrue(set.contains(Long.MIN_VALUE));
+  }
+
+  @Test public void grows_and_keeps_keys_after_removals() {
+    // Random adds and removes, checked against a HashSet
+    LongHashSet set = new LongHashSet();
+    Set<Long> expected = new HashSet<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      long key = random.nextInt(2000);
+      if (random.nextBoolean()) {
+        assertEquals(expected.add(key), set.add(key));
+      } else {
+        assertEquals(expected.remove(key), set.remove(key));
+      }
+    }
+    assertEquals(expected.size(), set.size());
+    for (long key = 0; key < 2000; key++) {
+      assertEquals(expected.contains(key), set.contains(key));
+    }
+
+    set.clear();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(expected.iterator().next()));
+  }
+}
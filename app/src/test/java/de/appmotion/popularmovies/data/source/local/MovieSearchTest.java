@@ -0,0 +1,32 @@
+package de.appmotion.popularmovies.data.source.local;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit test for the FTS MATCH expressions of {@link MovieSearch}.
+ */
+public class MovieSearchTest {
+
+  @Test public void every_word_is_a_prefix() {
+    assertEquals("star* wars*", MovieSearch.matchExpression("Star Wars", null));
+    assertEquals("star* wars*", MovieSearch.matchExpression("  Star   Wars ", null));
+  }
+
+  @Test public void words_are_restricted_to_the_column() {
+    assertEquals("movie_title:dark* movie_title:knight*", MovieSearch.matchExpression("dark knight", "movie_title"));
+  }
+
+  @Test public void query_syntax_is_dropped() {
+    assertEquals("star* wars*", MovieSearch.matchExpression("\"star\" -wars*", null));
+    assertEquals("alien* or* predator*", MovieSearch.matchExpression("Alien OR Predator", null));
+    assertEquals("am\u00e9lie*", MovieSearch.matchExpression("Am\u00e9lie!", null));
+  }
+
+  @Test public void text_without_words() {
+    assertNull(MovieSearch.matchExpression("", null));
+    assertNull(MovieSearch.matchExpression(" *-\" ", null));
+  }
+}
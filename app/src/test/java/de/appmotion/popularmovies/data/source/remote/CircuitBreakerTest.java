@@ -0,0 +1,172 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit test for {@link CircuitBreaker} and {@link CircuitBreakerInterceptor} with faults injected by a MockWebServer.
+ */
+public class CircuitBreakerTest {
+
+  private final MockWebServer mServer = new MockWebServer();
+  private Cache mCache;
+  private CircuitBreaker mCircuitBreaker;
+  private CircuitBreakerInterceptor mInterceptor;
+  private OkHttpClient mClient;
+  // Thrown once by the next request after the CircuitBreakerInterceptor, instead of asking the server
+  private Exception mFault;
+
+  @Before public void setUp() throws IOException {
+    mServer.start();
+    File cacheDir = Files.createTempDirectory("http-cache").toFile();
+    mCache = new Cache(cacheDir, 1024 * 1024);
+    // Stays open for the whole test
+    buildClient(new CircuitBreaker(2, TimeUnit.HOURS.toMillis(1)));
+  }
+
+  private void buildClient(CircuitBreaker circuitBreaker) {
+    mCircuitBreaker = circuitBreaker;
+    mInterceptor = new CircuitBreakerInterceptor(mCircuitBreaker);
+    mClient = new OkHttpClient.Builder().cache(mCache)
+        .addInterceptor(mInterceptor)
+        .addInterceptor(new Interceptor() {
+          @Override public Response intercept(Chain chain) throws IOException {
+            Exception fault = mFault;
+            mFault = null;
+            if (fault instanceof IOException) {
+              throw (IOException) fault;
+            } else if (fault instanceof RuntimeException) {
+              throw (RuntimeException) fault;
+            }
+            return chain.proceed(chain.request());
+          }
+        })
+        .addNetworkInterceptor(new CachePolicyInterceptor(new CachePolicy().setFreshness(CachePolicy.POPULAR, 0, 0)))
+        .build();
+  }
+
+  @After public void tearDown() throws IOException {
+    mServer.shutdown();
+    mCache.delete();
+  }
+
+  private String get(String path) throws IOException {
+    Response response = mClient.newCall(new Request.Builder().url(mServer.url(path)).build()).execute();
+    try {
+      return response.code() + " " + response.body().string();
+    } finally {
+      response.close();
+    }
+  }
+
+  @Test public void state_machine() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(2, 1000);
+    long now = 0;
+    assertTrue(circuitBreaker.allowRequest(now));
+    circuitBreaker.onFailure(now);
+    assertEquals(CircuitBreaker.CLOSED, circuitBreaker.getState());
+    circuitBreaker.onFailure(now);
+    assertEquals(CircuitBreaker.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.allowRequest(now));
+
+    // After the open time exactly one trial request is allowed
+    now += TimeUnit.SECONDS.toNanos(1);
+    assertTrue(circuitBreaker.allowRequest(now));
+    assertEquals(CircuitBreaker.HALF_OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.allowRequest(now));
+    // A failed trial opens the breaker again
+    circuitBreaker.onFailure(now);
+    assertEquals(CircuitBreaker.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.allowRequest(now + 1));
+
+    now += TimeUnit.SECONDS.toNanos(1);
+    assertTrue(circuitBreaker.allowRequest(now));
+    circuitBreaker.onSuccess();
+    assertEquals(CircuitBreaker.CLOSED, circuitBreaker.getState());
+    assertEquals(2, circuitBreaker.getOpenedCount());
+  }
+
+  @Test public void open_breaker_serves_cache_or_fails_fast() throws IOException {
+    mServer.enqueue(new MockResponse().setBody("cached"));
+    mServer.enqueue(new MockResponse().setResponseCode(503));
+    mServer.enqueue(new MockResponse().setResponseCode(503));
+
+    assertEquals("200 cached", get("/3/movie/popular"));
+    // Two failures in a row open the breaker, the cached response is already stale
+    assertEquals("503 ", get("/3/movie/popular"));
+    assertEquals("503 ", get("/3/movie/popular"));
+    assertEquals(CircuitBreaker.OPEN, mCircuitBreaker.getState());
+
+    // The API is not asked while the breaker is open
+    assertEquals("200 cached", get("/3/movie/popular"));
+    assertEquals(1, mInterceptor.getServedFromCacheCount());
+    try {
+      get("/3/movie/top_rated");
+      fail("Nothing is cached, so the request has to fail fast");
+    } catch (CircuitBreakerInterceptor.CircuitOpenException expected) {
+    }
+    assertEquals(1, mInterceptor.getFailFastCount());
+    assertEquals(3, mServer.getRequestCount());
+  }
+
+  @Test public void canceled_calls_are_no_failures() throws IOException {
+    for (int i = 0; i < 2; i++) {
+      mFault = new IOException(RetryInterceptor.CANCELED);
+      try {
+        get("/3/movie/popular");
+        fail("IOException expected");
+      } catch (IOException expected) {
+      }
+    }
+    assertEquals(CircuitBreaker.CLOSED, mCircuitBreaker.getState());
+    assertEquals(0, mCircuitBreaker.getOpenedCount());
+  }
+
+  @Test public void canceled_or_crashed_trial_is_released() throws IOException {
+    // Opens with one failure and allows a trial request at once
+    buildClient(new CircuitBreaker(1, 0));
+    mServer.enqueue(new MockResponse().setResponseCode(503));
+    mServer.enqueue(new MockResponse().setBody("healthy"));
+
+    assertEquals("503 ", get("/3/movie/popular"));
+    assertEquals(CircuitBreaker.OPEN, mCircuitBreaker.getState());
+
+    // A canceled trial does not open the breaker again
+    mFault = new IOException(RetryInterceptor.CANCELED);
+    try {
+      get("/3/movie/popular");
+      fail("IOException expected");
+    } catch (IOException expected) {
+    }
+    assertEquals(CircuitBreaker.HALF_OPEN, mCircuitBreaker.getState());
+    // A crashed trial does not block the next trial
+    mFault = new IllegalStateException("crash");
+    try {
+      get("/3/movie/popular");
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(CircuitBreaker.HALF_OPEN, mCircuitBreaker.getState());
+
+    assertEquals("200 healthy", get("/3/movie/popular"));
+    assertEquals(CircuitBreaker.CLOSED, mCircuitBreaker.getState());
+    assertEquals(1, mCircuitBreaker.getOpenedCount());
+  }
+}
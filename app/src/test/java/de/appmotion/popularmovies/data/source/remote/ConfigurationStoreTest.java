@@ -0,0 +1,110 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import com.squareup.moshi.JsonEncodingException;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit test for {@link ConfigurationStore}, {@link ConfigurationParser} and {@link ImageConfiguration}.
+ */
+public class ConfigurationStoreTest {
+
+  private static final String CONFIGURATION_RESPONSE = "{"
+      + "\"images\":{"
+      + "\"base_url\":\"http://image.tmdb.org/t/p/\","
+      + "\"secure_base_url\":\"https://image.tmdb.org/t/p/\","
+      + "\"backdrop_sizes\":[\"w300\",\"w780\",\"w1280\",\"original\"],"
+      + "\"poster_sizes\":[\"w92\",\"w154\",\"w185\",\"w342\",\"w500\",\"w780\",\"original\"]"
+      + "},"
+      + "\"change_keys\":[\"adult\",\"air_date\"]"
+      + "}";
+  private static final long TIME_TO_LIVE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+  private File mFile;
+
+  @Before public void setUp() throws IOException {
+    mFile = new File(Files.createTempDirectory("configuration").toFile(), "tmdb_configuration.json");
+  }
+
+  @Test public void parse_configuration() throws IOException {
+    ImageConfiguration imageConfiguration = ConfigurationParser.parse(new Buffer().writeUtf8(CONFIGURATION_RESPONSE));
+
+    assertEquals("https://image.tmdb.org/t/p/", imageConfiguration.getBaseUrl());
+    assertEquals(Arrays.asList("w92", "w154", "w185", "w342", "w500", "w780", "original"), imageConfiguration.getPosterSizes());
+  }
+
+  @Test public void poster_size_fits_width() {
+    ImageConfiguration imageConfiguration =
+        new ImageConfiguration("https://image.tmdb.org/t/p", Arrays.asList("original", "w500", "w185", "w92"));
+
+    assertEquals("https://image.tmdb.org/t/p/", imageConfiguration.getBaseUrl());
+    assertEquals("w92", imageConfiguration.posterSizeFor(50));
+    assertEquals("w185", imageConfiguration.posterSizeFor(185));
+    assertEquals("w500", imageConfiguration.posterSizeFor(186));
+    assertEquals("original", imageConfiguration.posterSizeFor(1080));
+    // Without original the widest size is used
+    assertEquals("w342", new ImageConfiguration("https://x/", Arrays.asList("w342")).posterSizeFor(1080));
+  }
+
+  @Test public void save_and_load() throws IOException {
+    long now = System.currentTimeMillis();
+    ConfigurationStore configurationStore = new ConfigurationStore(mFile, TIME_TO_LIVE_MILLIS);
+    assertSame(ImageConfiguration.DEFAULT, configurationStore.load());
+    assertTrue(configurationStore.isStale(now));
+
+    configurationStore.save(new Buffer().writeUtf8(CONFIGURATION_RESPONSE), now);
+    assertEquals("https://image.tmdb.org/t/p/", configurationStore.getImageConfiguration().getBaseUrl());
+    assertFalse(configurationStore.isStale(now + TIME_TO_LIVE_MILLIS - 1000));
+    assertTrue(configurationStore.isStale(now + TIME_TO_LIVE_MILLIS));
+
+    // A new process reads the stored configuration at startup
+    ConfigurationStore restarted = new ConfigurationStore(mFile, TIME_TO_LIVE_MILLIS);
+    assertEquals("https://image.tmdb.org/t/p/", restarted.load().getBaseUrl());
+  }
+
+  @Test public void invalid_configuration_is_not_stored() throws IOException {
+    ConfigurationStore configurationStore = new ConfigurationStore(mFile, TIME_TO_LIVE_MILLIS);
+    try {
+      configurationStore.save(new Buffer().writeUtf8("{\"status_code\":7}"), System.currentTimeMillis());
+      fail("A configuration without images has to be rejected");
+    } catch (IOException expected) {
+    }
+    assertFalse(mFile.exists());
+    assertSame(ImageConfiguration.DEFAULT, configurationStore.getImageConfiguration());
+
+    // A broken file falls back to the default
+    Files.write(mFile.toPath(), "{\"images\":".getBytes("UTF-8"));
+    assertSame(ImageConfiguration.DEFAULT, configurationStore.load());
+    assertFalse(mFile.exists());
+  }
+
+  @Test public void malformed_configuration_is_not_stored() throws IOException {
+    ConfigurationStore configurationStore = new ConfigurationStore(mFile, TIME_TO_LIVE_MILLIS);
+    // The ConfigurationLoader reports both as an API error
+    try {
+      configurationStore.save(new Buffer().writeUtf8("<html>Bad Gateway</html>"), System.currentTimeMillis());
+      fail("Malformed JSON has to be rejected");
+    } catch (JsonEncodingException expected) {
+    }
+    try {
+      configurationStore.save(new Buffer().writeUtf8("{\"images\":{"), System.currentTimeMillis());
+      fail("A truncated configuration has to be rejected");
+    } catch (EOFException expected) {
+    }
+    assertFalse(mFile.exists());
+    assertSame(ImageConfiguration.DEFAULT, configurationStore.getImageConfiguration());
+  }
+}
@@ -0,0 +1,61 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import de.appmotion.popularmovies.data.MovieDetail;
+import java.io.IOException;
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test for {@link MovieDetailParser}.
+ */
+public class MovieDetailParserTest {
+
+  private static final String COMBINED_RESPONSE = "{"
+      + "\"id\":550,"
+      + "\"genres\":[{\"id\":18,\"name\":\"Drama\"}],"
+      + "\"runtime\":139,"
+      + "\"title\":\"Fight Club\","
+      + "\"videos\":{\"results\":["
+      + "{\"id\":\"533ec654c3a36854480003eb\",\"key\":\"SUXWAEX2jlg\",\"name\":\"Trailer 1\",\"site\":\"YouTube\"},"
+      + "{\"id\":\"533ec654c3a36854480003ec\",\"key\":\"BdJKm16Co6M\",\"name\":\"Trailer 2\",\"site\":\"YouTube\"}"
+      + "]},"
+      + "\"reviews\":{\"page\":1,\"results\":["
+      + "{\"author\":\"Goddard\",\"content\":\"Pretty awesome movie.\",\"id\":\"5b1c13b9c3a36848f2026384\"}"
+      + "],\"total_pages\":1,\"total_results\":1}"
+      + "}";
+
+  @Test public void parse_combined_response() throws IOException {
+    MovieDetail movieDetail = MovieDetailParser.parse(new Buffer().writeUtf8(COMBINED_RESPONSE));
+
+    assertEquals(550L, movieDetail.getMovieId());
+    assertEquals(139, movieDetail.getRuntime());
+    assertEquals(2, movieDetail.getTrailers().size());
+    assertEquals("SUXWAEX2jlg", movieDetail.getTrailers().get(0).getKey());
+    assertEquals("Trailer 2", movieDetail.getTrailers().get(1).getName());
+    assertEquals(1, movieDetail.getReviews().size());
+    assertEquals("Goddard", movieDetail.getReviews().get(0).getAuthor());
+    assertEquals("Pretty awesome movie.", movieDetail.getReviews().get(0).getContent());
+  }
+
+  @Test public void parse_without_appended_responses() throws IOException {
+    MovieDetail movieDetail = MovieDetailParser.parse(new Buffer().writeUtf8("{\"id\":550,\"runtime\":null}"));
+
+    assertEquals(0, movieDetail.getRuntime());
+    assertEquals(0, movieDetail.getTrailers().size());
+    assertEquals(0, movieDetail.getReviews().size());
+  }
+
+  @Test public void parse_separate_videos_and_reviews() throws IOException {
+    MovieDetail videos = MovieDetailParser.parseVideos(
+        new Buffer().writeUtf8("{\"id\":550,\"results\":[{\"key\":\"SUXWAEX2jlg\",\"name\":\"Trailer 1\"}]}"));
+    assertEquals(1, videos.getTrailers().size());
+    assertEquals("SUXWAEX2jlg", videos.getTrailers().get(0).getKey());
+
+    MovieDetail reviews = MovieDetailParser.parseReviews(
+        new Buffer().writeUtf8("{\"id\":550,\"page\":1,\"results\":[{\"author\":\"Goddard\",\"content\":\"Awesome.\"}]}"));
+    assertEquals(1, reviews.getReviews().size());
+    assertEquals("Awesome.", reviews.getReviews().get(0).getContent());
+  }
+}
@@ -0,0 +1,152 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import de.appmotion.popularmovies.data.Movie;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import okio.Buffer;
+import okio.ByteString;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test and benchmark for {@link MovieListParser}.
+ * The benchmark compares the streaming parser with the former path (whole body as String, org.json tree, Movie objects).
+ * It is ignored, timings of a shared build machine are no test result, run it manually.
+ */
+public class MovieListParserTest {
+
+  private static final int MOVIES_PER_PAGE = 20;
+  private static final int WARMUP_PAGES = 500;
+  private static final int MEASURED_PAGES = 5000;
+
+  private static ByteString buildPage(int page) {
+    StringBuilder overview = new StringBuilder();
+    for (int i = 0; i < 12; i++) {
+      overview.append("A long overview sentence which is part of every movie list item. ");
+    }
+    StringBuilder json = new StringBuilder();
+    json.append("{\"page\":").append(page).append(",\"results\":[");
+    for (int i = 0; i < MOVIES_PER_PAGE; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"poster_path\":\"/poster").append(i).append(".jpg\",")
+          .append("\"adult\":false,")
+          .append("\"overview\":\"").append(overview).append("\",")
+          .append("\"release_date\":\"2017-0").append(i % 9 + 1).append("-01\",")
+          .append("\"genre_ids\":[18,53],")
+          .append("\"id\":").append(page * 100 + i).append(',')
+          .append("\"original_title\":\"Original Title ").append(i).append("\",")
+          .append("\"original_language\":\"en\",")
+          .append("\"title\":\"Title ").append(i).append("\",")
+          .append("\"backdrop_path\":null,")
+          .append("\"popularity\":").append(100.5 - i).append(',')
+          .append("\"vote_count\":").append(1000 + i).append(',')
+          .append("\"video\":false,")
+          .append("\"vote_average\":").append(7.5).append('}');
+    }
+    json.append("],\"total_results\":19772,\"total_pages\":989}");
+    return ByteString.encodeUtf8(json.toString());
+  }
+
+  /**
+   * The former way of parsing a page: read the complete body into a String, build an org.json tree and create Movie objects.
+   */
+  private static int legacyParse(Buffer body) throws Exception {
+    Scanner scanner = new Scanner(body.inputStream());
+    scanner.useDelimiter("\\A");
+    String jsonData = scanner.next();
+    List<Movie> movieList = new ArrayList<>();
+    JSONObject popular = new JSONObject(jsonData);
+    JSONArray results = popular.getJSONArray("results");
+    int i = 0;
+    while (results != null && !results.isNull(i)) {
+      JSONObject result = results.getJSONObject(i);
+      if (result != null) {
+        Movie movie = new Movie();
+        movie.setMovieId(result.optLong("id", -1L));
+        movie.setTitle(result.optString("title"));
+        movie.setImageUrl(result.optString("poster_path"));
+        movie.setPopularity(result.optDouble("popularity", 0));
+        movie.setVoteAverage(result.optDouble("vote_average", 0));
+        movie.setReleaseDate(result.optString("release_date"));
+        movie.setOverview(result.optString("overview"));
+        movieList.add(movie);
+      }
+      i++;
+    }
+    return movieList.size();
+  }
+
+  @Test public void parse_movie_list_page() throws IOException {
+    final List<String> titles = new ArrayList<>();
+    final long[] lastMovie = new long[1];
+    int count = MovieListParser.parse(new Buffer().write(buildPage(3)), new MovieListParser.Callback() {
+      @Override public void onMovie(long movieId, String title, String imageUrl, double popularity, double voteAverage,
+          String releaseDate, String overview) {
+        titles.add(title);
+        lastMovie[0] = movieId;
+        assertEquals("/poster" + (titles.size() - 1) + ".jpg", imageUrl);
+        assertEquals(7.5, voteAverage, 0);
+      }
+    });
+
+    assertEquals(MOVIES_PER_PAGE, count);
+    assertEquals(MOVIES_PER_PAGE, titles.size());
+    assertEquals("Title 0", titles.get(0));
+    assertEquals(319L, lastMovie[0]);
+  }
+
+  @Test public void parse_null_values() throws IOException {
+    final String[] imageUrl = new String[1];
+    String json = "{\"results\":[{\"id\":5,\"poster_path\":null,\"popularity\":null,\"unknown\":{\"a\":[1,2]}}],\"page\":1}";
+    int count = MovieListParser.parse(new Buffer().writeUtf8(json), new MovieListParser.Callback() {
+      @Override public void onMovie(long movieId, String title, String url, double popularity, double voteAverage,
+          String releaseDate, String overview) {
+        imageUrl[0] = url;
+        assertEquals(5L, movieId);
+        assertEquals(0, popularity, 0);
+      }
+    });
+
+    assertEquals(1, count);
+    assertEquals("", imageUrl[0]);
+  }
+
+  @Ignore("Benchmark") @Test public void benchmark_streaming_vs_legacy() throws Exception {
+    ByteString page = buildPage(1);
+    MovieListParser.Callback consumer = new MovieListParser.Callback() {
+      @Override public void onMovie(long movieId, String title, String imageUrl, double popularity, double voteAverage,
+          String releaseDate, String overview) {
+        // The provider insert is the same for both paths, so only parsing is measured.
+      }
+    };
+
+    for (int i = 0; i < WARMUP_PAGES; i++) {
+      legacyParse(new Buffer().write(page));
+      MovieListParser.parse(new Buffer().write(page), consumer);
+    }
+
+    long legacyTime = System.nanoTime();
+    for (int i = 0; i < MEASURED_PAGES; i++) {
+      assertEquals(MOVIES_PER_PAGE, legacyParse(new Buffer().write(page)));
+    }
+    legacyTime = System.nanoTime() - legacyTime;
+
+    long streamingTime = System.nanoTime();
+    for (int i = 0; i < MEASURED_PAGES; i++) {
+      assertEquals(MOVIES_PER_PAGE, MovieListParser.parse(new Buffer().write(page), consumer));
+    }
+    streamingTime = System.nanoTime() - streamingTime;
+
+    System.out.println(String.format("MovieListParser benchmark (%d bytes per page, %d pages)", page.size(), MEASURED_PAGES));
+    System.out.println(String.format("  legacy    : %8d ns/page", legacyTime / MEASURED_PAGES));
+    System.out.println(String.format("  streaming : %8d ns/page", streamingTime / MEASURED_PAGES));
+  }
+}
@@ -0,0 +1,102 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import de.appmotion.popularmovies.data.Movie;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test for {@link MovieListSync} against a stand-in server for themoviedb.org.
+ */
+public class MovieListSyncTest {
+
+  private final MockWebServer mServer = new MockWebServer();
+  private final OkHttpClient mClient = new OkHttpClient();
+  private final RequestScheduler mRequestScheduler = new RequestScheduler(2, 10, 100);
+  // Written pages as "page:first movie id:movie count"
+  private final List<String> mWrittenPages = new ArrayList<>();
+  private final MovieListSync.PageWriter mPageWriter = new MovieListSync.PageWriter() {
+    @Override public void writePage(int page, List<Movie> movies) {
+      mWrittenPages.add(page + ":" + movies.get(0).getMovieId() + ":" + movies.size());
+    }
+  };
+
+  @Before public void setUp() throws IOException {
+    // Popular has 25 movies, top rated fails from page 2 on
+    mServer.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) {
+        int page = Integer.parseInt(request.getRequestUrl().queryParameter("page"));
+        if (request.getPath().startsWith("/3/movie/popular")) {
+          return new MockResponse().setBody(buildPage(page, page == 1 ? 20 : 5));
+        }
+        if (page == 1) {
+          return new MockResponse().setBody(buildPage(page, 20));
+        }
+        return new MockResponse().setResponseCode(503);
+      }
+    });
+    mServer.start();
+  }
+
+  @After public void tearDown() throws IOException {
+    mServer.shutdown();
+  }
+
+  private static String buildPage(int page, int movieCount) {
+    StringBuilder json = new StringBuilder("{\"page\":").append(page).append(",\"results\":[");
+    for (int i = 0; i < movieCount; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"id\":").append(page * 100 + i).append(",\"title\":\"Title ").append(i).append("\"}");
+    }
+    return json.append("]}").toString();
+  }
+
+  private MovieListSync.PageUrls pageUrls(final String path) {
+    return new MovieListSync.PageUrls() {
+      @Override public URL pageUrl(int page) {
+        return mServer.url(path).newBuilder().addQueryParameter("page", String.valueOf(page)).build().url();
+      }
+    };
+  }
+
+  @Test public void syncs_until_last_page() {
+    MovieListSync movieListSync = new MovieListSync(mClient, mRequestScheduler, 3);
+
+    assertEquals(2, movieListSync.syncList(pageUrls("/3/movie/popular"), mPageWriter));
+    assertEquals("[1:100:20, 2:200:5]", mWrittenPages.toString());
+    // The short second page is the end of the list, page 3 is not requested
+    assertEquals(2, mServer.getRequestCount());
+  }
+
+  @Test public void failed_page_keeps_written_pages() {
+    MovieListSync movieListSync = new MovieListSync(mClient, mRequestScheduler, 3);
+
+    assertEquals(1, movieListSync.syncList(pageUrls("/3/movie/top_rated"), mPageWriter));
+    assertEquals("[1:100:20]", mWrittenPages.toString());
+    assertEquals(2, mServer.getRequestCount());
+    // Only the background lane was used
+    assertEquals(2, mRequestScheduler.getExecutedCount());
+    assertEquals(0, mRequestScheduler.getRunningCount());
+  }
+
+  @Test public void canceled_sync_requests_nothing() {
+    MovieListSync movieListSync = new MovieListSync(mClient, mRequestScheduler, 3);
+    movieListSync.cancel();
+
+    assertEquals(0, movieListSync.syncList(pageUrls("/3/movie/popular"), mPageWriter));
+    assertEquals(0, mServer.getRequestCount());
+  }
+}
@@ -0,0 +1,101 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit test for {@link NetworkResult}.
+ */
+public class NetworkResultTest {
+
+  private final MockWebServer mServer = new MockWebServer();
+  private Cache mCache;
+  private OkHttpClient mClient;
+
+  @Before public void setUp() throws IOException {
+    mServer.start();
+    File cacheDir = Files.createTempDirectory("http-cache").toFile();
+    mCache = new Cache(cacheDir, 1024 * 1024);
+    mClient = new OkHttpClient.Builder().cache(mCache).build();
+  }
+
+  @After public void tearDown() throws IOException {
+    mServer.shutdown();
+    mCache.delete();
+  }
+
+  /**
+   * Read a response the way {@link NetworkLoader#readBody(Response, long)} does.
+   */
+  private NetworkResult load(String path) throws IOException {
+    Response response = mClient.newCall(new Request.Builder().url(mServer.url(path)).build()).execute();
+    try {
+      if (!response.isSuccessful()) {
+        return NetworkResult.apiError(response, 0);
+      }
+      Buffer body = new Buffer();
+      response.body().source().readAll(body);
+      return NetworkResult.success(response, 0, body);
+    } finally {
+      response.close();
+    }
+  }
+
+  @Test public void body_can_be_read_repeatedly() throws IOException {
+    mServer.enqueue(new MockResponse().setBody("{\"id\":550}"));
+
+    NetworkResult result = load("/3/movie/550");
+    assertTrue(result.isSuccess());
+    assertEquals(200, result.getHttpCode());
+    assertEquals(10, result.getContentLength());
+    // Every source starts at the beginning, e.g. when the Loader delivers the result again
+    assertEquals("{\"id\":550}", result.source().readUtf8());
+    assertEquals("{\"id\":550}", result.source().readUtf8());
+    assertEquals(ByteString.encodeUtf8("{\"id\":550}"), result.byteString());
+  }
+
+  @Test public void status_and_origin() throws IOException {
+    mServer.enqueue(new MockResponse().setBody("{}").setHeader("Cache-Control", "max-age=60"));
+    mServer.enqueue(new MockResponse().setResponseCode(404));
+    mServer.enqueue(new MockResponse());
+
+    NetworkResult network = load("/3/configuration");
+    assertEquals(NetworkResult.ORIGIN_NETWORK, network.getOrigin());
+    NetworkResult cached = load("/3/configuration");
+    assertEquals(NetworkResult.ORIGIN_CACHE, cached.getOrigin());
+    // A cached response was received when the network response was
+    assertTrue(network.getReceivedMillis() > 0);
+    assertEquals(network.getReceivedMillis(), cached.getReceivedMillis());
+
+    NetworkResult apiError = load("/3/movie/1");
+    assertEquals(NetworkResult.API_ERROR, apiError.getStatus());
+    assertEquals(404, apiError.getHttpCode());
+    assertEquals(0, apiError.getContentLength());
+
+    // A body without content cannot collide with any payload
+    NetworkResult empty = load("/3/movie/2");
+    assertEquals(NetworkResult.EMPTY, empty.getStatus());
+    assertFalse(empty.isSuccess());
+
+    NetworkResult offline = NetworkResult.offline();
+    assertEquals(NetworkResult.OFFLINE, offline.getStatus());
+    assertEquals(NetworkResult.ORIGIN_NONE, offline.getOrigin());
+    assertEquals(0, offline.getReceivedMillis());
+  }
+}
@@ -0,0 +1,160 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit test for {@link PagePrefetcher}.
+ */
+public class PagePrefetcherTest {
+
+  private static final int POPULAR = 0;
+  private static final int TOP_RATED = 1;
+
+  private final List<String> mRequests = new ArrayList<>();
+  private final List<Integer> mPriorities = new ArrayList<>();
+  private PagePrefetcher mPagePrefetcher;
+
+  @Before public void setUp() {
+    mRequests.clear();
+    mPriorities.clear();
+    mPagePrefetcher = new PagePrefetcher(2, 2, new PagePrefetcher.PageRequester() {
+      @Override public void requestPage(int listType, int page, int priority) {
+        mRequests.add(listType + ":" + page);
+        mPriorities.add(priority);
+      }
+
+      @Override public void resumePage(int listType, int page, int priority) {
+        mRequests.add("resume " + listType + ":" + page);
+        mPriorities.add(priority);
+      }
+    });
+  }
+
+  @Test public void rank_and_page() {
+    assertEquals(0, PagePrefetcher.rankOf(1, 0));
+    assertEquals(45, PagePrefetcher.rankOf(3, 5));
+    assertEquals(1, PagePrefetcher.pageOf(0));
+    assertEquals(1, PagePrefetcher.pageOf(19));
+    assertEquals(2, PagePrefetcher.pageOf(20));
+  }
+
+  @Test public void concurrency_is_bounded() {
+    mPagePrefetcher.start(POPULAR);
+    assertEquals(Arrays.asList("0:1", "0:2"), mRequests);
+    assertEquals(2, mPagePrefetcher.getInFlightCount());
+
+    // Page 3 is requested as soon as a slot is free, even if page 1 is still downloading
+    mPagePrefetcher.onPageLoaded(POPULAR, 2, 20);
+    assertEquals(Arrays.asList("0:1", "0:2", "0:3"), mRequests);
+    assertEquals(2, mPagePrefetcher.getInFlightCount());
+  }
+
+  @Test public void pages_ahead_are_prefetched_with_lower_priority() {
+    mPagePrefetcher.start(POPULAR);
+    // Page 1 is visible, page 2 is ahead of the viewport
+    assertEquals(Arrays.asList(RequestScheduler.VISIBLE_PAGE, RequestScheduler.PREFETCH), mPriorities);
+  }
+
+  @Test public void keeps_pages_ahead_of_viewport() {
+    mPagePrefetcher.start(POPULAR);
+    mPagePrefetcher.onPageLoaded(POPULAR, 1, 20);
+    mPagePrefetcher.onPageLoaded(POPULAR, 2, 20);
+    mPagePrefetcher.onPageLoaded(POPULAR, 3, 20);
+    mRequests.clear();
+
+    // Last visible item is on page 2, so pages up to 4 are needed
+    mPagePrefetcher.onViewportChanged(POPULAR, 25);
+    assertEquals(Arrays.asList("0:4"), mRequests);
+
+    // Scrolling inside the same page does not request anything twice
+    mPagePrefetcher.onViewportChanged(POPULAR, 30);
+    assertEquals(Arrays.asList("0:4"), mRequests);
+    assertEquals(3, mPagePrefetcher.getContiguousLoadedPage(POPULAR));
+  }
+
+  @Test public void out_of_order_pages() {
+    mPagePrefetcher.start(POPULAR);
+    mPagePrefetcher.onPageLoaded(POPULAR, 2, 20);
+    assertEquals(0, mPagePrefetcher.getContiguousLoadedPage(POPULAR));
+    mPagePrefetcher.onPageLoaded(POPULAR, 1, 20);
+    assertEquals(2, mPagePrefetcher.getContiguousLoadedPage(POPULAR));
+  }
+
+  @Test public void lists_are_independent() {
+    mPagePrefetcher.start(POPULAR);
+    mPagePrefetcher.onPageLoaded(POPULAR, 1, 20);
+    mPagePrefetcher.onPageLoaded(POPULAR, 2, 20);
+    mPagePrefetcher.onPageLoaded(POPULAR, 3, 20);
+    mRequests.clear();
+
+    mPagePrefetcher.start(TOP_RATED);
+    assertEquals(Arrays.asList("1:1", "1:2"), mRequests);
+    assertEquals(0, mPagePrefetcher.getContiguousLoadedPage(TOP_RATED));
+  }
+
+  @Test public void failed_page_is_retried_on_next_viewport_change() {
+    mPagePrefetcher.start(POPULAR);
+    mPagePrefetcher.onPageFailed(POPULAR, 1);
+    // The free slot is used for page 3, page 1 waits for the next scroll
+    assertEquals(Arrays.asList("0:1", "0:2", "0:3"), mRequests);
+
+    mPagePrefetcher.onPageLoaded(POPULAR, 2, 20);
+    mRequests.clear();
+    mPriorities.clear();
+    mPagePrefetcher.onViewportChanged(POPULAR, 0);
+    assertEquals(Arrays.asList("0:1"), mRequests);
+  }
+
+  @Test public void short_page_ends_the_list() {
+    mPagePrefetcher.start(POPULAR);
+    mPagePrefetcher.onPageLoaded(POPULAR, 1, 20);
+    mPagePrefetcher.onPageLoaded(POPULAR, 2, 7);
+    mPagePrefetcher.onPageLoaded(POPULAR, 3, 0);
+    mRequests.clear();
+
+    mPagePrefetcher.onViewportChanged(POPULAR, 60);
+    assertEquals(0, mRequests.size());
+  }
+
+  @Test public void refresh_starts_with_first_page() {
+    mPagePrefetcher.restore(POPULAR, new int[] { 1, 2, 3, 4, 5 }, new int[0]);
+    mPagePrefetcher.start(POPULAR);
+    assertEquals(0, mRequests.size());
+
+    mPagePrefetcher.refresh(POPULAR);
+    assertEquals(Arrays.asList("0:1", "0:2"), mRequests);
+  }
+
+  @Test public void restore_keeps_loaded_and_downloading_pages() {
+    mPagePrefetcher.start(POPULAR);
+    mPagePrefetcher.onPageLoaded(POPULAR, 2, 20);
+    mPagePrefetcher.onViewportChanged(POPULAR, 45);
+    // Page 1 and 4 are downloading, page 3 is loaded beyond the gap of page 1
+    mPagePrefetcher.onPageLoaded(POPULAR, 3, 20);
+    assertEquals(Arrays.asList("0:1", "0:2", "0:3", "0:4"), mRequests);
+    assertEquals("[2, 3]", Arrays.toString(mPagePrefetcher.getLoadedPages(POPULAR)));
+    assertEquals("[1, 4]", Arrays.toString(mPagePrefetcher.getInFlightPages(POPULAR)));
+
+    // The Activity was recreated
+    int[] loadedPages = mPagePrefetcher.getLoadedPages(POPULAR);
+    int[] inFlightPages = mPagePrefetcher.getInFlightPages(POPULAR);
+    setUp();
+    mPagePrefetcher.restore(POPULAR, loadedPages, inFlightPages);
+    assertEquals(Arrays.asList("resume 0:1", "resume 0:4"), mRequests);
+    assertEquals(2, mPagePrefetcher.getInFlightCount());
+
+    // Nothing is requested twice
+    mPagePrefetcher.start(POPULAR);
+    mPagePrefetcher.onViewportChanged(POPULAR, 45);
+    assertEquals(2, mRequests.size());
+    mPagePrefetcher.onPageLoaded(POPULAR, 1, 20);
+    assertEquals(3, mPagePrefetcher.getContiguousLoadedPage(POPULAR));
+    assertEquals(Arrays.asList("resume 0:1", "resume 0:4", "0:5"), mRequests);
+  }
+}
@@ -0,0 +1,169 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit test for {@link RequestScheduler} and {@link TokenBucket}.
+ */
+public class RequestSchedulerTest {
+
+  private final MockWebServer mServer = new MockWebServer();
+  private final OkHttpClient mClient = new OkHttpClient();
+  private final List<String> mFinished = Collections.synchronizedList(new ArrayList<String>());
+
+  @Before public void setUp() throws IOException {
+    mServer.start();
+  }
+
+  @After public void tearDown() throws IOException {
+    mServer.shutdown();
+  }
+
+  private Request request(String path) {
+    return new Request.Builder().url(mServer.url(path)).build();
+  }
+
+  /**
+   * Execute a request with its own ticket on a new thread and record the path when it is done.
+   */
+  private Thread startRequest(final RequestScheduler scheduler, final int priority, final String path) {
+    Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        RequestScheduler.Ticket ticket = scheduler.newTicket(priority);
+        try {
+          Response response = ticket.execute(mClient, request(path));
+          response.close();
+          mFinished.add(path);
+        } catch (IOException e) {
+          mFinished.add("canceled " + path);
+        } finally {
+          ticket.close();
+        }
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private static void awaitQueueDepth(RequestScheduler scheduler, int priority, int depth) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (scheduler.getQueueDepth(priority) != depth) {
+      if (System.nanoTime() > deadline) {
+        fail("Queue depth of priority " + priority + " did not reach " + depth);
+      }
+      Thread.sleep(5);
+    }
+  }
+
+  @Test public void token_bucket_limits_rate() {
+    long now = 0;
+    TokenBucket tokenBucket = new TokenBucket(2, 4, now);
+    // Burst of two, then one token every 250 ms
+    assertEquals(0, tokenBucket.tryAcquire(now));
+    assertEquals(0, tokenBucket.tryAcquire(now));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(250), tokenBucket.tryAcquire(now));
+    now += TimeUnit.MILLISECONDS.toNanos(250);
+    assertEquals(0, tokenBucket.tryAcquire(now));
+    // The bucket never holds more than its capacity
+    now += TimeUnit.SECONDS.toNanos(10);
+    assertEquals(2, tokenBucket.availableTokens(now));
+  }
+
+  @Test public void higher_priority_runs_first() throws Exception {
+    for (int i = 0; i < 4; i++) {
+      mServer.enqueue(new MockResponse().setBody("{}"));
+    }
+    RequestScheduler scheduler = new RequestScheduler(1, 10, 100);
+    // Occupy the only slot
+    RequestScheduler.Ticket blocking = scheduler.newTicket(RequestScheduler.VISIBLE_PAGE);
+    blocking.execute(mClient, request("/blocking")).close();
+
+    Thread prefetch = startRequest(scheduler, RequestScheduler.PREFETCH, "/prefetch");
+    awaitQueueDepth(scheduler, RequestScheduler.PREFETCH, 1);
+    Thread sync = startRequest(scheduler, RequestScheduler.BACKGROUND_SYNC, "/sync");
+    awaitQueueDepth(scheduler, RequestScheduler.BACKGROUND_SYNC, 1);
+    Thread detail = startRequest(scheduler, RequestScheduler.VISIBLE_DETAIL, "/detail");
+    awaitQueueDepth(scheduler, RequestScheduler.VISIBLE_DETAIL, 1);
+    assertEquals(1, scheduler.getRunningCount());
+
+    blocking.close();
+    prefetch.join();
+    sync.join();
+    detail.join();
+    assertEquals(Arrays.asList("/detail", "/prefetch", "/sync"), mFinished);
+    assertEquals(0, scheduler.getRunningCount());
+    assertEquals(4, scheduler.getExecutedCount());
+  }
+
+  @Test public void prefetch_leaves_a_slot_for_visible_requests() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      mServer.enqueue(new MockResponse().setBody("{}"));
+    }
+    RequestScheduler scheduler = new RequestScheduler(2, 10, 100);
+    RequestScheduler.Ticket prefetch = scheduler.newTicket(RequestScheduler.PREFETCH);
+    prefetch.execute(mClient, request("/prefetch/1")).close();
+
+    // The second prefetch has to wait, although a slot is free
+    Thread secondPrefetch = startRequest(scheduler, RequestScheduler.PREFETCH, "/prefetch/2");
+    awaitQueueDepth(scheduler, RequestScheduler.PREFETCH, 1);
+    // A visible page uses the reserved slot immediately
+    RequestScheduler.Ticket visible = scheduler.newTicket(RequestScheduler.VISIBLE_PAGE);
+    visible.execute(mClient, request("/visible")).close();
+    assertEquals(2, scheduler.getRunningCount());
+    assertEquals(1, scheduler.getQueueDepth(RequestScheduler.PREFETCH));
+
+    visible.close();
+    prefetch.close();
+    secondPrefetch.join();
+    assertEquals(Arrays.asList("/prefetch/2"), mFinished);
+  }
+
+  @Test public void waiting_ticket_can_be_canceled() throws Exception {
+    mServer.enqueue(new MockResponse().setBody("{}"));
+    RequestScheduler scheduler = new RequestScheduler(1, 10, 100);
+    RequestScheduler.Ticket blocking = scheduler.newTicket(RequestScheduler.VISIBLE_PAGE);
+    blocking.execute(mClient, request("/blocking")).close();
+
+    final RequestScheduler.Ticket waiting = scheduler.newTicket(RequestScheduler.PREFETCH);
+    Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          waiting.execute(mClient, request("/waiting")).close();
+          mFinished.add("/waiting");
+        } catch (IOException e) {
+          mFinished.add("canceled /waiting");
+        } finally {
+          waiting.close();
+        }
+      }
+    });
+    thread.start();
+    awaitQueueDepth(scheduler, RequestScheduler.PREFETCH, 1);
+
+    waiting.cancel();
+    thread.join();
+    assertEquals(Arrays.asList("canceled /waiting"), mFinished);
+    assertEquals(0, scheduler.getQueueDepth(RequestScheduler.PREFETCH));
+    assertEquals(1, scheduler.getCanceledCount());
+    // The canceled ticket never reached the server
+    assertEquals(1, mServer.getRequestCount());
+    assertEquals(1, scheduler.getRunningCount());
+    blocking.close();
+  }
+}
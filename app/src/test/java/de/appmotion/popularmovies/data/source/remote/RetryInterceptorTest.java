@@ -0,0 +1,131 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit test for {@link RetryInterceptor} with faults injected by a MockWebServer.
+ */
+public class RetryInterceptorTest {
+
+  private final MockWebServer mServer = new MockWebServer();
+  // Delays the interceptor would have waited
+  private final List<Long> mDelays = new ArrayList<>();
+  private RetryInterceptor mInterceptor;
+  private OkHttpClient mClient;
+
+  @Before public void setUp() throws IOException {
+    mServer.start();
+    mInterceptor = new RetryInterceptor(3, 100, 1000, new RequestScheduler(2, 10, 1000), new Random(42)) {
+      @Override void sleep(long millis) {
+        mDelays.add(millis);
+      }
+    };
+    // OkHttp's own silent retry of dropped connections is disabled, so every attempt is made by the interceptor
+    mClient = new OkHttpClient.Builder().addInterceptor(mInterceptor).retryOnConnectionFailure(false).build();
+  }
+
+  @After public void tearDown() throws IOException {
+    mServer.shutdown();
+  }
+
+  private Response get(String path) throws IOException {
+    return mClient.newCall(new Request.Builder().url(mServer.url(path)).build()).execute();
+  }
+
+  @Test public void retries_after_dropped_connection() throws IOException {
+    mServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+    mServer.enqueue(new MockResponse().setResponseCode(500));
+    mServer.enqueue(new MockResponse().setBody("{}"));
+
+    Response response = get("/3/movie/popular");
+    assertEquals(200, response.code());
+    assertEquals("{}", response.body().string());
+    assertEquals(3, mServer.getRequestCount());
+    assertEquals(2, mInterceptor.getRetryCount());
+    // Full jitter: every delay is below its exponential limit
+    assertTrue(mDelays.get(0) < 100);
+    assertTrue(mDelays.get(1) < 200);
+  }
+
+  @Test public void honors_retry_after() throws IOException {
+    mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+    mServer.enqueue(new MockResponse().setBody("{}"));
+
+    Response response = get("/3/movie/top_rated");
+    response.close();
+    assertEquals(200, response.code());
+    assertEquals(Arrays.asList(1000L), mDelays);
+  }
+
+  @Test public void too_long_retry_after_is_not_waited_for() throws IOException {
+    mServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "120"));
+
+    Response response = get("/3/movie/top_rated");
+    response.close();
+    assertEquals(503, response.code());
+    assertEquals(1, mServer.getRequestCount());
+    assertTrue(mDelays.isEmpty());
+  }
+
+  @Test public void gives_up_after_max_retries() throws IOException {
+    for (int i = 0; i < 4; i++) {
+      mServer.enqueue(new MockResponse().setResponseCode(503));
+    }
+
+    Response response = get("/3/configuration");
+    response.close();
+    assertEquals(503, response.code());
+    assertEquals(4, mServer.getRequestCount());
+    assertEquals(3, mDelays.size());
+  }
+
+  @Test public void retries_take_tokens() throws IOException {
+    // One token at once, the next one after 200 ms
+    RetryInterceptor interceptor = new RetryInterceptor(3, 0, 0, new RequestScheduler(1, 1, 5), new Random(42));
+    OkHttpClient client = new OkHttpClient.Builder().addInterceptor(interceptor).retryOnConnectionFailure(false).build();
+    mServer.enqueue(new MockResponse().setResponseCode(500));
+    mServer.enqueue(new MockResponse().setResponseCode(500));
+    mServer.enqueue(new MockResponse().setBody("{}"));
+
+    long startNanos = System.nanoTime();
+    Response response = client.newCall(new Request.Builder().url(mServer.url("/3/movie/popular")).build()).execute();
+    response.close();
+    assertEquals(200, response.code());
+    // The first retry took the token, the second one waited for the next token
+    assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(150));
+  }
+
+  @Test public void client_errors_and_images_are_not_retried() throws IOException {
+    mServer.enqueue(new MockResponse().setResponseCode(404));
+    mServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+
+    Response response = get("/3/movie/1");
+    response.close();
+    assertEquals(404, response.code());
+    try {
+      get("/t/p/w185/poster.jpg");
+      fail("Image requests are not retried");
+    } catch (IOException expected) {
+    }
+    assertEquals(2, mServer.getRequestCount());
+    assertEquals(0, mInterceptor.getRetryCount());
+  }
+}
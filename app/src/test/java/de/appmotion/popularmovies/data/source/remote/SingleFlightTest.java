@@ -0,0 +1,218 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit test for {@link SingleFlight}.
+ */
+public class SingleFlightTest {
+
+  private static final String URL = "https://api.themoviedb.org/3/movie/popular?page=1";
+  private static final int CALLERS = 8;
+
+  private static Callable<String> caller(final SingleFlight<String> singleFlight, final SingleFlight.Call<String> call) {
+    return new Callable<String>() {
+      @Override public String call() throws Exception {
+        return singleFlight.execute(URL, call);
+      }
+    };
+  }
+
+  private static void await(CountDownLatch latch) throws InterruptedIOException {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+  }
+
+  @Test public void concurrent_callers_share_one_call() throws Exception {
+    final SingleFlight<String> singleFlight = new SingleFlight<>();
+    final AtomicInteger executions = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final String result = "result";
+    SingleFlight.Call<String> call = new SingleFlight.Call<String>() {
+      @Override public String execute() throws IOException {
+        executions.incrementAndGet();
+        await(release);
+        return result;
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    List<Future<String>> futures = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      futures.add(executor.submit(caller(singleFlight, call)));
+    }
+
+    // Wait until all callers joined the running call before it finishes
+    while (singleFlight.getCoalescedCount() < CALLERS - 1) {
+      Thread.sleep(5);
+    }
+    release.countDown();
+
+    for (Future<String> future : futures) {
+      assertSame(result, future.get(5, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+
+    assertEquals(1, executions.get());
+    assertEquals(1, singleFlight.getExecutedCount());
+    assertEquals(CALLERS - 1, singleFlight.getCoalescedCount());
+  }
+
+  @Test public void sequential_calls_are_not_shared() throws IOException {
+    SingleFlight<String> singleFlight = new SingleFlight<>();
+    singleFlight.execute(URL, new SingleFlight.Call<String>() {
+      @Override public String execute() {
+        return "first";
+      }
+    });
+    String second = singleFlight.execute(URL, new SingleFlight.Call<String>() {
+      @Override public String execute() {
+        return "second";
+      }
+    });
+
+    assertEquals("second", second);
+    assertEquals(2, singleFlight.getExecutedCount());
+    assertEquals(0, singleFlight.getCoalescedCount());
+  }
+
+  @Test public void error_is_shared() throws Exception {
+    final SingleFlight<String> singleFlight = new SingleFlight<>();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<String> leader = executor.submit(caller(singleFlight, new SingleFlight.Call<String>() {
+      @Override public String execute() throws IOException {
+        await(release);
+        throw new IOException("offline");
+      }
+    }));
+    while (singleFlight.getExecutedCount() == 0) {
+      Thread.sleep(5);
+    }
+    Future<String> follower = executor.submit(caller(singleFlight, new SingleFlight.Call<String>() {
+      @Override public String execute() {
+        return "not executed";
+      }
+    }));
+    while (singleFlight.getCoalescedCount() == 0) {
+      Thread.sleep(5);
+    }
+    release.countDown();
+
+    List<Future<String>> futures = new ArrayList<>();
+    futures.add(leader);
+    futures.add(follower);
+    for (Future<String> future : futures) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail("IOException expected");
+      } catch (ExecutionException e) {
+        assertEquals("offline", e.getCause().getMessage());
+      }
+    }
+    executor.shutdown();
+  }
+
+  @Test public void error_of_canceled_leader_is_not_shared() throws Exception {
+    final SingleFlight<String> singleFlight = new SingleFlight<>();
+    final SingleFlight.Cancellation leaderCancellation = new SingleFlight.Cancellation();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<String> leader = executor.submit(new Callable<String>() {
+      @Override public String call() throws Exception {
+        return singleFlight.execute(URL, new SingleFlight.Call<String>() {
+          @Override public String execute() throws IOException {
+            await(release);
+            throw new IOException("Canceled");
+          }
+        }, leaderCancellation);
+      }
+    });
+    while (singleFlight.getExecutedCount() == 0) {
+      Thread.sleep(5);
+    }
+    Future<String> follower = executor.submit(caller(singleFlight, new SingleFlight.Call<String>() {
+      @Override public String execute() {
+        return "follower";
+      }
+    }));
+    while (singleFlight.getCoalescedCount() == 0) {
+      Thread.sleep(5);
+    }
+    singleFlight.cancel(leaderCancellation);
+    release.countDown();
+
+    try {
+      leader.get(5, TimeUnit.SECONDS);
+      fail("IOException expected");
+    } catch (ExecutionException e) {
+      assertEquals("Canceled", e.getCause().getMessage());
+    }
+    // The follower executed its own call
+    assertEquals("follower", follower.get(5, TimeUnit.SECONDS));
+    assertEquals(2, singleFlight.getExecutedCount());
+    executor.shutdown();
+  }
+
+  @Test public void canceled_follower_stops_waiting() throws Exception {
+    final SingleFlight<String> singleFlight = new SingleFlight<>();
+    final SingleFlight.Cancellation followerCancellation = new SingleFlight.Cancellation();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<String> leader = executor.submit(caller(singleFlight, new SingleFlight.Call<String>() {
+      @Override public String execute() throws IOException {
+        await(release);
+        return "leader";
+      }
+    }));
+    while (singleFlight.getExecutedCount() == 0) {
+      Thread.sleep(5);
+    }
+    Future<String> follower = executor.submit(new Callable<String>() {
+      @Override public String call() throws Exception {
+        return singleFlight.execute(URL, new SingleFlight.Call<String>() {
+          @Override public String execute() {
+            return "not executed";
+          }
+        }, followerCancellation);
+      }
+    });
+    while (singleFlight.getCoalescedCount() == 0) {
+      Thread.sleep(5);
+    }
+    singleFlight.cancel(followerCancellation);
+
+    try {
+      follower.get(5, TimeUnit.SECONDS);
+      fail("IOException expected");
+    } catch (ExecutionException e) {
+      assertEquals("Canceled", e.getCause().getMessage());
+    }
+    release.countDown();
+    assertEquals("leader", leader.get(5, TimeUnit.SECONDS));
+    assertEquals(1, singleFlight.getExecutedCount());
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,119 @@
+package de.appmotion.popularmovies.data.source.remote;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit test for {@link StaleWhileRevalidateInterceptor} and {@link CachePolicyInterceptor} against a MockWebServer.
+ */
+public class StaleWhileRevalidateInterceptorTest {
+
+  private final MockWebServer mServer = new MockWebServer();
+  private final CachePolicy mCachePolicy = new CachePolicy();
+  private final RequestScheduler mRequestScheduler = new RequestScheduler(2, 10, 1000);
+  private StaleWhileRevalidateInterceptor mInterceptor;
+  private OkHttpClient mClient;
+  private Cache mCache;
+
+  @Before public void setUp() throws IOException {
+    mServer.start();
+    File cacheDir = Files.createTempDirectory("http-cache").toFile();
+    mCache = new Cache(cacheDir, 1024 * 1024);
+    mInterceptor = new StaleWhileRevalidateInterceptor(mCachePolicy);
+    mClient = new OkHttpClient.Builder().cache(mCache)
+        .addInterceptor(mInterceptor)
+        .addNetworkInterceptor(new CachePolicyInterceptor(mCachePolicy))
+        .build();
+    mInterceptor.setOkHttpClient(mClient, mRequestScheduler);
+  }
+
+  @After public void tearDown() throws IOException {
+    mServer.shutdown();
+    mCache.delete();
+  }
+
+  private String get(String path) throws IOException {
+    Request request = new Request.Builder().url(mServer.url(path)).build();
+    Response response = mClient.newCall(request).execute();
+    try {
+      return response.body().string();
+    } finally {
+      response.close();
+    }
+  }
+
+  @Test public void endpoint_types() {
+    assertEquals(CachePolicy.CONFIGURATION, CachePolicy.endpointTypeOf(mServer.url("/3/configuration")));
+    assertEquals(CachePolicy.POPULAR, CachePolicy.endpointTypeOf(mServer.url("/3/movie/popular?page=2")));
+    assertEquals(CachePolicy.TOP_RATED, CachePolicy.endpointTypeOf(mServer.url("/3/movie/top_rated")));
+    assertEquals(CachePolicy.DETAIL, CachePolicy.endpointTypeOf(mServer.url("/3/movie/550?append_to_response=videos,reviews")));
+    assertEquals(CachePolicy.VIDEOS, CachePolicy.endpointTypeOf(mServer.url("/3/movie/550/videos")));
+    assertEquals(CachePolicy.REVIEWS, CachePolicy.endpointTypeOf(mServer.url("/3/movie/550/reviews")));
+    assertEquals(CachePolicy.UNKNOWN, CachePolicy.endpointTypeOf(mServer.url("/t/p/w185/poster.jpg")));
+  }
+
+  @Test public void fresh_response_is_a_hit() throws IOException {
+    // The server forbids caching, the CachePolicy overrides it
+    mServer.enqueue(new MockResponse().setBody("page 1").setHeader("Cache-Control", "no-cache"));
+
+    assertEquals("page 1", get("/3/movie/popular?page=1"));
+    assertEquals("page 1", get("/3/movie/popular?page=1"));
+
+    assertEquals(1, mServer.getRequestCount());
+    assertEquals(1, mInterceptor.getMissCount());
+    assertEquals(1, mInterceptor.getHitCount());
+    assertEquals(0, mInterceptor.getRevalidateCount());
+  }
+
+  @Test public void stale_response_is_served_and_revalidated() throws Exception {
+    mCachePolicy.setFreshness(CachePolicy.DETAIL, 0, 60);
+    mServer.enqueue(new MockResponse().setBody("detail v1").setHeader("ETag", "\"v1\""));
+    mServer.enqueue(new MockResponse().setBody("detail v2").setHeader("ETag", "\"v2\""));
+
+    assertEquals("detail v1", get("/3/movie/550"));
+    assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+
+    // The stale response is served immediately, the background request is conditional
+    assertEquals("detail v1", get("/3/movie/550"));
+    RecordedRequest revalidation = mServer.takeRequest(5, TimeUnit.SECONDS);
+    assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+    assertEquals(1, mInterceptor.getRevalidateCount());
+    // The revalidation was scheduled like every other request
+    assertEquals(1, mRequestScheduler.getExecutedCount());
+
+    // Wait until the revalidated response is written to the cache
+    long deadline = System.currentTimeMillis() + 5000;
+    String body = null;
+    while (System.currentTimeMillis() < deadline && !"detail v2".equals(body)) {
+      Thread.sleep(20);
+      body = get("/3/movie/550");
+    }
+    assertEquals("detail v2", body);
+  }
+
+  @Test public void unknown_endpoints_are_passed_through() throws IOException {
+    mServer.enqueue(new MockResponse().setBody("image"));
+    mServer.enqueue(new MockResponse().setBody("image"));
+
+    get("/t/p/w185/poster.jpg");
+    get("/t/p/w185/poster.jpg");
+
+    assertEquals(2, mServer.getRequestCount());
+    assertEquals(0, mInterceptor.getMissCount() + mInterceptor.getHitCount());
+  }
+}